@@ -0,0 +1,215 @@
+package com.book.archive;
+
+import com.book.cache.BooksTableVersion;
+import com.book.config.ArchiveProperties;
+import com.book.dto.BookQueryDTO;
+import com.book.exception.BusinessException;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.search.BookSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 冷热分层
+ * <p>
+ * 出版日期早于分界的图书按批迁入归档表，每批的复制和删除在同一事务中提交，
+ * 中断后重新运行时从剩余的旧书继续，已提交的批次不会重复迁移。
+ * 归档表中的图书不在倒排索引中；按ID查询时热表未命中再查归档表，
+ * 条件查询只在出版日期范围早于分界或显式要求时读归档表。
+ */
+@Slf4j
+@Component
+public class BookArchiver {
+
+    private final ArchiveProperties properties;
+
+    private final BooksMapper booksMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final BooksTableVersion booksTableVersion;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile boolean stopped;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    public BookArchiver(ArchiveProperties properties, BooksMapper booksMapper,
+                        PlatformTransactionManager transactionManager, BookSearchIndex bookSearchIndex,
+                        BooksTableVersion booksTableVersion) {
+        this.properties = properties;
+        this.booksMapper = booksMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookSearchIndex = bookSearchIndex;
+        this.booksTableVersion = booksTableVersion;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "book-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = properties.getInterval().toNanos();
+        executor.scheduleWithFixedDelay(this::archiveQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 归档分界：出版日期早于该日期的图书属于冷数据
+     */
+    public Date cutoff() {
+        LocalDate cutoff = LocalDate.now().minus(properties.getMaxAge());
+        return Date.from(cutoff.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * 条件查询是否需要读归档表：显式要求，或出版日期范围的下界早于分界（没有下界但有上界也算）
+     */
+    public boolean needsArchive(BookQueryDTO query) {
+        if (query.getIncludeArchived() != null) {
+            return query.getIncludeArchived();
+        }
+        if (query.getPublishDateStart() != null) {
+            return query.getPublishDateStart().before(cutoff());
+        }
+        return query.getPublishDateEnd() != null;
+    }
+
+    /**
+     * 迁移全部早于分界的图书，已有任务在运行时直接返回
+     *
+     * @return 迁移的行数
+     */
+    public long archive() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            Date cutoff = cutoff();
+            long total = 0;
+            int moved;
+            do {
+                moved = archiveBatch(cutoff);
+                total += moved;
+                if (moved > 0 && !sleep(properties.getBatchPause().toMillis())) {
+                    break;
+                }
+            } while (moved >= properties.getBatchSize() && !stopped);
+            if (total > 0) {
+                log.info("Archived {} books published before {}", total, cutoff);
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 在一个事务中迁移一批；复制和删除的行数不一致时回滚，下次重新选取
+     */
+    int archiveBatch(Date cutoff) {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<Long> ids = booksMapper.findArchivableIds(cutoff, properties.getBatchSize());
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            int copied = booksMapper.copyToArchive(ids, cutoff);
+            int deleted = booksMapper.deleteArchivable(ids, cutoff);
+            if (copied != deleted) {
+                throw new IllegalStateException("Archived " + copied + " books but removed " + deleted + " from the hot table");
+            }
+            if (copied == ids.size()) {
+                ids.forEach(bookSearchIndex::onDeleted);
+            } else {
+                // 选出后又被改为较新日期的行留在热表，只从索引中移除实际迁移的行
+                booksMapper.findArchivedByIds(ids).forEach(book -> bookSearchIndex.onDeleted(book.getId()));
+            }
+            return copied;
+        });
+        if (moved != null && moved > 0) {
+            booksTableVersion.bump();
+        }
+        return moved == null ? 0 : moved;
+    }
+
+    /**
+     * 把归档表中的一本图书迁回热表，复制和删除在同一事务中提交；调用方在事务中时加入该事务
+     *
+     * @return 图书是否已在热表中（本次迁回或被并发请求迁回）
+     * @throws BusinessException 该图书的ISBN已被热表中的另一本书占用，归档的图书保持原样
+     */
+    public boolean restore(Long id) {
+        Boolean restored = transactionTemplate.execute(status -> {
+            int copied;
+            try {
+                copied = booksMapper.restoreFromArchive(id);
+            } catch (DuplicateKeyException e) {
+                // 主键冲突说明并发请求已经迁回；否则是ISBN冲突
+                if (booksMapper.findStockById(id) != null) {
+                    return true;
+                }
+                List<Book> archived = booksMapper.findArchivedByIds(Collections.singletonList(id));
+                throw BusinessException.isbnExists(archived.isEmpty() ? null : archived.get(0).getIsbn());
+            }
+            if (copied == 0) {
+                return false;
+            }
+            booksMapper.deleteArchived(id);
+            bookSearchIndex.onSaved(booksMapper.findById(id));
+            return true;
+        });
+        if (Boolean.TRUE.equals(restored)) {
+            booksTableVersion.bump();
+            return true;
+        }
+        return false;
+    }
+
+    private void archiveQuietly() {
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            log.error("Failed to archive old books, will retry", e);
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
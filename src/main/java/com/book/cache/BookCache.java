@@ -0,0 +1,76 @@
+package com.book.cache;
+
+import com.book.config.BookCacheProperties;
+import com.book.dto.BookDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Function;
+
+/**
+ * 按ID缓存图书详情
+ * <p>
+ * 同一ID的并发未命中只会触发一次加载，其余调用等待该次加载的结果。
+ */
+@Component
+public class BookCache {
+
+    private final boolean enabled;
+
+    private final Cache<Long, BookDTO> cache;
+
+    public BookCache(BookCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 加载；loader 抛出的异常原样抛出且不会缓存
+     */
+    public BookDTO get(Long id, Function<Long, BookDTO> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        return cache.get(id, loader);
+    }
+
+    /**
+     * 只读取缓存，不触发加载；未命中或缓存关闭时返回 null
+     */
+    public BookDTO getIfPresent(Long id) {
+        return enabled ? cache.getIfPresent(id) : null;
+    }
+
+    /**
+     * 失效指定ID
+     * <p>
+     * 在事务中调用时，提交或回滚后会再失效一次，避免提交前被并发读取重新加载的旧值留在缓存里。
+     */
+    public void evict(Long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,41 @@
+package com.book.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * books 表的数据版本号
+ * <p>
+ * 每次写入都会递增，依赖整表数据的缓存（例如分页总数）在读取前先记录版本号，
+ * 版本号变化后缓存的结果即视为过期。
+ */
+@Component
+public class BooksTableVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * 标记数据已变更
+     * <p>
+     * 在事务中调用时，提交或回滚后会再递增一次，
+     * 使提交前基于旧版本号并发计算出的结果同样失效。
+     */
+    public void bump() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.book.cache;
+
+import com.book.config.CountProperties;
+import com.book.dto.BookQueryDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * 按过滤条件缓存分页查询的总数
+ * <p>
+ * 缓存键只包含过滤条件，页码、每页数量和排序不影响总数。
+ * 每条缓存记录保存计算时的表版本号，版本号变化后不再使用。
+ */
+@Component
+public class CountCache {
+
+    private final BooksTableVersion tableVersion;
+
+    private final Cache<List<Object>, CachedCount> cache;
+
+    public CountCache(CountProperties properties, BooksTableVersion tableVersion) {
+        this.tableVersion = tableVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaximumSize())
+                .expireAfterWrite(properties.getCacheTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 读取缓存的总数，未命中或已过期时调用 counter 计算
+     */
+    public long get(BookQueryDTO query, LongSupplier counter) {
+        Long cached = getIfPresent(query);
+        if (cached != null) {
+            return cached;
+        }
+        long version = currentVersion();
+        long total = counter.getAsLong();
+        put(query, version, total);
+        return total;
+    }
+
+    /**
+     * 读取仍然有效的缓存总数，没有时返回 null
+     */
+    public Long getIfPresent(BookQueryDTO query) {
+        CachedCount cached = cache.getIfPresent(keyOf(query));
+        if (cached != null && cached.version == tableVersion.current()) {
+            return cached.total;
+        }
+        return null;
+    }
+
+    /**
+     * 当前表版本号，调用方在执行统计前读取，再连同结果一起交给 put
+     */
+    public long currentVersion() {
+        return tableVersion.current();
+    }
+
+    /**
+     * 缓存统计结果；统计期间有写入（版本号已变化）则不缓存，避免把旧结果标记为新版本
+     */
+    public void put(BookQueryDTO query, long version, long total) {
+        if (tableVersion.current() == version) {
+            cache.put(keyOf(query), new CachedCount(version, total));
+        }
+    }
+
+    /**
+     * 过滤条件的规范化表示，与 queryConditions 的判断保持一致：空字符串视为未设置。
+     * includeArchived 保留三种取值：未设置时按出版日期范围决定是否读归档表，与 false 的结果可能不同
+     */
+    public static List<Object> keyOf(BookQueryDTO query) {
+        List<Object> key = new ArrayList<>(conditionsOf(query));
+        key.add(query.getIncludeArchived());
+        return key;
+    }
+
+    /**
+     * 是否没有任何过滤条件，且只读热表
+     */
+    public static boolean isUnfiltered(BookQueryDTO query) {
+        return conditionsOf(query).stream().allMatch(value -> value == null)
+                && !Boolean.TRUE.equals(query.getIncludeArchived());
+    }
+
+    private static List<Object> conditionsOf(BookQueryDTO query) {
+        return Arrays.asList(
+                normalize(query.getTitle()),
+                normalize(query.getIsbn()),
+                normalize(query.getAuthor()),
+                normalize(query.getPublisher()),
+                query.getCategoryId(),
+                normalize(query.getCategory()),
+                query.getPublishDateStart(),
+                query.getPublishDateEnd(),
+                query.getStatus(),
+                query.getMinPrice(),
+                query.getMaxPrice());
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static String normalize(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static final class CachedCount {
+        private final long version;
+        private final long total;
+
+        private CachedCount(long version, long total) {
+            this.version = version;
+            this.total = total;
+        }
+    }
+}
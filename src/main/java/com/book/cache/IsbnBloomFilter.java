@@ -0,0 +1,142 @@
+package com.book.cache;
+
+import com.book.config.IsbnFilterProperties;
+import com.book.dto.IsbnFilterStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * ISBN 存在性检查的布隆过滤器快速路径
+ * <p>
+ * 过滤器判定“一定不存在”时直接返回，只有“可能存在”才查询数据库，唯一性仍由数据库保证。
+ * 首次构建完成前所有检查都会查询数据库。
+ */
+@Slf4j
+@Component
+public class IsbnBloomFilter {
+
+    private final IsbnFilterProperties properties;
+
+    private volatile BloomFilter current;
+
+    /**
+     * 重建过程中新写入的ISBN同时写入正在构建的过滤器，避免切换后丢失
+     */
+    private volatile BloomFilter building;
+
+    private volatile long lastRebuildMillis;
+
+    private final LongAdder definiteNegatives = new LongAdder();
+
+    private final LongAdder maybePositives = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    public IsbnBloomFilter(IsbnFilterProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 判断ISBN是否存在
+     *
+     * @param isbn   ISBN
+     * @param lookup 过滤器无法排除时使用的数据库查询
+     * @return 是否存在
+     */
+    public boolean exists(String isbn, Predicate<String> lookup) {
+        BloomFilter filter = current;
+        if (!properties.isEnabled() || filter == null || isbn == null) {
+            return lookup.test(isbn);
+        }
+        if (!filter.mightContain(isbn)) {
+            definiteNegatives.increment();
+            return false;
+        }
+        maybePositives.increment();
+        boolean exists = lookup.test(isbn);
+        if (!exists) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    /**
+     * 记录新写入的ISBN；在事务中调用时提交后会再写入一次，覆盖与重建并发的情况
+     */
+    public void put(String isbn) {
+        if (isbn == null) {
+            return;
+        }
+        doPut(isbn);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doPut(isbn);
+                }
+            });
+        }
+    }
+
+    private void doPut(String isbn) {
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(isbn);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(isbn);
+        }
+    }
+
+    /**
+     * 用全量ISBN重建过滤器
+     *
+     * @param scanner 接收一个 ISBN 消费者并逐个推送全部 ISBN
+     */
+    public synchronized void rebuild(Consumer<Consumer<String>> scanner) {
+        long start = System.currentTimeMillis();
+        BloomFilter previous = current;
+        long expected = properties.getExpectedInsertions();
+        if (previous != null) {
+            expected = Math.max(expected, previous.insertions() * 3 / 2);
+        }
+        BloomFilter next = new BloomFilter(expected, properties.getFalsePositiveRate());
+        building = next;
+        try {
+            scanner.accept(next::put);
+            current = next;
+        } finally {
+            building = null;
+        }
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("ISBN bloom filter rebuilt with {} entries in {} ms", next.insertions(), lastRebuildMillis);
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public IsbnFilterStatsDTO stats() {
+        BloomFilter filter = current;
+        IsbnFilterStatsDTO stats = new IsbnFilterStatsDTO();
+        stats.setReady(filter != null);
+        if (filter != null) {
+            stats.setExpectedInsertions(filter.expectedInsertions());
+            stats.setInsertions(filter.insertions());
+            stats.setBitCount(filter.bitCount());
+            stats.setHashCount(filter.hashCount());
+        }
+        stats.setDefiniteNegatives(definiteNegatives.sum());
+        stats.setMaybePositives(maybePositives.sum());
+        stats.setFalsePositives(falsePositives.sum());
+        stats.setLastRebuildMillis(lastRebuildMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,42 @@
+package com.book.cache;
+
+import com.book.config.IsbnFilterProperties;
+import com.book.mapper.BooksMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时流式扫描全部ISBN构建过滤器，之后定期重建以清除已删除的ISBN
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IsbnBloomFilterLoader {
+
+    private final IsbnBloomFilter isbnBloomFilter;
+    private final IsbnFilterProperties properties;
+    private final BooksMapper booksMapper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${book.isbn-filter.rebuild-interval:PT1H}",
+            fixedDelayString = "${book.isbn-filter.rebuild-interval:PT1H}")
+    public void rebuild() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            isbnBloomFilter.rebuild(sink -> booksMapper.scanIsbns(context -> sink.accept(context.getResultObject())));
+        } catch (RuntimeException e) {
+            // 构建失败时继续使用旧的过滤器，未就绪则所有检查都走数据库
+            log.error("Failed to rebuild ISBN bloom filter", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.book.cache;
+
+import com.book.config.NegativeCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 已确认不存在的图书ID
+ * <p>
+ * 命中时直接判定不存在，不再查询数据库。记录时需带上查询前读取的表版本号，
+ * 查询期间有写入（版本号变化）则不记录，避免与并发创建交错后留下错误的记录。
+ */
+@Component
+public class NegativeIdCache {
+
+    private final boolean enabled;
+
+    private final BooksTableVersion tableVersion;
+
+    private final Cache<Long, Boolean> cache;
+
+    public NegativeIdCache(NegativeCacheProperties properties, BooksTableVersion tableVersion) {
+        this.enabled = properties.isEnabled();
+        this.tableVersion = tableVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 查询前读取的版本号，查询未命中时传给 markMissing
+     */
+    public long currentVersion() {
+        return tableVersion.current();
+    }
+
+    public boolean isKnownMissing(Long id) {
+        return enabled && id != null && cache.getIfPresent(id) != null;
+    }
+
+    /**
+     * 记录不存在的ID
+     *
+     * @param id      图书ID
+     * @param version 查询前读取的表版本号
+     */
+    public void markMissing(Long id, long version) {
+        if (enabled && id != null && tableVersion.current() == version) {
+            cache.put(id, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * ID 已存在（新建）时清除记录；在事务中调用时提交或回滚后会再清除一次
+     */
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
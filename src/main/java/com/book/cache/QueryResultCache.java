@@ -0,0 +1,78 @@
+package com.book.cache;
+
+import com.book.config.QueryCacheProperties;
+import com.book.dto.BookDTO;
+import com.book.dto.BookQueryDTO;
+import com.book.dto.PageResult;
+import com.book.enm.CountMode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 分页查询结果缓存
+ * <p>
+ * 缓存键由表版本号和规范化后的查询条件（过滤条件、排序、分页、统计方式、游标）组成。
+ * 任何写入都会递增表版本号，之后的查询使用新键，旧结果不再命中并随容量或过期淘汰。
+ * 相同键的并发未命中只会执行一次查询，其余调用等待该次结果。
+ */
+@Component
+public class QueryResultCache {
+
+    private final boolean enabled;
+
+    private final BooksTableVersion tableVersion;
+
+    private final Cache<List<Object>, PageResult<BookDTO>> cache;
+
+    public QueryResultCache(QueryCacheProperties properties, BooksTableVersion tableVersion) {
+        this.enabled = properties.isEnabled();
+        this.tableVersion = tableVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 查询；loader 抛出的异常原样抛出且不会缓存
+     */
+    public PageResult<BookDTO> get(BookQueryDTO query, Supplier<PageResult<BookDTO>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        List<Object> key = keyOf(query);
+        PageResult<BookDTO> result = cache.get(key, k -> loader.get());
+        // 要求精确总数但因超时未取得时不缓存，下次查询重新统计
+        if (result.getTotal() < 0 && (query.getCountMode() == CountMode.EXACT || query.getCountMode() == CountMode.CACHED)) {
+            cache.asMap().remove(key, result);
+        }
+        return result;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private List<Object> keyOf(BookQueryDTO query) {
+        List<Object> key = new ArrayList<>(CountCache.keyOf(query));
+        key.add(tableVersion.current());
+        key.add(query.getSortField());
+        key.add(query.isDescending());
+        key.add(query.getPageNum());
+        key.add(query.getPageSize());
+        key.add(query.getCountMode());
+        key.add(query.getAfter() == null || query.getAfter().isEmpty() ? null : query.getAfter());
+        return key;
+    }
+}
@@ -0,0 +1,72 @@
+package com.book.category;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 分类编码表的不可变快照
+ * <p>
+ * 名称按忽略大小写查找，与 MySQL 默认排序规则下 category_dict.name 的唯一约束一致；
+ * 只差大小写的名称共用一个编码，读取时显示首次写入的写法。
+ */
+final class CategoryCodeTable {
+
+    static final CategoryCodeTable EMPTY = new CategoryCodeTable(Collections.emptyMap(), new String[1]);
+
+    private final Map<String, Integer> codes;
+
+    /**
+     * 下标为编码，编码从 1 开始
+     */
+    private final String[] names;
+
+    private CategoryCodeTable(Map<String, Integer> codes, String[] names) {
+        this.codes = codes;
+        this.names = names;
+    }
+
+    static CategoryCodeTable of(Map<Integer, String> entries) {
+        int max = entries.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        Map<String, Integer> codes = new HashMap<>(entries.size() * 2);
+        String[] names = new String[max + 1];
+        entries.forEach((code, name) -> {
+            codes.put(key(name), code);
+            names[code] = name;
+        });
+        return new CategoryCodeTable(codes, names);
+    }
+
+    Integer codeOf(String name) {
+        return codes.get(key(name));
+    }
+
+    String nameOf(int code) {
+        return code > 0 && code < names.length ? names[code] : null;
+    }
+
+    int maxCode() {
+        return names.length - 1;
+    }
+
+    int size() {
+        return codes.size();
+    }
+
+    /**
+     * 增加一个编码后的新快照
+     */
+    CategoryCodeTable with(int code, String name) {
+        Map<String, Integer> newCodes = new HashMap<>(codes);
+        newCodes.put(key(name), code);
+        String[] newNames = Arrays.copyOf(names, Math.max(names.length, code + 1));
+        newNames[code] = name;
+        return new CategoryCodeTable(newCodes, newNames);
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,52 @@
+package com.book.category;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.springframework.stereotype.Component;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 分类名称与 category_code 列之间的转换
+ * <p>
+ * 写入时只查找编码，新分类须由调用方在执行语句前经 {@link CategoryDictionary#register} 分配。
+ * <p>
+ * 只在 BookMapper.xml 中通过 typeHandler 属性显式引用；注册时只绑定 SMALLINT，不影响其他字符串列。
+ */
+@Component
+@MappedJdbcTypes(JdbcType.SMALLINT)
+public class CategoryCodeTypeHandler extends BaseTypeHandler<String> {
+
+    protected final CategoryDictionary dictionary;
+
+    public CategoryCodeTypeHandler(CategoryDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) throws SQLException {
+        ps.setInt(i, dictionary.codeOf(parameter));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        int code = rs.getInt(columnName);
+        return rs.wasNull() ? null : dictionary.nameOf(code);
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        int code = rs.getInt(columnIndex);
+        return rs.wasNull() ? null : dictionary.nameOf(code);
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        int code = cs.getInt(columnIndex);
+        return cs.wasNull() ? null : dictionary.nameOf(code);
+    }
+}
@@ -0,0 +1,286 @@
+package com.book.category;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * 分类字典
+ * <p>
+ * books.category_code 只存编码，名称在 category_dict 中，启动时整表加载为内存中的不可变编码表，
+ * 读写时由 BookMapper.xml 中的类型处理器转换，查询不需要关联字典表。
+ * 编码只增不改：其他节点新增的分类在遇到未知编码或名称时重新加载。
+ * <p>
+ * 写入图书前由调用方先 {@link #register} 其中的分类，类型处理器绑定参数时只查找，不再借用连接。
+ * 新分类用调用方事务的连接写入字典表，与图书一起提交或回滚：提交后才发布到内存编码表，
+ * 提交前只对本事务可见，不会出现内存中有而字典表中没有的编码。
+ */
+@Slf4j
+@Component
+public class CategoryDictionary {
+
+    /**
+     * 查询条件中的未知分类触发重新加载的最小间隔，避免不存在的分类在每次请求时都查询字典表
+     */
+    private static final long MISS_RELOAD_INTERVAL_MILLIS = 1000;
+
+    private static final int MAX_ALLOCATE_ATTEMPTS = 5;
+
+    private final DataSource dataSource;
+
+    private volatile CategoryCodeTable table;
+
+    private volatile long lastLoadMillis;
+
+    public CategoryDictionary(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+            log.info("Loaded {} categories", table.size());
+        } catch (IllegalStateException e) {
+            log.warn("Failed to load category dictionary, will retry on first use", e);
+        }
+    }
+
+    /**
+     * 写入图书前调用：为字典中没有的分类分配编码
+     * <p>
+     * 在事务中时使用事务的连接，按名称顺序分配，并发事务以相同顺序加锁；不在事务中时自动提交并立即发布。
+     */
+    public void register(Collection<String> names) {
+        SortedSet<String> missing = new TreeSet<>();
+        for (String name : names) {
+            if (name != null && lookup(name) == null) {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            for (String name : missing) {
+                // 只差大小写的名称共用一个编码，前一个名称分配后可能已经有了
+                if (lookup(name) == null) {
+                    allocate(connection, name);
+                }
+            }
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * 写入使用：分类的编码，包括本事务中分配尚未提交的编码；未经 {@link #register} 的新分类抛出异常
+     */
+    public int codeOf(String name) {
+        Integer code = lookup(name);
+        if (code == null) {
+            throw new IllegalStateException("Category " + name + " was not registered before writing");
+        }
+        return code;
+    }
+
+    /**
+     * 查询条件使用：不分配编码，字典中没有时返回 null
+     */
+    public Integer find(String name) {
+        Integer code = table().codeOf(name);
+        if (code == null && reloadIfStale()) {
+            code = table.codeOf(name);
+        }
+        return code;
+    }
+
+    /**
+     * 读取使用：编码对应的分类名称
+     */
+    public String nameOf(int code) {
+        String name = table().nameOf(code);
+        if (name == null && reloadIfStale()) {
+            name = table.nameOf(code);
+        }
+        if (name == null) {
+            log.warn("Unknown category code {}", code);
+        }
+        return name;
+    }
+
+    public int size() {
+        return table().size();
+    }
+
+    /**
+     * 重新加载整张字典表
+     */
+    public synchronized void reload() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT code, name FROM category_dict")) {
+            table = CategoryCodeTable.of(entries(resultSet));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load category dictionary", e);
+        }
+        lastLoadMillis = System.currentTimeMillis();
+    }
+
+    private CategoryCodeTable table() {
+        CategoryCodeTable current = table;
+        if (current == null) {
+            reload();
+            current = table;
+        }
+        return current;
+    }
+
+    private boolean reloadIfStale() {
+        if (System.currentTimeMillis() - lastLoadMillis < MISS_RELOAD_INTERVAL_MILLIS) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+    /**
+     * 已发布的编码表中查找，再查本事务中分配的编码；尚未加载时不加载，由 register 在事务的连接上读取
+     */
+    private Integer lookup(String name) {
+        CategoryCodeTable current = table;
+        Integer code = current == null ? null : current.codeOf(name);
+        if (code == null) {
+            Pending pending = pending(false);
+            if (pending != null) {
+                code = pending.table.codeOf(name);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * 锁住字典表读取最新提交的记录（分类数量很少），再取最大编码加一写入；
+     * 并发分配的事务在锁上排队，其他节点先写入了同一编码或同一名称时重新读取后重试
+     */
+    private void allocate(Connection connection, String name) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Pending pending = pending(true);
+                Map<Integer, String> committed = lockAndLoad(connection);
+                if (pending != null) {
+                    // 本事务未提交的分配也能读到，不能提前发布
+                    committed.keySet().removeAll(pending.entries.keySet());
+                }
+                CategoryCodeTable latest = CategoryCodeTable.of(committed);
+                publish(latest);
+                if (latest.codeOf(name) != null) {
+                    return;
+                }
+                int code = Math.max(latest.maxCode(), pending == null ? 0 : pending.table.maxCode()) + 1;
+                if (code > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Category dictionary is full, cannot add " + name);
+                }
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO category_dict (code, name) VALUES (?, ?)")) {
+                    statement.setInt(1, code);
+                    statement.setString(2, name);
+                    statement.executeUpdate();
+                }
+                if (pending == null) {
+                    publish(code, name);
+                } else {
+                    pending.add(code, name);
+                }
+                log.info("Added category {} with code {}", name, code);
+                return;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                if (attempt >= MAX_ALLOCATE_ATTEMPTS) {
+                    throw new IllegalStateException("Failed to add category " + name, e);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to add category " + name, e);
+            }
+        }
+    }
+
+    private static Map<Integer, String> lockAndLoad(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT code, name FROM category_dict FOR UPDATE")) {
+            return entries(resultSet);
+        }
+    }
+
+    private static Map<Integer, String> entries(ResultSet resultSet) throws SQLException {
+        Map<Integer, String> entries = new HashMap<>();
+        while (resultSet.next()) {
+            entries.put(resultSet.getInt(1), resultSet.getString(2));
+        }
+        return entries;
+    }
+
+    private synchronized void publish(CategoryCodeTable latest) {
+        table = latest;
+        lastLoadMillis = System.currentTimeMillis();
+    }
+
+    private synchronized void publish(int code, String name) {
+        CategoryCodeTable current = table;
+        table = (current == null ? CategoryCodeTable.EMPTY : current).with(code, name);
+    }
+
+    /**
+     * 当前事务中分配的编码；不在事务同步范围内时为 null。create 为 true 时首次使用绑定到事务，提交后发布
+     */
+    private Pending pending(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null && create) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    created.entries.forEach((code, name) -> publish(code, name));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CategoryDictionary.this);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    private static final class Pending {
+        private final Map<Integer, String> entries = new HashMap<>();
+        private CategoryCodeTable table = CategoryCodeTable.EMPTY;
+
+        private void add(int code, String name) {
+            entries.put(code, name);
+            table = table.with(code, name);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.book.category;
+
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 查询条件中的分类：只查找不分配，字典中没有的分类使用不存在的编码，不匹配任何行
+ */
+@Component
+@MappedJdbcTypes(JdbcType.SMALLINT)
+public class CategoryFilterTypeHandler extends CategoryCodeTypeHandler {
+
+    static final int UNKNOWN_CODE = -1;
+
+    public CategoryFilterTypeHandler(CategoryDictionary dictionary) {
+        super(dictionary);
+    }
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) throws SQLException {
+        Integer code = dictionary.find(parameter);
+        ps.setInt(i, code == null ? UNKNOWN_CODE : code);
+    }
+}
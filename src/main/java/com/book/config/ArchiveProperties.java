@@ -0,0 +1,43 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Period;
+
+/**
+ * 冷热分层配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.archive")
+public class ArchiveProperties {
+
+    /**
+     * 是否定期把旧书迁入归档表；关闭时不再迁移，已归档的数据仍可读取
+     */
+    private boolean enabled = false;
+
+    /**
+     * 出版日期早于今天减去该时长的图书归档。查询按它判断是否需要读归档表，
+     * 调大后已归档的较新图书只有在 includeArchived=true 时才会被条件查询读到
+     */
+    private Period maxAge = Period.ofYears(10);
+
+    /**
+     * 每个事务迁移的行数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 两批之间的间隔，避免长时间占用锁和复制带宽
+     */
+    private Duration batchPause = Duration.ofMillis(100);
+
+    /**
+     * 两次归档任务之间的间隔
+     */
+    private Duration interval = Duration.ofHours(1);
+}
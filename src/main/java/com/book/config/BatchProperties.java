@@ -0,0 +1,57 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 按ID批量查询配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.batch")
+public class BatchProperties {
+
+    /**
+     * 单次请求最多查询的ID数量
+     */
+    private int maxIds = 1000;
+
+    /**
+     * 每条 IN 查询包含的ID数量
+     */
+    private int chunkSize = 500;
+
+    private Loader loader = new Loader();
+
+    /**
+     * getBookById 的合并查询配置
+     */
+    @Data
+    public static class Loader {
+
+        private boolean enabled = false;
+
+        /**
+         * 收集并发请求的时间窗口，窗口结束后合并为一次 IN 查询
+         */
+        private Duration window = Duration.ofNanos(200_000);
+
+        /**
+         * 收集到该数量时不等窗口结束立即查询
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * 等待合并查询的最长时间，超时后调用方直接按ID查询
+         */
+        private Duration timeout = Duration.ofMillis(50);
+
+        /**
+         * 执行合并查询的线程数
+         */
+        private int threads = 2;
+    }
+}
@@ -0,0 +1,28 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 图书详情缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.cache")
+public class BookCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的图书数量
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * 写入后过期时间
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
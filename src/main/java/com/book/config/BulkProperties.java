@@ -0,0 +1,60 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 批量导入配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.bulk")
+public class BulkProperties {
+
+    /**
+     * 每条多行 INSERT / IN 查询包含的记录数
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 单次请求允许导入的最大记录数
+     */
+    private int maxItems = 50000;
+
+    private GroupCommit groupCommit = new GroupCommit();
+
+    /**
+     * 单本创建的合并提交配置
+     */
+    @Data
+    public static class GroupCommit {
+
+        /**
+         * 开启后并发的 createBook 请求合并为一条多行 INSERT 和一次事务提交
+         */
+        private boolean enabled = false;
+
+        /**
+         * 收集并发请求的时间窗口
+         */
+        private Duration window = Duration.ofMillis(2);
+
+        /**
+         * 收集到该数量时不等窗口结束立即提交
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * 等待批次提交的最长时间；超时时批次尚未执行则改为在调用方事务中单独插入
+         */
+        private Duration timeout = Duration.ofSeconds(1);
+
+        /**
+         * 执行合并插入的线程数
+         */
+        private int threads = 2;
+    }
+}
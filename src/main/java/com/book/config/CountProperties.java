@@ -0,0 +1,47 @@
+package com.book.config;
+
+import com.book.enm.CountExecution;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 分页总数统计配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.count")
+public class CountProperties {
+
+    /**
+     * 总数缓存的有效期，有写入时提前失效
+     */
+    private Duration cacheTtl = Duration.ofSeconds(30);
+
+    /**
+     * 最多缓存的过滤条件数量
+     */
+    private long cacheMaximumSize = 1000;
+
+    /**
+     * 精确总数的查询方式
+     */
+    private CountExecution execution = CountExecution.SEQUENTIAL;
+
+    /**
+     * PARALLEL 模式下从开始查询起等待总数的最长时间，超时则返回不带总数的分页结果
+     */
+    private Duration timeout = Duration.ofMillis(500);
+
+    /**
+     * PARALLEL 模式下执行总数查询的线程数，同时也限制了额外占用的数据库连接数
+     */
+    private int poolSize = 4;
+
+    /**
+     * PARALLEL 模式下等待执行的总数查询数量上限，队列满时在调用线程上执行
+     */
+    private int queueCapacity = 100;
+}
@@ -0,0 +1,104 @@
+package com.book.config;
+
+import com.book.datasource.ReadWriteRoutingDataSource;
+import com.book.datasource.ReadYourWritesFilter;
+import com.book.datasource.ReplicaRouter;
+import com.book.datasource.WriteTrackingInterceptor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据源配置
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * 用 LazyConnectionDataSourceProxy 包装数据源，事务开始时不占用物理连接，直到执行第一条语句。
+     * 合并提交模式下 createBook 的事务内不执行 SQL，不会为每个请求额外借出连接并提交空事务；
+     * 读写分离时获取连接已能看到事务的只读标记
+     */
+    @Bean
+    public static BeanPostProcessor lazyConnectionDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                    return new LazyConnectionDataSourceProxy((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * 配置了 book.datasource.replicas 时启用读写分离，取代 Spring Boot 自动配置的单一数据源
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "book.datasource", name = "replicas[0].url")
+    static class ReadWriteRoutingConfig {
+
+        @Bean(initMethod = "start", destroyMethod = "shutdown")
+        public ReplicaRouter replicaRouter(DataSourceProperties primaryProperties,
+                                           DataSourceRoutingProperties routingProperties, Environment environment) {
+            DataSource primary = pooled(primaryProperties.initializeDataSourceBuilder(), "primary", environment);
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            List<DataSourceRoutingProperties.Replica> configured = routingProperties.getReplicas();
+            for (int i = 0; i < configured.size(); i++) {
+                DataSourceRoutingProperties.Replica replica = configured.get(i);
+                String name = "replica-" + i;
+                DataSourceBuilder<?> builder = primaryProperties.initializeDataSourceBuilder().url(replica.getUrl());
+                if (replica.getUsername() != null) {
+                    builder.username(replica.getUsername()).password(replica.getPassword());
+                }
+                replicas.put(name, pooled(builder, name, environment));
+            }
+            return new ReplicaRouter(primary, replicas, routingProperties);
+        }
+
+        @Bean
+        public DataSource dataSource(ReplicaRouter replicaRouter) {
+            return new ReadWriteRoutingDataSource(replicaRouter);
+        }
+
+        /**
+         * MyBatis 自动配置会注册容器中的拦截器
+         */
+        @Bean
+        public WriteTrackingInterceptor writeTrackingInterceptor(ReplicaRouter replicaRouter) {
+            return new WriteTrackingInterceptor(replicaRouter);
+        }
+
+        @Bean
+        public ReadYourWritesFilter readYourWritesFilter() {
+            return new ReadYourWritesFilter();
+        }
+    }
+
+    /**
+     * 构建额外的连接池（主库、从库、分片库），连接池参数沿用 spring.datasource.hikari
+     */
+    static DataSource pooled(DataSourceBuilder<?> builder, String name, Environment environment) {
+        DataSource dataSource = builder.build();
+        if (dataSource instanceof HikariDataSource) {
+            HikariDataSource hikari = (HikariDataSource) dataSource;
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(hikari));
+            hikari.setPoolName("book-" + name);
+        }
+        return dataSource;
+    }
+}
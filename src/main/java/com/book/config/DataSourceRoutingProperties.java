@@ -0,0 +1,57 @@
+package com.book.config;
+
+import com.book.enm.LoadBalance;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置：配置了从库时，只读事务发往从库，其余语句发往 spring.datasource 指定的主库
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.datasource")
+public class DataSourceRoutingProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+
+    /**
+     * 客户端写入后其只读事务继续读主库的时长，保证读到自己的写入；
+     * 不能小于 maxLag + healthCheckInterval（否则启动失败），跨节点时还应加上节点间的时钟偏差
+     */
+    private Duration stickyWindow = Duration.ofSeconds(3);
+
+    /**
+     * 从库复制延迟超过该值时移出轮换，延迟恢复后重新加入
+     */
+    private Duration maxLag = Duration.ofSeconds(2);
+
+    /**
+     * 写入心跳和检查从库延迟的间隔
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * 健康检查语句的超时时间
+     */
+    private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+    /**
+     * 从库连接；用户名和密码未配置时沿用主库的，连接池参数沿用 spring.datasource.hikari
+     */
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
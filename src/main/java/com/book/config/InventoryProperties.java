@@ -0,0 +1,55 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 库存预留配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.inventory")
+public class InventoryProperties {
+
+    /**
+     * 死锁或锁等待超时时的最大尝试次数（含第一次）
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 重试前的等待时间，按尝试次数线性增加并加上随机抖动
+     */
+    private Duration retryBackoff = Duration.ofMillis(20);
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * 库存写回配置：预留/释放先在内存中累计，定期批量写入数据库
+     */
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * 关闭时每次预留/释放直接执行条件 UPDATE
+         */
+        private boolean enabled = false;
+
+        /**
+         * 累计的增量写入数据库的间隔
+         */
+        private Duration flushInterval = Duration.ofMillis(100);
+
+        /**
+         * 日志刷盘间隔；预留在刷盘前即返回，操作系统崩溃时最多丢失这段时间内已确认的变更
+         */
+        private Duration journalSyncInterval = Duration.ofMillis(10);
+
+        /**
+         * 增量日志目录，重启时重放其中尚未写入数据库的变更
+         */
+        private String journalDir = "data/stock-journal";
+    }
+}
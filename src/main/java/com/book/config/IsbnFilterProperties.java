@@ -0,0 +1,33 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * ISBN 布隆过滤器配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.isbn-filter")
+public class IsbnFilterProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 期望元素数量，实际数量超过时下次重建会自动扩容
+     */
+    private long expectedInsertions = 1_000_000;
+
+    /**
+     * 期望误判率
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * 定期重建间隔，用于清除已删除的ISBN
+     */
+    private Duration rebuildInterval = Duration.ofHours(1);
+}
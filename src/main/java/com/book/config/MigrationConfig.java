@@ -0,0 +1,28 @@
+package com.book.config;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.autoconfigure.AbstractDependsOnBeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据库结构迁移配置
+ */
+@Configuration
+public class MigrationConfig {
+
+    /**
+     * SqlSessionFactory 依赖 schemaMigrator，启动时先完成迁移，再初始化使用 books 表的组件
+     */
+    @Bean
+    public static SqlSessionFactoryDependsOnMigrator sqlSessionFactoryDependsOnMigrator() {
+        return new SqlSessionFactoryDependsOnMigrator();
+    }
+
+    static class SqlSessionFactoryDependsOnMigrator extends AbstractDependsOnBeanFactoryPostProcessor {
+
+        SqlSessionFactoryDependsOnMigrator() {
+            super(SqlSessionFactory.class, "schemaMigrator");
+        }
+    }
+}
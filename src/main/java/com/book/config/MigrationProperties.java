@@ -0,0 +1,60 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 数据库结构迁移配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.migration")
+public class MigrationProperties {
+
+    /**
+     * 启动时执行尚未执行的迁移脚本；关闭时有尚未执行的迁移则拒绝启动
+     */
+    private boolean enabled = false;
+
+    /**
+     * 迁移脚本位置，文件名形如 V2__query_indexes.sql
+     */
+    private String locations = "classpath*:db/migration/V*__*.sql";
+
+    /**
+     * 只在对应数据库上执行的脚本位置，{vendor} 为小写的数据库产品名，如 mysql、h2；版本号与通用脚本共用
+     */
+    private String vendorLocations = "classpath*:db/migration/{vendor}/V*__*.sql";
+
+    /**
+     * 首次迁移时视为已执行的最高版本，用于结构已手工建好的库
+     */
+    private int baselineVersion = 0;
+
+    private SelfCheck selfCheck = new SelfCheck();
+
+    /**
+     * 启动自检：对 BooksMapper 的每条语句执行 EXPLAIN，出现全表扫描时告警
+     */
+    @Data
+    public static class SelfCheck {
+
+        private boolean enabled = true;
+
+        /**
+         * 估算扫描行数低于该值的全表扫描不告警，小表上优化器本来就会选择全表扫描
+         */
+        private long minRows = 1000;
+
+        /**
+         * 本来就需要读取全表的语句
+         */
+        private List<String> ignoredStatements = new ArrayList<>(Arrays.asList(
+                "findAll", "findAllCursor", "scanIsbns", "scanSearchFields"));
+    }
+}
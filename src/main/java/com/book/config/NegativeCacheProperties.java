@@ -0,0 +1,28 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 不存在ID的负缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.negative-cache")
+public class NegativeCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多记录的不存在ID数量
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * 记录后的有效期
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+}
@@ -0,0 +1,28 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 分页查询结果缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.query-cache")
+public class QueryCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的查询数量
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * 写入后过期时间；本节点的写入会立即使缓存失效，该时间限制的是其他节点写入后的不一致时长
+     */
+    private Duration expireAfterWrite = Duration.ofSeconds(10);
+}
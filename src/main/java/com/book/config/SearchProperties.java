@@ -0,0 +1,32 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 书名/作者倒排索引配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.search")
+public class SearchProperties {
+
+    /**
+     * 索引只在本节点的写入提交后增量更新，其他节点的写入要到下次全量重建才可见，
+     * 期间按书名/作者的查询会漏掉这些图书；因此默认关闭，只应在单个写入节点的部署中开启
+     */
+    private boolean enabled = false;
+
+    /**
+     * 候选ID超过该数量时不使用索引，改由数据库 LIKE 过滤
+     */
+    private int maxCandidates = 5000;
+
+    /**
+     * 定期全量重建间隔，用于修正增量更新可能遗漏的变更
+     */
+    private Duration rebuildInterval = Duration.ofHours(6);
+}
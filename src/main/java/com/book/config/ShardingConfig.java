@@ -0,0 +1,94 @@
+package com.book.config;
+
+import com.book.mapper.BooksMapper;
+import com.book.sharding.BookShards;
+import com.book.sharding.ShardKeys;
+import com.book.sharding.ShardTransactionManager;
+import com.book.sharding.ShardedBooksMapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.type.TypeHandler;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.boot.autoconfigure.MybatisProperties;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * books 表分片：book.sharding.enabled=true 时注入的 BooksMapper 换成按ISBN路由的实现，
+ * 事务管理器同时管理默认库和所有分片库
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "book.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public BookShards bookShards(ShardingProperties shardingProperties, DataSourceProperties dataSourceProperties,
+                                 MybatisProperties mybatisProperties, List<TypeHandler<?>> typeHandlers,
+                                 Environment environment) throws Exception {
+        List<ShardingProperties.Shard> shards = shardingProperties.getShards();
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("book.sharding.enabled is set but no book.sharding.shards are configured");
+        }
+        List<SqlSessionFactory> sessionFactories = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            ShardingProperties.Shard shard = shards.get(i);
+            DataSourceBuilder<?> builder = dataSourceProperties.initializeDataSourceBuilder().url(shard.getUrl());
+            if (shard.getUsername() != null) {
+                builder.username(shard.getUsername()).password(shard.getPassword());
+            }
+            // 与事务管理器共用同一个延迟代理，事务中未访问的分片不借出连接
+            DataSource dataSource = new LazyConnectionDataSourceProxy(
+                    DataSourceConfig.pooled(builder, "shard-" + i, environment));
+            sessionFactories.add(sessionFactory(dataSource, mybatisProperties, typeHandlers));
+        }
+        return new BookShards(sessionFactories, new ShardKeys(shards.size(), shardingProperties.getNodeId()));
+    }
+
+    /**
+     * 服务层注入的 BooksMapper；MyBatis 扫描出的 booksMapper 仍指向默认库，用于不分片的表
+     */
+    @Bean
+    @Primary
+    public ShardedBooksMapper shardedBooksMapper(BookShards bookShards, @Qualifier("booksMapper") BooksMapper booksMapper,
+                                                 ShardingProperties shardingProperties) {
+        return new ShardedBooksMapper(bookShards, booksMapper, shardingProperties);
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(DataSource dataSource, BookShards bookShards) {
+        List<PlatformTransactionManager> managers = new ArrayList<>();
+        managers.add(new DataSourceTransactionManager(dataSource));
+        for (SqlSessionFactory factory : bookShards.getSessionFactories()) {
+            managers.add(new DataSourceTransactionManager(factory.getConfiguration().getEnvironment().getDataSource()));
+        }
+        return new ShardTransactionManager(managers);
+    }
+
+    /**
+     * 与自动配置的 SqlSessionFactory 注册相同的类型处理器，分片库与默认库共用一张分类字典
+     */
+    private static SqlSessionFactory sessionFactory(DataSource dataSource, MybatisProperties mybatisProperties,
+                                                    List<TypeHandler<?>> typeHandlers) throws Exception {
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setTypeHandlers(typeHandlers.toArray(new TypeHandler<?>[0]));
+        factory.setMapperLocations(mybatisProperties.resolveMapperLocations());
+        org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+        configuration.setMapUnderscoreToCamelCase(mybatisProperties.getConfiguration() != null
+                && mybatisProperties.getConfiguration().isMapUnderscoreToCamelCase());
+        factory.setConfiguration(configuration);
+        return factory.getObject();
+    }
+}
@@ -0,0 +1,48 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * books 表分片配置：开启后 books 的读写按ISBN哈希分布到各分片库，
+ * 其余表（库存检查点、复制心跳等）仍在 spring.datasource 指定的库中
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 分片库，顺序决定分片号，已有数据后不能调整顺序或数量
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * 本节点编号（0-31），写入同一组分片的每个节点必须不同，用于生成不冲突的ID
+     */
+    private int nodeId = 0;
+
+    /**
+     * 分散到各分片并行查询的线程数
+     */
+    private int scatterThreads = 8;
+
+    /**
+     * 分片库连接；用户名和密码未配置时沿用 spring.datasource 的，连接池参数沿用 spring.datasource.hikari
+     */
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
@@ -0,0 +1,48 @@
+package com.book.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 排序接口配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "book.sort")
+public class SortProperties {
+
+    /**
+     * 排序接口单次返回的最大条数
+     */
+    private int maxLimit = 1000;
+
+    private Collation collation = new Collation();
+
+    /**
+     * 按语言规则排序的配置
+     */
+    @Data
+    public static class Collation {
+
+        /**
+         * 排序使用的语言，例如 zh-CN 按拼音、en-US 按英文字母
+         */
+        private String locale = "zh-CN";
+
+        /**
+         * 比较强度：PRIMARY、SECONDARY、TERTIARY、IDENTICAL
+         */
+        private String strength = "TERTIARY";
+
+        /**
+         * 超过该数量时使用并行排序
+         */
+        private int parallelThreshold = 10000;
+
+        /**
+         * 按图书ID缓存的排序键数量上限
+         */
+        private long keyCacheSize = 100000;
+    }
+}
@@ -22,6 +22,9 @@ public class ErrorCode {
     public static final int BOOK_DELETE_FAILED = 1004;
     public static final int BOOK_UPDATE_FAILED = 1005;
     public static final int BOOK_CREATE_FAILED = 1006;
+    public static final int BOOK_VERSION_CONFLICT = 1007;
+    public static final int INSUFFICIENT_STOCK = 1008;
+    public static final int STOCK_CONTENTION = 1009;
     
     // 错误消息
     public static final String SUCCESS_MESSAGE = "操作成功";
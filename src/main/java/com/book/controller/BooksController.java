@@ -1,29 +1,87 @@
 package com.book.controller;
 
 
+import com.book.dto.BookBatchResult;
 import com.book.dto.BookDTO;
+import com.book.dto.BookPatchDTO;
 import com.book.dto.BookQueryDTO;
+import com.book.dto.BulkCreateResult;
+import com.book.dto.BulkPatchResult;
 import com.book.dto.PageResult;
 import com.book.dto.Result;
+import com.book.dto.StockChangeDTO;
 import com.book.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
 public class BooksController {
+    private static final byte[] NEW_LINE = {'\n'};
+
     private final BookService bookService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * 所有图书，默认只返回热表中的图书，includeArchived=true 时包含已归档的图书
+     */
     @GetMapping
-    public Result<List<BookDTO>> getAllBooks() {
-        List<BookDTO> books = bookService.getAllBooks();
+    public Result<List<BookDTO>> getAllBooks(@RequestParam(defaultValue = "false") boolean includeArchived) {
+        List<BookDTO> books = bookService.getAllBooks(includeArchived);
         return Result.success("获取所有图书成功", books);
     }
 
+    /**
+     * 以 NDJSON 流式返回所有图书（Accept: application/x-ndjson），每行一本书
+     * <p>
+     * 数据库游标逐行读取、逐行写出，客户端断开时写入失败会中止读取并释放连接。
+     * 与 JSON 列表一样默认只返回热表中的图书。
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBooks(
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        ObjectWriter writer = objectMapper.writerFor(BookDTO.class);
+        StreamingResponseBody body = out -> {
+            boolean[] first = {true};
+            bookService.streamAllBooks(includeArchived, book -> {
+                try {
+                    out.write(writer.writeValueAsBytes(book));
+                    out.write(NEW_LINE);
+                    // 首行立即发出，之后交给容器缓冲区按块发送
+                    if (first[0]) {
+                        out.flush();
+                        first[0] = false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * 按ID批量查询，例如 ids=1,2,3；结果按请求顺序返回，不存在的ID列在 missingIds 中
+     */
+    @GetMapping("/batch")
+    public Result<BookBatchResult> getBooksByIds(@RequestParam List<Long> ids) {
+        BookBatchResult result = bookService.getBooksByIds(ids);
+        return Result.success("批量获取图书成功", result);
+    }
+
     @GetMapping("/{id}")
     public Result<BookDTO> getBookById(@PathVariable Long id) {
         BookDTO book = bookService.getBookById(id);
@@ -36,18 +94,73 @@ public class BooksController {
         return Result.success("创建图书成功", createdBook);
     }
 
+    /**
+     * 批量创建图书，单条失败不影响其他记录
+     */
+    @PostMapping("/bulk")
+    public Result<BulkCreateResult> createBooks(@RequestBody List<BookDTO> books) {
+        BulkCreateResult result = bookService.createBooks(books);
+        return Result.success("批量创建图书完成", result);
+    }
+
     @PutMapping("/{id}")
     public Result<BookDTO> updateBook(@PathVariable Long id, @Valid @RequestBody BookDTO book) {
         BookDTO updatedBook = bookService.updateBook(id, book);
         return Result.success("更新图书成功", updatedBook);
     }
 
+    /**
+     * 部分更新，只校验和写入请求中给出的字段
+     */
+    @PatchMapping("/{id}")
+    public Result<BookDTO> patchBook(@PathVariable Long id, @Valid @RequestBody BookPatchDTO patch) {
+        BookDTO patchedBook = bookService.patchBook(id, patch);
+        return Result.success("更新图书成功", patchedBook);
+    }
+
+    /**
+     * 批量部分更新，每条记录需带 id，单条失败不影响其他记录
+     */
+    @PatchMapping("/bulk")
+    public Result<BulkPatchResult> patchBooks(@RequestBody List<BookPatchDTO> patches) {
+        BulkPatchResult result = bookService.patchBooks(patches);
+        return Result.success("批量更新图书完成", result);
+    }
+
     @DeleteMapping("/{id}")
     public Result<String> deleteBook(@PathVariable Long id) {
         bookService.deleteBook(id);
         return Result.success("删除图书成功");
     }
 
+    /**
+     * 预留库存，单条条件更新保证不会超卖
+     */
+    @PostMapping("/{id}/stock/reserve")
+    public Result<String> reserveStock(@PathVariable Long id, @Valid @RequestBody StockChangeDTO change) {
+        bookService.reserveStock(id, change.getQuantity());
+        return Result.success("预留库存成功");
+    }
+
+    @PostMapping("/{id}/stock/release")
+    public Result<String> releaseStock(@PathVariable Long id, @Valid @RequestBody StockChangeDTO change) {
+        bookService.releaseStock(id, change.getQuantity());
+        return Result.success("释放库存成功");
+    }
+
+    /**
+     * 按排序策略返回图书，例如 sortBy=Title，offset/limit 指定取第几条起的多少条，不传 limit 时返回全部；
+     * 默认只包含热表中的图书，includeArchived=true 时包含已归档的图书
+     */
+    @GetMapping("/sorted")
+    public Result<List<BookDTO>> getBooksSorted(@RequestParam(defaultValue = "Title") String sortBy,
+                                                @RequestParam(defaultValue = "0") int offset,
+                                                @RequestParam(required = false) Integer limit,
+                                                @RequestParam(defaultValue = "false") boolean includeArchived) {
+        List<BookDTO> books = bookService.getBooksSorted(sortBy, offset, limit, includeArchived);
+        return Result.success("获取排序图书成功", books);
+    }
+
     @GetMapping("/query")
     public Result<PageResult<BookDTO>> queryBooks(@Valid BookQueryDTO queryDTO) {
         PageResult<BookDTO> pageResult = bookService.listBooks(queryDTO);
@@ -0,0 +1,43 @@
+package com.book.controller;
+
+import com.book.dto.Result;
+import com.book.dto.SchemaStatusDTO;
+import com.book.migration.QueryPlanChecker;
+import com.book.migration.SchemaMigrator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 数据库结构迁移
+ */
+@RestController
+@RequestMapping("/api/books/schema")
+@RequiredArgsConstructor
+public class SchemaController {
+    private final SchemaMigrator schemaMigrator;
+    private final QueryPlanChecker queryPlanChecker;
+
+    @GetMapping
+    public Result<SchemaStatusDTO> getStatus() {
+        return Result.success(status());
+    }
+
+    /**
+     * 执行尚未执行的迁移，之后重新检查执行计划
+     */
+    @PostMapping("/migrate")
+    public Result<SchemaStatusDTO> migrate() {
+        schemaMigrator.migrate();
+        queryPlanChecker.check();
+        return Result.success(status());
+    }
+
+    private SchemaStatusDTO status() {
+        SchemaStatusDTO status = schemaMigrator.status();
+        status.setPlanWarnings(queryPlanChecker.getWarnings());
+        return status;
+    }
+}
@@ -0,0 +1,77 @@
+package com.book.controller;
+
+import com.book.cache.BookCache;
+import com.book.cache.CountCache;
+import com.book.cache.IsbnBloomFilter;
+import com.book.cache.NegativeIdCache;
+import com.book.cache.QueryResultCache;
+import com.book.datasource.ReplicaRouter;
+import com.book.dto.CacheStatsDTO;
+import com.book.dto.DataSourceStatsDTO;
+import com.book.dto.IsbnFilterStatsDTO;
+import com.book.dto.Result;
+import com.book.dto.SearchIndexStatsDTO;
+import com.book.search.BookSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 运行时统计
+ */
+@RestController
+@RequestMapping("/api/books/stats")
+@RequiredArgsConstructor
+public class StatsController {
+    private final BookCache bookCache;
+    private final NegativeIdCache negativeIdCache;
+    private final IsbnBloomFilter isbnBloomFilter;
+    private final CountCache countCache;
+    private final QueryResultCache queryResultCache;
+    private final BookSearchIndex bookSearchIndex;
+    private final ObjectProvider<ReplicaRouter> replicaRouter;
+
+    @GetMapping("/cache")
+    public Result<CacheStatsDTO> getCacheStats() {
+        return Result.success(CacheStatsDTO.of(bookCache.stats(), bookCache.size()));
+    }
+
+    /**
+     * 命中次数持续增长说明有客户端在批量探测不存在的ID
+     */
+    @GetMapping("/negative-cache")
+    public Result<CacheStatsDTO> getNegativeCacheStats() {
+        return Result.success(CacheStatsDTO.of(negativeIdCache.stats(), negativeIdCache.size()));
+    }
+
+    @GetMapping("/count-cache")
+    public Result<CacheStatsDTO> getCountCacheStats() {
+        return Result.success(CacheStatsDTO.of(countCache.stats(), countCache.size()));
+    }
+
+    @GetMapping("/query-cache")
+    public Result<CacheStatsDTO> getQueryCacheStats() {
+        return Result.success(CacheStatsDTO.of(queryResultCache.stats(), queryResultCache.size()));
+    }
+
+    @GetMapping("/isbn-filter")
+    public Result<IsbnFilterStatsDTO> getIsbnFilterStats() {
+        return Result.success(isbnBloomFilter.stats());
+    }
+
+    @GetMapping("/search-index")
+    public Result<SearchIndexStatsDTO> getSearchIndexStats() {
+        return Result.success(bookSearchIndex.stats());
+    }
+
+    /**
+     * 未配置从库时 routing 为 false
+     */
+    @GetMapping("/datasource")
+    public Result<DataSourceStatsDTO> getDataSourceStats() {
+        ReplicaRouter router = replicaRouter.getIfAvailable();
+        return Result.success(router == null ? new DataSourceStatsDTO() : router.stats());
+    }
+}
@@ -1,6 +1,7 @@
 package com.book.convert;
 
 import com.book.dto.BookDTO;
+import com.book.dto.BookPatchDTO;
 import com.book.po.Book;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -15,10 +16,22 @@ public interface BookMapper {
     BookMapper INSTANCE = Mappers.getMapper(BookMapper.class);
 
     @Mapping(target = "publicationDate", dateFormat = "yyyy-MM-dd")
+    @Mapping(source = "author", target = "authorName")
+    @Mapping(source = "quantity", target = "stockQuantity")
     BookDTO toDTO(Book book);
 
     @Mapping(target = "publicationDate", dateFormat = "yyyy-MM-dd")
+    @Mapping(source = "authorName", target = "author")
+    @Mapping(source = "stockQuantity", target = "quantity")
     Book toEntity(BookDTO bookDTO);
 
+    /**
+     * 部分更新只带请求中给出的字段，其余为空，不会写入对应的列
+     */
+    @Mapping(target = "publicationDate", dateFormat = "yyyy-MM-dd")
+    @Mapping(source = "authorName", target = "author")
+    @Mapping(source = "stockQuantity", target = "quantity")
+    Book toEntity(BookPatchDTO patchDTO);
+
     List<BookDTO> toDTOList(List<Book> books);
 }
\ No newline at end of file
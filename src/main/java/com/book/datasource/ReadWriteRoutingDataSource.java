@@ -0,0 +1,39 @@
+package com.book.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 只读事务的连接来自从库，其余连接来自主库
+ * <p>
+ * 事务管理器在设置只读标记之前就会获取连接，因此需要由 LazyConnectionDataSourceProxy 包装，
+ * 把获取连接推迟到事务中的第一条语句。
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final ReplicaRouter router;
+
+    public ReadWriteRoutingDataSource(ReplicaRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(dataSource -> dataSource.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ReplicaRouter.ConnectionOpener opener) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return router.getReadConnection(opener);
+        }
+        return opener.open(router.getPrimary());
+    }
+}
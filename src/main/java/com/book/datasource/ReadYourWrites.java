@@ -0,0 +1,68 @@
+package com.book.datasource;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 以客户端为范围的读己之写
+ * <p>
+ * 客户端在请求头 X-Last-Write 中回传上次写入的时间（毫秒时间戳），请求中的写入更新该时间并写回同名响应头。
+ * 该时间之后的 stickyWindow 内，这个客户端的只读事务读主库，其他客户端不受影响。
+ * 不在请求范围内的线程（库存写回、归档、批量写入、重建索引等后台任务）不记录写入。
+ */
+public final class ReadYourWrites {
+
+    public static final String HEADER = "X-Last-Write";
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * 开始一个客户端请求
+     *
+     * @param lastWriteMillis 客户端回传的上次写入时间，没有时为 null
+     * @param onWrite         请求中写入后回调，参数为新的写入时间
+     */
+    static void begin(Long lastWriteMillis, LongConsumer onWrite) {
+        CURRENT.set(new Scope(lastWriteMillis, onWrite));
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * 记录当前客户端的一次写入；不在请求范围内时忽略
+     */
+    public static void markWrite() {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.lastWriteMillis = System.currentTimeMillis();
+            scope.onWrite.accept(scope.lastWriteMillis);
+        }
+    }
+
+    /**
+     * 当前客户端是否在 windowMillis 之内写入过
+     */
+    static boolean wroteWithin(long windowMillis) {
+        Scope scope = CURRENT.get();
+        return scope != null && scope.lastWriteMillis != null
+                && System.currentTimeMillis() - scope.lastWriteMillis < windowMillis;
+    }
+
+    private static final class Scope {
+        private Long lastWriteMillis;
+        private final LongConsumer onWrite;
+
+        private Scope(Long lastWriteMillis, LongConsumer onWrite) {
+            this.lastWriteMillis = lastWriteMillis;
+            this.onWrite = onWrite;
+        }
+    }
+}
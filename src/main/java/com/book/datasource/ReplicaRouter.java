@@ -0,0 +1,309 @@
+package com.book.datasource;
+
+import com.book.config.DataSourceRoutingProperties;
+import com.book.dto.DataSourceStatsDTO;
+import com.book.enm.LoadBalance;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为只读事务选择从库
+ * <p>
+ * 主库上定期写入心跳（毫秒时间戳），从库上读到的心跳与本节点最近写入的心跳之差即复制延迟；
+ * 延迟超过 maxLag 或检查失败的从库移出轮换。客户端写入后的 stickyWindow 内，该客户端的只读事务仍读主库
+ * （见 {@link ReadYourWrites}）。两次检查之间从库的延迟可能继续增长，轮换中的从库最多落后
+ * maxLag + healthCheckInterval，因此要求 stickyWindow 不小于两者之和，之后读到的从库一定已经复制了这次写入；
+ * 配置不满足时启动失败。
+ */
+@Slf4j
+public class ReplicaRouter {
+
+    private static final String UPDATE_HEARTBEAT = "UPDATE datasource_heartbeat SET beat_millis = ? WHERE id = 1";
+
+    private static final String INSERT_HEARTBEAT = "INSERT INTO datasource_heartbeat (id, beat_millis) VALUES (1, ?)";
+
+    private static final String SELECT_HEARTBEAT = "SELECT beat_millis FROM datasource_heartbeat WHERE id = 1";
+
+    @Getter
+    private final DataSource primary;
+
+    private final JdbcTemplate primaryTemplate;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final DataSourceRoutingProperties properties;
+
+    private volatile List<Replica> inRotation = Collections.emptyList();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private long lastBeatMillis;
+
+    private final LongAdder replicaReads = new LongAdder();
+
+    private final LongAdder primaryReads = new LongAdder();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    /**
+     * @param replicas 从库名称到数据源，按配置顺序
+     */
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, DataSourceRoutingProperties properties) {
+        Duration staleness = properties.getMaxLag().plus(properties.getHealthCheckInterval());
+        if (properties.getStickyWindow().compareTo(staleness) < 0) {
+            throw new IllegalArgumentException("Sticky window " + properties.getStickyWindow()
+                    + " must not be shorter than max lag plus health check interval (" + staleness + ")");
+        }
+        this.primary = primary;
+        this.primaryTemplate = jdbcTemplate(primary, properties);
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource, jdbcTemplate(dataSource, properties))));
+        this.properties = properties;
+    }
+
+    /**
+     * 开始定期检查从库；首次检查通过之前只读事务也读主库
+     */
+    public void start() {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getHealthCheckInterval().toNanos();
+        executor.scheduleWithFixedDelay(this::checkReplicasQuietly, 0, interval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 为只读事务借出连接：优先从库，当前客户端刚写入过、没有可用从库或从库连接失败时使用主库
+     */
+    Connection getReadConnection(ConnectionOpener opener) throws SQLException {
+        Replica replica = choose();
+        if (replica != null) {
+            try {
+                Connection connection = replica.open(opener);
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Failed to connect to replica {}, reading from primary", replica.name, e);
+                remove(replica);
+            }
+        }
+        primaryReads.increment();
+        return opener.open(primary);
+    }
+
+    /**
+     * 为当前客户端记录一次写入；在事务中调用时提交后重新计时，不在请求范围内时忽略
+     */
+    public void markWrite() {
+        if (!ReadYourWrites.isActive()) {
+            return;
+        }
+        ReadYourWrites.markWrite();
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ReplicaRouter.this);
+                    ReadYourWrites.markWrite();
+                }
+            });
+        }
+    }
+
+    /**
+     * 在主库写入心跳并测量每个从库的复制延迟，更新参与轮换的从库
+     */
+    public synchronized void checkReplicas() {
+        long beat = System.currentTimeMillis();
+        try {
+            if (primaryTemplate.update(UPDATE_HEARTBEAT, beat) == 0) {
+                primaryTemplate.update(INSERT_HEARTBEAT, beat);
+            }
+            lastBeatMillis = beat;
+        } catch (DataAccessException e) {
+            log.warn("Failed to write replication heartbeat to primary", e);
+        }
+
+        long maxLag = properties.getMaxLag().toMillis();
+        List<Replica> healthy = new ArrayList<>();
+        for (Replica replica : replicas) {
+            long lag = measureLag(replica, beat);
+            boolean wasInRotation = inRotation.contains(replica);
+            replica.lagMillis = lag;
+            if (lag >= 0 && lag <= maxLag) {
+                healthy.add(replica);
+                if (!wasInRotation) {
+                    log.info("Replica {} added to rotation, lag {} ms", replica.name, lag);
+                }
+            } else if (wasInRotation) {
+                log.warn("Replica {} removed from rotation, lag {} ms", replica.name, lag);
+            }
+        }
+        inRotation = Collections.unmodifiableList(healthy);
+    }
+
+    public DataSourceStatsDTO stats() {
+        DataSourceStatsDTO stats = new DataSourceStatsDTO();
+        stats.setRouting(true);
+        stats.setLoadBalance(properties.getLoadBalance());
+        stats.setReplicaReads(replicaReads.sum());
+        stats.setPrimaryReads(primaryReads.sum());
+        List<Replica> rotation = inRotation;
+        for (Replica replica : replicas) {
+            DataSourceStatsDTO.Replica item = new DataSourceStatsDTO.Replica();
+            item.setName(replica.name);
+            item.setInRotation(rotation.contains(replica));
+            item.setLagMillis(replica.lagMillis);
+            item.setActiveConnections(replica.active.get());
+            stats.getReplicas().add(item);
+        }
+        return stats;
+    }
+
+    /**
+     * 停止检查并关闭主库和从库的连接池
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        close(primary);
+        replicas.forEach(replica -> close(replica.dataSource));
+    }
+
+    private Replica choose() {
+        if (ReadYourWrites.wroteWithin(properties.getStickyWindow().toMillis())) {
+            return null;
+        }
+        List<Replica> candidates = inRotation;
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), candidates.size());
+        Replica chosen = candidates.get(start);
+        if (properties.getLoadBalance() == LoadBalance.LEAST_CONNECTIONS) {
+            // 从轮换位置开始比较，连接数相同时仍然均匀分配
+            for (int i = 1; i < candidates.size(); i++) {
+                Replica candidate = candidates.get((start + i) % candidates.size());
+                if (candidate.active.get() < chosen.active.get()) {
+                    chosen = candidate;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * @return 复制延迟（毫秒），无法测量时返回 -1
+     */
+    private long measureLag(Replica replica, long beat) {
+        try {
+            List<Long> seen = replica.template.queryForList(SELECT_HEARTBEAT, Long.class);
+            if (seen.isEmpty()) {
+                return -1;
+            }
+            long replicated = seen.get(0);
+            return replicated >= lastBeatMillis ? 0 : Math.max(0, beat - replicated);
+        } catch (DataAccessException e) {
+            log.debug("Failed to read replication heartbeat from replica {}", replica.name, e);
+            return -1;
+        }
+    }
+
+    private synchronized void remove(Replica replica) {
+        List<Replica> remaining = new ArrayList<>(inRotation);
+        if (remaining.remove(replica)) {
+            replica.lagMillis = -1;
+            inRotation = Collections.unmodifiableList(remaining);
+        }
+    }
+
+    private void checkReplicasQuietly() {
+        try {
+            checkReplicas();
+        } catch (RuntimeException e) {
+            log.error("Replica health check failed", e);
+        }
+    }
+
+    private static void close(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                log.warn("Failed to close data source", e);
+            }
+        }
+    }
+
+    private static JdbcTemplate jdbcTemplate(DataSource dataSource, DataSourceRoutingProperties properties) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setQueryTimeout((int) Math.max(1, properties.getHealthCheckTimeout().getSeconds()));
+        return template;
+    }
+
+    /**
+     * 以指定方式（默认凭据或显式用户名密码）从数据源获取连接
+     */
+    @FunctionalInterface
+    interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate template;
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile long lagMillis = -1;
+
+        private Replica(String name, DataSource dataSource, JdbcTemplate template) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.template = template;
+        }
+
+        /**
+         * 借出连接并计入活动连接数，连接关闭时扣除
+         */
+        private Connection open(ConnectionOpener opener) throws SQLException {
+            Connection target = opener.open(dataSource);
+            active.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                            active.decrementAndGet();
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
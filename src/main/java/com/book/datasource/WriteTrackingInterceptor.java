@@ -0,0 +1,29 @@
+package com.book.datasource;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+/**
+ * 记录经过 MyBatis 执行的 INSERT/UPDATE/DELETE，使同一客户端随后的只读事务在粘滞时间内读主库；
+ * 后台任务的写入不在请求范围内，不会记录
+ */
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class WriteTrackingInterceptor implements Interceptor {
+
+    private final ReplicaRouter router;
+
+    public WriteTrackingInterceptor(ReplicaRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        router.markWrite();
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 按ID批量查询结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchResult {
+
+    /**
+     * 按请求顺序排列的图书，重复的ID只返回一次
+     */
+    private List<BookDTO> books;
+
+    /**
+     * 不存在的ID，按请求顺序排列
+     */
+    private List<Long> missingIds;
+}
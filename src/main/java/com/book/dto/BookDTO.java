@@ -12,7 +12,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -50,9 +50,16 @@ public class BookDTO {
     @Min(value = 0, message = "库存数量不能小于0")
     private Integer stockQuantity;
 
+    private String category;
+
     private String coverImageUrl;
 
     private String description;
 
     private Integer status;
+
+    /**
+     * 读取时的版本号；更新时带上则只有版本未变才会写入
+     */
+    private Long version;
 }
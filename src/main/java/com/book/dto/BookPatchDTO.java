@@ -0,0 +1,64 @@
+package com.book.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.time.LocalDate;
+
+/**
+ * 部分字段更新
+ * <p>
+ * 为空的字段表示不修改，只校验和写入请求中给出的字段。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPatchDTO {
+
+    /**
+     * 批量更新时指定目标图书，单条更新时以路径中的ID为准
+     */
+    private Long id;
+
+    @Size(min = 1, max = 100, message = "书名长度必须在1-100个字符之间")
+    @Pattern(regexp = "(?s).*\\S.*", message = "书名不能为空")
+    private String title;
+
+    @Pattern(regexp = "^(?:ISBN(?:-1[03])?:? )?(?=[0-9X]{10}$|(?=(?:[0-9]+[- ]){3})[- 0-9X]{13}$|97[89][0-9]{10}$|(?=(?:[0-9]+[- ]){4})[- 0-9]{17}$)(?:97[89][- ]?)?[0-9]{1,5}[- ]?[0-9]+[- ]?[0-9]+[- ]?[0-9X]$",
+            message = "ISBN格式不正确")
+    private String isbn;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "作者不能为空")
+    private String authorName;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate publicationDate;
+
+    @Min(value = 0, message = "库存数量不能小于0")
+    private Integer stockQuantity;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "分类不能为空")
+    private String category;
+
+    /**
+     * 读取时的版本号，可选；不算作修改的字段
+     */
+    private Long version;
+
+    /**
+     * 是否没有任何需要修改的字段
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return title == null && isbn == null && authorName == null
+                && publicationDate == null && stockQuantity == null && category == null;
+    }
+}
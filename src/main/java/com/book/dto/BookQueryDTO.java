@@ -1,11 +1,17 @@
 package com.book.dto;
 
+import com.book.enm.BookSortField;
+import com.book.enm.CountMode;
+import com.book.exception.BusinessException;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import java.util.Date;
+import java.util.Set;
 
 @Data
 public class BookQueryDTO {
@@ -20,6 +26,8 @@ public class BookQueryDTO {
 
     private Long categoryId;
 
+    private String category;
+
     @DateTimeFormat(pattern = "yyyy-MM-dd")
     private Date publishDateStart;
 
@@ -45,10 +53,118 @@ public class BookQueryDTO {
     @Max(value = 100, message = "每页数量不能大于100")
     private Integer pageSize = 10;
 
+    /**
+     * 键集分页游标，取自上一页结果的 nextCursor；为空时按页码分页
+     */
+    private String after;
+
+    /**
+     * 总数统计方式：exact、none、approximate、cached，默认 exact
+     */
+    private String count;
+
+    /**
+     * 为 true 时同时查询已归档的冷数据，为 false 时只查询热数据；不设置时只在出版日期范围早于归档分界时查询
+     */
+    private Boolean includeArchived;
+
+    /**
+     * 倒排索引解析出的候选ID，由服务端设置，不接受请求参数绑定
+     */
+    @Setter(AccessLevel.NONE)
+    private Set<Long> candidateIds;
+
+    /**
+     * 按分类解析出的物理分区，由服务端设置，不接受请求参数绑定
+     */
+    @Setter(AccessLevel.NONE)
+    private Integer bookType;
+
+    /**
+     * 是否需要查询归档表，由服务端设置，不接受请求参数绑定
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean archiveTier;
+
+    /**
+     * 字符串排序列是否按二进制排序，由分片归并查询设置，不接受请求参数绑定
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean binaryOrder;
+
     /**
      * 计算分页偏移量
      */
     public Integer getOffset() {
         return (pageNum - 1) * pageSize;
     }
+
+    /**
+     * 解析并校验排序字段
+     */
+    public BookSortField getSortField() {
+        return BookSortField.fromProperty(sortBy);
+    }
+
+    /**
+     * 是否降序
+     */
+    public boolean isDescending() {
+        if (sortDirection == null || "desc".equalsIgnoreCase(sortDirection.trim())) {
+            return true;
+        }
+        if ("asc".equalsIgnoreCase(sortDirection.trim())) {
+            return false;
+        }
+        throw BusinessException.invalidParameter("sortDirection", "只支持asc或desc");
+    }
+
+    /**
+     * SQL排序关键字，取值只可能是 ASC 或 DESC
+     */
+    public String getSortOrder() {
+        return isDescending() ? "DESC" : "ASC";
+    }
+
+    /**
+     * ORDER BY 和键集条件中的排序表达式
+     */
+    public String getSortExpression() {
+        return getSortField().orderExpression(binaryOrder);
+    }
+
+    /**
+     * 解析总数统计方式
+     */
+    public CountMode getCountMode() {
+        return CountMode.fromParameter(count);
+    }
+
+    /**
+     * 将查询限定在给定ID范围内
+     */
+    public void restrictToIds(Set<Long> ids) {
+        this.candidateIds = ids;
+    }
+
+    /**
+     * 将查询限定在给定分区内
+     */
+    public void restrictToBookType(Integer bookType) {
+        this.bookType = bookType;
+    }
+
+    /**
+     * 设置是否同时查询归档表
+     */
+    public void includeArchiveTier(boolean archiveTier) {
+        this.archiveTier = archiveTier;
+    }
+
+    /**
+     * 设置字符串排序列是否按二进制排序
+     */
+    public void orderByBinary(boolean binaryOrder) {
+        this.binaryOrder = binaryOrder;
+    }
 }
@@ -0,0 +1,33 @@
+package com.book.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量导入结果
+ */
+@Data
+public class BulkCreateResult {
+
+    private int total;
+
+    private int succeeded;
+
+    private int failed;
+
+    /**
+     * 按请求顺序排列的逐条结果
+     */
+    private List<BulkItemResult> items;
+
+    public static BulkCreateResult of(List<BulkItemResult> items) {
+        BulkCreateResult result = new BulkCreateResult();
+        result.setItems(items);
+        result.setTotal(items.size());
+        int succeeded = (int) items.stream().filter(BulkItemResult::isSuccess).count();
+        result.setSucceeded(succeeded);
+        result.setFailed(items.size() - succeeded);
+        return result;
+    }
+}
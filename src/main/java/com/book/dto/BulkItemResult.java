@@ -0,0 +1,43 @@
+package com.book.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量导入中单条记录的处理结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+
+    /**
+     * 记录在请求中的下标
+     */
+    private int index;
+
+    private String isbn;
+
+    /**
+     * 新生成的图书ID，失败时为空
+     */
+    private Long id;
+
+    private boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    public static BulkItemResult success(int index, String isbn, Long id) {
+        return new BulkItemResult(index, isbn, id, true, null);
+    }
+
+    public static BulkItemResult failure(int index, String isbn, String message) {
+        return new BulkItemResult(index, isbn, null, false, message);
+    }
+}
@@ -0,0 +1,33 @@
+package com.book.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量部分更新结果
+ */
+@Data
+public class BulkPatchResult {
+
+    private int total;
+
+    private int succeeded;
+
+    private int failed;
+
+    /**
+     * 按请求顺序排列的逐条结果
+     */
+    private List<BulkItemResult> items;
+
+    public static BulkPatchResult of(List<BulkItemResult> items) {
+        BulkPatchResult result = new BulkPatchResult();
+        result.setItems(items);
+        result.setTotal(items.size());
+        int succeeded = (int) items.stream().filter(BulkItemResult::isSuccess).count();
+        result.setSucceeded(succeeded);
+        result.setFailed(items.size() - succeeded);
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package com.book.dto;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存统计信息
+ */
+@Data
+public class CacheStatsDTO {
+
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private double hitRate;
+
+    private long loadSuccessCount;
+
+    private long loadFailureCount;
+
+    /**
+     * 平均加载耗时（毫秒）
+     */
+    private double averageLoadMillis;
+
+    private long evictionCount;
+
+    public static CacheStatsDTO of(CacheStats stats, long size) {
+        CacheStatsDTO dto = new CacheStatsDTO();
+        dto.setSize(size);
+        dto.setHitCount(stats.hitCount());
+        dto.setMissCount(stats.missCount());
+        dto.setHitRate(stats.hitRate());
+        dto.setLoadSuccessCount(stats.loadSuccessCount());
+        dto.setLoadFailureCount(stats.loadFailureCount());
+        dto.setAverageLoadMillis(stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1));
+        dto.setEvictionCount(stats.evictionCount());
+        return dto;
+    }
+}
@@ -0,0 +1,48 @@
+package com.book.dto;
+
+import com.book.enm.LoadBalance;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离统计
+ */
+@Data
+public class DataSourceStatsDTO {
+
+    /**
+     * 是否配置了从库
+     */
+    private boolean routing;
+
+    private LoadBalance loadBalance;
+
+    /**
+     * 发往从库的只读事务数
+     */
+    private long replicaReads;
+
+    /**
+     * 因刚写入过或没有可用从库而改读主库的只读事务数
+     */
+    private long primaryReads;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+
+        private String name;
+
+        private boolean inRotation;
+
+        /**
+         * 最近一次检查测得的复制延迟（毫秒），-1 表示检查失败
+         */
+        private long lagMillis;
+
+        private int activeConnections;
+    }
+}
@@ -0,0 +1,40 @@
+package com.book.dto;
+
+import lombok.Data;
+
+/**
+ * ISBN 布隆过滤器统计
+ */
+@Data
+public class IsbnFilterStatsDTO {
+
+    private boolean ready;
+
+    private long expectedInsertions;
+
+    private long insertions;
+
+    private long bitCount;
+
+    private int hashCount;
+
+    /**
+     * 被过滤器直接判定不存在、未查询数据库的次数
+     */
+    private long definiteNegatives;
+
+    /**
+     * 判定可能存在、需要查询数据库的次数
+     */
+    private long maybePositives;
+
+    /**
+     * 判定可能存在但数据库中不存在的次数
+     */
+    private long falsePositives;
+
+    /**
+     * 最近一次重建耗时（毫秒）
+     */
+    private long lastRebuildMillis;
+}
@@ -0,0 +1,80 @@
+package com.book.dto;
+
+import com.book.enm.BookSortField;
+import com.book.exception.BusinessException;
+import com.book.po.Book;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 键集分页游标
+ * <p>
+ * 记录上一页最后一行的排序值和ID，编码为不透明的字符串返回给客户端。
+ * 下一页查询使用 (排序列, id) 作为起点，不再依赖 OFFSET 扫描前面的行。
+ */
+@Getter
+public class PageCursor {
+
+    private static final String SEPARATOR = "\u001F";
+
+    private final BookSortField sortField;
+
+    private final boolean descending;
+
+    private final Long id;
+
+    private final Object sortValue;
+
+    private PageCursor(BookSortField sortField, boolean descending, Long id, Object sortValue) {
+        this.sortField = sortField;
+        this.descending = descending;
+        this.id = id;
+        this.sortValue = sortValue;
+    }
+
+    /**
+     * 根据某页最后一行构建游标
+     */
+    public static PageCursor of(BookSortField sortField, boolean descending, Book last) {
+        return new PageCursor(sortField, descending, last.getId(), sortField.valueOf(last));
+    }
+
+    /**
+     * 键集比较运算符，取值只可能是 &lt; 或 &gt;
+     */
+    public String getOperator() {
+        return descending ? "<" : ">";
+    }
+
+    /**
+     * 编码为URL安全的游标字符串
+     */
+    public String encode() {
+        String raw = sortField.name() + SEPARATOR + (descending ? "d" : "a") + SEPARATOR + id
+                + SEPARATOR + sortField.encodeValue(sortValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析客户端传回的游标字符串
+     *
+     * @param token 游标
+     * @return 游标对象
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw BusinessException.invalidParameter("after", "游标格式不正确");
+            }
+            BookSortField sortField = BookSortField.valueOf(parts[0]);
+            boolean descending = "d".equals(parts[1]);
+            return new PageCursor(sortField, descending, Long.valueOf(parts[2]), sortField.decodeValue(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw BusinessException.invalidParameter("after", "游标格式不正确");
+        }
+    }
+}
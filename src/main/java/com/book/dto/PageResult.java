@@ -27,6 +27,16 @@ public class PageResult<T> {
 
     private boolean hasNext;
 
+    /**
+     * 下一页游标，传给查询参数 after 即可按键集方式继续翻页；没有下一页时为空
+     */
+    private String nextCursor;
+
+    /**
+     * total 是否为估算值
+     */
+    private boolean totalApproximate;
+
     /**
      * 空分页结果构造方法
      */
@@ -86,4 +96,48 @@ public class PageResult<T> {
     public static <T> PageResult<T> of(List<T> records, long total, int pageNum, int pageSize) {
         return new PageResult<>(records, total, pageNum, pageSize);
     }
+
+    /**
+     * 构建键集分页结果，该模式不统计总数，total 和 pages 为 -1
+     *
+     * @param records     当前页数据
+     * @param pageSize    每页数量
+     * @param hasPrevious 是否有上一页
+     * @param nextCursor  下一页游标，没有下一页时为空
+     * @param <T>         数据类型
+     * @return 分页结果
+     */
+    public static <T> PageResult<T> ofCursor(List<T> records, int pageSize, boolean hasPrevious, String nextCursor) {
+        PageResult<T> pageResult = new PageResult<>();
+        pageResult.setRecords(records);
+        pageResult.setTotal(-1L);
+        pageResult.setPages(-1);
+        pageResult.setPageSize(pageSize);
+        pageResult.setHasPrevious(hasPrevious);
+        pageResult.setHasNext(nextCursor != null);
+        pageResult.setNextCursor(nextCursor);
+        return pageResult;
+    }
+
+    /**
+     * 构建不统计总数的分页结果，是否有下一页由多取的一行判断，total 和 pages 为 -1
+     *
+     * @param records  当前页数据
+     * @param pageNum  当前页码
+     * @param pageSize 每页数量
+     * @param hasNext  是否有下一页
+     * @param <T>      数据类型
+     * @return 分页结果
+     */
+    public static <T> PageResult<T> withoutTotal(List<T> records, int pageNum, int pageSize, boolean hasNext) {
+        PageResult<T> pageResult = new PageResult<>();
+        pageResult.setRecords(records);
+        pageResult.setTotal(-1L);
+        pageResult.setPages(-1);
+        pageResult.setPageNum(pageNum);
+        pageResult.setPageSize(pageSize);
+        pageResult.setHasPrevious(pageNum > 1);
+        pageResult.setHasNext(hasNext);
+        return pageResult;
+    }
 }
@@ -0,0 +1,30 @@
+package com.book.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据库结构迁移状态
+ */
+@Data
+public class SchemaStatusDTO {
+
+    /**
+     * 已执行的最高版本，尚未执行任何迁移时为空
+     */
+    private Integer currentVersion;
+
+    /**
+     * 已执行的迁移，形如 V2__query_indexes
+     */
+    private List<String> applied = new ArrayList<>();
+
+    private List<String> pending = new ArrayList<>();
+
+    /**
+     * 最近一次执行计划自检发现的全表扫描
+     */
+    private List<String> planWarnings = new ArrayList<>();
+}
@@ -0,0 +1,35 @@
+package com.book.dto;
+
+import lombok.Data;
+
+/**
+ * 书名/作者倒排索引统计
+ */
+@Data
+public class SearchIndexStatsDTO {
+
+    private boolean ready;
+
+    private int titleDocuments;
+
+    private int titleTerms;
+
+    private int authorDocuments;
+
+    private int authorTerms;
+
+    /**
+     * 由索引给出候选ID的查询次数
+     */
+    private long indexedQueries;
+
+    /**
+     * 无法使用索引、回退到 LIKE 的查询次数
+     */
+    private long fallbackQueries;
+
+    /**
+     * 最近一次重建耗时（毫秒）
+     */
+    private long lastRebuildMillis;
+}
@@ -0,0 +1,21 @@
+package com.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * 库存预留/释放数量
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockChangeDTO {
+
+    @NotNull(message = "数量不能为空")
+    @Min(value = 1, message = "数量必须大于0")
+    private Integer quantity;
+}
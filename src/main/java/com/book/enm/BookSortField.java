@@ -0,0 +1,124 @@
+package com.book.enm;
+
+import com.book.exception.BusinessException;
+import com.book.po.Book;
+
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * 允许排序的图书字段（白名单）
+ * <p>
+ * 属性名到数据库列名的映射只能来自此枚举，避免在 SQL 中直接拼接请求参数。
+ */
+public enum BookSortField {
+    ID("id", "id", Book::getId),
+    TITLE("title", "title", Book::getTitle),
+    AUTHOR("author", "author", Book::getAuthor),
+    ISBN("isbn", "isbn", Book::getIsbn),
+    QUANTITY("quantity", "quantity", Book::getQuantity),
+    PUBLICATION_DATE("publicationDate", "publication_date", Book::getPublicationDate);
+
+    private final String property;
+    private final String column;
+    private final Function<Book, Object> extractor;
+
+    BookSortField(String property, String column, Function<Book, Object> extractor) {
+        this.property = property;
+        this.column = column;
+        this.extractor = extractor;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * 是否字符串列，数据库按列的排序规则比较
+     */
+    public boolean isText() {
+        return getBinaryLength() > 0;
+    }
+
+    /**
+     * 字符串列按 utf8mb4 编码后的最大字节数（列长度 × 4），不是字符串列时为 0
+     */
+    public int getBinaryLength() {
+        switch (this) {
+            case TITLE:
+            case AUTHOR:
+                return 255 * 4;
+            case ISBN:
+                return 20 * 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * SQL 中的排序表达式；binary 为 true 时字符串列按 UTF-8 字节（即码点）排序，不受排序规则影响。
+     * 转为定长 BINARY 时末尾补 0x00，不改变顺序；不带长度的 BINARY 在 H2 中只有 1 字节
+     */
+    public String orderExpression(boolean binary) {
+        return binary && isText() ? "CAST(" + column + " AS BINARY(" + getBinaryLength() + "))" : column;
+    }
+
+    /**
+     * 读取图书在该字段上的排序值
+     */
+    public Object valueOf(Book book) {
+        return extractor.apply(book);
+    }
+
+    /**
+     * 将排序值编码为字符串（用于游标）
+     */
+    public String encodeValue(Object value) {
+        if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 将游标中的字符串还原为排序值
+     */
+    public Object decodeValue(String text) {
+        switch (this) {
+            case ID:
+                return Long.valueOf(text);
+            case QUANTITY:
+                return Integer.valueOf(text);
+            case PUBLICATION_DATE:
+                return new Date(Long.parseLong(text));
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * 根据请求中的排序字段解析，兼容旧参数名 publishDate
+     *
+     * @param sortBy 排序字段
+     * @return 排序字段枚举
+     */
+    public static BookSortField fromProperty(String sortBy) {
+        if (sortBy == null || sortBy.trim().isEmpty()) {
+            return PUBLICATION_DATE;
+        }
+        String name = sortBy.trim();
+        if ("publishDate".equalsIgnoreCase(name)) {
+            return PUBLICATION_DATE;
+        }
+        for (BookSortField field : values()) {
+            if (field.property.equalsIgnoreCase(name) || field.column.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw BusinessException.invalidParameter("sortBy", "不支持的排序字段: " + sortBy);
+    }
+}
@@ -0,0 +1,19 @@
+package com.book.enm;
+
+/**
+ * 分页查询与总数查询的执行方式
+ */
+public enum CountExecution {
+    /**
+     * 在同一连接上先查分页再查总数
+     */
+    SEQUENTIAL,
+    /**
+     * 总数查询在独立线程和连接上与分页查询并行执行，超过等待预算时不返回总数
+     */
+    PARALLEL,
+    /**
+     * 单条语句用 COUNT(*) OVER() 同时返回分页数据和总数，数据库不支持窗口函数时退回 SEQUENTIAL
+     */
+    WINDOW
+}
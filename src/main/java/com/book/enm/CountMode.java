@@ -0,0 +1,41 @@
+package com.book.enm;
+
+import com.book.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * 分页查询的总数统计方式
+ */
+public enum CountMode {
+    /**
+     * 每次执行 COUNT(*)，返回精确总数
+     */
+    EXACT,
+    /**
+     * 不统计总数，多取一行判断是否有下一页，total 和 pages 为 -1
+     */
+    NONE,
+    /**
+     * 返回数据库统计信息中的估算值，不扫描数据
+     */
+    APPROXIMATE,
+    /**
+     * 精确总数，相同过滤条件在短时间内复用，有写入时失效
+     */
+    CACHED;
+
+    /**
+     * 解析请求参数，为空时使用 EXACT
+     */
+    public static CountMode fromParameter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return EXACT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw BusinessException.invalidParameter("countMode", "只支持exact、none、approximate或cached");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.book.enm;
+
+/**
+ * 只读事务在从库之间的分配方式
+ */
+public enum LoadBalance {
+    /**
+     * 依次轮换
+     */
+    ROUND_ROBIN,
+    /**
+     * 选择当前借出连接最少的从库
+     */
+    LEAST_CONNECTIONS
+}
@@ -42,6 +42,15 @@ public class BusinessException extends RuntimeException {
         this.code = code;
         this.message = message;
     }
+
+    /**
+     * 不记录堆栈的业务异常，用于高频出现、堆栈没有排查价值的场景（如资源不存在）
+     */
+    protected BusinessException(Integer code, String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.code = code;
+        this.message = message;
+    }
     
     /**
      * 创建资源不存在异常
@@ -76,11 +85,11 @@ public class BusinessException extends RuntimeException {
     }
     
     /**
-     * 创建图书不存在异常
+     * 创建图书不存在异常（不记录堆栈）
      */
     public static BusinessException bookNotFound(Long bookId) {
         return new BusinessException(ErrorCode.BOOK_NOT_FOUND, 
-            "图书不存在，ID: " + bookId);
+            "图书不存在，ID: " + bookId, false);
     }
     
     /**
@@ -91,6 +100,38 @@ public class BusinessException extends RuntimeException {
             "图书已存在，书名: " + bookName);
     }
     
+    /**
+     * 创建ISBN已被占用异常
+     */
+    public static BusinessException isbnExists(String isbn) {
+        return new BusinessException(ErrorCode.BOOK_ALREADY_EXISTS, 
+            "图书已存在，ISBN: " + isbn);
+    }
+    
+    /**
+     * 创建版本冲突异常：记录在读取后已被其他请求修改
+     */
+    public static BusinessException versionConflict(Long bookId, Long version) {
+        return new BusinessException(ErrorCode.BOOK_VERSION_CONFLICT,
+            "图书已被修改，请重新读取后再更新，ID: " + bookId + "，版本: " + version);
+    }
+
+    /**
+     * 创建库存不足异常（不记录堆栈）
+     */
+    public static BusinessException insufficientStock(Long bookId, int requested, Integer available) {
+        return new BusinessException(ErrorCode.INSUFFICIENT_STOCK,
+            "库存不足，ID: " + bookId + "，需要: " + requested + "，剩余: " + available, false);
+    }
+
+    /**
+     * 创建库存更新冲突异常：重试次数用尽仍未能获得行锁
+     */
+    public static BusinessException stockContention(Long bookId, Throwable cause) {
+        return new BusinessException(ErrorCode.STOCK_CONTENTION,
+            "库存更新繁忙，请稍后重试，ID: " + bookId, cause);
+    }
+
     /**
      * 创建图书数据无效异常
      */
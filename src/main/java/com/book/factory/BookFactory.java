@@ -4,5 +4,16 @@ import com.book.dto.BookDTO;
 import com.book.po.Book;
 
 public interface BookFactory {
+
+    /**
+     * 不属于任何工厂的分类所在的分区
+     */
+    int DEFAULT_PARTITION = 0;
+
     Book createBook(BookDTO bookDTO);
-}
\ No newline at end of file
+
+    /**
+     * 该类型图书所在的物理分区，对应 books.book_type 列
+     */
+    int partition();
+}
@@ -4,8 +4,10 @@ import com.book.dto.BookDTO;
 import com.book.enm.BookType;
 import com.book.po.Book;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -39,4 +41,24 @@ public class BookFactoryContext {
         }
         return factory.createBook(bookDTO);
     }
-}
\ No newline at end of file
+
+    /**
+     * 分类对应的物理分区：分类名与有工厂的图书类型一致（忽略大小写）时取该工厂的分区，
+     * 其余分类落在默认分区
+     *
+     * @return 分类为空时返回 null，表示不限定分区
+     */
+    public Integer partitionOf(String category) {
+        if (!StringUtils.hasText(category)) {
+            return null;
+        }
+        BookType type;
+        try {
+            type = BookType.valueOf(category.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return BookFactory.DEFAULT_PARTITION;
+        }
+        BookFactory factory = factories.get(type);
+        return factory == null ? BookFactory.DEFAULT_PARTITION : factory.partition();
+    }
+}
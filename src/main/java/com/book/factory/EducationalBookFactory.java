@@ -13,4 +13,9 @@ public class EducationalBookFactory implements BookFactory {
         book.setCategory("EDUCATIONAL");
         return book;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int partition() {
+        return 2;
+    }
+}
@@ -13,4 +13,9 @@ public class FictionBookFactory implements BookFactory {
         book.setCategory("FICTION");
         return book;
     }
+
+    @Override
+    public int partition() {
+        return 1;
+    }
 }
@@ -0,0 +1,155 @@
+package com.book.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 库存增量日志
+ * <p>
+ * 按日志段追加写入定长记录（图书ID、增量、CRC32）。每次写回数据库前切换到新的日志段，
+ * 写回成功后删除已写回的日志段；重启时重放检查点之后的日志段。
+ * 末尾不完整或校验失败的记录视为崩溃时未写完，读取到此为止。
+ */
+@Slf4j
+class StockJournal implements Closeable {
+
+    private static final String PREFIX = "stock-";
+
+    private static final String SUFFIX = ".journal";
+
+    static final int RECORD_SIZE = Long.BYTES * 2 + Integer.BYTES;
+
+    private final Path directory;
+
+    private FileChannel channel;
+
+    private long segment;
+
+    StockJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * 打开（或续写）指定的日志段
+     */
+    void open(long segment) throws IOException {
+        this.channel = FileChannel.open(path(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.segment = segment;
+    }
+
+    /**
+     * 追加一条记录；FileChannel 的写入互斥，多线程调用时记录不会交错
+     */
+    void append(long bookId, long delta) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(bookId).putLong(delta);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, Long.BYTES * 2);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    boolean isEmpty() throws IOException {
+        return channel.size() == 0;
+    }
+
+    /**
+     * 刷盘并切换到下一个日志段
+     *
+     * @return 切换前的日志段编号
+     */
+    long rotate() throws IOException {
+        long previous = segment;
+        channel.force(false);
+        channel.close();
+        open(previous + 1);
+        return previous;
+    }
+
+    /**
+     * 删除编号不大于 segment 的日志段（不包括当前正在写入的日志段）
+     */
+    void deleteUpTo(long segment) throws IOException {
+        for (Path path : segments()) {
+            long sequence = sequenceOf(path);
+            if (sequence <= segment && (channel == null || sequence != this.segment)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 按编号升序列出目录中的日志段
+     */
+    List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(Comparator.comparingLong(StockJournal::sequenceOf));
+        return segments;
+    }
+
+    /**
+     * 读取日志段，把每个图书的增量累加到 deltas
+     */
+    static void read(Path path, Map<Long, Long> deltas) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_SIZE) {
+            int start = buffer.position();
+            long bookId = buffer.getLong();
+            long delta = buffer.getLong();
+            crc.reset();
+            crc.update(bytes, start, Long.BYTES * 2);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                log.warn("Stock journal {} has a corrupt record at offset {}, ignoring the rest", path, start);
+                return;
+            }
+            deltas.merge(bookId, delta, Long::sum);
+        }
+        if (buffer.hasRemaining()) {
+            log.warn("Stock journal {} ends with a partial record, ignoring {} bytes", path, buffer.remaining());
+        }
+    }
+
+    static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private Path path(long segment) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, segment, SUFFIX));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.book.inventory;
+
+import com.book.cache.BookCache;
+import com.book.cache.BooksTableVersion;
+import com.book.config.InventoryProperties;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.service.impl.BookBatchWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.HeuristicCompletionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 库存写回
+ * <p>
+ * 开启后预留/释放不直接更新数据库：每本书的可用库存保存在内存中，用 CAS 扣减保证不超卖，
+ * 待写回的增量累加在分段计数器（LongAdder）中，并先追加到增量日志再返回。
+ * 后台线程按固定间隔把增量分组为一批 UPDATE，与日志检查点在同一事务中提交。
+ * <p>
+ * 内存中的可用库存以首次访问时从数据库读取的值为基准，因此只适用于单个写入节点；
+ * 多个节点同时开启时，各自确认的预留之和可能超过库存。写回语句带有 quantity + delta >= 0 条件，
+ * 数据库中的库存不会为负：被拒绝的增量记录错误日志（这些已确认的预留超卖了），
+ * 并以数据库中的最新值加上之后的增量重新计算该图书的可用库存。
+ * 通过 PUT/PATCH 写入绝对库存或删除图书时，在事务提交后丢弃对应的计数器，回滚时保留。
+ * 事务提交之前该图书不会新建计数器，预留/释放直接更新数据库。
+ * <p>
+ * 预留/释放返回时日志只写入了操作系统缓冲区，按 journalSyncInterval 定期刷盘：
+ * 进程崩溃不会丢失已确认的变更，操作系统崩溃或断电时最多丢失最近一个刷盘间隔内已确认的预留。
+ */
+@Slf4j
+@Component
+public class StockWriteBehind {
+
+    /**
+     * 预留/释放的结果
+     */
+    public enum Outcome {
+        APPLIED,
+        INSUFFICIENT,
+        NOT_FOUND,
+        /**
+         * 绝对库存的写入尚未提交，调用方应直接更新数据库
+         */
+        BYPASSED
+    }
+
+    private final InventoryProperties.WriteBehind properties;
+
+    private final BooksMapper booksMapper;
+
+    private final BookBatchWriter bookBatchWriter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BookCache bookCache;
+
+    private final BooksTableVersion booksTableVersion;
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 有未提交的绝对库存写入的图书及其事务数
+     */
+    private final ConcurrentHashMap<Long, Integer> fenced = new ConcurrentHashMap<>();
+
+    /**
+     * 预留/释放持有读锁，相互之间不阻塞；切换日志段和丢弃计数器时持有写锁，
+     * 保证内存中的增量与日志段一一对应
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * 部分分片已提交、尚未确认哪些增量需要放回计数器的写回；只在写回线程中访问
+     */
+    private volatile PartialFlush partial;
+
+    private StockJournal journal;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    public StockWriteBehind(InventoryProperties properties, BooksMapper booksMapper, BookBatchWriter bookBatchWriter,
+                            PlatformTransactionManager transactionManager, BookCache bookCache,
+                            BooksTableVersion booksTableVersion) {
+        this.properties = properties.getWriteBehind();
+        this.booksMapper = booksMapper;
+        this.bookBatchWriter = bookBatchWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookCache = bookCache;
+        this.booksTableVersion = booksTableVersion;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 重放上次未写回的日志并开始定期写回；未写回的日志无法重放时启动失败，避免丢失已确认的预留
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        journal = new StockJournal(Paths.get(properties.getJournalDir()));
+        long checkpoint = recover();
+        journal.open(checkpoint + 1);
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "stock-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushNanos = properties.getFlushInterval().toNanos();
+        long syncNanos = properties.getJournalSyncInterval().toNanos();
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushNanos, flushNanos, TimeUnit.NANOSECONDS);
+        executor.scheduleWithFixedDelay(this::syncQuietly, syncNanos, syncNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 预留库存
+     */
+    public Outcome reserve(Long id, int quantity) {
+        long stamp = lock.readLock();
+        try {
+            Counter counter = counter(id);
+            if (counter == null) {
+                return fenced.containsKey(id) ? Outcome.BYPASSED : Outcome.NOT_FOUND;
+            }
+            long available;
+            do {
+                available = counter.available.get();
+                if (available < quantity) {
+                    return Outcome.INSUFFICIENT;
+                }
+            } while (!counter.available.compareAndSet(available, available - quantity));
+            record(id, counter, -quantity);
+            return Outcome.APPLIED;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 释放库存
+     */
+    public Outcome release(Long id, int quantity) {
+        long stamp = lock.readLock();
+        try {
+            Counter counter = counter(id);
+            if (counter == null) {
+                return fenced.containsKey(id) ? Outcome.BYPASSED : Outcome.NOT_FOUND;
+            }
+            counter.available.addAndGet(quantity);
+            record(id, counter, quantity);
+            return Outcome.APPLIED;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 数据库中的库存加上尚未写回的增量；没有内存计数器时返回 null，以数据库中的值为准
+     */
+    public Long available(Long id) {
+        Counter counter = counters.get(id);
+        return counter == null ? null : counter.available.get();
+    }
+
+    /**
+     * 丢弃图书的计数器，下次访问时重新从数据库读取；用于写入了绝对库存或删除了图书之后。
+     * 在事务中调用时推迟到提交之后，回滚时计数器和未写回的增量保持不变
+     */
+    public void discard(Long id) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            drop(id);
+            return;
+        }
+        fenced.merge(id, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                drop(id);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                fenced.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+            }
+        });
+    }
+
+    private void drop(Long id) {
+        long stamp = lock.writeLock();
+        try {
+            Counter counter = counters.remove(id);
+            long pending = counter == null ? 0 : counter.pending.sumThenReset();
+            if (pending != 0) {
+                // 抵消已写入日志的增量，崩溃重启时不会把它们叠加到新的库存上
+                journal.append(id, -pending);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write stock journal", e);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 把累计的增量写回数据库
+     *
+     * @return 写回的图书数量
+     */
+    public int flush() {
+        resolvePartial();
+        Map<Long, Counter> flushed = new LinkedHashMap<>();
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        long segment;
+        long stamp = lock.writeLock();
+        try {
+            for (Iterator<Map.Entry<Long, Counter>> it = counters.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Counter> entry = it.next();
+                Counter counter = entry.getValue();
+                long delta = counter.pending.sumThenReset();
+                if (delta != 0) {
+                    deltas.put(entry.getKey(), delta);
+                    flushed.put(entry.getKey(), counter);
+                } else if (!counter.touched && partial == null) {
+                    // 一个周期内没有变更，下次访问时重新读取数据库中的值
+                    it.remove();
+                }
+                counter.touched = false;
+            }
+            if (deltas.isEmpty() && journal.isEmpty()) {
+                return 0;
+            }
+            segment = journal.rotate();
+        } catch (IOException e) {
+            deltas.forEach((id, delta) -> flushed.get(id).pending.add(delta));
+            throw new UncheckedIOException("Failed to rotate stock journal", e);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        int[] counts;
+        try {
+            counts = transactionTemplate.execute(status -> bookBatchWriter.addStock(deltas, segment));
+        } catch (HeuristicCompletionException e) {
+            // 部分分片已提交，全部放回会重复写回这些分片上的增量
+            partial = new PartialFlush(segment, deltas, flushed);
+            try {
+                resolvePartial();
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // 保留日志段，增量放回计数器，下次写回时一并提交，检查点会覆盖这些日志段
+            deltas.forEach((id, delta) -> flushed.get(id).pending.add(delta));
+            throw e;
+        }
+        deltas.keySet().forEach(bookCache::evict);
+        if (!deltas.isEmpty()) {
+            booksTableVersion.bump();
+        }
+        rejected(deltas, counts).forEach((id, delta) -> rebase(id, delta, flushed.get(id)));
+        try {
+            journal.deleteUpTo(segment);
+        } catch (IOException e) {
+            log.warn("Failed to delete flushed stock journal segments up to {}", segment, e);
+        }
+        return deltas.size();
+    }
+
+    /**
+     * 重新读取各分片的检查点，只把未提交本日志段的分片上的增量放回计数器；
+     * 检查点读取失败时保留到下次写回前重试，期间不淘汰计数器，避免从数据库读到缺少这些增量的库存
+     */
+    private void resolvePartial() {
+        PartialFlush pending = partial;
+        if (pending == null) {
+            return;
+        }
+        BookBatchWriter.StockCheckpoints checkpoints = bookBatchWriter.findStockCheckpoints();
+        pending.deltas.forEach((id, delta) -> {
+            if (checkpoints.of(id) < pending.segment) {
+                pending.flushed.get(id).pending.add(delta);
+            } else {
+                bookCache.evict(id);
+            }
+        });
+        booksTableVersion.bump();
+        partial = null;
+        log.warn("Stock flush of segment {} committed on some shards only, re-queued the deltas of the others",
+                pending.segment);
+    }
+
+    /**
+     * 重放检查点之后的日志段；分片时每本书只重放晚于其所在分片检查点的日志段
+     *
+     * @return 重放后的检查点
+     */
+    private long recover() throws IOException {
+        BookBatchWriter.StockCheckpoints checkpoints = bookBatchWriter.findStockCheckpoints();
+        long checkpoint = checkpoints.min();
+        long last = checkpoint;
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Path path : journal.segments()) {
+            long sequence = StockJournal.sequenceOf(path);
+            if (sequence > checkpoint) {
+                Map<Long, Long> segmentDeltas = new HashMap<>();
+                StockJournal.read(path, segmentDeltas);
+                segmentDeltas.forEach((id, delta) -> {
+                    if (sequence > checkpoints.of(id)) {
+                        deltas.merge(id, delta, Long::sum);
+                    }
+                });
+                last = Math.max(last, sequence);
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (last > checkpoint) {
+            long segment = last;
+            int[] counts = transactionTemplate.execute(status -> bookBatchWriter.addStock(deltas, segment));
+            rejected(deltas, counts).forEach((id, delta) ->
+                    log.error("Replayed stock delta {} of book {} rejected: stock would go negative", delta, id));
+            log.info("Replayed stock journal up to segment {}: {} books adjusted", segment, deltas.size());
+        }
+        journal.deleteUpTo(last);
+        return last;
+    }
+
+    /**
+     * 未写入的增量：图书已删除，或其他节点已扣减导致库存不足
+     */
+    private static Map<Long, Long> rejected(Map<Long, Long> deltas, int[] counts) {
+        Map<Long, Long> rejected = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            if (counts[i++] == 0) {
+                rejected.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * 增量被拒绝后以数据库中的最新库存加上之后累计的增量作为可用库存；图书已删除时丢弃计数器
+     */
+    private void rebase(Long id, long delta, Counter flushed) {
+        Book stock = booksMapper.findStockById(id);
+        if (stock == null) {
+            drop(id);
+            return;
+        }
+        log.error("Stock delta {} of book {} rejected: another node reserved the same stock, {} in database",
+                delta, id, stock.getQuantity());
+        long stamp = lock.writeLock();
+        try {
+            if (counters.get(id) == flushed) {
+                flushed.available.set(stock.getQuantity() + flushed.pending.sum());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 首次访问时读取数据库中的库存作为基准；并发的首次访问只读取一次，不存在时返回 null
+     */
+    private Counter counter(Long id) {
+        Counter counter = counters.get(id);
+        if (counter != null) {
+            return counter;
+        }
+        if (fenced.containsKey(id)) {
+            // 数据库中未提交的新值读不到，读到的旧值会在提交后失效
+            return null;
+        }
+        return counters.computeIfAbsent(id, key -> {
+            Book stock = booksMapper.findStockById(key);
+            return stock == null ? null : new Counter(stock.getQuantity());
+        });
+    }
+
+    /**
+     * 先写日志再累计增量；日志写入失败时撤销内存中的修改
+     */
+    private void record(Long id, Counter counter, long delta) {
+        try {
+            journal.append(id, delta);
+        } catch (IOException e) {
+            counter.available.addAndGet(-delta);
+            throw new UncheckedIOException("Failed to write stock journal", e);
+        }
+        counter.pending.add(delta);
+        counter.touched = true;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush stock deltas, will retry", e);
+        }
+    }
+
+    private void syncQuietly() {
+        long stamp = lock.readLock();
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            log.error("Failed to sync stock journal", e);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(properties.getFlushInterval().toMillis() + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush stock deltas on shutdown, they will be replayed from the journal", e);
+        }
+        journal.close();
+    }
+
+    private static final class PartialFlush {
+        private final long segment;
+
+        private final Map<Long, Long> deltas;
+
+        private final Map<Long, Counter> flushed;
+
+        private PartialFlush(long segment, Map<Long, Long> deltas, Map<Long, Counter> flushed) {
+            this.segment = segment;
+            this.deltas = deltas;
+            this.flushed = flushed;
+        }
+    }
+
+    private static final class Counter {
+        /**
+         * 数据库中的库存加上尚未写回的增量
+         */
+        private final AtomicLong available;
+
+        /**
+         * 尚未写回数据库的增量
+         */
+        private final LongAdder pending = new LongAdder();
+
+        private volatile boolean touched = true;
+
+        private Counter(long available) {
+            this.available = new AtomicLong(available);
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.book.mapper;
 
 import com.book.dto.BookQueryDTO;
+import com.book.dto.PageCursor;
+import com.book.enm.BookSortField;
 import com.book.po.Book;
+import com.book.po.BookWithTotal;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -12,24 +19,166 @@ import java.util.Map;
 public interface BooksMapper {
     void insert(Book book);
 
-    void update(Book book);
+    /**
+     * 多行INSERT批量插入，生成的ID按顺序回填到每个对象
+     */
+    int insertBatch(@Param("books") List<Book> books);
 
-    void delete(Long id);
+    /**
+     * 多行INSERT，使用调用方指定的ID（分片模式下由应用生成）
+     */
+    int insertWithIds(@Param("books") List<Book> books);
+
+    /**
+     * 按ID更新非空字段，版本号加一；book.version 不为空时只在版本未变时更新
+     *
+     * @return 匹配的行数，0 表示ID不存在或版本已变化
+     */
+    int update(Book book);
+
+    /**
+     * 库存充足时扣减
+     *
+     * @return 匹配的行数，0 表示ID不存在或库存不足
+     */
+    int reserveStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * @return 匹配的行数，0 表示ID不存在
+     */
+    int releaseStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * 按增量调整库存，用于写回内存中累计的变更；调整后库存为负时不更新
+     *
+     * @return 匹配的行数，0 表示ID不存在或库存不足
+     */
+    int addStock(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * @return 已写入数据库的最后一个库存日志段，从未写回时为 null
+     */
+    Long findStockCheckpoint();
+
+    int saveStockCheckpoint(@Param("segment") long segment);
+
+    /**
+     * 只读取 id、quantity、version
+     */
+    Book findStockById(Long id);
+
+    /**
+     * @return 删除的行数，0 表示ID不存在
+     */
+    int delete(Long id);
 
     Book findById(Long id);
 
+    /**
+     * 按主键批量查询，不存在的ID不返回，结果顺序不保证
+     */
+    List<Book> findByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 出版日期早于 cutoff 的热表图书ID，按出版日期从早到晚
+     */
+    List<Long> findArchivableIds(@Param("cutoff") Date cutoff, @Param("limit") int limit);
+
+    /**
+     * 把给定ID中出版日期仍早于 cutoff 的行复制到归档表，需与 deleteArchivable 在同一事务中执行
+     */
+    int copyToArchive(@Param("ids") Collection<Long> ids, @Param("cutoff") Date cutoff);
+
+    int deleteArchivable(@Param("ids") Collection<Long> ids, @Param("cutoff") Date cutoff);
+
+    /**
+     * 按主键批量查询归档表，不存在的ID不返回
+     */
+    List<Book> findArchivedByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 把归档的图书复制回热表，需与 deleteArchived 在同一事务中执行
+     *
+     * @return 复制的行数，0 表示归档表中没有该ID
+     */
+    int restoreFromArchive(Long id);
+
+    int deleteArchived(Long id);
+
     Book findByIsbn(String isbn);
 
+    /**
+     * 包括已归档的图书
+     */
     boolean existsByIsbn(String isbn);
 
-    List<Book> findAll();
+    /**
+     * 一次查询返回给定ISBN中已存在的部分，包括已归档的图书
+     */
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * 流式扫描全部ISBN
+     */
+    void scanIsbns(ResultHandler<String> handler);
+
+    /**
+     * 流式扫描全部图书的 id、title、author，用于构建倒排索引
+     */
+    void scanSearchFields(ResultHandler<Book> handler);
+
+    /**
+     * 读取所有书籍；includeArchived 为 false 时只读热表
+     */
+    List<Book> findAll(@Param("includeArchived") boolean includeArchived);
+
+    /**
+     * 流式读取所有书籍，调用方需在事务内遍历并关闭游标；includeArchived 为 false 时只读热表
+     */
+    Cursor<Book> findAllCursor(@Param("includeArchived") boolean includeArchived);
+
+    /**
+     * 按白名单字段在数据库中排序并流式读取，limit 为空时不限制条数；includeArchived 为 false 时只读热表，
+     * binaryOrder 为 true 时字符串列按二进制排序（分片归并使用）
+     */
+    Cursor<Book> findAllOrdered(@Param("sortField") BookSortField sortField,
+                                @Param("descending") boolean descending,
+                                @Param("offset") int offset,
+                                @Param("limit") Integer limit,
+                                @Param("includeArchived") boolean includeArchived,
+                                @Param("binaryOrder") boolean binaryOrder);
 
     List<Book> findByPage(Map<String, Object> params);
 
-    int countByCondition(Map<String, Object> params);
+    int countByPage(Map<String, Object> params);
 
-    List<Book> findByCondition(@Param("params") BookQueryDTO params);
+    /**
+     * 按条件分页查询，从 params.offset 开始取 limit 行
+     */
+    List<Book> findByCondition(@Param("params") BookQueryDTO params, @Param("limit") int limit);
 
     int countByCondition(@Param("params") BookQueryDTO params);
 
+    /**
+     * 按条件分页查询，每行附带 COUNT(*) OVER() 总数；需要数据库支持窗口函数（MySQL 8.0+）
+     */
+    List<BookWithTotal> findByConditionWithTotal(@Param("params") BookQueryDTO params, @Param("limit") int limit);
+
+    /**
+     * 读取表统计信息中的行数估算值，不扫描数据
+     */
+    Long estimateTableRows();
+
+    /**
+     * 对条件查询执行 EXPLAIN，用于估算匹配行数
+     */
+    List<Map<String, Object>> explainByCondition(@Param("params") BookQueryDTO params);
+
+    /**
+     * 键集分页查询，从游标位置之后取 limit 行
+     */
+    List<Book> findByKeyset(@Param("params") BookQueryDTO params,
+                            @Param("cursor") PageCursor cursor,
+                            @Param("limit") int limit);
+
 }
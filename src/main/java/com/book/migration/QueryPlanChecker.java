@@ -0,0 +1,252 @@
+package com.book.migration;
+
+import com.book.config.MigrationProperties;
+import com.book.dto.BookQueryDTO;
+import com.book.dto.PageCursor;
+import com.book.enm.BookSortField;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 启动自检：用样例参数展开 BooksMapper 的每条语句并执行 EXPLAIN，
+ * 估算扫描行数较多的全表扫描记为告警，说明缺少与查询匹配的索引
+ * <p>
+ * 只检查 MySQL 的执行计划；样例参数覆盖每种排序字段、分类和出版日期范围过滤、键集游标以及归档表查询。
+ */
+@Slf4j
+@Component
+public class QueryPlanChecker {
+
+    private static final String NAMESPACE = BooksMapper.class.getName() + ".";
+
+    private final MigrationProperties.SelfCheck properties;
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private volatile List<String> warnings = Collections.emptyList();
+
+    public QueryPlanChecker(MigrationProperties properties, SqlSessionFactory sqlSessionFactory) {
+        this.properties = properties.getSelfCheck();
+        this.sqlSessionFactory = sqlSessionFactory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkOnStartup() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.warn("Query plan self-check failed", e);
+        }
+    }
+
+    /**
+     * 检查全部语句的执行计划
+     *
+     * @return 全表扫描告警，非 MySQL 数据库返回空列表
+     */
+    public List<String> check() {
+        try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection()) {
+            if (!SchemaMigrator.isMySql(connection)) {
+                log.info("Skipping query plan self-check on {}", connection.getMetaData().getDatabaseProductName());
+                return Collections.emptyList();
+            }
+            List<String> found = new ArrayList<>();
+            for (Plan plan : explainAll(connection)) {
+                for (Map<String, Object> row : fullScans(plan.rows, properties.getMinRows())) {
+                    found.add(plan.statementId + ": full scan of " + row.get("table") + " (~" + row.get("rows")
+                            + " rows) in " + plan.sql);
+                }
+            }
+            found.forEach(log::warn);
+            warnings = Collections.unmodifiableList(found);
+            return warnings;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to check query plans", e);
+        }
+    }
+
+    /**
+     * 最近一次检查的告警
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * 对每条语句的每种不同展开结果各执行一次 EXPLAIN；执行失败的语句记录日志后跳过
+     */
+    List<Plan> explainAll(Connection connection) {
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        List<Plan> plans = new ArrayList<>();
+        for (String statementId : statementIds(configuration)) {
+            MappedStatement statement = configuration.getMappedStatement(NAMESPACE + statementId);
+            Set<String> explained = new HashSet<>();
+            for (Map<String, Object> parameter : sampleParameters()) {
+                BoundSql boundSql = statement.getBoundSql(parameter);
+                String sql = boundSql.getSql().replaceAll("\\s+", " ").trim();
+                if (!isExplainable(sql) || !explained.add(sql)) {
+                    continue;
+                }
+                try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+                    configuration.newParameterHandler(statement, parameter, boundSql).setParameters(ps);
+                    try (ResultSet resultSet = ps.executeQuery()) {
+                        plans.add(new Plan(statementId, sql, rows(resultSet)));
+                    }
+                } catch (SQLException e) {
+                    log.warn("EXPLAIN failed for {}: {}", statementId, e.getMessage());
+                }
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * 执行计划中访问类型为 ALL 且估算行数不低于阈值的行
+     */
+    static List<Map<String, Object>> fullScans(List<Map<String, Object>> plan, long minRows) {
+        List<Map<String, Object>> scans = new ArrayList<>();
+        for (Map<String, Object> row : plan) {
+            Object rows = row.get("rows");
+            if ("ALL".equalsIgnoreCase(String.valueOf(row.get("type")))
+                    && rows instanceof Number && ((Number) rows).longValue() >= minRows) {
+                scans.add(row);
+            }
+        }
+        return scans;
+    }
+
+    private List<String> statementIds(Configuration configuration) {
+        Set<String> ids = new TreeSet<>();
+        for (String name : configuration.getMappedStatementNames()) {
+            if (name.startsWith(NAMESPACE) && !name.contains("!")) {
+                ids.add(name.substring(NAMESPACE.length()));
+            }
+        }
+        ids.removeAll(properties.getIgnoredStatements());
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * 写入固定值的 INSERT 不涉及读取；本身就是 EXPLAIN 的语句不再检查
+     */
+    private static boolean isExplainable(String sql) {
+        String upper = sql.toUpperCase(Locale.ROOT);
+        if (upper.startsWith("SELECT") || upper.startsWith("UPDATE") || upper.startsWith("DELETE")) {
+            return true;
+        }
+        return upper.startsWith("INSERT") && upper.contains(" SELECT ");
+    }
+
+    /**
+     * 参数名取全部语句的并集，语句只读取自己用到的参数
+     */
+    private static List<Map<String, Object>> sampleParameters() {
+        Date date = new Date();
+        Book last = Book.builder().id(1L).title("title").author("author").isbn("isbn").quantity(1)
+                .publicationDate(date).build();
+        List<Map<String, Object>> parameters = new ArrayList<>();
+        for (BookSortField field : BookSortField.values()) {
+            for (boolean descending : new boolean[]{true, false}) {
+                BookQueryDTO query = new BookQueryDTO();
+                query.setSortBy(field.getProperty());
+                query.setSortDirection(descending ? "desc" : "asc");
+                parameters.add(parameter(query, null, field, descending));
+                parameters.add(parameter(query, PageCursor.of(field, descending, last), field, descending));
+            }
+        }
+
+        BookQueryDTO category = new BookQueryDTO();
+        category.setCategory("category");
+        category.restrictToBookType(0);
+        BookQueryDTO range = new BookQueryDTO();
+        range.setCategory("category");
+        range.setPublishDateStart(date);
+        range.setPublishDateEnd(date);
+        BookQueryDTO archived = new BookQueryDTO();
+        archived.setCategory("category");
+        archived.setPublishDateStart(date);
+        archived.includeArchiveTier(true);
+        for (BookQueryDTO query : Arrays.asList(category, range, archived)) {
+            parameters.add(parameter(query, null, BookSortField.PUBLICATION_DATE, true));
+            parameters.add(parameter(query, PageCursor.of(BookSortField.PUBLICATION_DATE, true, last),
+                    BookSortField.PUBLICATION_DATE, true));
+        }
+        return parameters;
+    }
+
+    private static Map<String, Object> parameter(BookQueryDTO query, PageCursor cursor, BookSortField sortField,
+                                                 boolean descending) {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("id", 1L);
+        parameter.put("ids", Arrays.asList(1L, 2L, 3L));
+        parameter.put("isbn", "isbn");
+        parameter.put("isbns", Arrays.asList("isbn-1", "isbn-2"));
+        parameter.put("books", Collections.singletonList(Book.builder().id(1L).build()));
+        parameter.put("quantity", 1);
+        parameter.put("delta", 1L);
+        parameter.put("segment", 1L);
+        parameter.put("cutoff", new Date());
+        parameter.put("limit", 20);
+        parameter.put("offset", 0);
+        parameter.put("pageSize", 20);
+        parameter.put("sortField", sortField);
+        parameter.put("descending", descending);
+        parameter.put("params", query);
+        parameter.put("cursor", cursor);
+        return parameter;
+    }
+
+    private static List<Map<String, Object>> rows(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                row.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), resultSet.getObject(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    static final class Plan {
+        final String statementId;
+        final String sql;
+        final List<Map<String, Object>> rows;
+
+        private Plan(String statementId, String sql, List<Map<String, Object>> rows) {
+            this.statementId = statementId;
+            this.sql = sql;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.book.migration;
+
+import com.book.config.MigrationProperties;
+import com.book.dto.SchemaStatusDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.jdbc.datasource.init.ScriptException;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * 数据库结构迁移
+ * <p>
+ * 按版本号顺序执行 db/migration 下尚未执行的脚本，执行记录和脚本校验和保存在 schema_migration 表中；
+ * db/migration/{vendor} 下的脚本只在对应的数据库上执行，例如 MySQL 的触发器。
+ * 已执行的脚本被修改时拒绝继续迁移；多个节点同时启动时在 MySQL 上用 GET_LOCK 串行执行。
+ * MySQL 的 DDL 会隐式提交，脚本中途失败时已执行的语句不会回滚，修复后需要手工处理再重新迁移。
+ */
+@Slf4j
+@Component
+public class SchemaMigrator {
+
+    static final String HISTORY_TABLE = "schema_migration";
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String LOCK_NAME = "book_schema_migration";
+
+    private static final int LOCK_TIMEOUT_SECONDS = 300;
+
+    private final MigrationProperties properties;
+
+    private final DataSource dataSource;
+
+    private final ResourcePatternResolver resourceResolver;
+
+    public SchemaMigrator(MigrationProperties properties, DataSource dataSource, ResourceLoader resourceLoader) {
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.resourceResolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+    }
+
+    /**
+     * 开启时执行迁移；关闭时仍检查，有待执行的迁移说明映射语句依赖的表结构尚未建立，拒绝启动
+     */
+    @PostConstruct
+    public void migrateOnStartup() {
+        if (properties.isEnabled()) {
+            migrate();
+            return;
+        }
+        List<String> pending = status().getPending();
+        if (!pending.isEmpty()) {
+            throw new IllegalStateException("Schema migrations " + pending + " are pending; set book.migration.enabled=true"
+                    + " to apply them on startup (with book.migration.baseline-version for a schema created by hand)");
+        }
+    }
+
+    /**
+     * 执行尚未执行的迁移脚本
+     *
+     * @return 本次执行的版本号
+     */
+    public synchronized List<Integer> migrate() {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean locked = lock(connection);
+            try {
+                createHistoryTable(connection);
+                Map<Integer, Long> applied = appliedChecksums(connection);
+                List<Migration> available = available(connection);
+                validate(available, applied);
+                if (applied.isEmpty() && properties.getBaselineVersion() > 0) {
+                    baseline(connection, available, applied);
+                }
+                List<Integer> executed = new ArrayList<>();
+                for (Migration migration : available) {
+                    if (!applied.containsKey(migration.version)) {
+                        apply(connection, migration);
+                        executed.add(migration.version);
+                    }
+                }
+                if (!executed.isEmpty()) {
+                    log.info("Applied schema migrations {}", executed);
+                }
+                return executed;
+            } finally {
+                if (locked) {
+                    unlock(connection);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Schema migration failed", e);
+        }
+    }
+
+    /**
+     * 已执行和待执行的迁移
+     */
+    public SchemaStatusDTO status() {
+        try (Connection connection = dataSource.getConnection()) {
+            createHistoryTable(connection);
+            TreeMap<Integer, Long> applied = appliedChecksums(connection);
+            List<Migration> available = available(connection);
+            SchemaStatusDTO status = new SchemaStatusDTO();
+            status.setCurrentVersion(applied.isEmpty() ? null : applied.lastKey());
+            status.setApplied(available.stream().filter(migration -> applied.containsKey(migration.version))
+                    .map(Migration::toString).collect(Collectors.toList()));
+            status.setPending(available.stream().filter(migration -> !applied.containsKey(migration.version))
+                    .map(Migration::toString).collect(Collectors.toList()));
+            return status;
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Failed to read schema migration status", e);
+        }
+    }
+
+    /**
+     * 按版本号排序的迁移脚本：通用脚本加上当前数据库专用的脚本
+     */
+    List<Migration> available(Connection connection) throws IOException, SQLException {
+        String vendor = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).replace(" ", "");
+        List<Resource> resources = new ArrayList<>(Arrays.asList(resourceResolver.getResources(properties.getLocations())));
+        resources.addAll(Arrays.asList(resourceResolver.getResources(properties.getVendorLocations().replace("{vendor}", vendor))));
+        Map<Integer, Migration> migrations = new TreeMap<>();
+        for (Resource resource : resources) {
+            Matcher matcher = FILE_NAME.matcher(String.valueOf(resource.getFilename()));
+            if (!matcher.matches()) {
+                log.warn("Ignoring migration script with unexpected name {}", resource.getFilename());
+                continue;
+            }
+            Migration migration = new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2), resource);
+            Migration duplicate = migrations.put(migration.version, migration);
+            if (duplicate != null) {
+                throw new IllegalStateException("Duplicate schema migration version " + migration.version);
+            }
+        }
+        return new ArrayList<>(migrations.values());
+    }
+
+    private void validate(List<Migration> available, Map<Integer, Long> applied) {
+        for (Migration migration : available) {
+            Long checksum = applied.get(migration.version);
+            if (checksum != null && checksum != migration.checksum) {
+                throw new IllegalStateException("Schema migration " + migration + " was modified after it was applied");
+            }
+        }
+        applied.keySet().stream()
+                .filter(version -> available.stream().noneMatch(migration -> migration.version == version))
+                .forEach(version -> log.warn("Applied schema migration V{} is missing from {}", version, properties.getLocations()));
+    }
+
+    private void baseline(Connection connection, List<Migration> available, Map<Integer, Long> applied) throws SQLException {
+        for (Migration migration : available) {
+            if (migration.version <= properties.getBaselineVersion()) {
+                record(connection, migration, 0);
+                applied.put(migration.version, migration.checksum);
+            }
+        }
+        log.info("Baselined schema at version {}", properties.getBaselineVersion());
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        log.info("Applying schema migration {}", migration);
+        long start = System.currentTimeMillis();
+        connection.setAutoCommit(false);
+        try {
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.script, StandardCharsets.UTF_8));
+            record(connection, migration, System.currentTimeMillis() - start);
+            connection.commit();
+        } catch (SQLException | ScriptException e) {
+            connection.rollback();
+            throw new IllegalStateException("Failed to apply schema migration " + migration, e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void createHistoryTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(200) NOT NULL, "
+                    + "checksum BIGINT NOT NULL, "
+                    + "execution_millis BIGINT NOT NULL, "
+                    + "installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private static TreeMap<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        TreeMap<Integer, Long> applied = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM " + HISTORY_TABLE)) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt(1), resultSet.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void record(Connection connection, Migration migration, long executionMillis) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + HISTORY_TABLE
+                + " (version, description, checksum, execution_millis) VALUES (?, ?, ?, ?)")) {
+            statement.setInt(1, migration.version);
+            statement.setString(2, migration.description);
+            statement.setLong(3, migration.checksum);
+            statement.setLong(4, executionMillis);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * 只在 MySQL 上加锁，锁随连接释放
+     */
+    private static boolean lock(Connection connection) throws SQLException {
+        if (!isMySql(connection)) {
+            return false;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    throw new IllegalStateException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        }
+    }
+
+    static boolean isMySql(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+
+    static final class Migration {
+        private final int version;
+        private final String description;
+        private final Resource script;
+        private final long checksum;
+
+        private Migration(int version, String description, Resource script) throws IOException {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.checksum = checksum(script);
+        }
+
+        /**
+         * 忽略换行符差异，同一脚本在不同平台上检出后校验和相同
+         */
+        private static long checksum(Resource script) throws IOException {
+            try (InputStream in = script.getInputStream()) {
+                String content = StreamUtils.copyToString(in, StandardCharsets.UTF_8).replace("\r", "");
+                CRC32 crc = new CRC32();
+                crc.update(content.getBytes(StandardCharsets.UTF_8));
+                return crc.getValue();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "V" + version + "__" + description;
+        }
+    }
+}
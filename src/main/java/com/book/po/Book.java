@@ -35,5 +35,15 @@ public class Book implements Serializable {
     @PositiveOrZero(message = "数量不能为空")
     private Integer quantity;
     private String category;
+
+    /**
+     * 物理分区，由分类对应的图书工厂决定
+     */
+    private Integer bookType;
+
+    /**
+     * 乐观锁版本号，每次写入加一；更新时不为空则按版本号条件更新
+     */
+    private Long version;
 }
 
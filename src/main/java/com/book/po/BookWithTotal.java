@@ -0,0 +1,21 @@
+package com.book.po;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 带窗口函数总数的图书记录
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class BookWithTotal extends Book {
+
+    private static final long serialVersionUID = 4217053182739941057L;
+
+    /**
+     * COUNT(*) OVER() 的结果，即不分页时的匹配总数
+     */
+    private Long totalCount;
+}
@@ -0,0 +1,238 @@
+package com.book.search;
+
+import com.book.config.SearchProperties;
+import com.book.dto.SearchIndexStatsDTO;
+import com.book.po.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 书名和作者的 n-gram 倒排索引
+ * <p>
+ * 查询条件中的书名/作者关键字先在索引中解析为候选ID，数据库按主键读取候选行，
+ * 原有的 LIKE 条件保留为候选行上的二次过滤。索引在事务提交后增量更新，并定期全量重建。
+ * <p>
+ * 增量更新只来自本节点的写入，其他节点写入的图书在下次重建前不会出现在候选ID中，
+ * 因此索引默认关闭（book.search.enabled），只适用于单个写入节点。
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    private final SearchProperties properties;
+
+    private volatile Fields current;
+
+    /**
+     * 重建期间的增量变更，重建完成后按顺序重放到新索引上
+     */
+    private List<Consumer<Fields>> pending;
+
+    private final Object rebuildLock = new Object();
+
+    private volatile long lastRebuildMillis;
+
+    private final LongAdder indexedQueries = new LongAdder();
+
+    private final LongAdder fallbackQueries = new LongAdder();
+
+    public BookSearchIndex(SearchProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 解析书名和作者关键字对应的候选ID
+     *
+     * @param title  书名关键字，可为空
+     * @param author 作者关键字，可为空
+     * @return 候选ID；索引未就绪、关键字含 LIKE 通配符或候选过多时返回 null，由数据库过滤
+     */
+    public Set<Long> search(String title, String author) {
+        boolean hasTitle = title != null && !title.isEmpty();
+        boolean hasAuthor = author != null && !author.isEmpty();
+        if (!hasTitle && !hasAuthor) {
+            return null;
+        }
+        Fields fields = current;
+        if (!properties.isEnabled() || fields == null || hasWildcard(title) || hasWildcard(author)) {
+            fallbackQueries.increment();
+            return null;
+        }
+
+        Set<Long> byTitle = hasTitle ? fields.title.match(title) : null;
+        Set<Long> byAuthor = hasAuthor ? fields.author.match(author) : null;
+        Set<Long> result = intersect(byTitle, byAuthor);
+        if (result == null || result.size() > properties.getMaxCandidates()) {
+            fallbackQueries.increment();
+            return null;
+        }
+        indexedQueries.increment();
+        return result;
+    }
+
+    /**
+     * 记录新增或修改的图书；在事务中调用时提交后才生效
+     */
+    public void onSaved(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        afterCommit(() -> apply(book.getId(), book));
+    }
+
+    /**
+     * 记录部分字段更新的图书，changes 中为空的字段保持索引中原有的内容
+     */
+    public void onUpdated(Book changes) {
+        if (changes == null || changes.getId() == null) {
+            return;
+        }
+        afterCommit(() -> applyChanges(changes));
+    }
+
+    /**
+     * 记录删除的图书；在事务中调用时提交后才生效
+     */
+    public void onDeleted(Long id) {
+        afterCommit(() -> apply(id, null));
+    }
+
+    /**
+     * 全量重建索引
+     *
+     * @param scanner 接收一个图书消费者并逐条推送全部图书（只需 id、title、author）
+     */
+    public void rebuild(Consumer<Consumer<Book>> scanner) {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            Fields next = new Fields();
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            try {
+                scanner.accept(book -> next.put(book.getId(), book));
+                synchronized (this) {
+                    pending.forEach(change -> change.accept(next));
+                    current = next;
+                }
+            } finally {
+                synchronized (this) {
+                    pending = null;
+                }
+            }
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            log.info("Book search index rebuilt with {} titles in {} ms", next.title.documentCount(), lastRebuildMillis);
+        }
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public SearchIndexStatsDTO stats() {
+        Fields fields = current;
+        SearchIndexStatsDTO stats = new SearchIndexStatsDTO();
+        stats.setReady(fields != null);
+        if (fields != null) {
+            stats.setTitleDocuments(fields.title.documentCount());
+            stats.setTitleTerms(fields.title.termCount());
+            stats.setAuthorDocuments(fields.author.documentCount());
+            stats.setAuthorTerms(fields.author.termCount());
+        }
+        stats.setIndexedQueries(indexedQueries.sum());
+        stats.setFallbackQueries(fallbackQueries.sum());
+        stats.setLastRebuildMillis(lastRebuildMillis);
+        return stats;
+    }
+
+    private void apply(Long id, Book book) {
+        record(fields -> fields.apply(id, book));
+    }
+
+    private void applyChanges(Book changes) {
+        record(fields -> fields.applyChanges(changes));
+    }
+
+    private synchronized void record(Consumer<Fields> change) {
+        Fields fields = current;
+        if (fields != null) {
+            change.accept(fields);
+        }
+        if (pending != null) {
+            pending.add(change);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Set<Long> intersect(Set<Long> a, Set<Long> b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        Set<Long> result = new HashSet<>(a.size() <= b.size() ? a : b);
+        result.retainAll(a.size() <= b.size() ? b : a);
+        return result;
+    }
+
+    /**
+     * LIKE 的通配符和转义符在索引中没有对应语义
+     */
+    private static boolean hasWildcard(String keyword) {
+        return keyword != null && (keyword.indexOf('%') >= 0 || keyword.indexOf('_') >= 0 || keyword.indexOf('\\') >= 0);
+    }
+
+    private static final class Fields {
+        private final NGramIndex title = new NGramIndex();
+        private final NGramIndex author = new NGramIndex();
+
+        private void put(Long id, Book book) {
+            title.put(id, book.getTitle());
+            author.put(id, book.getAuthor());
+        }
+
+        private void apply(Long id, Book book) {
+            if (book == null) {
+                title.remove(id);
+                author.remove(id);
+            } else {
+                put(id, book);
+            }
+        }
+
+        /**
+         * 只更新非空字段；行不在索引中（例如已删除）时忽略
+         */
+        private void applyChanges(Book changes) {
+            Long id = changes.getId();
+            if (!title.contains(id) && !author.contains(id)) {
+                return;
+            }
+            if (changes.getTitle() != null) {
+                title.put(id, changes.getTitle());
+            }
+            if (changes.getAuthor() != null) {
+                author.put(id, changes.getAuthor());
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.book.search;
+
+import com.book.config.SearchProperties;
+import com.book.mapper.BooksMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时流式扫描 books 表构建倒排索引，之后定期全量重建
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookSearchIndexLoader {
+
+    private final BookSearchIndex bookSearchIndex;
+    private final SearchProperties properties;
+    private final BooksMapper booksMapper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${book.search.rebuild-interval:PT6H}",
+            fixedDelayString = "${book.search.rebuild-interval:PT6H}")
+    public void rebuild() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            bookSearchIndex.rebuild(sink -> booksMapper.scanSearchFields(context -> sink.accept(context.getResultObject())));
+        } catch (RuntimeException e) {
+            // 构建失败时继续使用旧索引，未就绪则所有查询都走 LIKE
+            log.error("Failed to rebuild book search index", e);
+        }
+    }
+}
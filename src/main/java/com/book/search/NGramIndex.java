@@ -0,0 +1,102 @@
+package com.book.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个字段的倒排索引
+ * <p>
+ * 读操作无锁；写操作由调用方串行化。
+ */
+class NGramIndex {
+
+    private final Map<Long, String> documents = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    void put(Long id, String text) {
+        remove(id);
+        String normalized = NGramTokenizer.normalize(text);
+        if (normalized == null || normalized.isEmpty()) {
+            return;
+        }
+        documents.put(id, normalized);
+        for (String gram : NGramTokenizer.grams(normalized)) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    void remove(Long id) {
+        String previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : NGramTokenizer.grams(previous)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram, ids);
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回包含查询词的文档ID：先按词项求交集，再用原文校验排除二元词项拼接出的误命中；
+     * 查询词归一化后为空时无法使用索引，返回 null
+     */
+    Set<Long> match(String query) {
+        String normalized = NGramTokenizer.normalize(query);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : NGramTokenizer.queryGrams(normalized)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>();
+        for (Long id : lists.get(0)) {
+            if (containsAll(lists, id)) {
+                String document = documents.get(id);
+                if (document != null && document.contains(normalized)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    boolean contains(Long id) {
+        return documents.containsKey(id);
+    }
+
+    int documentCount() {
+        return documents.size();
+    }
+
+    int termCount() {
+        return postings.size();
+    }
+
+    private static boolean containsAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.book.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 一元/二元分词
+ * <p>
+ * 按码点切分，不依赖空格分词，中日韩文本与拉丁文本使用同一套规则。
+ * 归一化时去掉重音并转为小写，保证索引命中范围不小于数据库 _ci/_ai 排序规则下的 LIKE。
+ */
+public final class NGramTokenizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private NGramTokenizer() {
+    }
+
+    /**
+     * 归一化文本：兼容分解、去掉组合符号、转小写
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 生成已归一化文本的全部一元和二元词项
+     */
+    public static Set<String> grams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = normalized.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 1));
+            if (i + 1 < codePoints.length) {
+                grams.add(new String(codePoints, i, 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 查询词需要命中的词项：单个字符查一元词项，否则查全部二元词项
+     */
+    public static Set<String> queryGrams(String normalized) {
+        int[] codePoints = normalized.codePoints().toArray();
+        Set<String> grams = new LinkedHashSet<>();
+        if (codePoints.length == 1) {
+            grams.add(normalized);
+            return grams;
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 2));
+        }
+        return grams;
+    }
+}
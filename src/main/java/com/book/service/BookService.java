@@ -1,25 +1,73 @@
 package com.book.service;
 
+import com.book.dto.BookBatchResult;
 import com.book.dto.BookDTO;
+import com.book.dto.BookPatchDTO;
 import com.book.dto.BookQueryDTO;
+import com.book.dto.BulkCreateResult;
+import com.book.dto.BulkPatchResult;
 import com.book.dto.PageResult;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookService {
     BookDTO createBook(BookDTO bookDTO);
 
+    /**
+     * 批量创建书籍，返回按请求顺序排列的逐条结果
+     */
+    BulkCreateResult createBooks(List<BookDTO> bookDTOs);
+
     BookDTO getBookById(Long id);
 
+    /**
+     * 按ID批量查询，结果按请求顺序排列并列出不存在的ID
+     */
+    BookBatchResult getBooksByIds(List<Long> ids);
+
     PageResult<BookDTO> listBooks(BookQueryDTO queryDTO);
 
-    List<BookDTO> getAllBooks();
+    /**
+     * 所有书籍；includeArchived 为 false 时只返回热表中的图书，与条件查询的默认范围一致
+     */
+    List<BookDTO> getAllBooks(boolean includeArchived);
+
+    /**
+     * 逐行读取所有书籍并交给 consumer 处理，内存占用与数据量无关；includeArchived 含义同 getAllBooks
+     */
+    void streamAllBooks(boolean includeArchived, Consumer<BookDTO> consumer);
 
     BookDTO updateBook(Long id, BookDTO bookDTO);
 
+    /**
+     * 部分更新，只写入请求中给出的字段，返回本次修改的字段
+     */
+    BookDTO patchBook(Long id, BookPatchDTO patchDTO);
+
+    /**
+     * 批量部分更新，返回按请求顺序排列的逐条结果
+     */
+    BulkPatchResult patchBooks(List<BookPatchDTO> patches);
+
     void deleteBook(Long id);
 
+    /**
+     * 预留库存，库存不足时抛出异常且不做任何修改
+     */
+    void reserveStock(Long id, int quantity);
+
+    /**
+     * 释放之前预留的库存
+     */
+    void releaseStock(Long id, int quantity);
+
     boolean isIsbnExists(String isbn);
 
     List<BookDTO> getBooksSorted(String sortBy);
+
+    /**
+     * 按排序策略取第 offset 起的 limit 条，limit 为空时返回全部；includeArchived 含义同 getAllBooks
+     */
+    List<BookDTO> getBooksSorted(String sortBy, int offset, Integer limit, boolean includeArchived);
 }
@@ -22,10 +22,14 @@ public class BookSortingContext {
     }
 
     public List<BookDTO> executeSort(String strategyName, List<BookDTO> books) {
+        return getStrategy(strategyName).sort(books);
+    }
+
+    public SortingStrategy getStrategy(String strategyName) {
         SortingStrategy strategy = strategies.get(strategyName + "SortingStrategy");
         if (strategy == null) {
             throw new IllegalArgumentException("Unknown sorting strategy: " + strategyName);
         }
-        return strategy.sort(books);
+        return strategy;
     }
 }
\ No newline at end of file
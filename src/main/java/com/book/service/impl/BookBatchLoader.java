@@ -0,0 +1,170 @@
+package com.book.service.impl;
+
+import com.book.config.BatchProperties;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 合并并发的单个ID查询
+ * <p>
+ * 时间窗口内到达的 load 调用收集到同一批，窗口结束或达到批次上限时执行一次 findByIds，
+ * 再把结果分发给各个调用方。同一批内相同的ID只查询一次。
+ * <p>
+ * 合并查询在加载线程上执行，不在调用方事务内：只读事务中的调用只与只读调用合并，
+ * 并在加载线程上开启只读事务，保持读从库的路由。等待超过 timeout 时调用方自己执行 findById。
+ */
+@Slf4j
+@Component
+public class BookBatchLoader {
+
+    private final BooksMapper booksMapper;
+
+    private final BatchProperties.Loader properties;
+
+    private final TransactionTemplate readOnlyTemplate;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private Batch pendingReadOnly;
+
+    private Batch pendingReadWrite;
+
+    public BookBatchLoader(BooksMapper booksMapper, BatchProperties properties,
+                           PlatformTransactionManager transactionManager) {
+        this.booksMapper = booksMapper;
+        this.properties = properties.getLoader();
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(this.properties.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "book-loader-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 查询单个ID，阻塞到所在批次查询完成；超过 timeout 时改为直接查询
+     *
+     * @param id 图书ID
+     * @return 图书，不存在时返回 null
+     */
+    public Book load(Long id) {
+        CompletableFuture<Book> future = enqueue(id, TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        try {
+            return future.get(properties.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Batched load of book {} timed out, querying directly", id);
+            return booksMapper.findById(id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return booksMapper.findById(id);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private CompletableFuture<Book> enqueue(Long id, boolean readOnly) {
+        Batch full = null;
+        CompletableFuture<Book> future;
+        synchronized (this) {
+            Batch pending = readOnly ? pendingReadOnly : pendingReadWrite;
+            if (pending == null) {
+                Batch batch = new Batch(readOnly);
+                batch.timer = executor.schedule(() -> dispatch(batch), properties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+                pending = batch;
+            }
+            future = pending.futures.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (pending.futures.size() >= properties.getMaxBatchSize()) {
+                full = pending;
+                pending = null;
+            }
+            if (readOnly) {
+                pendingReadOnly = pending;
+            } else {
+                pendingReadWrite = pending;
+            }
+        }
+        if (full != null) {
+            full.timer.cancel(false);
+            Batch batch = full;
+            executor.execute(() -> dispatch(batch));
+        }
+        return future;
+    }
+
+    private void dispatch(Batch batch) {
+        if (!batch.dispatched.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            if (pendingReadOnly == batch) {
+                pendingReadOnly = null;
+            }
+            if (pendingReadWrite == batch) {
+                pendingReadWrite = null;
+            }
+        }
+        try {
+            List<Long> ids = new ArrayList<>(batch.futures.keySet());
+            List<Book> books = batch.readOnly
+                    ? readOnlyTemplate.execute(status -> booksMapper.findByIds(ids))
+                    : booksMapper.findByIds(ids);
+            Map<Long, Book> found = new HashMap<>();
+            for (Book book : books) {
+                found.put(book.getId(), book);
+            }
+            batch.futures.forEach((id, future) -> future.complete(found.get(id)));
+        } catch (RuntimeException e) {
+            log.warn("Batched findByIds of {} ids failed", batch.futures.size(), e);
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 同一时间窗口内收集的请求；futures 只在持有外部锁且批次仍为 pending 时修改
+     */
+    private static final class Batch {
+        private final Map<Long, CompletableFuture<Book>> futures = new LinkedHashMap<>();
+        private final AtomicBoolean dispatched = new AtomicBoolean();
+        private final boolean readOnly;
+        private ScheduledFuture<?> timer;
+
+        private Batch(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,217 @@
+package com.book.service.impl;
+
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.sharding.BookShards;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 以 JDBC 批量方式执行部分字段更新
+ * <p>
+ * 使用 BATCH 执行器，连续的相同 SQL 会合并为一个 PreparedStatement 的多次 addBatch，
+ * 因此调用方应按 {@link #shapeOf(Book)} 分组后再提交。这里自己创建 SqlSessionTemplate 而不注册为 Bean，
+ * 以免替换掉 MyBatis 自动配置的默认模板。开启分片时按ID中编码的分片号分组，在各分片上分别批量执行。
+ * 库存日志检查点与增量写在同一个库：分片时每个分片各保存一份，在该分片的事务中提交。
+ */
+@Component
+public class BookBatchWriter {
+
+    private final SqlSessionTemplate batchSqlSessionTemplate;
+
+    /**
+     * 分片模式下每个分片一个批量模板，下标即分片号；未分片时只有默认模板
+     */
+    private final List<SqlSessionTemplate> shardTemplates;
+
+    private final ToIntFunction<Long> shardOf;
+
+    public BookBatchWriter(SqlSessionFactory sqlSessionFactory) {
+        this(sqlSessionFactory, null);
+    }
+
+    @Autowired
+    public BookBatchWriter(SqlSessionFactory sqlSessionFactory, @Nullable BookShards bookShards) {
+        this.batchSqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        if (bookShards == null) {
+            this.shardTemplates = Collections.singletonList(batchSqlSessionTemplate);
+            this.shardOf = id -> 0;
+        } else {
+            this.shardTemplates = bookShards.getSessionFactories().stream()
+                    .map(factory -> new SqlSessionTemplate(factory, ExecutorType.BATCH))
+                    .collect(Collectors.toList());
+            this.shardOf = bookShards.getKeys()::shardOf;
+        }
+    }
+
+    /**
+     * 批量执行 update，返回每条语句匹配的行数
+     * <p>
+     * 必须在事务中调用，且同一事务中不能先使用默认（SIMPLE）执行器访问数据库；
+     * 驱动未返回逐条结果时对应位置为 {@link java.sql.Statement#SUCCESS_NO_INFO}。
+     */
+    public int[] update(List<Book> books) {
+        requireTransaction();
+        int[] counts = new int[books.size()];
+        execute(books, Book::getId, BooksMapper::update, counts);
+        return counts;
+    }
+
+    /**
+     * 批量写回库存增量，并在每个库记录日志检查点；同样必须在事务中调用
+     * <p>
+     * 分片事务逐个提交，某个分片提交失败时其余分片可能已经提交，
+     * 各分片的检查点与本分片的增量一起提交或回滚，恢复时按各自的检查点重放，不会重复叠加。
+     *
+     * @return 每个ID匹配的行数，顺序与 deltas 的遍历顺序一致；0 表示图书不存在或扣减后库存为负，未写入
+     */
+    public int[] addStock(Map<Long, Long> deltas, long checkpoint) {
+        requireTransaction();
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+        int[] counts = new int[entries.size()];
+        execute(entries, Map.Entry::getKey, (mapper, entry) -> mapper.addStock(entry.getKey(), entry.getValue()), counts);
+        for (SqlSessionTemplate template : shardTemplates) {
+            template.getMapper(BooksMapper.class).saveStockCheckpoint(checkpoint);
+            template.flushStatements();
+        }
+        return counts;
+    }
+
+    /**
+     * 把归档表中的一本图书迁回所在库的热表，与批量更新在同一事务中执行
+     *
+     * @return 图书是否已在热表中（本次迁回或被并发请求迁回）
+     * @throws DuplicateKeyException 该图书的ISBN已被热表中的另一本书占用，归档的图书保持原样
+     */
+    public boolean restoreFromArchive(Long id) {
+        requireTransaction();
+        int shard = shardOf.applyAsInt(id);
+        if (shard < 0) {
+            return false;
+        }
+        SqlSessionTemplate template = shardTemplates.get(shard);
+        BooksMapper mapper = template.getMapper(BooksMapper.class);
+        List<BatchResult> results;
+        try {
+            mapper.restoreFromArchive(id);
+            results = template.flushStatements();
+        } catch (DuplicateKeyException e) {
+            // 主键冲突说明并发请求已经迁回；否则是ISBN冲突
+            if (mapper.findStockById(id) != null) {
+                return true;
+            }
+            throw e;
+        }
+        if (results.isEmpty() || results.get(0).getUpdateCounts()[0] == 0) {
+            return false;
+        }
+        mapper.deleteArchived(id);
+        template.flushStatements();
+        return true;
+    }
+
+    /**
+     * 读取每个库的库存日志检查点
+     */
+    public StockCheckpoints findStockCheckpoints() {
+        long[] segments = new long[shardTemplates.size()];
+        for (int shard = 0; shard < segments.length; shard++) {
+            Long saved = shardTemplates.get(shard).getMapper(BooksMapper.class).findStockCheckpoint();
+            segments[shard] = saved == null ? -1 : saved;
+        }
+        return new StockCheckpoints(segments, shardOf);
+    }
+
+    /**
+     * 按分片分组执行，把每个分片返回的行数填回 counts 中对应的位置；不属于任何分片的ID计为 0
+     */
+    private <T> void execute(List<T> items, Function<T, Long> idOf, BiConsumer<BooksMapper, T> statement, int[] counts) {
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            int shard = shardOf.applyAsInt(idOf.apply(items.get(i)));
+            if (shard >= 0) {
+                byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+            }
+        }
+        byShard.forEach((shard, indexes) -> {
+            SqlSessionTemplate template = shardTemplates.get(shard);
+            BooksMapper mapper = template.getMapper(BooksMapper.class);
+            indexes.forEach(i -> statement.accept(mapper, items.get(i)));
+            int next = 0;
+            for (BatchResult result : template.flushStatements()) {
+                for (int count : result.getUpdateCounts()) {
+                    counts[indexes.get(next++)] = count;
+                }
+            }
+        });
+    }
+
+    private static void requireTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Batch update requires an active transaction");
+        }
+    }
+
+    /**
+     * 各库已提交的库存日志检查点，下标为分片号；未保存过时为 -1
+     */
+    public static final class StockCheckpoints {
+
+        private final long[] segments;
+
+        private final ToIntFunction<Long> shardOf;
+
+        public StockCheckpoints(long[] segments, ToIntFunction<Long> shardOf) {
+            this.segments = segments.clone();
+            this.shardOf = shardOf;
+        }
+
+        /**
+         * 所有库中最小的检查点，之后的日志段都需要读取
+         */
+        public long min() {
+            return Arrays.stream(segments).min().orElse(-1);
+        }
+
+        /**
+         * 图书所在库的检查点；不属于任何分片的图书返回 Long.MAX_VALUE，不再重放
+         */
+        public long of(Long id) {
+            int shard = shardOf.applyAsInt(id);
+            return shard < 0 ? Long.MAX_VALUE : segments[shard];
+        }
+    }
+
+    /**
+     * 更新语句的形状：非空字段及是否带版本条件的组合，形状相同的记录生成相同的 SQL
+     */
+    public static int shapeOf(Book book) {
+        int shape = 0;
+        Object[] columns = {book.getTitle(), book.getAuthor(), book.getPublicationDate(),
+                book.getIsbn(), book.getQuantity(), book.getCategory(), book.getBookType(), book.getVersion()};
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                shape |= 1 << i;
+            }
+        }
+        return shape;
+    }
+}
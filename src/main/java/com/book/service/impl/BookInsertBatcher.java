@@ -0,0 +1,212 @@
+package com.book.service.impl;
+
+import com.book.category.CategoryDictionary;
+import com.book.config.BulkProperties;
+import com.book.datasource.ReadYourWrites;
+import com.book.exception.BusinessException;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 合并提交并发的单本插入
+ * <p>
+ * 时间窗口内到达的 insert 调用收集到同一批，窗口结束或达到批次上限时在一个事务中执行一条多行 INSERT，
+ * 所有调用方共享一次提交。某一行违反约束（如ISBN重复）时整条语句失败，
+ * 此时在同一事务中逐行重试，只让出错的行失败，其余行照常提交。
+ * 等待超过 timeout 时，批次尚未执行则撤回该行，由调用方自己插入。
+ */
+@Slf4j
+@Component
+public class BookInsertBatcher {
+
+    private final BooksMapper booksMapper;
+
+    private final CategoryDictionary categoryDictionary;
+
+    private final BulkProperties.GroupCommit properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private Batch pending;
+
+    public BookInsertBatcher(BooksMapper booksMapper, CategoryDictionary categoryDictionary, BulkProperties properties,
+                             PlatformTransactionManager transactionManager) {
+        this.booksMapper = booksMapper;
+        this.categoryDictionary = categoryDictionary;
+        this.properties = properties.getGroupCommit();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(this.properties.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "book-inserter-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 插入单本图书，阻塞到所在批次提交；返回 true 时 book.id 已回填
+     *
+     * @return 等待超时且批次尚未执行时撤回该行并返回 false，由调用方自己插入
+     * @throws DataIntegrityViolationException 本行违反约束，例如ISBN重复
+     * @throws BusinessException 批次已开始执行但超时仍未提交，结果未知
+     */
+    public boolean insert(Book book) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Batch batch = enqueue(book, future);
+        try {
+            future.get(properties.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            // 插入在批次线程上执行，由调用方为自己的客户端记录写入
+            ReadYourWrites.markWrite();
+            return true;
+        } catch (TimeoutException e) {
+            if (withdraw(batch, future)) {
+                log.debug("Group insert of book {} was not dispatched in time, inserting directly", book.getIsbn());
+                return false;
+            }
+            throw BusinessException.bookCreateFailed("合并提交超时，请按ISBN查询确认是否已创建");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (withdraw(batch, future)) {
+                return false;
+            }
+            throw BusinessException.bookCreateFailed("等待合并提交时被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Batch enqueue(Book book, CompletableFuture<Void> future) {
+        Batch full = null;
+        Batch joined;
+        synchronized (this) {
+            if (pending == null) {
+                Batch batch = new Batch();
+                batch.timer = executor.schedule(() -> dispatch(batch), properties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+                pending = batch;
+            }
+            joined = pending;
+            pending.books.add(book);
+            pending.futures.add(future);
+            if (pending.books.size() >= properties.getMaxBatchSize()) {
+                full = pending;
+                pending = null;
+            }
+        }
+        if (full != null) {
+            full.timer.cancel(false);
+            Batch batch = full;
+            executor.execute(() -> dispatch(batch));
+        }
+        return joined;
+    }
+
+    /**
+     * 从尚未执行的批次中撤回一行
+     *
+     * @return 批次已开始执行时返回 false
+     */
+    private synchronized boolean withdraw(Batch batch, CompletableFuture<Void> future) {
+        if (batch.dispatched) {
+            return false;
+        }
+        // Book 按字段比较相等，按 future 的位置删除
+        int index = batch.futures.indexOf(future);
+        batch.books.remove(index);
+        batch.futures.remove(index);
+        return true;
+    }
+
+    private void dispatch(Batch batch) {
+        synchronized (this) {
+            if (batch.dispatched) {
+                return;
+            }
+            batch.dispatched = true;
+            if (pending == batch) {
+                pending = null;
+            }
+        }
+        if (batch.books.isEmpty()) {
+            return;
+        }
+        Map<Book, RuntimeException> failures = new IdentityHashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertAll(batch.books, failures));
+        } catch (RuntimeException e) {
+            log.warn("Group insert of {} books failed", batch.books.size(), e);
+            batch.futures.forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        // 事务提交后才通知调用方
+        for (int i = 0; i < batch.books.size(); i++) {
+            RuntimeException failure = failures.get(batch.books.get(i));
+            if (failure == null) {
+                batch.futures.get(i).complete(null);
+            } else {
+                batch.futures.get(i).completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void insertAll(List<Book> books, Map<Book, RuntimeException> failures) {
+        // 新分类在批次的事务中分配，调用方的事务不写字典表，避免与批次互相等待
+        categoryDictionary.register(books.stream().map(Book::getCategory).collect(Collectors.toList()));
+        try {
+            booksMapper.insertBatch(books);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Group insert of {} books violated a constraint, retrying row by row", books.size());
+            for (Book book : books) {
+                try {
+                    booksMapper.insertBatch(Collections.singletonList(book));
+                } catch (DataIntegrityViolationException violation) {
+                    failures.put(book, violation);
+                }
+            }
+        }
+    }
+
+    /**
+     * 同一时间窗口内收集的插入，按到达顺序排列；只在持有外部锁且批次尚未执行时修改
+     */
+    private static final class Batch {
+        private final List<Book> books = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private boolean dispatched;
+        private ScheduledFuture<?> timer;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,19 +1,75 @@
 package com.book.service.impl;
 
+import com.book.archive.BookArchiver;
+import com.book.cache.BookCache;
+import com.book.cache.BooksTableVersion;
+import com.book.cache.CountCache;
+import com.book.cache.IsbnBloomFilter;
+import com.book.cache.NegativeIdCache;
+import com.book.cache.QueryResultCache;
+import com.book.category.CategoryDictionary;
+import com.book.config.BatchProperties;
+import com.book.config.BulkProperties;
+import com.book.config.CountProperties;
+import com.book.config.InventoryProperties;
+import com.book.config.SortProperties;
 import com.book.convert.BookMapper;
+import com.book.dto.BookBatchResult;
 import com.book.dto.BookDTO;
+import com.book.dto.BookPatchDTO;
 import com.book.dto.BookQueryDTO;
+import com.book.dto.BulkCreateResult;
+import com.book.dto.BulkItemResult;
+import com.book.dto.BulkPatchResult;
+import com.book.dto.PageCursor;
 import com.book.dto.PageResult;
+import com.book.enm.BookSortField;
+import com.book.enm.CountExecution;
+import com.book.enm.CountMode;
+import com.book.exception.BusinessException;
+import com.book.factory.BookFactoryContext;
+import com.book.inventory.StockWriteBehind;
 import com.book.mapper.BooksMapper;
 import com.book.po.Book;
+import com.book.po.BookWithTotal;
+import com.book.search.BookSearchIndex;
 import com.book.service.BookService;
 import com.book.service.context.BookSortingContext;
+import com.book.strategy.SortingStrategy;
+import com.book.strategy.TopKSelector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,107 +78,845 @@ import java.util.stream.Collectors;
 public class BookServiceImpl implements BookService {
 
     private final BooksMapper booksMapper;
+    private final BookCache bookCache;
+    private final NegativeIdCache negativeIdCache;
+    private final CountCache countCache;
+    private final QueryResultCache queryResultCache;
+    private final BooksTableVersion booksTableVersion;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookArchiver bookArchiver;
+    private final CountProperties countProperties;
+    private final CountQueryExecutor countQueryExecutor;
+    private final IsbnBloomFilter isbnBloomFilter;
     private final BookMapper bookMapper;
     private final BookSortingContext bookSortingContext;
+    private final CategoryDictionary categoryDictionary;
+    private final BookFactoryContext bookFactoryContext;
+    private final BulkProperties bulkProperties;
+    private final BatchProperties batchProperties;
+    private final BookBatchLoader bookBatchLoader;
+    private final BookBatchWriter bookBatchWriter;
+    private final BookInsertBatcher bookInsertBatcher;
+    private final InventoryProperties inventoryProperties;
+    private final StockWriteBehind stockWriteBehind;
+    private final SortProperties sortProperties;
+    private final Validator validator;
+
+    /**
+     * 首次执行窗口函数失败后置为 false，之后不再尝试
+     */
+    private volatile boolean windowFunctionSupported = true;
 
     @Override
     @Transactional
     public BookDTO createBook(BookDTO bookDTO) {
         log.info("Creating new book with title: {}", bookDTO.getTitle());
 
-        // 验证ISBN唯一性
-        if (isIsbnExists(bookDTO.getIsbn())) {
-            throw new RuntimeException("ISBN already exists: " + bookDTO.getIsbn());
+        // 验证ISBN唯一性；合并提交时不预查，避免等待批次期间占用连接，重复由唯一索引在批次中拒绝
+        boolean groupCommit = bookInsertBatcher.isEnabled();
+        if (!groupCommit && isIsbnExists(bookDTO.getIsbn())) {
+            throw BusinessException.isbnExists(bookDTO.getIsbn());
         }
 
         Book book = bookMapper.toEntity(bookDTO);
-        booksMapper.insert(book);
+        assignPartition(book);
+        try {
+            // 合并提交时与并发的创建请求合并为一条多行 INSERT，共享一次提交；批次超时未执行时单独插入
+            if (!groupCommit || !bookInsertBatcher.insert(book)) {
+                registerCategories(Collections.singletonList(book));
+                booksMapper.insert(book);
+            }
+        } catch (DuplicateKeyException e) {
+            throw BusinessException.isbnExists(bookDTO.getIsbn());
+        }
+        negativeIdCache.invalidate(book.getId());
+        isbnBloomFilter.put(book.getIsbn());
+        bookSearchIndex.onSaved(book);
+        booksTableVersion.bump();
 
         return bookMapper.toDTO(book);
     }
 
+    @Override
+    @Transactional
+    public BulkCreateResult createBooks(List<BookDTO> bookDTOs) {
+        if (bookDTOs == null || bookDTOs.isEmpty()) {
+            throw BusinessException.invalidParameter("books", "导入列表不能为空");
+        }
+        if (bookDTOs.size() > bulkProperties.getMaxItems()) {
+            throw BusinessException.invalidParameter("books", "单次最多导入" + bulkProperties.getMaxItems() + "条");
+        }
+        log.info("Bulk creating {} books", bookDTOs.size());
+
+        BulkItemResult[] results = new BulkItemResult[bookDTOs.size()];
+
+        // 逐条校验，并剔除请求内重复的ISBN（保留第一次出现的记录）
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < bookDTOs.size(); i++) {
+            BookDTO bookDTO = bookDTOs.get(i);
+            String violation = validationMessage(bookDTO);
+            if (violation != null) {
+                results[i] = BulkItemResult.failure(i, bookDTO == null ? null : bookDTO.getIsbn(), violation);
+            } else if (candidates.putIfAbsent(bookDTO.getIsbn(), i) != null) {
+                results[i] = BulkItemResult.failure(i, bookDTO.getIsbn(), "请求中ISBN重复");
+            }
+        }
+
+        // 集合查询已存在的ISBN
+        int chunkSize = bulkProperties.getChunkSize();
+        List<String> isbns = new ArrayList<>(candidates.keySet());
+        for (int from = 0; from < isbns.size(); from += chunkSize) {
+            List<String> chunk = isbns.subList(from, Math.min(from + chunkSize, isbns.size()));
+            for (String existing : booksMapper.findExistingIsbns(chunk)) {
+                Integer index = candidates.remove(existing);
+                if (index != null) {
+                    results[index] = BulkItemResult.failure(index, existing, "ISBN已存在");
+                }
+            }
+        }
+
+        // 分块多行插入
+        List<Integer> indexes = new ArrayList<>(candidates.values());
+        for (int from = 0; from < indexes.size(); from += chunkSize) {
+            List<Integer> chunkIndexes = indexes.subList(from, Math.min(from + chunkSize, indexes.size()));
+            List<Book> chunk = chunkIndexes.stream()
+                    .map(index -> {
+                        Book book = bookMapper.toEntity(bookDTOs.get(index));
+                        assignPartition(book);
+                        return book;
+                    })
+                    .collect(Collectors.toList());
+            registerCategories(chunk);
+            insertChunk(chunkIndexes, chunk, results);
+        }
+        if (!indexes.isEmpty()) {
+            booksTableVersion.bump();
+        }
+
+        return BulkCreateResult.of(Arrays.asList(results));
+    }
+
+    /**
+     * 插入一个分块；若期间有并发写入导致ISBN冲突，则退化为逐条插入，只让冲突的记录失败
+     */
+    private void insertChunk(List<Integer> indexes, List<Book> books, BulkItemResult[] results) {
+        try {
+            booksMapper.insertBatch(books);
+            books.forEach(book -> {
+                negativeIdCache.invalidate(book.getId());
+                isbnBloomFilter.put(book.getIsbn());
+                bookSearchIndex.onSaved(book);
+            });
+            for (int i = 0; i < books.size(); i++) {
+                results[indexes.get(i)] = BulkItemResult.success(indexes.get(i), books.get(i).getIsbn(), books.get(i).getId());
+            }
+        } catch (DuplicateKeyException e) {
+            log.warn("Duplicate ISBN in bulk chunk, falling back to row-by-row insert");
+            for (int i = 0; i < books.size(); i++) {
+                Book book = books.get(i);
+                int index = indexes.get(i);
+                try {
+                    booksMapper.insertBatch(Collections.singletonList(book));
+                    negativeIdCache.invalidate(book.getId());
+                    isbnBloomFilter.put(book.getIsbn());
+                    bookSearchIndex.onSaved(book);
+                    results[index] = BulkItemResult.success(index, book.getIsbn(), book.getId());
+                } catch (DuplicateKeyException duplicate) {
+                    results[index] = BulkItemResult.failure(index, book.getIsbn(), "ISBN已存在");
+                }
+            }
+        }
+    }
+
+    private <T> String validationMessage(T dto) {
+        if (dto == null) {
+            return "记录不能为空";
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining(", "));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public BookDTO getBookById(Long id) {
         log.debug("Fetching book with id: {}", id);
-        Book book = booksMapper.findById(id);
-        if (book == null) {
-            throw new RuntimeException("Book not found with id: " + id);
+        if (negativeIdCache.isKnownMissing(id)) {
+            throw BusinessException.bookNotFound(id);
         }
-        return bookMapper.toDTO(book);
+        long version = negativeIdCache.currentVersion();
+        BookDTO book = bookCache.get(id, key -> {
+            // 开启合并查询时，并发的单个查询会在短时间窗口内合并为一次 IN 查询
+            Book found = bookBatchLoader.isEnabled() ? bookBatchLoader.load(key) : booksMapper.findById(key);
+            if (found == null) {
+                // 热表未命中再查归档表
+                found = findArchived(key);
+            }
+            if (found == null) {
+                negativeIdCache.markMissing(key, version);
+                throw BusinessException.bookNotFound(key);
+            }
+            return bookMapper.toDTO(found);
+        });
+        return withPendingStock(book);
+    }
+
+    /**
+     * 库存写回开启时，库存为数据库中的值加上尚未写回的增量；缓存中的对象不做修改
+     */
+    private BookDTO withPendingStock(BookDTO book) {
+        Long available = stockWriteBehind.isEnabled() ? stockWriteBehind.available(book.getId()) : null;
+        if (available == null || Objects.equals(available.intValue(), book.getStockQuantity())) {
+            return book;
+        }
+        return book.toBuilder().stockQuantity(available.intValue()).build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BookBatchResult getBooksByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw BusinessException.invalidParameter("ids", "不能为空");
+        }
+        if (ids.size() > batchProperties.getMaxIds()) {
+            throw BusinessException.invalidParameter("ids", "单次最多查询" + batchProperties.getMaxIds() + "个");
+        }
+
+        // 去重并保持请求顺序，先取缓存，已知不存在的直接记为缺失
+        Map<Long, BookDTO> found = new LinkedHashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            BookDTO cached = bookCache.getIfPresent(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else if (!negativeIdCache.isKnownMissing(id)) {
+                toLoad.add(id);
+            }
+        }
+
+        long version = negativeIdCache.currentVersion();
+        int chunkSize = batchProperties.getChunkSize();
+        for (int from = 0; from < toLoad.size(); from += chunkSize) {
+            List<Long> chunk = toLoad.subList(from, Math.min(from + chunkSize, toLoad.size()));
+            for (Book book : booksMapper.findByIds(chunk)) {
+                found.put(book.getId(), bookMapper.toDTO(book));
+            }
+            List<Long> cold = chunk.stream().filter(id -> !found.containsKey(id)).collect(Collectors.toList());
+            if (!cold.isEmpty()) {
+                for (Book book : booksMapper.findArchivedByIds(cold)) {
+                    found.put(book.getId(), bookMapper.toDTO(book));
+                }
+            }
+        }
+
+        List<BookDTO> books = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            BookDTO book = found.get(id);
+            if (book != null) {
+                books.add(book);
+            } else {
+                missingIds.add(id);
+                negativeIdCache.markMissing(id, version);
+            }
+        }
+        return new BookBatchResult(books, missingIds);
     }
 
     @Override
     @Transactional(readOnly = true)
     public PageResult<BookDTO> listBooks(BookQueryDTO queryDTO) {
         log.debug("Fetching paginated books with query: {}", queryDTO);
+        return queryResultCache.get(queryDTO, () -> queryBooks(queryDTO));
+    }
 
-        // 计算分页偏移量
-        int offset = (queryDTO.getPageNum() - 1) * queryDTO.getPageSize();
-        queryDTO.setPageNum(offset);
+    private PageResult<BookDTO> queryBooks(BookQueryDTO queryDTO) {
+        BookSortField sortField = queryDTO.getSortField();
+        boolean descending = queryDTO.isDescending();
+        // 出版日期范围早于归档分界或显式要求时才读归档表
+        boolean archiveTier = bookArchiver.needsArchive(queryDTO);
+        queryDTO.includeArchiveTier(archiveTier);
+        // 书名/作者关键字优先由倒排索引解析为候选ID，避免 LIKE '%x%' 全表扫描；归档的图书不在索引中
+        Set<Long> candidateIds = archiveTier ? null : bookSearchIndex.search(queryDTO.getTitle(), queryDTO.getAuthor());
+        if (candidateIds != null) {
+            queryDTO.restrictToIds(candidateIds);
+        }
+        // 带分类条件时只查询该分类所在的分区
+        queryDTO.restrictToBookType(bookFactoryContext.partitionOf(queryDTO.getCategory()));
+        if (StringUtils.hasText(queryDTO.getAfter())) {
+            return listBooksAfter(queryDTO, sortField, descending);
+        }
 
-        // 执行查询
-        List<Book> books = booksMapper.findByCondition(queryDTO);
-        long total = booksMapper.countByCondition(queryDTO);
+        CountMode countMode = queryDTO.getCountMode();
+        int pageNum = queryDTO.getPageNum();
+        int pageSize = queryDTO.getPageSize();
+        List<Book> books;
+        PageResult<BookDTO> pageResult;
+        if (countMode == CountMode.EXACT || countMode == CountMode.CACHED) {
+            PagedBooks page = fetchWithTotal(queryDTO, countMode == CountMode.CACHED);
+            books = page.books;
+            pageResult = page.total == null
+                    ? PageResult.withoutTotal(toDTOList(books), pageNum, pageSize, page.hasNext)
+                    : new PageResult<>(toDTOList(books), page.total, pageNum, pageSize);
+        } else {
+            // 多取一行判断是否有下一页，不执行COUNT
+            books = booksMapper.findByCondition(queryDTO, pageSize + 1);
+            boolean hasNext = books.size() > pageSize;
+            if (hasNext) {
+                books = books.subList(0, pageSize);
+            }
+            Long estimate = countMode == CountMode.APPROXIMATE ? estimateTotal(queryDTO) : null;
+            if (estimate == null) {
+                pageResult = PageResult.withoutTotal(toDTOList(books), pageNum, pageSize, hasNext);
+            } else {
+                // 估算值可能小于已经读到的行数，以实际读到的为下限
+                long lowerBound = (long) queryDTO.getOffset() + books.size() + (hasNext ? 1 : 0);
+                pageResult = new PageResult<>(toDTOList(books), Math.max(estimate, lowerBound), pageNum, pageSize);
+                pageResult.setHasNext(hasNext);
+                pageResult.setTotalApproximate(true);
+            }
+        }
 
-        // 转换为DTO
-        List<BookDTO> bookDTOs = books.stream()
+        // 附带游标，客户端可从任意页切换到键集分页
+        if (pageResult.isHasNext() && !books.isEmpty()) {
+            pageResult.setNextCursor(PageCursor.of(sortField, descending, books.get(books.size() - 1)).encode());
+        }
+        return pageResult;
+    }
+
+    /**
+     * 按配置的执行方式查询分页数据和精确总数
+     */
+    private PagedBooks fetchWithTotal(BookQueryDTO queryDTO, boolean cached) {
+        CountExecution execution = countProperties.getExecution();
+        if (execution == CountExecution.PARALLEL) {
+            return fetchParallel(queryDTO, cached);
+        }
+        if (execution == CountExecution.WINDOW && windowFunctionSupported) {
+            try {
+                return fetchWindowed(queryDTO, cached);
+            } catch (BadSqlGrammarException e) {
+                windowFunctionSupported = false;
+                log.warn("Database does not support COUNT(*) OVER(), falling back to sequential count", e);
+            }
+        }
+        List<Book> books = booksMapper.findByCondition(queryDTO, queryDTO.getPageSize());
+        return new PagedBooks(books, countTotal(queryDTO, cached), false);
+    }
+
+    /**
+     * 总数查询提交到独立线程池，在另一个连接上与分页查询同时执行；
+     * 从开始算起超过等待预算仍未返回时放弃等待，分页数据多取一行用于判断是否有下一页。
+     * 超时的总数查询会继续执行完，CACHED 模式下其结果仍会写入缓存。
+     */
+    private PagedBooks fetchParallel(BookQueryDTO queryDTO, boolean cached) {
+        long deadline = System.nanoTime() + countProperties.getTimeout().toNanos();
+        CompletableFuture<Long> total = countQueryExecutor.submit(() -> countTotal(queryDTO, cached));
+
+        int pageSize = queryDTO.getPageSize();
+        List<Book> books = booksMapper.findByCondition(queryDTO, pageSize + 1);
+        boolean hasNext = books.size() > pageSize;
+        if (hasNext) {
+            books = books.subList(0, pageSize);
+        }
+        try {
+            return new PagedBooks(books, total.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS), hasNext);
+        } catch (TimeoutException e) {
+            log.debug("Count query exceeded {} budget, returning page without total", countProperties.getTimeout());
+            return new PagedBooks(books, null, hasNext);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new PagedBooks(books, null, hasNext);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Count query failed", e.getCause());
+        }
+    }
+
+    /**
+     * 单条语句通过 COUNT(*) OVER() 同时取得分页数据和总数
+     */
+    private PagedBooks fetchWindowed(BookQueryDTO queryDTO, boolean cached) {
+        int pageSize = queryDTO.getPageSize();
+        Long cachedTotal = cached ? countCache.getIfPresent(queryDTO) : null;
+        if (cachedTotal != null) {
+            return new PagedBooks(booksMapper.findByCondition(queryDTO, pageSize), cachedTotal, false);
+        }
+        long version = countCache.currentVersion();
+        List<BookWithTotal> rows = booksMapper.findByConditionWithTotal(queryDTO, pageSize);
+        long total;
+        if (!rows.isEmpty()) {
+            total = rows.get(0).getTotalCount();
+        } else if (queryDTO.getOffset() == 0) {
+            total = 0;
+        } else {
+            // 页码超出范围时窗口函数没有返回行，单独统计
+            total = booksMapper.countByCondition(queryDTO);
+        }
+        if (cached) {
+            countCache.put(queryDTO, version, total);
+        }
+        return new PagedBooks(new ArrayList<>(rows), total, false);
+    }
+
+    private long countTotal(BookQueryDTO queryDTO, boolean cached) {
+        return cached
+                ? countCache.get(queryDTO, () -> booksMapper.countByCondition(queryDTO))
+                : booksMapper.countByCondition(queryDTO);
+    }
+
+    /**
+     * 分页数据及其总数；total 为空表示未能在预算内取得总数，此时由 hasNext 判断是否有下一页
+     */
+    private static final class PagedBooks {
+        private final List<Book> books;
+        private final Long total;
+        private final boolean hasNext;
+
+        private PagedBooks(List<Book> books, Long total, boolean hasNext) {
+            this.books = books;
+            this.total = total;
+            this.hasNext = hasNext;
+        }
+    }
+
+    /**
+     * 估算匹配行数：无过滤条件时读取表统计信息，否则取 EXPLAIN 的 rows × filtered；无法估算时返回 null
+     */
+    private Long estimateTotal(BookQueryDTO queryDTO) {
+        try {
+            if (CountCache.isUnfiltered(queryDTO)) {
+                return booksMapper.estimateTableRows();
+            }
+            double estimate = 0;
+            for (Map<String, Object> plan : booksMapper.explainByCondition(queryDTO)) {
+                Number rows = planValue(plan, "rows");
+                Number filtered = planValue(plan, "filtered");
+                if (rows != null) {
+                    estimate += rows.doubleValue() * (filtered == null ? 100 : filtered.doubleValue()) / 100;
+                }
+            }
+            return Math.round(estimate);
+        } catch (DataAccessException e) {
+            log.warn("Failed to estimate book count, returning page without total", e);
+            return null;
+        }
+    }
+
+    private static Number planValue(Map<String, Object> plan, String column) {
+        for (Map.Entry<String, Object> entry : plan.entrySet()) {
+            if (column.equalsIgnoreCase(entry.getKey()) && entry.getValue() instanceof Number) {
+                return (Number) entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 键集分页：按游标定位起点，多取一行判断是否还有下一页，不执行COUNT
+     */
+    private PageResult<BookDTO> listBooksAfter(BookQueryDTO queryDTO, BookSortField sortField, boolean descending) {
+        PageCursor cursor = PageCursor.decode(queryDTO.getAfter());
+        if (cursor.getSortField() != sortField || cursor.isDescending() != descending) {
+            throw BusinessException.invalidParameter("after", "游标与当前排序条件不一致");
+        }
+
+        int pageSize = queryDTO.getPageSize();
+        List<Book> books = booksMapper.findByKeyset(queryDTO, cursor, pageSize + 1);
+        String nextCursor = null;
+        if (books.size() > pageSize) {
+            books = books.subList(0, pageSize);
+            nextCursor = PageCursor.of(sortField, descending, books.get(pageSize - 1)).encode();
+        }
+        return PageResult.ofCursor(toDTOList(books), pageSize, true, nextCursor);
+    }
+
+    private List<BookDTO> toDTOList(List<Book> books) {
+        return books.stream()
                 .map(bookMapper::toDTO)
                 .collect(Collectors.toList());
-
-        // 返回自定义分页结果
-        return new PageResult<>(
-                bookDTOs,
-                total,
-                queryDTO.getPageNum(),
-                queryDTO.getPageSize()
-        );
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<BookDTO> getAllBooks() {
-        log.debug("Fetching all books");
-        return booksMapper.findAll().stream()
+    public List<BookDTO> getAllBooks(boolean includeArchived) {
+        log.debug("Fetching all books, includeArchived: {}", includeArchived);
+        return booksMapper.findAll(includeArchived).stream()
                 .map(bookMapper::toDTO)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllBooks(boolean includeArchived, Consumer<BookDTO> consumer) {
+        log.debug("Streaming all books, includeArchived: {}", includeArchived);
+        try (Cursor<Book> cursor = booksMapper.findAllCursor(includeArchived)) {
+            for (Book book : cursor) {
+                consumer.accept(bookMapper.toDTO(book));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close book cursor", e);
+        }
+    }
+
     @Override
     @Transactional
     public BookDTO updateBook(Long id, BookDTO bookDTO) {
         log.info("Updating book with id: {}", id);
 
-        Book existingBook = booksMapper.findById(id);
-
-        // 验证ISBN是否被其他书籍使用
-        if (!existingBook.getIsbn().equals(bookDTO.getIsbn()) &&
-                isIsbnExists(bookDTO.getIsbn())) {
-            throw new RuntimeException("ISBN already exists: " + bookDTO.getIsbn());
-        }
-
         Book updatedBook = bookMapper.toEntity(bookDTO);
         updatedBook.setId(id);
-        booksMapper.update(updatedBook);
+        applyUpdate(updatedBook);
 
         return bookMapper.toDTO(updatedBook);
     }
 
+    @Override
+    @Transactional
+    public BookDTO patchBook(Long id, BookPatchDTO patchDTO) {
+        log.info("Patching book with id: {}", id);
+        if (patchDTO == null || patchDTO.isEmpty()) {
+            throw BusinessException.invalidParameter("body", "至少需要一个要修改的字段");
+        }
+
+        Book changes = bookMapper.toEntity(patchDTO);
+        changes.setId(id);
+        applyUpdate(changes);
+
+        // 只返回本次修改的字段，不为拼出完整记录再查询一次
+        return bookMapper.toDTO(changes);
+    }
+
+    /**
+     * 只写入非空字段；不预读：ID是否存在由影响行数判断，ISBN是否冲突由唯一索引判断。
+     * 带版本号时按版本号条件更新，成功后 changes.version 为新的版本号
+     */
+    private void applyUpdate(Book changes) {
+        assignPartition(changes);
+        int affected;
+        registerCategories(Collections.singletonList(changes));
+        try {
+            affected = booksMapper.update(changes);
+            if (affected == 0 && bookArchiver.restore(changes.getId())) {
+                // 修改已归档的图书时先迁回热表
+                affected = booksMapper.update(changes);
+            }
+        } catch (DuplicateKeyException e) {
+            throw BusinessException.isbnExists(changes.getIsbn());
+        }
+        if (affected == 0) {
+            // 只有带版本号的更新才需要再查一次区分原因
+            if (changes.getVersion() != null && booksMapper.findStockById(changes.getId()) != null) {
+                throw BusinessException.versionConflict(changes.getId(), changes.getVersion());
+            }
+            throw BusinessException.bookNotFound(changes.getId());
+        }
+        if (changes.getVersion() != null) {
+            changes.setVersion(changes.getVersion() + 1);
+        }
+        if (changes.getQuantity() != null) {
+            stockWriteBehind.discard(changes.getId());
+        }
+        afterUpdate(changes);
+        booksTableVersion.bump();
+    }
+
+    private void afterUpdate(Book changes) {
+        isbnBloomFilter.put(changes.getIsbn());
+        bookCache.evict(changes.getId());
+        bookSearchIndex.onUpdated(changes);
+    }
+
+    @Override
+    @Transactional
+    public BulkPatchResult patchBooks(List<BookPatchDTO> patches) {
+        if (patches == null || patches.isEmpty()) {
+            throw BusinessException.invalidParameter("books", "更新列表不能为空");
+        }
+        if (patches.size() > bulkProperties.getMaxItems()) {
+            throw BusinessException.invalidParameter("books", "单次最多更新" + bulkProperties.getMaxItems() + "条");
+        }
+        log.info("Bulk patching {} books", patches.size());
+
+        BulkItemResult[] results = new BulkItemResult[patches.size()];
+        Book[] changes = new Book[patches.size()];
+
+        // 逐条校验，剔除请求内重复的ID，再按修改的列组合分组，同组记录生成相同的SQL
+        Set<Long> ids = new HashSet<>();
+        Map<Integer, List<Integer>> shapes = new LinkedHashMap<>();
+        for (int i = 0; i < patches.size(); i++) {
+            BookPatchDTO patchDTO = patches.get(i);
+            String violation = patchViolation(patchDTO);
+            if (violation != null) {
+                results[i] = BulkItemResult.failure(i, patchDTO == null ? null : patchDTO.getIsbn(), violation);
+            } else if (!ids.add(patchDTO.getId())) {
+                results[i] = BulkItemResult.failure(i, patchDTO.getIsbn(), "请求中ID重复");
+            } else {
+                changes[i] = bookMapper.toEntity(patchDTO);
+                assignPartition(changes[i]);
+                shapes.computeIfAbsent(BookBatchWriter.shapeOf(changes[i]), shape -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // 新分类在批量执行前分配，批量执行器之后不再有其他语句
+        registerCategories(Arrays.stream(changes).filter(Objects::nonNull).collect(Collectors.toList()));
+
+        // 每组分块以 JDBC 批量执行
+        long version = negativeIdCache.currentVersion();
+        int chunkSize = bulkProperties.getChunkSize();
+        boolean updated = false;
+        for (List<Integer> group : shapes.values()) {
+            for (int from = 0; from < group.size(); from += chunkSize) {
+                List<Integer> chunkIndexes = group.subList(from, Math.min(from + chunkSize, group.size()));
+                List<Book> chunk = chunkIndexes.stream()
+                        .map(index -> changes[index])
+                        .collect(Collectors.toList());
+                updated |= patchChunk(chunkIndexes, chunk, results, version);
+            }
+        }
+        if (updated) {
+            booksTableVersion.bump();
+        }
+
+        return BulkPatchResult.of(Arrays.asList(results));
+    }
+
+    private String patchViolation(BookPatchDTO patchDTO) {
+        if (patchDTO == null) {
+            return "记录不能为空";
+        }
+        if (patchDTO.getId() == null) {
+            return "ID不能为空";
+        }
+        if (patchDTO.isEmpty()) {
+            return "至少需要一个要修改的字段";
+        }
+        return validationMessage(patchDTO);
+    }
+
+    /**
+     * 执行一个分块；ISBN冲突时整批失败，退化为逐条执行，只让冲突的记录失败
+     *
+     * @return 是否有记录被更新
+     */
+    private boolean patchChunk(List<Integer> indexes, List<Book> books, BulkItemResult[] results, long version) {
+        int[] counts;
+        try {
+            counts = bookBatchWriter.update(books);
+        } catch (DuplicateKeyException e) {
+            log.warn("Duplicate ISBN in bulk patch chunk, falling back to row-by-row update");
+            boolean updated = false;
+            for (int i = 0; i < books.size(); i++) {
+                Book book = books.get(i);
+                int index = indexes.get(i);
+                try {
+                    updated |= recordPatch(index, book, bookBatchWriter.update(Collections.singletonList(book))[0], results, version);
+                } catch (DuplicateKeyException duplicate) {
+                    results[index] = BulkItemResult.failure(index, book.getIsbn(), "ISBN已存在");
+                }
+            }
+            return updated;
+        }
+        boolean updated = false;
+        for (int i = 0; i < books.size(); i++) {
+            updated |= recordPatch(indexes.get(i), books.get(i), counts[i], results, version);
+        }
+        return updated;
+    }
+
+    private boolean recordPatch(int index, Book book, int count, BulkItemResult[] results, long version) {
+        if (count == 0) {
+            // 修改已归档的图书时先迁回热表，仍走批量执行器，不与默认执行器混用
+            try {
+                if (bookBatchWriter.restoreFromArchive(book.getId())) {
+                    count = bookBatchWriter.update(Collections.singletonList(book))[0];
+                }
+            } catch (DuplicateKeyException e) {
+                results[index] = BulkItemResult.failure(index, book.getIsbn(), "ISBN已存在");
+                return false;
+            }
+        }
+        // 驱动可能不返回逐条行数（SUCCESS_NO_INFO），此时按成功处理
+        if (count == 0 && book.getVersion() != null) {
+            results[index] = BulkItemResult.failure(index, book.getIsbn(), "图书不存在或已被修改");
+            return false;
+        }
+        if (count == 0) {
+            negativeIdCache.markMissing(book.getId(), version);
+            results[index] = BulkItemResult.failure(index, book.getIsbn(), "图书不存在");
+            return false;
+        }
+        if (book.getQuantity() != null) {
+            stockWriteBehind.discard(book.getId());
+        }
+        afterUpdate(book);
+        results[index] = BulkItemResult.success(index, book.getIsbn(), book.getId());
+        return true;
+    }
+
     @Override
     @Transactional
     public void deleteBook(Long id) {
         log.info("Deleting book with id: {}", id);
-        if (booksMapper.findById(id) == null) {
-            throw new RuntimeException("Book not found with id: " + id);
+        if (negativeIdCache.isKnownMissing(id)) {
+            throw BusinessException.bookNotFound(id);
+        }
+        long version = negativeIdCache.currentVersion();
+        if (booksMapper.delete(id) == 0 && booksMapper.deleteArchived(id) == 0) {
+            negativeIdCache.markMissing(id, version);
+            throw BusinessException.bookNotFound(id);
+        }
+        bookCache.evict(id);
+        stockWriteBehind.discard(id);
+        bookSearchIndex.onDeleted(id);
+        booksTableVersion.bump();
+    }
+
+    /**
+     * 单条条件 UPDATE 扣减库存，不预读也不加表锁；不开启事务，语句自动提交，
+     * 遇到死锁或锁等待超时时在事务外按配置有限次重试。开启库存写回时只在内存中扣减。
+     * 热表中没有时先从归档表迁回再执行一次，归档表中也没有才记入负缓存
+     */
+    @Override
+    public void reserveStock(Long id, int quantity) {
+        log.debug("Reserving {} of book {}", quantity, id);
+        if (quantity <= 0) {
+            throw BusinessException.invalidParameter("quantity", "必须大于0");
+        }
+        if (negativeIdCache.isKnownMissing(id)) {
+            throw BusinessException.bookNotFound(id);
+        }
+        long version = negativeIdCache.currentVersion();
+        if (stockWriteBehind.isEnabled()) {
+            StockWriteBehind.Outcome outcome = stockWriteBehind.reserve(id, quantity);
+            if (outcome == StockWriteBehind.Outcome.NOT_FOUND && bookArchiver.restore(id)) {
+                outcome = stockWriteBehind.reserve(id, quantity);
+            }
+            if (outcome == StockWriteBehind.Outcome.NOT_FOUND) {
+                negativeIdCache.markMissing(id, version);
+                throw BusinessException.bookNotFound(id);
+            }
+            if (outcome == StockWriteBehind.Outcome.INSUFFICIENT) {
+                Long available = stockWriteBehind.available(id);
+                throw BusinessException.insufficientStock(id, quantity, available == null ? null : available.intValue());
+            }
+            if (outcome == StockWriteBehind.Outcome.APPLIED) {
+                return;
+            }
+            // 绝对库存的写入尚未提交，直接更新数据库，语句等到该事务提交后在新值上执行
+        }
+        if (withStockRetry(id, () -> booksMapper.reserveStock(id, quantity)) == 0) {
+            Book stock = booksMapper.findStockById(id);
+            if (stock == null && bookArchiver.restore(id)) {
+                if (withStockRetry(id, () -> booksMapper.reserveStock(id, quantity)) > 0) {
+                    afterStockChange(id);
+                    return;
+                }
+                stock = booksMapper.findStockById(id);
+            }
+            if (stock == null) {
+                negativeIdCache.markMissing(id, version);
+                throw BusinessException.bookNotFound(id);
+            }
+            throw BusinessException.insufficientStock(id, quantity, stock.getQuantity());
+        }
+        afterStockChange(id);
+    }
+
+    @Override
+    public void releaseStock(Long id, int quantity) {
+        log.debug("Releasing {} of book {}", quantity, id);
+        if (quantity <= 0) {
+            throw BusinessException.invalidParameter("quantity", "必须大于0");
+        }
+        if (negativeIdCache.isKnownMissing(id)) {
+            throw BusinessException.bookNotFound(id);
+        }
+        long version = negativeIdCache.currentVersion();
+        if (stockWriteBehind.isEnabled()) {
+            StockWriteBehind.Outcome outcome = stockWriteBehind.release(id, quantity);
+            if (outcome == StockWriteBehind.Outcome.NOT_FOUND && bookArchiver.restore(id)) {
+                outcome = stockWriteBehind.release(id, quantity);
+            }
+            if (outcome == StockWriteBehind.Outcome.NOT_FOUND) {
+                negativeIdCache.markMissing(id, version);
+                throw BusinessException.bookNotFound(id);
+            }
+            if (outcome == StockWriteBehind.Outcome.APPLIED) {
+                return;
+            }
+        }
+        if (withStockRetry(id, () -> booksMapper.releaseStock(id, quantity)) == 0
+                && !(bookArchiver.restore(id) && withStockRetry(id, () -> booksMapper.releaseStock(id, quantity)) > 0)) {
+            negativeIdCache.markMissing(id, version);
+            throw BusinessException.bookNotFound(id);
+        }
+        afterStockChange(id);
+    }
+
+    private int withStockRetry(Long id, IntSupplier statement) {
+        int maxAttempts = inventoryProperties.getMaxAttempts();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return statement.getAsInt();
+            } catch (TransientDataAccessException e) {
+                if (attempt >= maxAttempts) {
+                    throw BusinessException.stockContention(id, e);
+                }
+                log.debug("Stock update of book {} hit lock contention, retrying (attempt {})", id, attempt);
+                long backoff = inventoryProperties.getRetryBackoff().toMillis() * attempt;
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw BusinessException.stockContention(id, e);
+                }
+            }
+        }
+    }
+
+    private void afterStockChange(Long id) {
+        bookCache.evict(id);
+        booksTableVersion.bump();
+    }
+
+    private Book findArchived(Long id) {
+        List<Book> archived = booksMapper.findArchivedByIds(Collections.singletonList(id));
+        return archived.isEmpty() ? null : archived.get(0);
+    }
+
+    /**
+     * 按分类设置物理分区；分类未修改时保持原分区
+     */
+    private void assignPartition(Book book) {
+        if (book.getCategory() != null) {
+            book.setBookType(bookFactoryContext.partitionOf(book.getCategory()));
         }
+    }
 
-        booksMapper.delete(id);
+    /**
+     * 写入前在当前事务中为新分类分配编码，类型处理器绑定参数时只查找
+     */
+    private void registerCategories(List<Book> books) {
+        categoryDictionary.register(books.stream().map(Book::getCategory).collect(Collectors.toList()));
     }
 
     @Override
     @Transactional(readOnly = true)
     public boolean isIsbnExists(String isbn) {
-        return booksMapper.existsByIsbn(isbn);
+        return isbnBloomFilter.exists(isbn, booksMapper::existsByIsbn);
     }
 
     /**
@@ -132,8 +926,58 @@ public class BookServiceImpl implements BookService {
      * @return {@link List }<{@link BookDTO }>
      */
     @Override
+    @Transactional(readOnly = true)
     public List<BookDTO> getBooksSorted(String sortBy) {
-        List<BookDTO> books = getAllBooks(); // 获取所有书籍
-        return bookSortingContext.executeSort(sortBy, books);
+        return getBooksSorted(sortBy, 0, null, false);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookDTO> getBooksSorted(String sortBy, int offset, Integer limit, boolean includeArchived) {
+        if (offset < 0) {
+            throw BusinessException.invalidParameter("offset", "不能小于0");
+        }
+        if (limit != null && (limit < 1 || limit > sortProperties.getMaxLimit())) {
+            throw BusinessException.invalidParameter("limit", "必须在1-" + sortProperties.getMaxLimit() + "之间");
+        }
+
+        SortingStrategy strategy = bookSortingContext.getStrategy(sortBy);
+        BookSortField databaseOrder = strategy.databaseOrder();
+        if (databaseOrder != null) {
+            return findOrdered(databaseOrder, strategy.isDescending(), strategy.isBinaryOrder(), offset, limit, includeArchived);
+        }
+
+        // 无法下推的策略在内存中排序
+        if (limit == null) {
+            List<BookDTO> sorted = bookSortingContext.executeSort(sortBy, getAllBooks(includeArchived));
+            return offset == 0 ? sorted : sorted.subList(Math.min(offset, sorted.size()), sorted.size());
+        }
+        Comparator<BookDTO> comparator = strategy.comparator();
+        if (comparator == null) {
+            return strategy.sortTopK(getAllBooks(includeArchived), offset, limit);
+        }
+        // 边读边筛选，只在堆中保留 offset + limit 个元素
+        TopKSelector<BookDTO> selector = new TopKSelector<>(comparator, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+        streamAllBooks(includeArchived, selector::offer);
+        return selector.result(offset);
+    }
+
+    private List<BookDTO> findOrdered(BookSortField sortField, boolean descending, boolean binaryOrder, int offset,
+                                      Integer limit, boolean includeArchived) {
+        List<BookDTO> books = new ArrayList<>();
+        try (Cursor<Book> cursor = booksMapper.findAllOrdered(sortField, descending, offset, limit,
+                includeArchived, binaryOrder)) {
+            int skip = limit == null ? offset : 0;
+            for (Book book : cursor) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                books.add(bookMapper.toDTO(book));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close book cursor", e);
+        }
+        return books;
     }
 }
\ No newline at end of file
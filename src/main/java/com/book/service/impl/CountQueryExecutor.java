@@ -0,0 +1,54 @@
+package com.book.service.impl;
+
+import com.book.config.CountProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 并行执行总数查询的有界线程池
+ * <p>
+ * 线程数同时限制了总数查询额外占用的数据库连接数；队列满时在调用线程上执行。
+ * 任务在只读事务中执行，与调用方的只读查询一样路由到从库。
+ * 不注册为 Executor 类型的 Bean，避免替换 Spring Boot 默认的任务执行器。
+ */
+@Component
+public class CountQueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final TransactionTemplate readOnlyTemplate;
+
+    public CountQueryExecutor(CountProperties properties, PlatformTransactionManager transactionManager) {
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "book-count-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> readOnlyTemplate.execute(status -> task.get()), executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package com.book.sharding;
+
+import com.book.mapper.BooksMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分片库：每个分片一个 SqlSessionFactory，下标即分片号
+ */
+@Slf4j
+public class BookShards {
+
+    @Getter
+    private final ShardKeys keys;
+
+    @Getter
+    private final List<SqlSessionFactory> sessionFactories;
+
+    @Getter
+    private final List<BooksMapper> mappers;
+
+    public BookShards(List<SqlSessionFactory> sessionFactories, ShardKeys keys) {
+        if (sessionFactories.size() != keys.getShardCount()) {
+            throw new IllegalArgumentException("Expected " + keys.getShardCount() + " shards, got " + sessionFactories.size());
+        }
+        this.keys = keys;
+        this.sessionFactories = Collections.unmodifiableList(new ArrayList<>(sessionFactories));
+        List<BooksMapper> mappers = new ArrayList<>(sessionFactories.size());
+        sessionFactories.forEach(factory -> mappers.add(new SqlSessionTemplate(factory).getMapper(BooksMapper.class)));
+        this.mappers = Collections.unmodifiableList(mappers);
+    }
+
+    public int size() {
+        return mappers.size();
+    }
+
+    /**
+     * 关闭各分片的连接池
+     */
+    public void shutdown() {
+        for (SqlSessionFactory factory : sessionFactories) {
+            DataSource dataSource = factory.getConfiguration().getEnvironment().getDataSource();
+            while (dataSource instanceof DelegatingDataSource) {
+                dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+            }
+            if (dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) dataSource).close();
+                } catch (Exception e) {
+                    log.warn("Failed to close shard data source", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.book.sharding;
+
+import org.apache.ibatis.cursor.Cursor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 把各分片上已排序的游标归并为一个游标，逐行读取，不缓存整个结果集
+ */
+class MergedCursor<T> implements Cursor<T> {
+
+    private final List<Cursor<T>> cursors;
+
+    private final Comparator<? super T> order;
+
+    private final long skip;
+
+    private final long limit;
+
+    private int currentIndex = -1;
+
+    private boolean iterated;
+
+    MergedCursor(List<Cursor<T>> cursors, Comparator<? super T> order, long skip, long limit) {
+        this.cursors = cursors;
+        this.order = order;
+        this.skip = skip;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return cursors.stream().anyMatch(Cursor::isOpen);
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return cursors.stream().allMatch(Cursor::isConsumed);
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        iterated = true;
+        List<Iterator<T>> sources = new ArrayList<>(cursors.size());
+        cursors.forEach(cursor -> sources.add(cursor.iterator()));
+        MergingIterator<T> merged = new MergingIterator<>(sources, order, skip, limit);
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return merged.hasNext();
+            }
+
+            @Override
+            public T next() {
+                T next = merged.next();
+                currentIndex++;
+                return next;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Cursor<T> cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.book.sharding;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多路归并：每个输入已按 order 排序，输出整体有序的序列，跳过前 skip 个后最多返回 limit 个
+ */
+class MergingIterator<T> implements Iterator<T> {
+
+    private final PriorityQueue<Head<T>> heads;
+
+    private long remaining;
+
+    MergingIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> order, long skip, long limit) {
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value, b.value));
+        for (Iterator<? extends T> source : sources) {
+            advance(source);
+        }
+        this.remaining = limit;
+        for (long i = 0; i < skip && hasNext(); i++) {
+            take();
+        }
+    }
+
+    /**
+     * 归并已排序的列表
+     */
+    static <T> List<T> merge(List<? extends List<? extends T>> sorted, Comparator<? super T> order, long skip, long limit) {
+        List<Iterator<? extends T>> sources = new ArrayList<>(sorted.size());
+        sorted.forEach(list -> sources.add(list.iterator()));
+        List<T> merged = new ArrayList<>();
+        new MergingIterator<T>(sources, order, skip, limit).forEachRemaining(merged::add);
+        return merged;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0 && !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        return take();
+    }
+
+    private T take() {
+        Head<T> head = heads.poll();
+        advance(head.source);
+        return head.value;
+    }
+
+    private void advance(Iterator<? extends T> source) {
+        if (source.hasNext()) {
+            heads.add(new Head<>(source.next(), source));
+        }
+    }
+
+    private static final class Head<T> {
+        private final T value;
+        private final Iterator<? extends T> source;
+
+        private Head(T value, Iterator<? extends T> source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
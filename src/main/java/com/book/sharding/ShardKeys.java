@@ -0,0 +1,109 @@
+package com.book.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * 分片键：按规范化ISBN的哈希选择分片，生成的ID中编码了所在分片
+ * <p>
+ * ID 布局（高位到低位）：1 位标记（固定为 1）、40 位毫秒时间戳（自 2024-01-01 起，可用到 2058 年）、
+ * 5 位节点号、10 位序号、7 位分片号。标记位区分分片之前的自增ID，后者不会被当成某个分片的ID。
+ * 同一节点每毫秒最多生成 1024 个ID，超出时借用下一毫秒，同一节点生成的ID始终单调递增。
+ */
+public class ShardKeys {
+
+    static final long EPOCH_MILLIS = 1704067200000L;
+
+    private static final int SEQUENCE_BITS = 10;
+
+    private static final int SHARD_BITS = 7;
+
+    private static final int NODE_BITS = 5;
+
+    private static final int TIMESTAMP_BITS = 40;
+
+    static final long MARKER = 1L << (TIMESTAMP_BITS + NODE_BITS + SEQUENCE_BITS + SHARD_BITS);
+
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    public static final int MAX_NODES = 1 << NODE_BITS;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final int shardCount;
+
+    private final long nodeId;
+
+    private long lastMillis = -1;
+
+    private long sequence;
+
+    public ShardKeys(int shardCount, int nodeId) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS + ": " + shardCount);
+        }
+        if (nodeId < 0 || nodeId >= MAX_NODES) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + (MAX_NODES - 1) + ": " + nodeId);
+        }
+        this.shardCount = shardCount;
+        this.nodeId = nodeId;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * ISBN 所在的分片；去掉连字符和空格并转为大写后计算，格式不同的同一ISBN落在同一分片
+     */
+    public int shardOf(String isbn) {
+        CRC32 crc = new CRC32();
+        crc.update(normalize(isbn).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    /**
+     * ID 中编码的分片；没有标记位的ID（例如分片之前的自增ID）不是由本类生成的，返回 -1
+     */
+    public int shardOf(Long id) {
+        if (id == null || id < 0 || (id & MARKER) == 0) {
+            return -1;
+        }
+        int shard = (int) (id & (MAX_SHARDS - 1));
+        return shard < shardCount ? shard : -1;
+    }
+
+    /**
+     * 生成编码了分片号的全局唯一ID
+     */
+    public synchronized long nextId(int shard) {
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        if (now > lastMillis) {
+            lastMillis = now;
+            sequence = 0;
+        } else if (++sequence > SEQUENCE_MASK) {
+            // 本毫秒的序号用完或时钟回拨，沿用上一时间戳的下一毫秒
+            lastMillis++;
+            sequence = 0;
+        }
+        return MARKER
+                | lastMillis << (NODE_BITS + SEQUENCE_BITS + SHARD_BITS)
+                | nodeId << (SEQUENCE_BITS + SHARD_BITS)
+                | sequence << SHARD_BITS
+                | shard;
+    }
+
+    static String normalize(String isbn) {
+        if (isbn == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(isbn.length());
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c != '-' && !Character.isWhitespace(c)) {
+                normalized.append(Character.toUpperCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+}
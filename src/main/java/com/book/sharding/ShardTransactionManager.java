@@ -0,0 +1,120 @@
+package com.book.sharding;
+
+import org.springframework.transaction.HeuristicCompletionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 依次在各库上开启事务，按相反顺序提交（尽力而为的单阶段提交，不是 XA）
+ * <p>
+ * 数据源应由 LazyConnectionDataSourceProxy 包装，事务中未访问的库不会借出连接。
+ * 第一个事务管理器最后提交，事务同步回调（afterCommit 等）在所有库都提交后才执行。
+ * 后面的库提交失败时回滚尚未提交的库；已提交的库无法撤销，抛出 HeuristicCompletionException。
+ */
+public class ShardTransactionManager implements PlatformTransactionManager {
+
+    private final List<PlatformTransactionManager> managers;
+
+    public ShardTransactionManager(List<PlatformTransactionManager> managers) {
+        this.managers = new ArrayList<>(managers);
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        List<TransactionStatus> statuses = new ArrayList<>(managers.size());
+        try {
+            for (PlatformTransactionManager manager : managers) {
+                statuses.add(manager.getTransaction(definition));
+            }
+        } catch (RuntimeException | Error e) {
+            for (int i = statuses.size() - 1; i >= 0; i--) {
+                try {
+                    managers.get(i).rollback(statuses.get(i));
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return new CompositeStatus(statuses);
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        // 标记了回滚的事务由各事务管理器自行回滚，并抛出 UnexpectedRollbackException
+        List<TransactionStatus> statuses = ((CompositeStatus) status).statuses;
+        boolean committed = false;
+        for (int i = statuses.size() - 1; i >= 0; i--) {
+            try {
+                managers.get(i).commit(statuses.get(i));
+                committed = true;
+            } catch (RuntimeException | Error e) {
+                for (int j = i - 1; j >= 0; j--) {
+                    try {
+                        managers.get(j).rollback(statuses.get(j));
+                    } catch (RuntimeException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                if (committed) {
+                    throw new HeuristicCompletionException(HeuristicCompletionException.STATE_MIXED, e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        List<TransactionStatus> statuses = ((CompositeStatus) status).statuses;
+        RuntimeException failure = null;
+        for (int i = statuses.size() - 1; i >= 0; i--) {
+            try {
+                managers.get(i).rollback(statuses.get(i));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 组合各库的事务状态；是否新事务以第一个库为准，标记回滚时作用于所有库
+     */
+    private static final class CompositeStatus extends SimpleTransactionStatus {
+        private final List<TransactionStatus> statuses;
+
+        private CompositeStatus(List<TransactionStatus> statuses) {
+            super(statuses.get(0).isNewTransaction());
+            this.statuses = statuses;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            super.setRollbackOnly();
+            statuses.forEach(TransactionStatus::setRollbackOnly);
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return super.isRollbackOnly() || statuses.stream().anyMatch(TransactionStatus::isRollbackOnly);
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return statuses.get(0).isCompleted();
+        }
+    }
+}
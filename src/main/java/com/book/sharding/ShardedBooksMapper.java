@@ -0,0 +1,497 @@
+package com.book.sharding;
+
+import com.book.config.ShardingProperties;
+import com.book.dto.BookQueryDTO;
+import com.book.dto.PageCursor;
+import com.book.enm.BookSortField;
+import com.book.exception.BusinessException;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.po.BookWithTotal;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.beans.BeanUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 分片后的 BooksMapper
+ * <p>
+ * 写入按规范化ISBN的哈希选择分片并生成编码了分片号的ID；按ID或ISBN的点查只访问一个分片。
+ * 条件查询分散到所有分片并行执行，每个分片取前 offset + limit 行，再按请求的排序多路归并后截取当前页；
+ * 总数为各分片之和。字符串排序列在分片上按二进制排序，归并时按码点比较，两者的顺序一致，
+ * 因此分片后按书名等排序区分大小写，与单库时按列的排序规则（_ci）不同。读写事务中的查询在调用线程上依次执行，以便看到本事务尚未提交的写入。
+ * 库存日志检查点保存在每个分片上，与该分片的增量在同一事务中提交；其余不分片的表仍由 global 访问。
+ */
+public class ShardedBooksMapper implements BooksMapper {
+
+    private final BookShards shards;
+
+    private final ShardKeys keys;
+
+    private final BooksMapper global;
+
+    private final ShardingProperties properties;
+
+    private final ThreadPoolExecutor executor;
+
+    public ShardedBooksMapper(BookShards shards, BooksMapper global, ShardingProperties properties) {
+        this.shards = shards;
+        this.keys = shards.getKeys();
+        this.global = global;
+        this.properties = properties;
+        AtomicInteger sequence = new AtomicInteger();
+        int threads = Math.max(1, properties.getScatterThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "book-shard-query-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void insert(Book book) {
+        insertBatch(Collections.singletonList(book));
+    }
+
+    @Override
+    public int insertBatch(List<Book> books) {
+        for (Book book : books) {
+            book.setId(keys.nextId(keys.shardOf(book.getIsbn())));
+        }
+        return insertWithIds(books);
+    }
+
+    @Override
+    public int insertWithIds(List<Book> books) {
+        int inserted = 0;
+        for (Map.Entry<Integer, List<Book>> entry : groupBy(books, book -> keys.shardOf(book.getId())).entrySet()) {
+            inserted += shard(entry.getKey()).insertWithIds(entry.getValue());
+        }
+        return inserted;
+    }
+
+    /**
+     * 行不能在分片之间移动：修改后的ISBN属于另一个分片时拒绝更新
+     */
+    @Override
+    public int update(Book book) {
+        int shard = keys.shardOf(book.getId());
+        if (shard < 0) {
+            return 0;
+        }
+        if (book.getIsbn() != null && keys.shardOf(book.getIsbn()) != shard) {
+            throw BusinessException.bookUpdateFailed(book.getId(), "新ISBN属于另一个分片，请删除后重新创建");
+        }
+        return shard(shard).update(book);
+    }
+
+    @Override
+    public int reserveStock(Long id, int quantity) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? 0 : mapper.reserveStock(id, quantity);
+    }
+
+    @Override
+    public int releaseStock(Long id, int quantity) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? 0 : mapper.releaseStock(id, quantity);
+    }
+
+    @Override
+    public int addStock(Long id, long delta) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? 0 : mapper.addStock(id, delta);
+    }
+
+    /**
+     * 各分片检查点中最小的一个，任一分片没有检查点时返回 null
+     */
+    @Override
+    public Long findStockCheckpoint() {
+        Long min = null;
+        for (BooksMapper mapper : shards.getMappers()) {
+            Long segment = mapper.findStockCheckpoint();
+            if (segment == null) {
+                return null;
+            }
+            min = min == null ? segment : Math.min(min, segment);
+        }
+        return min;
+    }
+
+    @Override
+    public int saveStockCheckpoint(long segment) {
+        int saved = 0;
+        for (BooksMapper mapper : shards.getMappers()) {
+            saved += mapper.saveStockCheckpoint(segment);
+        }
+        return saved;
+    }
+
+    @Override
+    public int delete(Long id) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? 0 : mapper.delete(id);
+    }
+
+    @Override
+    public Book findStockById(Long id) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? null : mapper.findStockById(id);
+    }
+
+    @Override
+    public Book findById(Long id) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? null : mapper.findById(id);
+    }
+
+    @Override
+    public List<Book> findByIds(Collection<Long> ids) {
+        List<Book> books = new ArrayList<>(ids.size());
+        groupBy(ids, keys::shardOf).forEach((shard, shardIds) -> {
+            if (shard >= 0) {
+                books.addAll(shard(shard).findByIds(shardIds));
+            }
+        });
+        return books;
+    }
+
+    @Override
+    public List<Long> findArchivableIds(Date cutoff, int limit) {
+        List<Long> ids = new ArrayList<>();
+        scatter(mapper -> mapper.findArchivableIds(cutoff, limit)).forEach(ids::addAll);
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    @Override
+    public int copyToArchive(Collection<Long> ids, Date cutoff) {
+        int copied = 0;
+        for (Map.Entry<Integer, List<Long>> group : groupBy(ids, keys::shardOf).entrySet()) {
+            if (group.getKey() >= 0) {
+                copied += shard(group.getKey()).copyToArchive(group.getValue(), cutoff);
+            }
+        }
+        return copied;
+    }
+
+    @Override
+    public int deleteArchivable(Collection<Long> ids, Date cutoff) {
+        int deleted = 0;
+        for (Map.Entry<Integer, List<Long>> group : groupBy(ids, keys::shardOf).entrySet()) {
+            if (group.getKey() >= 0) {
+                deleted += shard(group.getKey()).deleteArchivable(group.getValue(), cutoff);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Book> findArchivedByIds(Collection<Long> ids) {
+        List<Book> books = new ArrayList<>(ids.size());
+        groupBy(ids, keys::shardOf).forEach((shard, shardIds) -> {
+            if (shard >= 0) {
+                books.addAll(shard(shard).findArchivedByIds(shardIds));
+            }
+        });
+        return books;
+    }
+
+    @Override
+    public int restoreFromArchive(Long id) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? 0 : mapper.restoreFromArchive(id);
+    }
+
+    @Override
+    public int deleteArchived(Long id) {
+        BooksMapper mapper = byId(id);
+        return mapper == null ? 0 : mapper.deleteArchived(id);
+    }
+
+    @Override
+    public Book findByIsbn(String isbn) {
+        return byIsbn(isbn).findByIsbn(isbn);
+    }
+
+    @Override
+    public boolean existsByIsbn(String isbn) {
+        return byIsbn(isbn).existsByIsbn(isbn);
+    }
+
+    @Override
+    public List<String> findExistingIsbns(Collection<String> isbns) {
+        List<String> existing = new ArrayList<>();
+        groupBy(isbns, keys::shardOf).forEach((shard, shardIsbns) -> existing.addAll(shard(shard).findExistingIsbns(shardIsbns)));
+        return existing;
+    }
+
+    @Override
+    public void scanIsbns(ResultHandler<String> handler) {
+        shards.getMappers().forEach(mapper -> mapper.scanIsbns(handler));
+    }
+
+    @Override
+    public void scanSearchFields(ResultHandler<Book> handler) {
+        shards.getMappers().forEach(mapper -> mapper.scanSearchFields(handler));
+    }
+
+    @Override
+    public List<Book> findAll(boolean includeArchived) {
+        List<Book> books = new ArrayList<>();
+        scatter(mapper -> mapper.findAll(includeArchived)).forEach(books::addAll);
+        return books;
+    }
+
+    /**
+     * 游标依赖调用方事务中的会话，在调用线程上打开各分片的游标后按ID归并
+     */
+    @Override
+    public Cursor<Book> findAllCursor(boolean includeArchived) {
+        List<Cursor<Book>> cursors = new ArrayList<>(shards.size());
+        shards.getMappers().forEach(mapper -> cursors.add(mapper.findAllCursor(includeArchived)));
+        return new MergedCursor<>(cursors, Comparator.comparing(Book::getId), 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public Cursor<Book> findAllOrdered(BookSortField sortField, boolean descending, int offset, Integer limit,
+                                       boolean includeArchived, boolean binaryOrder) {
+        Integer shardLimit = limit == null ? null : offset + limit;
+        List<Cursor<Book>> cursors = new ArrayList<>(shards.size());
+        shards.getMappers().forEach(mapper ->
+                cursors.add(mapper.findAllOrdered(sortField, descending, 0, shardLimit, includeArchived, true)));
+        return new MergedCursor<>(cursors, order(sortField, descending),
+                limit == null ? 0 : offset, limit == null ? Long.MAX_VALUE : limit);
+    }
+
+    @Override
+    public List<Book> findByPage(Map<String, Object> params) {
+        int offset = ((Number) params.get("offset")).intValue();
+        int pageSize = ((Number) params.get("pageSize")).intValue();
+        Map<String, Object> shardParams = new HashMap<>(params);
+        shardParams.put("offset", 0);
+        shardParams.put("pageSize", offset + pageSize);
+        return MergingIterator.merge(scatter(mapper -> mapper.findByPage(shardParams)),
+                Comparator.comparing(Book::getId), offset, pageSize);
+    }
+
+    @Override
+    public int countByPage(Map<String, Object> params) {
+        return scatter(mapper -> mapper.countByPage(params)).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public List<Book> findByCondition(BookQueryDTO params, int limit) {
+        BooksMapper single = byIsbnCondition(params);
+        if (single != null) {
+            return single.findByCondition(params, limit);
+        }
+        BookQueryDTO shardParams = firstPage(params);
+        int shardLimit = params.getOffset() + limit;
+        return MergingIterator.merge(scatter(mapper -> mapper.findByCondition(shardParams, shardLimit)),
+                order(params.getSortField(), params.isDescending()), params.getOffset(), limit);
+    }
+
+    @Override
+    public int countByCondition(BookQueryDTO params) {
+        BooksMapper single = byIsbnCondition(params);
+        if (single != null) {
+            return single.countByCondition(params);
+        }
+        return scatter(mapper -> mapper.countByCondition(params)).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * 每个分片返回的行带有该分片的总数，合并后改为各分片总数之和
+     */
+    @Override
+    public List<BookWithTotal> findByConditionWithTotal(BookQueryDTO params, int limit) {
+        BooksMapper single = byIsbnCondition(params);
+        if (single != null) {
+            return single.findByConditionWithTotal(params, limit);
+        }
+        BookQueryDTO shardParams = firstPage(params);
+        int shardLimit = params.getOffset() + limit;
+        List<List<BookWithTotal>> results = scatter(mapper -> mapper.findByConditionWithTotal(shardParams, shardLimit));
+        long total = 0;
+        for (List<BookWithTotal> rows : results) {
+            if (!rows.isEmpty() && rows.get(0).getTotalCount() != null) {
+                total += rows.get(0).getTotalCount();
+            }
+        }
+        List<BookWithTotal> page = MergingIterator.merge(results,
+                order(params.getSortField(), params.isDescending()), params.getOffset(), limit);
+        for (BookWithTotal row : page) {
+            row.setTotalCount(total);
+        }
+        return page;
+    }
+
+    @Override
+    public Long estimateTableRows() {
+        Long total = null;
+        for (Long rows : scatter(BooksMapper::estimateTableRows)) {
+            if (rows != null) {
+                total = (total == null ? 0 : total) + rows;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 各分片的执行计划依次拼接，调用方按 rows × filtered 累加即得到总估算
+     */
+    @Override
+    public List<Map<String, Object>> explainByCondition(BookQueryDTO params) {
+        List<Map<String, Object>> plans = new ArrayList<>();
+        scatter(mapper -> mapper.explainByCondition(params)).forEach(plans::addAll);
+        return plans;
+    }
+
+    /**
+     * 键集条件对所有分片相同，每个分片取 limit 行后归并
+     */
+    @Override
+    public List<Book> findByKeyset(BookQueryDTO params, PageCursor cursor, int limit) {
+        BooksMapper single = byIsbnCondition(params);
+        if (single != null) {
+            return single.findByKeyset(params, cursor, limit);
+        }
+        BookQueryDTO shardParams = firstPage(params);
+        return MergingIterator.merge(scatter(mapper -> mapper.findByKeyset(shardParams, cursor, limit)),
+                order(params.getSortField(), params.isDescending()), 0, limit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private BooksMapper shard(int shard) {
+        return shards.getMappers().get(shard);
+    }
+
+    private BooksMapper byId(Long id) {
+        int shard = keys.shardOf(id);
+        return shard < 0 ? null : shard(shard);
+    }
+
+    private BooksMapper byIsbn(String isbn) {
+        return shard(keys.shardOf(isbn));
+    }
+
+    /**
+     * 条件中有精确的ISBN时只查询它所在的分片
+     */
+    private BooksMapper byIsbnCondition(BookQueryDTO params) {
+        String isbn = params.getIsbn();
+        return isbn == null || isbn.isEmpty() ? null : byIsbn(isbn);
+    }
+
+    /**
+     * 在每个分片上执行查询，结果按分片号排列；只读或无事务时并行执行
+     */
+    private <T> List<T> scatter(Function<BooksMapper, T> query) {
+        List<BooksMapper> mappers = shards.getMappers();
+        boolean parallel = mappers.size() > 1 && (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        List<T> results = new ArrayList<>(mappers.size());
+        if (!parallel) {
+            mappers.forEach(mapper -> results.add(query.apply(mapper)));
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(mappers.size());
+        mappers.forEach(mapper -> futures.add(CompletableFuture.supplyAsync(() -> query.apply(mapper), executor)));
+        try {
+            futures.forEach(future -> results.add(future.join()));
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * 与分片上 ORDER BY 排序表达式, id 一致的比较器
+     */
+    private static Comparator<Book> order(BookSortField sortField, boolean descending) {
+        Comparator<Object> values = ShardedBooksMapper::compareValues;
+        Comparator<Book> order = Comparator.comparing((Book book) -> sortField.valueOf(book), values).thenComparing(Book::getId);
+        return descending ? order.reversed() : order;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            // MySQL 升序时 NULL 排在最前
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof String) {
+            return compareCodePoints((String) a, (String) b);
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * 按码点比较，与 UTF-8 字节的二进制顺序一致；String.compareTo 按 UTF-16 代码单元比较，补充平面字符的顺序不同
+     */
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * 复制查询条件并改为第一页，分片上从第 0 行开始取，字符串列按二进制排序
+     */
+    private static BookQueryDTO firstPage(BookQueryDTO params) {
+        BookQueryDTO copy = new BookQueryDTO();
+        BeanUtils.copyProperties(params, copy);
+        copy.restrictToIds(params.getCandidateIds());
+        copy.restrictToBookType(params.getBookType());
+        copy.includeArchiveTier(params.isArchiveTier());
+        copy.orderByBinary(true);
+        copy.setPageNum(1);
+        return copy;
+    }
+
+    private static <K, V> Map<K, List<V>> groupBy(Collection<V> values, Function<V, K> key) {
+        Map<K, List<V>> groups = new LinkedHashMap<>();
+        for (V value : values) {
+            groups.computeIfAbsent(Objects.requireNonNull(key.apply(value)), k -> new ArrayList<>()).add(value);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,26 @@
+-- 按图书类型分区：分区号由 BookFactory.partition() 决定，新增工厂时同步增加分区
+-- 带分类条件的查询按 book_type 裁剪到单个分区，不带分类的查询由 MySQL 扫描全部分区后合并
+
+-- 回填已有数据的分区号，取值与 BookFactoryContext.partitionOf 一致
+UPDATE books SET book_type = CASE (SELECT UPPER(TRIM(name)) FROM category_dict WHERE code = books.category_code)
+                                 WHEN 'FICTION' THEN 1
+                                 WHEN 'EDUCATIONAL' THEN 2
+                                 ELSE 0
+    END;
+
+-- 分区表的主键和唯一索引都必须包含分区列，ISBN 的全局唯一性改由不分区的 book_isbn 表保证：
+-- 该表及维护它的触发器由 MySQL 迁移 db/migration/mysql/V4__isbn_registry.sql 创建，须先执行到 V4。
+-- ISBN 重复时写入语句以重复键错误失败，与原来的唯一索引一样映射为 DuplicateKeyException。执行期间应停止写入
+
+ALTER TABLE books
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, book_type),
+    DROP INDEX isbn,
+    ADD INDEX idx_books_isbn (isbn);
+
+ALTER TABLE books
+    PARTITION BY LIST (book_type) (
+        PARTITION p_default VALUES IN (0),
+        PARTITION p_fiction VALUES IN (1),
+        PARTITION p_educational VALUES IN (2)
+        );
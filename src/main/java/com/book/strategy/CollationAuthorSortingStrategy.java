@@ -0,0 +1,21 @@
+package com.book.strategy;
+
+import com.book.config.SortProperties;
+import com.book.dto.BookDTO;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按配置的语言规则对作者名排序
+ */
+@Component
+public class CollationAuthorSortingStrategy extends CollationSortingStrategy {
+
+    public CollationAuthorSortingStrategy(SortProperties properties) {
+        super(properties);
+    }
+
+    @Override
+    protected String sortText(BookDTO book) {
+        return book.getAuthorName();
+    }
+}
@@ -0,0 +1,155 @@
+package com.book.strategy;
+
+import com.book.config.SortProperties;
+import com.book.dto.BookDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+/**
+ * 按语言规则排序的策略基类
+ * <p>
+ * 每个元素只计算一次 CollationKey，排序时比较的是预先生成的字节序列，
+ * 而不是在每次比较时重新执行 Collator 规则。排序键按图书ID缓存，
+ * 文本未变化时跨请求复用。元素数量超过阈值时使用 fork-join 并行排序。
+ */
+public abstract class CollationSortingStrategy implements SortingStrategy {
+
+    private final Collator prototype;
+
+    private final ThreadLocal<Collator> collators;
+
+    private final int parallelThreshold;
+
+    private final Cache<Long, CachedKey> keyCache;
+
+    private final Comparator<BookDTO> comparator;
+
+    protected CollationSortingStrategy(SortProperties properties) {
+        SortProperties.Collation collation = properties.getCollation();
+        this.prototype = Collator.getInstance(Locale.forLanguageTag(collation.getLocale()));
+        this.prototype.setStrength(parseStrength(collation.getStrength()));
+        // Collator 内部有同步，并行生成排序键时每个线程使用各自的副本
+        this.collators = ThreadLocal.withInitial(() -> (Collator) prototype.clone());
+        this.parallelThreshold = collation.getParallelThreshold();
+        this.keyCache = Caffeine.newBuilder()
+                .maximumSize(collation.getKeyCacheSize())
+                .build();
+        this.comparator = Comparator.comparing(this::collationKey, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    /**
+     * 参与排序的文本
+     */
+    protected abstract String sortText(BookDTO book);
+
+    @Override
+    public List<BookDTO> sort(List<BookDTO> books) {
+        List<BookDTO> source = books instanceof RandomAccess ? books : new ArrayList<>(books);
+        int size = source.size();
+        KeyedBook[] keyed = new KeyedBook[size];
+        if (size >= parallelThreshold) {
+            Arrays.parallelSetAll(keyed, i -> keyed(source.get(i)));
+            Arrays.parallelSort(keyed);
+        } else {
+            for (int i = 0; i < size; i++) {
+                keyed[i] = keyed(source.get(i));
+            }
+            Arrays.sort(keyed);
+        }
+        List<BookDTO> sorted = new ArrayList<>(size);
+        for (KeyedBook entry : keyed) {
+            sorted.add(entry.book);
+        }
+        return sorted;
+    }
+
+    /**
+     * 比较器同样使用缓存的排序键，供 Top-K 选择时使用
+     */
+    @Override
+    public Comparator<BookDTO> comparator() {
+        return comparator;
+    }
+
+    /**
+     * 同一语言规则下的朴素比较器，每次比较都重新计算，仅用于对照
+     */
+    public Comparator<BookDTO> naiveComparator() {
+        Collator collator = (Collator) prototype.clone();
+        return Comparator.comparing(this::sortText, Comparator.nullsFirst(collator));
+    }
+
+    private KeyedBook keyed(BookDTO book) {
+        return new KeyedBook(collationKey(book), book);
+    }
+
+    private CollationKey collationKey(BookDTO book) {
+        String text = sortText(book);
+        if (text == null) {
+            return null;
+        }
+        Long id = book.getId();
+        if (id == null) {
+            return collators.get().getCollationKey(text);
+        }
+        CachedKey cached = keyCache.getIfPresent(id);
+        if (cached != null && cached.text.equals(text)) {
+            return cached.key;
+        }
+        CollationKey key = collators.get().getCollationKey(text);
+        keyCache.put(id, new CachedKey(text, key));
+        return key;
+    }
+
+    private static int parseStrength(String strength) {
+        switch (strength.toUpperCase(Locale.ROOT)) {
+            case "PRIMARY":
+                return Collator.PRIMARY;
+            case "SECONDARY":
+                return Collator.SECONDARY;
+            case "TERTIARY":
+                return Collator.TERTIARY;
+            case "IDENTICAL":
+                return Collator.IDENTICAL;
+            default:
+                throw new IllegalArgumentException("Unknown collation strength: " + strength);
+        }
+    }
+
+    private static final class CachedKey {
+        private final String text;
+        private final CollationKey key;
+
+        private CachedKey(String text, CollationKey key) {
+            this.text = text;
+            this.key = key;
+        }
+    }
+
+    private static final class KeyedBook implements Comparable<KeyedBook> {
+        private final CollationKey key;
+        private final BookDTO book;
+
+        private KeyedBook(CollationKey key, BookDTO book) {
+            this.key = key;
+            this.book = book;
+        }
+
+        @Override
+        public int compareTo(KeyedBook other) {
+            if (key == null || other.key == null) {
+                return key == other.key ? 0 : (key == null ? -1 : 1);
+            }
+            return key.compareTo(other.key);
+        }
+    }
+}
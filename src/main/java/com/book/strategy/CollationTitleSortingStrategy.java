@@ -0,0 +1,21 @@
+package com.book.strategy;
+
+import com.book.config.SortProperties;
+import com.book.dto.BookDTO;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按配置的语言规则对书名排序，中文书名默认按拼音
+ */
+@Component
+public class CollationTitleSortingStrategy extends CollationSortingStrategy {
+
+    public CollationTitleSortingStrategy(SortProperties properties) {
+        super(properties);
+    }
+
+    @Override
+    protected String sortText(BookDTO book) {
+        return book.getTitle();
+    }
+}
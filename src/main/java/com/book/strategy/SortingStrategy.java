@@ -1,9 +1,59 @@
 package com.book.strategy;
 
 import com.book.dto.BookDTO;
+import com.book.enm.BookSortField;
 
+import java.util.Comparator;
 import java.util.List;
 
 public interface SortingStrategy {
     List<BookDTO> sort(List<BookDTO> books);
+
+    /**
+     * 与 sort 结果一致的比较器，用于 Top-K 部分排序
+     *
+     * @return 比较器；返回 null 时 sortTopK 退化为全量排序后截取
+     */
+    default Comparator<BookDTO> comparator() {
+        return null;
+    }
+
+    /**
+     * 只取排序后第 offset 起的 limit 个元素，用固定大小的堆代替全量排序
+     */
+    default List<BookDTO> sortTopK(List<BookDTO> books, int offset, int limit) {
+        int end = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        Comparator<BookDTO> comparator = comparator();
+        if (comparator == null) {
+            List<BookDTO> sorted = sort(books);
+            return sorted.subList(Math.min(offset, sorted.size()), Math.min(end, sorted.size()));
+        }
+        TopKSelector<BookDTO> selector = new TopKSelector<>(comparator, end);
+        books.forEach(selector::offer);
+        return selector.result(offset);
+    }
+
+    /**
+     * 可下推到数据库执行的排序字段，只能取自 BookSortField 白名单
+     *
+     * @return 排序字段；返回 null 表示该策略只能在内存中排序
+     */
+    default BookSortField databaseOrder() {
+        return null;
+    }
+
+    /**
+     * 下推到数据库时字符串列是否按二进制排序，与内存中 String 自然顺序保持一致，
+     * 而不是使用列上大小写不敏感的排序规则
+     */
+    default boolean isBinaryOrder() {
+        return false;
+    }
+
+    /**
+     * 下推到数据库时是否降序
+     */
+    default boolean isDescending() {
+        return false;
+    }
 }
@@ -1,6 +1,7 @@
 package com.book.strategy;
 
 import com.book.dto.BookDTO;
+import com.book.enm.BookSortField;
 import org.springframework.stereotype.Component;
 
 import java.util.Comparator;
@@ -12,7 +13,26 @@ public class TitleSortingStrategy implements SortingStrategy {
     @Override
     public List<BookDTO> sort(List<BookDTO> books) {
         return books.stream()
-                .sorted(Comparator.comparing(BookDTO::getTitle))
+                .sorted(comparator())
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    @Override
+    public Comparator<BookDTO> comparator() {
+        return Comparator.comparing(BookDTO::getTitle);
+    }
+
+    @Override
+    public BookSortField databaseOrder() {
+        return BookSortField.TITLE;
+    }
+
+    /**
+     * 内存中按 String 自然顺序（区分大小写）排序，下推时同样按二进制排序，
+     * 否则数据库的排序规则会把 "apple" 排到 "Zebra" 之前
+     */
+    @Override
+    public boolean isBinaryOrder() {
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package com.book.strategy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 有界堆 Top-K 选择器
+ * <p>
+ * 只保留按比较器排在最前的 k 个元素，时间复杂度 O(n log k)，额外内存 O(k)。
+ * 比较结果相同时保持输入顺序，与稳定的全量排序结果一致。
+ */
+public final class TopKSelector<T> {
+
+    private final int k;
+
+    private final Comparator<Entry<T>> order;
+
+    /**
+     * 大顶堆，堆顶是当前保留元素中排序最靠后的一个
+     */
+    private final PriorityQueue<Entry<T>> heap;
+
+    private long sequence;
+
+    public TopKSelector(Comparator<? super T> comparator, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        this.k = k;
+        Comparator<Entry<T>> byValue = (a, b) -> comparator.compare(a.value, b.value);
+        this.order = byValue.thenComparingLong(entry -> entry.sequence);
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), order.reversed());
+    }
+
+    public void offer(T value) {
+        if (k == 0) {
+            return;
+        }
+        Entry<T> entry = new Entry<>(value, sequence++);
+        if (heap.size() < k) {
+            heap.add(entry);
+        } else if (order.compare(entry, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * 返回有序结果，并跳过前 offset 个元素
+     */
+    public List<T> result(int offset) {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(order);
+        List<T> result = new ArrayList<>(Math.max(0, entries.size() - offset));
+        for (int i = offset; i < entries.size(); i++) {
+            result.add(entries.get(i).value);
+        }
+        return result;
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long sequence;
+
+        private Entry(T value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+}
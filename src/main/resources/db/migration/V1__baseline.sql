@@ -0,0 +1,51 @@
+-- 基线结构，与 com/book/sql/books.sql 一致；表已存在时不做修改
+
+CREATE TABLE IF NOT EXISTS books
+(
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+    title            VARCHAR(255) NOT NULL,
+    author           VARCHAR(255) NOT NULL,
+    publication_date DATE         NOT NULL,
+    isbn             VARCHAR(20)  NOT NULL UNIQUE,
+    quantity         INT          NOT NULL,
+    category         VARCHAR(50)  NOT NULL,
+    -- 乐观锁版本号，每次写入加一；已有的表执行：ALTER TABLE books ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+    version          BIGINT       NOT NULL DEFAULT 0,
+    -- 物理分区，由分类对应的图书工厂决定（0 默认、1 小说、2 教育）；按类型分区见 books-partition.sql
+    -- 已有的表执行：ALTER TABLE books ADD COLUMN book_type TINYINT NOT NULL DEFAULT 0;
+    book_type        TINYINT      NOT NULL DEFAULT 0,
+    -- 排序下推（getBooksSorted / sortBy=title）使用
+    INDEX idx_books_title (title),
+    -- 冷热分层选取待归档的旧书；已有的表执行：ALTER TABLE books ADD INDEX idx_books_publication_date (publication_date);
+    INDEX idx_books_publication_date (publication_date)
+);
+
+-- 冷热分层：出版日期早于归档分界的图书由 BookArchiver 分批迁入，列与 books 相同
+CREATE TABLE IF NOT EXISTS books_archive
+(
+    id               BIGINT PRIMARY KEY,
+    title            VARCHAR(255) NOT NULL,
+    author           VARCHAR(255) NOT NULL,
+    publication_date DATE         NOT NULL,
+    isbn             VARCHAR(20)  NOT NULL UNIQUE,
+    quantity         INT          NOT NULL,
+    category         VARCHAR(50)  NOT NULL,
+    version          BIGINT       NOT NULL DEFAULT 0,
+    book_type        TINYINT      NOT NULL DEFAULT 0,
+    archived_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_books_archive_publication_date (publication_date)
+);
+
+-- 库存写回日志已写入数据库的最后一个日志段
+CREATE TABLE IF NOT EXISTS stock_journal_checkpoint
+(
+    id      TINYINT PRIMARY KEY,
+    segment BIGINT NOT NULL
+);
+
+-- 读写分离的复制心跳，主库定期写入，从库上读到的值用于计算复制延迟
+CREATE TABLE IF NOT EXISTS datasource_heartbeat
+(
+    id          TINYINT PRIMARY KEY,
+    beat_millis BIGINT NOT NULL
+);
@@ -0,0 +1,17 @@
+-- 按 findByCondition / countByCondition 的过滤条件和排序方式建立的索引
+-- InnoDB 二级索引末尾隐含主键 id，ORDER BY 排序列, id 可以直接按索引顺序读取
+
+-- 按分类过滤、按出版日期排序（默认排序）或按出版日期范围过滤；
+-- 同时覆盖按分类和出版日期范围的 COUNT 以及键集分页的游标条件，不需要回表
+CREATE INDEX idx_books_category_publication_date ON books (category, publication_date);
+
+-- 按分类过滤、按书名排序
+CREATE INDEX idx_books_category_title ON books (category, title);
+
+-- sortBy=author / quantity 的排序下推，分页较浅时按索引顺序读取前几行即可
+CREATE INDEX idx_books_author ON books (author);
+
+CREATE INDEX idx_books_quantity ON books (quantity);
+
+-- 读取冷数据的条件查询同样按分类和出版日期范围过滤
+CREATE INDEX idx_books_archive_category_publication_date ON books_archive (category, publication_date);
@@ -0,0 +1,35 @@
+-- 分类改为字典编码：books / books_archive 只存 SMALLINT 编码，名称存放在 category_dict，
+-- 由 CategoryDictionary 加载为内存中的编码表，BookMapper.xml 读写时按编码表转换，查询不关联字典表
+
+CREATE TABLE IF NOT EXISTS category_dict
+(
+    code SMALLINT    NOT NULL PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+
+-- 按名称顺序为已有分类编号；名称比较沿用列的排序规则，只差大小写的分类合并为一个编码
+INSERT INTO category_dict (code, name)
+SELECT ROW_NUMBER() OVER (ORDER BY name), name
+FROM (SELECT category AS name FROM books
+      UNION
+      SELECT category FROM books_archive) categories;
+
+ALTER TABLE books ADD COLUMN category_code SMALLINT NOT NULL DEFAULT 0;
+UPDATE books SET category_code = (SELECT code FROM category_dict WHERE category_dict.name = books.category);
+ALTER TABLE books ALTER COLUMN category_code DROP DEFAULT;
+
+ALTER TABLE books_archive ADD COLUMN category_code SMALLINT NOT NULL DEFAULT 0;
+UPDATE books_archive SET category_code = (SELECT code FROM category_dict WHERE category_dict.name = books_archive.category);
+ALTER TABLE books_archive ALTER COLUMN category_code DROP DEFAULT;
+
+-- 分类上的索引改建在编码列上，索引项从最长 50 个字符缩小到 2 个字节
+DROP INDEX idx_books_category_publication_date ON books;
+DROP INDEX idx_books_category_title ON books;
+DROP INDEX idx_books_archive_category_publication_date ON books_archive;
+
+ALTER TABLE books DROP COLUMN category;
+ALTER TABLE books_archive DROP COLUMN category;
+
+CREATE INDEX idx_books_category_publication_date ON books (category_code, publication_date);
+CREATE INDEX idx_books_category_title ON books (category_code, title);
+CREATE INDEX idx_books_archive_category_publication_date ON books_archive (category_code, publication_date);
@@ -0,0 +1,62 @@
+-- ISBN 在热表和归档表之间全局唯一：book_isbn 按图书登记 ISBN，不区分图书当前所在的表。
+-- 触发器在写入 books / books_archive 的同一语句、同一事务中维护 book_isbn，另一本书占用了该 ISBN 时
+-- 语句以重复键错误失败，映射为 DuplicateKeyException；归档和迁回时同一本书先写入目标表再从原表删除，登记保持不变。
+-- 只在 MySQL 上创建；执行期间应停止写入
+
+CREATE TABLE IF NOT EXISTS book_isbn
+(
+    isbn    VARCHAR(20) PRIMARY KEY,
+    book_id BIGINT      NOT NULL
+);
+
+INSERT INTO book_isbn (isbn, book_id)
+SELECT isbn, id
+FROM books;
+
+INSERT INTO book_isbn (isbn, book_id)
+SELECT isbn, id
+FROM books_archive;
+
+-- 同一本书已登记时（从另一张表迁入）不重复登记
+CREATE TRIGGER trg_books_isbn_insert
+    AFTER INSERT
+    ON books
+    FOR EACH ROW
+    INSERT INTO book_isbn (isbn, book_id)
+    SELECT NEW.isbn, NEW.id
+    FROM DUAL
+    WHERE NOT EXISTS (SELECT 1 FROM book_isbn WHERE isbn = NEW.isbn AND book_id = NEW.id);
+
+CREATE TRIGGER trg_books_archive_isbn_insert
+    AFTER INSERT
+    ON books_archive
+    FOR EACH ROW
+    INSERT INTO book_isbn (isbn, book_id)
+    SELECT NEW.isbn, NEW.id
+    FROM DUAL
+    WHERE NOT EXISTS (SELECT 1 FROM book_isbn WHERE isbn = NEW.isbn AND book_id = NEW.id);
+
+CREATE TRIGGER trg_books_isbn_update
+    AFTER UPDATE
+    ON books
+    FOR EACH ROW
+    UPDATE book_isbn SET isbn = NEW.isbn WHERE isbn = OLD.isbn AND book_id = OLD.id AND NEW.isbn <> OLD.isbn;
+
+-- 迁往另一张表时目标表中已有该书，保留登记
+CREATE TRIGGER trg_books_isbn_delete
+    AFTER DELETE
+    ON books
+    FOR EACH ROW
+    DELETE FROM book_isbn
+    WHERE isbn = OLD.isbn
+      AND book_id = OLD.id
+      AND NOT EXISTS (SELECT 1 FROM books_archive WHERE id = OLD.id);
+
+CREATE TRIGGER trg_books_archive_isbn_delete
+    AFTER DELETE
+    ON books_archive
+    FOR EACH ROW
+    DELETE FROM book_isbn
+    WHERE isbn = OLD.isbn
+      AND book_id = OLD.id
+      AND NOT EXISTS (SELECT 1 FROM books WHERE id = OLD.id);
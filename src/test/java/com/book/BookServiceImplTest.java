@@ -1,29 +1,92 @@
 package com.book;
 
+import com.book.archive.BookArchiver;
+import com.book.cache.BookCache;
+import com.book.cache.BooksTableVersion;
+import com.book.cache.CountCache;
+import com.book.cache.IsbnBloomFilter;
+import com.book.cache.NegativeIdCache;
+import com.book.cache.QueryResultCache;
+import com.book.category.CategoryDictionary;
+import com.book.config.BookCacheProperties;
+import com.book.config.BatchProperties;
+import com.book.config.BulkProperties;
+import com.book.config.CountProperties;
+import com.book.config.InventoryProperties;
+import com.book.config.IsbnFilterProperties;
+import com.book.config.NegativeCacheProperties;
+import com.book.config.QueryCacheProperties;
+import com.book.config.SearchProperties;
+import com.book.config.SortProperties;
+import com.book.constant.ErrorCode;
 import com.book.convert.BookMapper;
+import com.book.dto.BookBatchResult;
 import com.book.dto.BookDTO;
+import com.book.dto.BookPatchDTO;
 import com.book.dto.BookQueryDTO;
+import com.book.dto.BulkCreateResult;
+import com.book.dto.BulkPatchResult;
+import com.book.dto.PageCursor;
 import com.book.dto.PageResult;
+import com.book.enm.BookSortField;
+import com.book.enm.CountExecution;
+import com.book.exception.BusinessException;
+import com.book.factory.BookFactoryContext;
+import com.book.factory.EducationalBookFactory;
+import com.book.factory.FictionBookFactory;
+import com.book.inventory.StockWriteBehind;
 import com.book.mapper.BooksMapper;
 import com.book.po.Book;
+import com.book.po.BookWithTotal;
+import com.book.search.BookSearchIndex;
 import com.book.service.context.BookSortingContext;
+import com.book.service.impl.BookBatchLoader;
+import com.book.service.impl.BookBatchWriter;
+import com.book.service.impl.BookInsertBatcher;
 import com.book.service.impl.BookServiceImpl;
+import com.book.service.impl.CountQueryExecutor;
+import com.book.strategy.SortingStrategy;
+import com.book.strategy.TitleSortingStrategy;
+import org.apache.ibatis.cursor.Cursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.validation.Validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class BookServiceImplTest {
@@ -33,6 +96,50 @@ class BookServiceImplTest {
     private BookMapper bookMapper;
     @Mock
     private BookSortingContext bookSortingContext;
+    @Mock
+    private CategoryDictionary categoryDictionary;
+    @Spy
+    private BookFactoryContext bookFactoryContext =
+            new BookFactoryContext(Arrays.asList(new FictionBookFactory(), new EducationalBookFactory()));
+    @Spy
+    private BulkProperties bulkProperties = new BulkProperties();
+    @Spy
+    private BatchProperties batchProperties = new BatchProperties();
+    @Mock
+    private BookBatchLoader bookBatchLoader;
+    @Mock
+    private BookBatchWriter bookBatchWriter;
+    @Mock
+    private BookInsertBatcher bookInsertBatcher;
+    @Mock
+    private Validator validator;
+    @Spy
+    private BookCache bookCache = new BookCache(new BookCacheProperties());
+    @Spy
+    private IsbnBloomFilter isbnBloomFilter = new IsbnBloomFilter(new IsbnFilterProperties());
+    @Spy
+    private SortProperties sortProperties = new SortProperties();
+    @Spy
+    private BooksTableVersion booksTableVersion = new BooksTableVersion();
+    @Spy
+    private CountCache countCache = new CountCache(new CountProperties(), booksTableVersion);
+    @Spy
+    private NegativeIdCache negativeIdCache = new NegativeIdCache(new NegativeCacheProperties(), booksTableVersion);
+    @Spy
+    private QueryResultCache queryResultCache = new QueryResultCache(new QueryCacheProperties(), booksTableVersion);
+    @Spy
+    private BookSearchIndex bookSearchIndex = new BookSearchIndex(searchProperties());
+    @Spy
+    private CountProperties countProperties = new CountProperties();
+    @Spy
+    private InventoryProperties inventoryProperties = new InventoryProperties();
+    @Mock
+    private StockWriteBehind stockWriteBehind;
+    @Mock
+    private BookArchiver bookArchiver;
+    @Spy
+    private CountQueryExecutor countQueryExecutor = new CountQueryExecutor(new CountProperties(),
+            mock(PlatformTransactionManager.class));
     @InjectMocks
     private BookServiceImpl bookService;
 
@@ -53,6 +160,41 @@ class BookServiceImplTest {
         assertEquals(dto, result);
     }
 
+    @Test
+    void testCreateBook_registersCategoryBeforeInsert() {
+        // 准备测试数据
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+
+        // 执行测试
+        bookService.createBook(dto);
+
+        // 验证结果：分类编码在插入前分配，类型处理器只查找
+        InOrder order = inOrder(categoryDictionary, booksMapper);
+        order.verify(categoryDictionary).register(Collections.singletonList(entity.getCategory()));
+        order.verify(booksMapper).insert(entity);
+    }
+
+    @Test
+    void testPatchBooks_registersCategoriesBeforeBatch() {
+        // 准备测试数据
+        List<BookPatchDTO> patches = Arrays.asList(
+                BookPatchDTO.builder().id(1L).category("历史").build(),
+                BookPatchDTO.builder().id(2L).stockQuantity(1).build());
+        stubPatchMapping();
+        when(bookBatchWriter.update(anyList())).thenAnswer(invocation -> new int[((List<?>) invocation.getArgument(0)).size()]);
+
+        // 执行测试
+        bookService.patchBooks(patches);
+
+        // 验证结果
+        InOrder order = inOrder(categoryDictionary, bookBatchWriter);
+        order.verify(categoryDictionary).register(Arrays.asList("历史", null));
+        order.verify(bookBatchWriter, times(2)).update(anyList());
+    }
+
     @Test
     void testCreateBook_isbnExists() {
         BookDTO dto = buildBookDTO();
@@ -60,6 +202,133 @@ class BookServiceImplTest {
         assertThrows(RuntimeException.class, () -> bookService.createBook(dto));
     }
 
+    @Test
+    void testCreateBook_groupCommit() {
+        // 准备测试数据
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        when(bookInsertBatcher.isEnabled()).thenReturn(true);
+        when(bookInsertBatcher.insert(entity)).thenReturn(true);
+
+        // 执行测试
+        BookDTO result = bookService.createBook(dto);
+
+        // 验证结果：不预查ISBN
+        assertEquals(dto, result);
+        verify(bookInsertBatcher).insert(entity);
+        verify(booksMapper, never()).existsByIsbn(any());
+        verify(booksMapper, never()).insert(any());
+    }
+
+    @Test
+    void testCreateBook_groupCommitTimeoutInsertsDirectly() {
+        // 准备测试数据：批次超时未执行，已撤回
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        when(bookInsertBatcher.isEnabled()).thenReturn(true);
+        when(bookInsertBatcher.insert(entity)).thenReturn(false);
+
+        // 执行测试
+        bookService.createBook(dto);
+
+        // 验证结果
+        verify(booksMapper).insert(entity);
+    }
+
+    @Test
+    void testCreateBook_groupCommitDuplicateIsbn() {
+        // 准备测试数据：同一批次中的另一请求抢先插入了相同ISBN
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(bookInsertBatcher.isEnabled()).thenReturn(true);
+        doThrow(new DuplicateKeyException("Duplicate entry")).when(bookInsertBatcher).insert(entity);
+
+        // 执行测试
+        BusinessException e = assertThrows(BusinessException.class, () -> bookService.createBook(dto));
+
+        // 验证结果
+        assertEquals(ErrorCode.BOOK_ALREADY_EXISTS, e.getCode());
+        verify(bookSearchIndex, never()).onSaved(any());
+    }
+
+    @Test
+    void testCreateBook_assignsPartitionByCategory() {
+        // 准备测试数据
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        entity.setCategory("fiction");
+        when(booksMapper.existsByIsbn(dto.getIsbn())).thenReturn(false);
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+
+        // 执行测试
+        bookService.createBook(dto);
+
+        // 验证结果
+        ArgumentCaptor<Book> captor = ArgumentCaptor.forClass(Book.class);
+        verify(booksMapper).insert(captor.capture());
+        assertEquals(1, captor.getValue().getBookType());
+    }
+
+    @Test
+    void testCreateBooks_chunkedWithPerItemResults() {
+        bulkProperties.setChunkSize(2);
+        List<BookDTO> dtos = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BookDTO dto = buildBookDTO();
+            dto.setIsbn("isbn-" + i);
+            dtos.add(dto);
+        }
+        dtos.get(3).setIsbn("isbn-0");
+        when(booksMapper.findExistingIsbns(anyCollection())).thenReturn(Collections.emptyList());
+        when(booksMapper.findExistingIsbns(Arrays.asList("isbn-0", "isbn-1"))).thenReturn(Collections.singletonList("isbn-1"));
+        when(bookMapper.toEntity(any(BookDTO.class))).thenAnswer(invocation -> {
+            Book book = buildBook();
+            book.setIsbn(((BookDTO) invocation.getArgument(0)).getIsbn());
+            return book;
+        });
+        when(booksMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            books.forEach(book -> book.setId(100L + Long.parseLong(book.getIsbn().substring(5))));
+            return books.size();
+        });
+
+        BulkCreateResult result = bookService.createBooks(dtos);
+
+        assertEquals(4, result.getTotal());
+        assertEquals(2, result.getSucceeded());
+        assertEquals(100L, result.getItems().get(0).getId());
+        assertFalse(result.getItems().get(1).isSuccess());
+        assertEquals(102L, result.getItems().get(2).getId());
+        assertFalse(result.getItems().get(3).isSuccess());
+        verify(booksMapper, times(1)).insertBatch(anyList());
+    }
+
+    @Test
+    void testCreateBooks_duplicateFallsBackToSingleRows() {
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(booksMapper.findExistingIsbns(anyCollection())).thenReturn(Collections.emptyList());
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(booksMapper.insertBatch(anyList())).thenThrow(new DuplicateKeyException("duplicate"));
+
+        BulkCreateResult result = bookService.createBooks(Collections.singletonList(dto));
+
+        assertEquals(1, result.getFailed());
+        assertEquals("ISBN已存在", result.getItems().get(0).getMessage());
+    }
+
+    @Test
+    void testCreateBooks_tooManyItems() {
+        bulkProperties.setMaxItems(1);
+        assertThrows(BusinessException.class,
+                () -> bookService.createBooks(Arrays.asList(buildBookDTO(), buildBookDTO())));
+    }
+
     @Test
     void testGetBookById_found() {
         Book entity = buildBook();
@@ -70,12 +339,122 @@ class BookServiceImplTest {
         assertEquals(dto, result);
     }
 
+    @Test
+    void testGetBookById_cached() {
+        Book entity = buildBook();
+        when(booksMapper.findById(1L)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(buildBookDTO());
+        bookService.getBookById(1L);
+        bookService.getBookById(1L);
+        verify(booksMapper, times(1)).findById(1L);
+    }
+
     @Test
     void testGetBookById_notFound() {
         when(booksMapper.findById(1L)).thenReturn(null);
         assertThrows(RuntimeException.class, () -> bookService.getBookById(1L));
     }
 
+    @Test
+    void testGetBookById_fallsBackToArchive() {
+        // 准备测试数据
+        Book archived = buildBook();
+        BookDTO dto = buildBookDTO();
+        when(booksMapper.findById(1L)).thenReturn(null);
+        when(booksMapper.findArchivedByIds(Collections.singletonList(1L))).thenReturn(Collections.singletonList(archived));
+        when(bookMapper.toDTO(archived)).thenReturn(dto);
+
+        // 执行测试
+        BookDTO result = bookService.getBookById(1L);
+
+        // 验证结果
+        assertEquals(dto, result);
+        assertFalse(negativeIdCache.isKnownMissing(1L));
+    }
+
+    @Test
+    void testGetBookById_missingIdCached() {
+        // 准备测试数据
+        when(booksMapper.findById(1L)).thenReturn(null);
+
+        // 执行测试
+        assertThrows(BusinessException.class, () -> bookService.getBookById(1L));
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.deleteBook(1L));
+
+        // 验证结果
+        verify(booksMapper, times(1)).findById(1L);
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
+    @Test
+    void testCreateBook_clearsMissingId() {
+        // 准备测试数据
+        when(booksMapper.findById(1L)).thenReturn(null);
+        assertThrows(BusinessException.class, () -> bookService.getBookById(1L));
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(booksMapper.existsByIsbn(anyString())).thenReturn(false);
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+
+        // 执行测试
+        bookService.createBook(dto);
+        when(booksMapper.findById(1L)).thenReturn(entity);
+
+        // 验证结果
+        assertEquals(dto, bookService.getBookById(1L));
+    }
+
+    @Test
+    void testGetBookById_batchLoader() {
+        // 准备测试数据
+        Book entity = buildBook();
+        when(bookBatchLoader.isEnabled()).thenReturn(true);
+        when(bookBatchLoader.load(1L)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(buildBookDTO());
+
+        // 执行测试
+        BookDTO result = bookService.getBookById(1L);
+
+        // 验证结果
+        assertNotNull(result);
+        verify(booksMapper, never()).findById(anyLong());
+    }
+
+    @Test
+    void testGetBooksByIds() {
+        // 准备测试数据
+        Book first = buildBook();
+        Book third = buildBook();
+        third.setId(3L);
+        when(booksMapper.findByIds(anyCollection())).thenReturn(Arrays.asList(third, first));
+        when(bookMapper.toDTO(first)).thenReturn(BookDTO.builder().id(1L).build());
+        when(bookMapper.toDTO(third)).thenReturn(BookDTO.builder().id(3L).build());
+
+        // 执行测试
+        BookBatchResult result = bookService.getBooksByIds(Arrays.asList(3L, 2L, 1L, 3L));
+
+        // 验证结果
+        assertEquals(Arrays.asList(3L, 1L), result.getBooks().stream().map(BookDTO::getId).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(2L), result.getMissingIds());
+        assertThrows(BusinessException.class, () -> bookService.getBookById(2L));
+        verify(booksMapper, never()).findById(2L);
+    }
+
+    @Test
+    void testGetBooksByIds_chunked() {
+        // 准备测试数据
+        batchProperties.setChunkSize(2);
+        when(booksMapper.findByIds(anyCollection())).thenReturn(Collections.emptyList());
+
+        // 执行测试
+        BookBatchResult result = bookService.getBooksByIds(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+
+        // 验证结果
+        assertEquals(5, result.getMissingIds().size());
+        verify(booksMapper, times(3)).findByIds(anyCollection());
+    }
+
     @Test
     void testListBooks() {
         BookQueryDTO queryDTO = new BookQueryDTO();
@@ -83,57 +462,658 @@ class BookServiceImplTest {
         queryDTO.setPageSize(10);
         Book entity = buildBook();
         BookDTO dto = buildBookDTO();
-        when(booksMapper.findByCondition(any())).thenReturn(Collections.singletonList(entity));
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.singletonList(entity));
         when(bookMapper.toDTO(entity)).thenReturn(dto);
         PageResult<BookDTO> result = bookService.listBooks(queryDTO);
         assertEquals(1, result.getRecords().size());
         assertEquals(1, result.getTotal());
     }
 
+    @Test
+    void testListBooks_categoryRestrictedToPartition() {
+        // 准备测试数据
+        BookQueryDTO educational = new BookQueryDTO();
+        educational.setCategory("EDUCATIONAL");
+        BookQueryDTO other = new BookQueryDTO();
+        other.setCategory("历史");
+        BookQueryDTO unfiltered = new BookQueryDTO();
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.emptyList());
+
+        // 执行测试
+        bookService.listBooks(educational);
+        bookService.listBooks(other);
+        bookService.listBooks(unfiltered);
+
+        // 验证结果
+        ArgumentCaptor<BookQueryDTO> captor = ArgumentCaptor.forClass(BookQueryDTO.class);
+        verify(booksMapper, times(3)).findByCondition(captor.capture(), anyInt());
+        assertEquals(2, captor.getAllValues().get(0).getBookType());
+        assertEquals(0, captor.getAllValues().get(1).getBookType());
+        assertNull(captor.getAllValues().get(2).getBookType());
+    }
+
+    @Test
+    void testListBooksByCursor() {
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setPageSize(1);
+        queryDTO.setSortBy("title");
+        queryDTO.setSortDirection("asc");
+        Book first = buildBook();
+        queryDTO.setAfter(PageCursor.of(BookSortField.TITLE, false, first).encode());
+        Book second = buildBook();
+        second.setId(2L);
+        Book third = buildBook();
+        third.setId(3L);
+        when(booksMapper.findByKeyset(any(), any(), eq(2))).thenReturn(Arrays.asList(second, third));
+        when(bookMapper.toDTO(any())).thenReturn(buildBookDTO());
+        PageResult<BookDTO> result = bookService.listBooks(queryDTO);
+        assertEquals(1, result.getRecords().size());
+        assertTrue(result.isHasNext());
+        assertEquals(2L, PageCursor.decode(result.getNextCursor()).getId());
+        verify(booksMapper, never()).countByCondition(any(BookQueryDTO.class));
+    }
+
+    @Test
+    void testListBooksByCursor_sortMismatch() {
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setAfter(PageCursor.of(BookSortField.TITLE, false, buildBook()).encode());
+        assertThrows(BusinessException.class, () -> bookService.listBooks(queryDTO));
+    }
+
+    @Test
+    void testListBooks_withoutTotal() {
+        // 准备测试数据
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setPageSize(2);
+        queryDTO.setCount("none");
+        when(booksMapper.findByCondition(any(), eq(3))).thenReturn(Arrays.asList(buildBook(), buildBook(), buildBook()));
+        when(bookMapper.toDTO(any())).thenReturn(buildBookDTO());
+
+        // 执行测试
+        PageResult<BookDTO> result = bookService.listBooks(queryDTO);
+
+        // 验证结果
+        assertEquals(2, result.getRecords().size());
+        assertTrue(result.isHasNext());
+        assertEquals(-1, result.getTotal());
+        assertNotNull(result.getNextCursor());
+        verify(booksMapper, never()).countByCondition(any(BookQueryDTO.class));
+    }
+
+    @Test
+    void testListBooks_approximateTotal() {
+        // 准备测试数据
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setCount("approximate");
+        when(booksMapper.findByCondition(any(), eq(11))).thenReturn(Collections.singletonList(buildBook()));
+        when(booksMapper.estimateTableRows()).thenReturn(5000L);
+        when(bookMapper.toDTO(any())).thenReturn(buildBookDTO());
+
+        // 执行测试
+        PageResult<BookDTO> result = bookService.listBooks(queryDTO);
+
+        // 验证结果
+        assertEquals(5000, result.getTotal());
+        assertTrue(result.isTotalApproximate());
+        assertFalse(result.isHasNext());
+        verify(booksMapper, never()).countByCondition(any(BookQueryDTO.class));
+    }
+
+    @Test
+    void testListBooks_cachedTotalInvalidatedOnWrite() {
+        // 准备测试数据
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setTitle("Java");
+        queryDTO.setCount("cached");
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.emptyList());
+        when(booksMapper.countByCondition(any(BookQueryDTO.class))).thenReturn(42);
+
+        // 执行测试
+        bookService.listBooks(queryDTO);
+        queryDTO.setPageNum(2);
+        PageResult<BookDTO> second = bookService.listBooks(queryDTO);
+        when(booksMapper.delete(1L)).thenReturn(1);
+        bookService.deleteBook(1L);
+        bookService.listBooks(queryDTO);
+
+        // 验证结果
+        assertEquals(42, second.getTotal());
+        verify(booksMapper, times(2)).countByCondition(any(BookQueryDTO.class));
+    }
+
+    @Test
+    void testListBooks_invalidCountMode() {
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setCount("sometimes");
+        assertThrows(BusinessException.class, () -> bookService.listBooks(queryDTO));
+    }
+
+    @Test
+    void testListBooks_titleResolvedBySearchIndex() {
+        // 准备测试数据
+        Book indexed = buildBook();
+        bookSearchIndex.rebuild(sink -> sink.accept(indexed));
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setTitle("测试");
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.singletonList(indexed));
+        when(booksMapper.countByCondition(any(BookQueryDTO.class))).thenReturn(1);
+        when(bookMapper.toDTO(indexed)).thenReturn(buildBookDTO());
+
+        // 执行测试
+        PageResult<BookDTO> result = bookService.listBooks(queryDTO);
+
+        // 验证结果
+        assertEquals(1, result.getTotal());
+        assertEquals(Collections.singleton(1L), queryDTO.getCandidateIds());
+    }
+
+    @Test
+    void testListBooks_parallelCount() {
+        // 准备测试数据
+        countProperties.setExecution(CountExecution.PARALLEL);
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        when(booksMapper.findByCondition(any(), eq(11))).thenReturn(Collections.singletonList(buildBook()));
+        when(booksMapper.countByCondition(any(BookQueryDTO.class))).thenReturn(1);
+        when(bookMapper.toDTO(any())).thenReturn(buildBookDTO());
+
+        // 执行测试
+        PageResult<BookDTO> result = bookService.listBooks(queryDTO);
+
+        // 验证结果
+        assertEquals(1, result.getTotal());
+        assertFalse(result.isHasNext());
+    }
+
+    @Test
+    void testListBooks_parallelCountExceedsBudget() {
+        // 准备测试数据
+        countProperties.setExecution(CountExecution.PARALLEL);
+        countProperties.setTimeout(Duration.ofMillis(50));
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setPageSize(1);
+        when(booksMapper.findByCondition(any(), eq(2))).thenReturn(Arrays.asList(buildBook(), buildBook()));
+        when(booksMapper.countByCondition(any(BookQueryDTO.class))).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return 100;
+        });
+        when(bookMapper.toDTO(any())).thenReturn(buildBookDTO());
+
+        // 执行测试
+        long start = System.currentTimeMillis();
+        PageResult<BookDTO> result = bookService.listBooks(queryDTO);
+
+        // 验证结果
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(-1, result.getTotal());
+        assertEquals(1, result.getRecords().size());
+        assertTrue(result.isHasNext());
+    }
+
+    @Test
+    void testListBooks_windowedCount() {
+        // 准备测试数据
+        countProperties.setExecution(CountExecution.WINDOW);
+        BookWithTotal row = new BookWithTotal();
+        row.setId(1L);
+        row.setTotalCount(25L);
+        when(booksMapper.findByConditionWithTotal(any(), eq(10))).thenReturn(Collections.singletonList(row));
+        when(bookMapper.toDTO(any())).thenReturn(buildBookDTO());
+
+        // 执行测试
+        PageResult<BookDTO> result = bookService.listBooks(new BookQueryDTO());
+
+        // 验证结果
+        assertEquals(25, result.getTotal());
+        assertEquals(3, result.getPages());
+        verify(booksMapper, never()).countByCondition(any(BookQueryDTO.class));
+    }
+
+    @Test
+    void testListBooks_windowedCountUnsupported() {
+        // 准备测试数据
+        countProperties.setExecution(CountExecution.WINDOW);
+        when(booksMapper.findByConditionWithTotal(any(), anyInt()))
+                .thenThrow(new BadSqlGrammarException("count", "SELECT", new SQLException("syntax")));
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.emptyList());
+        when(booksMapper.countByCondition(any(BookQueryDTO.class))).thenReturn(0);
+
+        BookQueryDTO secondPage = new BookQueryDTO();
+        secondPage.setPageNum(2);
+
+        // 执行测试
+        bookService.listBooks(new BookQueryDTO());
+        bookService.listBooks(secondPage);
+
+        // 验证结果：只尝试一次窗口函数
+        verify(booksMapper, times(1)).findByConditionWithTotal(any(), anyInt());
+        verify(booksMapper, times(2)).countByCondition(any(BookQueryDTO.class));
+    }
+
+    @Test
+    void testListBooks_resultCachedUntilWrite() {
+        // 准备测试数据
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setCategory("小说");
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.emptyList());
+        when(booksMapper.delete(1L)).thenReturn(1);
+
+        // 执行测试
+        bookService.listBooks(queryDTO);
+        bookService.listBooks(queryDTO);
+        bookService.deleteBook(1L);
+        bookService.listBooks(queryDTO);
+
+        // 验证结果
+        verify(booksMapper, times(2)).findByCondition(any(), anyInt());
+    }
+
     @Test
     void testGetAllBooks() {
         Book entity = buildBook();
         BookDTO dto = buildBookDTO();
-        when(booksMapper.findAll()).thenReturn(Collections.singletonList(entity));
+        when(booksMapper.findAll(false)).thenReturn(Collections.singletonList(entity));
         when(bookMapper.toDTO(entity)).thenReturn(dto);
-        List<BookDTO> result = bookService.getAllBooks();
+        List<BookDTO> result = bookService.getAllBooks(false);
         assertEquals(1, result.size());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamAllBooks() throws Exception {
+        Book entity = buildBook();
+        BookDTO dto = buildBookDTO();
+        Cursor<Book> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(Arrays.asList(entity, entity).iterator());
+        when(booksMapper.findAllCursor(false)).thenReturn(cursor);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        List<BookDTO> streamed = new ArrayList<>();
+        bookService.streamAllBooks(false, streamed::add);
+        assertEquals(2, streamed.size());
+        verify(cursor).close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamAllBooks_consumerFailureClosesCursor() throws Exception {
+        Cursor<Book> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(Collections.singletonList(buildBook()).iterator());
+        when(booksMapper.findAllCursor(false)).thenReturn(cursor);
+        assertThrows(UncheckedIOException.class, () -> bookService.streamAllBooks(false, book -> {
+            throw new UncheckedIOException(new IOException("client disconnected"));
+        }));
+        verify(cursor).close();
+    }
+
     @Test
     void testUpdateBook_success() {
         BookDTO dto = buildBookDTO();
         Book entity = buildBook();
-        when(booksMapper.findById(1L)).thenReturn(entity);
         when(bookMapper.toEntity(dto)).thenReturn(entity);
-        doNothing().when(booksMapper).update(entity);
+        when(booksMapper.update(entity)).thenReturn(1);
         when(bookMapper.toDTO(entity)).thenReturn(dto);
         BookDTO result = bookService.updateBook(1L, dto);
         assertEquals(dto, result);
+        verify(booksMapper, never()).findById(anyLong());
+    }
+
+    @Test
+    void testUpdateBook_evictsCache() {
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(booksMapper.findById(1L)).thenReturn(entity);
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(booksMapper.update(entity)).thenReturn(1);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        bookService.getBookById(1L);
+        bookService.updateBook(1L, dto);
+        bookService.getBookById(1L);
+        verify(booksMapper, times(2)).findById(1L);
     }
 
     @Test
     void testUpdateBook_isbnExists() {
         BookDTO dto = buildBookDTO();
         Book entity = buildBook();
-        entity.setIsbn("old-isbn");
         dto.setIsbn("new-isbn");
-        when(booksMapper.findById(1L)).thenReturn(entity);
-        when(booksMapper.existsByIsbn("new-isbn")).thenReturn(true);
-        assertThrows(RuntimeException.class, () -> bookService.updateBook(1L, dto));
+        entity.setIsbn("new-isbn");
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(booksMapper.update(entity)).thenThrow(new DuplicateKeyException("Duplicate entry 'new-isbn'"));
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.updateBook(1L, dto));
+        assertEquals(ErrorCode.BOOK_ALREADY_EXISTS, exception.getCode());
     }
 
     @Test
-    void testDeleteBook_success() {
+    void testListBooks_archiveTierBypassesSearchIndex() {
+        // 准备测试数据
+        Book indexed = buildBook();
+        bookSearchIndex.rebuild(sink -> sink.accept(indexed));
+        BookQueryDTO queryDTO = new BookQueryDTO();
+        queryDTO.setTitle("测试");
+        when(bookArchiver.needsArchive(queryDTO)).thenReturn(true);
+        when(booksMapper.findByCondition(any(), anyInt())).thenReturn(Collections.emptyList());
+
+        // 执行测试
+        bookService.listBooks(queryDTO);
+
+        // 验证结果：归档的图书不在索引中，由数据库按 LIKE 过滤
+        assertTrue(queryDTO.isArchiveTier());
+        assertNull(queryDTO.getCandidateIds());
+    }
+
+    @Test
+    void testUpdateBook_restoresArchivedBook() {
+        // 准备测试数据
+        BookDTO dto = buildBookDTO();
+        when(bookMapper.toEntity(dto)).thenReturn(buildBook());
+        when(booksMapper.update(any(Book.class))).thenReturn(0, 1);
+        when(bookArchiver.restore(1L)).thenReturn(true);
+
+        // 执行测试
+        bookService.updateBook(1L, dto);
+
+        // 验证结果
+        verify(bookArchiver).restore(1L);
+        verify(booksMapper, times(2)).update(any(Book.class));
+    }
+
+    @Test
+    void testUpdateBook_notFound() {
+        BookDTO dto = buildBookDTO();
+        when(bookMapper.toEntity(dto)).thenReturn(buildBook());
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.updateBook(1L, dto));
+        assertEquals(ErrorCode.BOOK_NOT_FOUND, exception.getCode());
+    }
+
+    @Test
+    void testPatchBook_onlyGivenColumns() {
+        // 准备测试数据
+        BookPatchDTO patch = BookPatchDTO.builder().stockQuantity(5).build();
+        stubPatchMapping();
+        when(booksMapper.update(any(Book.class))).thenReturn(1);
+
+        // 执行测试
+        bookService.patchBook(1L, patch);
+
+        // 验证结果
+        ArgumentCaptor<Book> captor = ArgumentCaptor.forClass(Book.class);
+        verify(booksMapper).update(captor.capture());
+        assertEquals(1L, captor.getValue().getId());
+        assertEquals(5, captor.getValue().getQuantity());
+        assertNull(captor.getValue().getTitle());
+        assertNull(captor.getValue().getIsbn());
+        verify(booksMapper, never()).findById(anyLong());
+    }
+
+    @Test
+    void testPatchBook_emptyBody() {
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> bookService.patchBook(1L, new BookPatchDTO()));
+        assertEquals(ErrorCode.BAD_REQUEST, exception.getCode());
+    }
+
+    @Test
+    void testPatchBook_notFound() {
+        stubPatchMapping();
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> bookService.patchBook(1L, BookPatchDTO.builder().stockQuantity(5).build()));
+        assertEquals(ErrorCode.BOOK_NOT_FOUND, exception.getCode());
+    }
+
+    @Test
+    void testPatchBooks_groupedByShape() {
+        // 准备测试数据：两条只改库存，一条改分类，一条缺少ID，一条ID重复
+        List<BookPatchDTO> patches = Arrays.asList(
+                BookPatchDTO.builder().id(1L).stockQuantity(5).build(),
+                BookPatchDTO.builder().id(2L).category("历史").build(),
+                BookPatchDTO.builder().id(3L).stockQuantity(0).build(),
+                BookPatchDTO.builder().stockQuantity(1).build(),
+                BookPatchDTO.builder().id(1L).stockQuantity(9).build());
+        stubPatchMapping();
+        when(bookBatchWriter.update(anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            // ID 3 不存在
+            return books.stream().mapToInt(book -> book.getId() == 3L ? 0 : 1).toArray();
+        });
+
+        // 执行测试
+        BulkPatchResult result = bookService.patchBooks(patches);
+
+        // 验证结果
+        assertEquals(5, result.getTotal());
+        assertEquals(2, result.getSucceeded());
+        assertTrue(result.getItems().get(0).isSuccess());
+        assertTrue(result.getItems().get(1).isSuccess());
+        assertEquals("图书不存在", result.getItems().get(2).getMessage());
+        assertEquals("ID不能为空", result.getItems().get(3).getMessage());
+        assertEquals("请求中ID重复", result.getItems().get(4).getMessage());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Book>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bookBatchWriter, times(2)).update(captor.capture());
+        assertEquals(Arrays.asList(1L, 3L), captor.getAllValues().get(0).stream().map(Book::getId).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(2L), captor.getAllValues().get(1).stream().map(Book::getId).collect(Collectors.toList()));
+        assertTrue(negativeIdCache.isKnownMissing(3L));
+    }
+
+    @Test
+    void testPatchBooks_restoresArchivedBook() {
+        // 准备测试数据
+        List<BookPatchDTO> patches = Collections.singletonList(BookPatchDTO.builder().id(1L).stockQuantity(5).build());
+        stubPatchMapping();
+        when(bookBatchWriter.update(anyList())).thenReturn(new int[]{0}, new int[]{1});
+        when(bookBatchWriter.restoreFromArchive(1L)).thenReturn(true);
+
+        // 执行测试
+        BulkPatchResult result = bookService.patchBooks(patches);
+
+        // 验证结果
+        assertTrue(result.getItems().get(0).isSuccess());
+        assertFalse(negativeIdCache.isKnownMissing(1L));
+        verify(bookBatchWriter, times(2)).update(anyList());
+    }
+
+    @Test
+    void testPatchBooks_duplicateIsbnFallsBackToSingleRows() {
+        // 准备测试数据
+        List<BookPatchDTO> patches = Arrays.asList(
+                BookPatchDTO.builder().id(1L).isbn("9787536692930").build(),
+                BookPatchDTO.builder().id(2L).isbn("9787536692947").build());
+        stubPatchMapping();
+        when(bookBatchWriter.update(anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            if (books.size() > 1 || books.get(0).getId() == 2L) {
+                throw new DuplicateKeyException("Duplicate entry");
+            }
+            return new int[]{1};
+        });
+
+        // 执行测试
+        BulkPatchResult result = bookService.patchBooks(patches);
+
+        // 验证结果
+        assertTrue(result.getItems().get(0).isSuccess());
+        assertEquals("ISBN已存在", result.getItems().get(1).getMessage());
+        verify(bookBatchWriter, times(3)).update(anyList());
+    }
+
+    @Test
+    void testUpdateBook_versionConflict() {
+        // 准备测试数据
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        entity.setVersion(3L);
+        Book current = buildBook();
+        current.setVersion(4L);
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(booksMapper.update(entity)).thenReturn(0);
+        when(booksMapper.findStockById(1L)).thenReturn(current);
+
+        // 执行测试
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.updateBook(1L, dto));
+
+        // 验证结果
+        assertEquals(ErrorCode.BOOK_VERSION_CONFLICT, exception.getCode());
+    }
+
+    @Test
+    void testUpdateBook_versionIncremented() {
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        entity.setVersion(3L);
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(booksMapper.update(entity)).thenReturn(1);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        bookService.updateBook(1L, dto);
+        assertEquals(4L, entity.getVersion());
+    }
+
+    @Test
+    void testReserveStock_success() {
+        // 准备测试数据
+        when(booksMapper.reserveStock(1L, 2)).thenReturn(1);
+        when(booksMapper.findById(1L)).thenReturn(buildBook());
+        bookService.getBookById(1L);
+
+        // 执行测试
+        bookService.reserveStock(1L, 2);
+
+        // 验证结果：缓存失效，没有预读
+        assertNull(bookCache.getIfPresent(1L));
+        verify(booksMapper, never()).findStockById(anyLong());
+    }
+
+    @Test
+    void testReserveStock_insufficient() {
+        // 准备测试数据
+        Book stock = buildBook();
+        stock.setQuantity(1);
+        when(booksMapper.reserveStock(1L, 2)).thenReturn(0);
+        when(booksMapper.findStockById(1L)).thenReturn(stock);
+
+        // 执行测试
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.reserveStock(1L, 2));
+
+        // 验证结果
+        assertEquals(ErrorCode.INSUFFICIENT_STOCK, exception.getCode());
+    }
+
+    @Test
+    void testReserveStock_notFound() {
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.reserveStock(1L, 2));
+        assertEquals(ErrorCode.BOOK_NOT_FOUND, exception.getCode());
+        assertTrue(negativeIdCache.isKnownMissing(1L));
+    }
+
+    @Test
+    void testReserveStock_restoresArchivedBook() {
+        // 准备测试数据：热表中没有，归档表中有
+        Book restored = buildBook();
+        BookDTO dto = buildBookDTO();
+        when(booksMapper.reserveStock(1L, 2)).thenReturn(0, 1);
+        when(bookArchiver.restore(1L)).thenReturn(true);
+        when(booksMapper.findById(1L)).thenReturn(restored);
+        when(bookMapper.toDTO(restored)).thenReturn(dto);
+
+        // 执行测试
+        bookService.reserveStock(1L, 2);
+        BookDTO result = bookService.getBookById(1L);
+
+        // 验证结果：不记入负缓存，随后按ID能查到
+        assertEquals(dto, result);
+        assertFalse(negativeIdCache.isKnownMissing(1L));
+        verify(booksMapper, times(2)).reserveStock(1L, 2);
+    }
+
+    @Test
+    void testReleaseStock_writeBehindRestoresArchivedBook() {
+        when(stockWriteBehind.isEnabled()).thenReturn(true);
+        when(stockWriteBehind.release(1L, 2))
+                .thenReturn(StockWriteBehind.Outcome.NOT_FOUND, StockWriteBehind.Outcome.APPLIED);
+        when(bookArchiver.restore(1L)).thenReturn(true);
+        assertDoesNotThrow(() -> bookService.releaseStock(1L, 2));
+        assertFalse(negativeIdCache.isKnownMissing(1L));
+    }
+
+    @Test
+    void testReserveStock_retriesOnLockContention() {
+        // 准备测试数据
+        inventoryProperties.setRetryBackoff(Duration.ZERO);
+        when(booksMapper.reserveStock(1L, 2))
+                .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"))
+                .thenThrow(new DeadlockLoserDataAccessException("Deadlock found", null))
+                .thenReturn(1);
+
+        // 执行测试
+        assertDoesNotThrow(() -> bookService.reserveStock(1L, 2));
+
+        // 验证结果
+        verify(booksMapper, times(3)).reserveStock(1L, 2);
+    }
+
+    @Test
+    void testReserveStock_retriesExhausted() {
+        inventoryProperties.setRetryBackoff(Duration.ZERO);
+        inventoryProperties.setMaxAttempts(2);
+        when(booksMapper.reserveStock(1L, 2)).thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"));
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.reserveStock(1L, 2));
+        assertEquals(ErrorCode.STOCK_CONTENTION, exception.getCode());
+        verify(booksMapper, times(2)).reserveStock(1L, 2);
+    }
+
+    @Test
+    void testReleaseStock_notFound() {
+        assertThrows(BusinessException.class, () -> bookService.releaseStock(1L, 2));
+    }
+
+    @Test
+    void testReserveStock_writeBehind() {
+        // 准备测试数据
+        when(stockWriteBehind.isEnabled()).thenReturn(true);
+        when(stockWriteBehind.reserve(1L, 2)).thenReturn(StockWriteBehind.Outcome.APPLIED);
+
+        // 执行测试
+        bookService.reserveStock(1L, 2);
+
+        // 验证结果：不直接写数据库
+        verify(booksMapper, never()).reserveStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void testReserveStock_writeBehindInsufficient() {
+        when(stockWriteBehind.isEnabled()).thenReturn(true);
+        when(stockWriteBehind.reserve(1L, 2)).thenReturn(StockWriteBehind.Outcome.INSUFFICIENT);
+        when(stockWriteBehind.available(1L)).thenReturn(1L);
+        BusinessException exception = assertThrows(BusinessException.class, () -> bookService.reserveStock(1L, 2));
+        assertEquals(ErrorCode.INSUFFICIENT_STOCK, exception.getCode());
+    }
+
+    @Test
+    void testGetBookById_includesPendingStock() {
+        // 准备测试数据
         Book entity = buildBook();
+        BookDTO dto = buildBookDTO();
         when(booksMapper.findById(1L)).thenReturn(entity);
-        doNothing().when(booksMapper).delete(1L);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        when(stockWriteBehind.isEnabled()).thenReturn(true);
+        when(stockWriteBehind.available(1L)).thenReturn(7L);
+
+        // 执行测试
+        BookDTO result = bookService.getBookById(1L);
+
+        // 验证结果：缓存中的对象不变
+        assertEquals(7, result.getStockQuantity());
+        assertEquals(10, bookCache.getIfPresent(1L).getStockQuantity());
+    }
+
+    @Test
+    void testDeleteBook_success() {
+        when(booksMapper.delete(1L)).thenReturn(1);
         assertDoesNotThrow(() -> bookService.deleteBook(1L));
+        verify(booksMapper, never()).findById(anyLong());
     }
 
     @Test
     void testDeleteBook_notFound() {
-        when(booksMapper.findById(1L)).thenReturn(null);
+        when(booksMapper.delete(1L)).thenReturn(0);
         assertThrows(RuntimeException.class, () -> bookService.deleteBook(1L));
     }
 
@@ -143,15 +1123,115 @@ class BookServiceImplTest {
         assertTrue(bookService.isIsbnExists("isbn"));
     }
 
+    @Test
+    void testIsIsbnExists_bloomFilterNegative() {
+        isbnBloomFilter.rebuild(sink -> sink.accept("other-isbn"));
+        assertFalse(bookService.isIsbnExists("isbn"));
+        verify(booksMapper, never()).existsByIsbn(anyString());
+    }
+
+    @Test
+    void testCreateBook_addsIsbnToBloomFilter() {
+        isbnBloomFilter.rebuild(sink -> { });
+        BookDTO dto = buildBookDTO();
+        Book entity = buildBook();
+        when(bookMapper.toEntity(dto)).thenReturn(entity);
+        when(bookMapper.toDTO(entity)).thenReturn(dto);
+        bookService.createBook(dto);
+        when(booksMapper.existsByIsbn(entity.getIsbn())).thenReturn(true);
+        assertTrue(bookService.isIsbnExists(entity.getIsbn()));
+    }
+
     @Test
     void testGetBooksSorted() {
         List<BookDTO> books = Arrays.asList(buildBookDTO(), buildBookDTO());
-        when(booksMapper.findAll()).thenReturn(Collections.emptyList());
+        when(bookSortingContext.getStrategy("Title")).thenReturn(mock(SortingStrategy.class));
+        when(booksMapper.findAll(false)).thenReturn(Collections.emptyList());
         when(bookSortingContext.executeSort(anyString(), anyList())).thenReturn(books);
         List<BookDTO> result = bookService.getBooksSorted("Title");
         assertEquals(2, result.size());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetBooksSorted_pushedDownToDatabase() {
+        Book entity = buildBook();
+        Cursor<Book> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(Arrays.asList(entity, entity).iterator());
+        when(bookSortingContext.getStrategy("Title")).thenReturn(new TitleSortingStrategy());
+        when(booksMapper.findAllOrdered(BookSortField.TITLE, false, 0, null, false, true)).thenReturn(cursor);
+        when(bookMapper.toDTO(entity)).thenReturn(buildBookDTO());
+        List<BookDTO> result = bookService.getBooksSorted("Title");
+        assertEquals(2, result.size());
+        verify(booksMapper, never()).findAll(anyBoolean());
+        verify(bookSortingContext, never()).executeSort(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetBooksSorted_limitPushedDownToDatabase() {
+        // 准备测试数据
+        Book entity = buildBook();
+        Cursor<Book> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(Collections.singletonList(entity).iterator());
+        when(bookSortingContext.getStrategy("Title")).thenReturn(new TitleSortingStrategy());
+        when(booksMapper.findAllOrdered(BookSortField.TITLE, false, 20, 10, false, true)).thenReturn(cursor);
+        when(bookMapper.toDTO(entity)).thenReturn(buildBookDTO());
+
+        // 执行测试
+        List<BookDTO> result = bookService.getBooksSorted("Title", 20, 10, false);
+
+        // 验证结果
+        assertEquals(1, result.size());
+        verify(booksMapper, never()).findAll(anyBoolean());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetBooksSorted_topKInMemory() {
+        // 准备测试数据
+        SortingStrategy strategy = mock(SortingStrategy.class);
+        when(strategy.comparator()).thenReturn(Comparator.comparing(BookDTO::getTitle));
+        when(bookSortingContext.getStrategy("Custom")).thenReturn(strategy);
+        List<Book> entities = new ArrayList<>();
+        for (String title : Arrays.asList("D", "B", "E", "A", "C")) {
+            Book book = buildBook();
+            book.setTitle(title);
+            entities.add(book);
+            when(bookMapper.toDTO(book)).thenReturn(BookDTO.builder().title(title).build());
+        }
+        Cursor<Book> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(entities.iterator());
+        when(booksMapper.findAllCursor(false)).thenReturn(cursor);
+
+        // 执行测试
+        List<BookDTO> result = bookService.getBooksSorted("Custom", 1, 2, false);
+
+        // 验证结果
+        assertEquals(Arrays.asList("B", "C"), result.stream().map(BookDTO::getTitle).collect(Collectors.toList()));
+        verify(bookSortingContext, never()).executeSort(anyString(), anyList());
+    }
+
+    @Test
+    void testGetBooksSorted_invalidLimit() {
+        assertThrows(BusinessException.class, () -> bookService.getBooksSorted("Title", 0, 0, false));
+        assertThrows(BusinessException.class, () -> bookService.getBooksSorted("Title", 0, 1001, false));
+        assertThrows(BusinessException.class, () -> bookService.getBooksSorted("Title", -1, 10, false));
+    }
+
+    private void stubPatchMapping() {
+        when(bookMapper.toEntity(any(BookPatchDTO.class))).thenAnswer(invocation -> {
+            BookPatchDTO patch = invocation.getArgument(0);
+            Book book = new Book();
+            book.setId(patch.getId());
+            book.setTitle(patch.getTitle());
+            book.setIsbn(patch.getIsbn());
+            book.setQuantity(patch.getStockQuantity());
+            book.setCategory(patch.getCategory());
+            return book;
+        });
+    }
+
     private BookDTO buildBookDTO() {
         return BookDTO.builder()
                 .id(1L)
@@ -179,4 +1259,10 @@ class BookServiceImplTest {
 
         return book;
     }
-} 
\ No newline at end of file
+
+    private static SearchProperties searchProperties() {
+        SearchProperties properties = new SearchProperties();
+        properties.setEnabled(true);
+        return properties;
+    }
+}
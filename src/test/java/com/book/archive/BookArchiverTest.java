@@ -0,0 +1,325 @@
+package com.book.archive;
+
+import com.book.cache.BooksTableVersion;
+import com.book.category.CategoryCodeTypeHandler;
+import com.book.category.CategoryDictionary;
+import com.book.category.CategoryFilterTypeHandler;
+import com.book.config.ArchiveProperties;
+import com.book.config.SearchProperties;
+import com.book.constant.ErrorCode;
+import com.book.dto.BookQueryDTO;
+import com.book.exception.BusinessException;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.search.BookSearchIndex;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 在内存数据库上执行归档任务，校验分批迁移、分层查询和归档图书的读写
+ */
+class BookArchiverTest {
+
+    private static final int ROWS = 50;
+
+    private JdbcConnectionPool pool;
+
+    private BooksMapper booksMapper;
+
+    private BookSearchIndex bookSearchIndex;
+
+    private ArchiveProperties properties;
+
+    private BookArchiver archiver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = pool.getConnection();
+             Reader schema = Resources.getResourceAsReader("db/h2-schema.sql")) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+        DataSource dataSource = new LazyConnectionDataSourceProxy(pool);
+        Configuration configuration = new Configuration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLogImpl(NoLoggingImpl.class);
+        CategoryDictionary categories = new CategoryDictionary(dataSource);
+        configuration.getTypeHandlerRegistry().register(new CategoryCodeTypeHandler(categories));
+        configuration.getTypeHandlerRegistry().register(new CategoryFilterTypeHandler(categories));
+        categories.register(Collections.singletonList("文学"));
+        try (InputStream in = Resources.getResourceAsStream("mapper/BookMapper.xml")) {
+            new XMLMapperBuilder(in, configuration, "mapper/BookMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        booksMapper = new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration)).getMapper(BooksMapper.class);
+
+        properties = new ArchiveProperties();
+        properties.setMaxAge(Period.ofYears(10));
+        properties.setBatchSize(7);
+        properties.setBatchPause(Duration.ZERO);
+        bookSearchIndex = spy(new BookSearchIndex(new SearchProperties()));
+        archiver = new BookArchiver(properties, booksMapper, new DataSourceTransactionManager(dataSource),
+                bookSearchIndex, new BooksTableVersion());
+
+        // 偶数行出版于 20 年前，奇数行出版于去年
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            books.add(book(i, i % 2 == 0 ? 20 : 1));
+        }
+        booksMapper.insertBatch(books);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    void testArchiveMovesOldRowsInBatches() {
+        // 执行测试
+        long moved = archiver.archive();
+
+        // 验证结果：批次小于总数时分多批迁完，再次运行没有可迁移的行
+        assertEquals(ROWS / 2, moved);
+        assertEquals(0, archiver.archive());
+        List<Long> oldIds = idsOf(2);
+        assertTrue(booksMapper.findByIds(oldIds).isEmpty());
+        assertEquals(oldIds.size(), booksMapper.findArchivedByIds(oldIds).size());
+        assertEquals(ROWS / 2, booksMapper.findByIds(idsOf(1)).size());
+        verify(bookSearchIndex).onDeleted(2L);
+        // ISBN 检查包括归档的图书
+        assertTrue(booksMapper.existsByIsbn("isbn-2"));
+        assertEquals(Collections.singletonList("isbn-2"), booksMapper.findExistingIsbns(Arrays.asList("isbn-2", "isbn-x")));
+    }
+
+    @Test
+    void testArchiveBatchSkipsRowsNoLongerOld() {
+        // 准备测试数据：已改为较新日期的旧书不迁移
+        Book changes = new Book();
+        changes.setId(2L);
+        changes.setPublicationDate(new Date());
+        booksMapper.update(changes);
+
+        // 执行测试
+        archiver.archive();
+
+        // 验证结果
+        assertNotNull(booksMapper.findById(2L));
+        assertTrue(booksMapper.findArchivedByIds(Collections.singletonList(2L)).isEmpty());
+        assertEquals(ROWS / 2 - 1, booksMapper.findArchivedByIds(idsOf(2)).size());
+    }
+
+    @Test
+    void testConditionQueriesTouchArchiveOnlyWhenNeeded() {
+        archiver.archive();
+
+        // 执行测试并验证结果：不带日期条件时只查热表
+        BookQueryDTO hot = query(null, null);
+        assertFalse(archiver.needsArchive(hot));
+        hot.includeArchiveTier(archiver.needsArchive(hot));
+        assertEquals(ROWS / 2, booksMapper.countByCondition(hot));
+
+        // 日期范围的下界早于分界时合并冷热两层，排序和分页在合并结果上进行
+        BookQueryDTO range = query(date(30), null);
+        assertTrue(archiver.needsArchive(range));
+        range.includeArchiveTier(true);
+        range.setSortBy("publishDate");
+        range.setSortDirection("asc");
+        range.setPageSize(100);
+        assertEquals(ROWS, booksMapper.countByCondition(range));
+        List<Book> page = booksMapper.findByCondition(range, ROWS);
+        assertEquals(ROWS, page.size());
+        assertEquals((long) ROWS, page.get(0).getId());
+        assertEquals(ROWS, booksMapper.findByKeyset(range, null, ROWS).size());
+
+        // 下界晚于分界时不读归档表；显式要求时总是读
+        assertFalse(archiver.needsArchive(query(date(5), null)));
+        assertTrue(archiver.needsArchive(query(null, date(5))));
+        BookQueryDTO explicit = query(date(5), null);
+        explicit.setIncludeArchived(true);
+        assertTrue(archiver.needsArchive(explicit));
+    }
+
+    @Test
+    void testFullScansReadArchiveOnlyWhenAsked() {
+        archiver.archive();
+
+        // 执行测试 & 验证结果：默认只读热表，与条件查询一致；游标查询使用同一个数据源片段
+        assertEquals(ROWS / 2, booksMapper.findAll(false).size());
+        List<Book> all = booksMapper.findAll(true);
+        assertEquals(ROWS, all.size());
+        assertTrue(all.stream().anyMatch(book -> book.getId() == 2L && "文学".equals(book.getCategory())));
+    }
+
+    @Test
+    void testArchivedBookRestoredBeforeUpdate() {
+        archiver.archive();
+
+        // 执行测试：迁回热表后再修改
+        assertEquals(1, booksMapper.restoreFromArchive(2L));
+        assertEquals(1, booksMapper.deleteArchived(2L));
+        Book changes = new Book();
+        changes.setId(2L);
+        changes.setQuantity(99);
+
+        // 验证结果
+        assertEquals(1, booksMapper.update(changes));
+        assertEquals(99, booksMapper.findById(2L).getQuantity());
+        assertTrue(booksMapper.findArchivedByIds(Collections.singletonList(2L)).isEmpty());
+    }
+
+    @Test
+    void testRestoreMovesArchivedBookBack() {
+        archiver.archive();
+
+        // 执行测试
+        assertTrue(archiver.restore(2L));
+
+        // 验证结果：回到热表和索引，再次迁回时归档表中已没有
+        Book restored = booksMapper.findById(2L);
+        assertNotNull(restored);
+        assertTrue(booksMapper.findArchivedByIds(Collections.singletonList(2L)).isEmpty());
+        verify(bookSearchIndex).onSaved(restored);
+        assertFalse(archiver.restore(2L));
+        assertFalse(archiver.restore(ROWS + 1L));
+    }
+
+    @Test
+    void testRestoreTellsConcurrentRestoreFromIsbnConflict() {
+        archiver.archive();
+
+        // 准备测试数据：2 号已被并发请求迁回；4 号的ISBN被热表中的另一本书占用
+        assertEquals(1, booksMapper.restoreFromArchive(2L));
+        booksMapper.insertBatch(Collections.singletonList(book(4, 1)));
+
+        // 执行测试 & 验证结果
+        assertTrue(archiver.restore(2L));
+        BusinessException conflict = assertThrows(BusinessException.class, () -> archiver.restore(4L));
+        assertEquals(ErrorCode.BOOK_ALREADY_EXISTS, conflict.getCode());
+        assertEquals(1, booksMapper.findArchivedByIds(Collections.singletonList(4L)).size());
+    }
+
+    /**
+     * 在临时库上执行迁移脚本，校验 ISBN 在热表和归档表之间唯一，归档和迁回不受影响，需要 MySQL 8：
+     * mvn test -Dtest=BookArchiverTest -Dbenchmark.mysql.url=jdbc:mysql://localhost:3306/bench
+     * -Dbenchmark.mysql.user=root -Dbenchmark.mysql.password=...
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.mysql.url", matches = ".+")
+    void testIsbnUniqueAcrossTiersOnMySql() throws Exception {
+        String schema = "book_archive_check_" + System.nanoTime();
+        try (Connection connection = DriverManager.getConnection(System.getProperty("benchmark.mysql.url"),
+                System.getProperty("benchmark.mysql.user", "root"), System.getProperty("benchmark.mysql.password", ""))) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE DATABASE " + schema);
+            }
+            try (Statement statement = connection.createStatement()) {
+                // 准备测试数据
+                connection.setCatalog(schema);
+                for (String script : Arrays.asList("V1__baseline.sql", "V2__query_indexes.sql", "V3__category_dict.sql",
+                        "mysql/V4__isbn_registry.sql")) {
+                    ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/" + script));
+                }
+                String insert = "INSERT INTO books (id, title, author, publication_date, isbn, quantity, category_code)"
+                        + " VALUES (%d, 't', 'a', CURRENT_DATE, '%s', 1, 0)";
+                statement.executeUpdate(String.format(insert, 1, "isbn-1"));
+
+                // 执行测试 & 验证结果：归档后热表不能再使用该ISBN，迁回不受影响
+                statement.executeUpdate("INSERT INTO books_archive SELECT * FROM books WHERE id = 1");
+                statement.executeUpdate("DELETE FROM books WHERE id = 1");
+                assertThrows(SQLIntegrityConstraintViolationException.class,
+                        () -> statement.executeUpdate(String.format(insert, 2, "isbn-1")));
+                statement.executeUpdate("INSERT INTO books SELECT * FROM books_archive WHERE id = 1");
+                statement.executeUpdate("DELETE FROM books_archive WHERE id = 1");
+                assertEquals(1, count(statement, "SELECT COUNT(*) FROM book_isbn WHERE book_id = 1"));
+                statement.executeUpdate("DELETE FROM books WHERE id = 1");
+                assertEquals(0, count(statement, "SELECT COUNT(*) FROM book_isbn"));
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP DATABASE " + schema);
+                }
+            }
+        }
+    }
+
+    private static long count(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private List<Long> idsOf(int parity) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= ROWS; id++) {
+            if (parity == 2 ? id % 2 == 0 : id % 2 == 1) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static BookQueryDTO query(Date start, Date end) {
+        BookQueryDTO query = new BookQueryDTO();
+        query.setPublishDateStart(start);
+        query.setPublishDateEnd(end);
+        return query;
+    }
+
+    private static Date date(int yearsAgo) {
+        return Date.from(LocalDate.now().minusYears(yearsAgo).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Book book(int i, int yearsAgo) {
+        return Book.builder()
+                .title("Title " + i)
+                .author("Author " + i % 7)
+                .publicationDate(Date.from(LocalDate.now().minusYears(yearsAgo).minusDays(i)
+                        .atStartOfDay(ZoneId.systemDefault()).toInstant()))
+                .isbn("isbn-" + i)
+                .quantity(i % 9)
+                .category("文学")
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.book.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        // 准备测试数据
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        // 执行测试
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("978-7-" + i);
+        }
+
+        // 验证结果
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("978-7-" + i));
+        }
+        assertEquals(10_000, filter.insertions());
+    }
+
+    @Test
+    void testFalsePositiveRateWithinBound() {
+        // 准备测试数据
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("978-7-" + i);
+        }
+
+        // 执行测试
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("979-1-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // 验证结果：允许统计波动，误判率不应明显超过配置值
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testInvalidSizing() {
+        // 执行测试并验证异常
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+    }
+}
@@ -0,0 +1,123 @@
+package com.book.cache;
+
+import com.book.config.BookCacheProperties;
+import com.book.dto.BookDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCacheTest {
+
+    private BookCache bookCache;
+
+    @BeforeEach
+    void setUp() {
+        bookCache = new BookCache(new BookCacheProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        // 准备一个慢加载器，统计加载次数
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<BookDTO>> futures = new ArrayList<>();
+
+        // 执行测试
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return bookCache.get(1L, id -> {
+                    loads.incrementAndGet();
+                    sleep(100);
+                    return BookDTO.builder().id(id).title("三体").build();
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<BookDTO> future : futures) {
+            assertEquals("三体", future.get(5, TimeUnit.SECONDS).getTitle());
+        }
+        executor.shutdown();
+
+        // 验证结果
+        assertEquals(1, loads.get());
+        assertEquals(1, bookCache.stats().missCount());
+        assertEquals(7, bookCache.stats().hitCount());
+        assertEquals(1, bookCache.stats().loadSuccessCount());
+    }
+
+    @Test
+    void testLoaderExceptionIsNotCached() {
+        // 执行测试并验证异常
+        assertThrows(RuntimeException.class, () -> bookCache.get(1L, id -> {
+            throw new RuntimeException("Book not found with id: " + id);
+        }));
+
+        // 验证结果：下一次调用会重新加载
+        BookDTO book = bookCache.get(1L, id -> BookDTO.builder().id(id).build());
+        assertEquals(1L, book.getId());
+    }
+
+    @Test
+    void testEvictAgainAfterTransactionCompletes() {
+        // 准备测试数据
+        bookCache.get(1L, id -> BookDTO.builder().id(id).title("旧书名").build());
+        TransactionSynchronizationManager.initSynchronization();
+
+        // 执行测试：失效后、提交前被并发读取重新加载了旧值
+        bookCache.evict(1L);
+        bookCache.get(1L, id -> BookDTO.builder().id(id).title("旧书名").build());
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        // 验证结果
+        BookDTO book = bookCache.get(1L, id -> BookDTO.builder().id(id).title("新书名").build());
+        assertEquals("新书名", book.getTitle());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        // 准备测试数据
+        BookCacheProperties properties = new BookCacheProperties();
+        properties.setEnabled(false);
+        BookCache disabled = new BookCache(properties);
+        AtomicInteger loads = new AtomicInteger();
+
+        // 执行测试
+        disabled.get(1L, id -> BookDTO.builder().id((long) loads.incrementAndGet()).build());
+        disabled.get(1L, id -> BookDTO.builder().id((long) loads.incrementAndGet()).build());
+
+        // 验证结果
+        assertEquals(2, loads.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
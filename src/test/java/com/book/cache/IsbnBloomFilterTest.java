@@ -0,0 +1,93 @@
+package com.book.cache;
+
+import com.book.config.IsbnFilterProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnBloomFilterTest {
+
+    private IsbnBloomFilter isbnBloomFilter;
+
+    @BeforeEach
+    void setUp() {
+        IsbnFilterProperties properties = new IsbnFilterProperties();
+        properties.setExpectedInsertions(1000);
+        isbnBloomFilter = new IsbnBloomFilter(properties);
+    }
+
+    @Test
+    void testNotReadyAlwaysQueriesDatabase() {
+        // 准备测试数据
+        AtomicInteger lookups = new AtomicInteger();
+
+        // 执行测试
+        boolean exists = isbnBloomFilter.exists("978-7-111-11111-1", isbn -> lookups.incrementAndGet() > 0);
+
+        // 验证结果
+        assertTrue(exists);
+        assertEquals(1, lookups.get());
+        assertFalse(isbnBloomFilter.isReady());
+    }
+
+    @Test
+    void testDefiniteNegativeSkipsDatabase() {
+        // 准备测试数据
+        isbnBloomFilter.rebuild(sink -> Arrays.asList("978-7-111-11111-1", "978-7-111-11111-2").forEach(sink));
+        AtomicInteger lookups = new AtomicInteger();
+
+        // 执行测试
+        boolean missing = isbnBloomFilter.exists("978-7-5366-9293-0", isbn -> lookups.incrementAndGet() > 0);
+        boolean present = isbnBloomFilter.exists("978-7-111-11111-1", isbn -> lookups.incrementAndGet() > 0);
+
+        // 验证结果
+        assertFalse(missing);
+        assertTrue(present);
+        assertEquals(1, lookups.get());
+        assertEquals(1, isbnBloomFilter.stats().getDefiniteNegatives());
+        assertEquals(1, isbnBloomFilter.stats().getMaybePositives());
+    }
+
+    @Test
+    void testPutAfterBuildIsVisible() {
+        // 准备测试数据
+        isbnBloomFilter.rebuild(sink -> { });
+
+        // 执行测试
+        isbnBloomFilter.put("978-7-111-11111-1");
+
+        // 验证结果
+        assertTrue(isbnBloomFilter.exists("978-7-111-11111-1", isbn -> true));
+    }
+
+    @Test
+    void testPutDuringRebuildSurvivesSwap() {
+        // 准备测试数据
+        isbnBloomFilter.rebuild(sink -> { });
+
+        // 执行测试：重建扫描期间有新的ISBN写入
+        isbnBloomFilter.rebuild(sink -> {
+            sink.accept("978-7-111-11111-1");
+            isbnBloomFilter.put("978-7-111-11111-2");
+        });
+
+        // 验证结果
+        assertTrue(isbnBloomFilter.exists("978-7-111-11111-2", isbn -> true));
+    }
+
+    @Test
+    void testRebuildDropsDeletedIsbns() {
+        // 准备测试数据
+        isbnBloomFilter.rebuild(sink -> sink.accept("978-7-111-11111-1"));
+
+        // 执行测试：该ISBN已被删除，重建时不再出现
+        isbnBloomFilter.rebuild(sink -> { });
+
+        // 验证结果
+        assertFalse(isbnBloomFilter.exists("978-7-111-11111-1", isbn -> true));
+    }
+}
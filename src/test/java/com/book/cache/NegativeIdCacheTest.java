@@ -0,0 +1,80 @@
+package com.book.cache;
+
+import com.book.config.NegativeCacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NegativeIdCacheTest {
+
+    private BooksTableVersion tableVersion;
+
+    private NegativeIdCache cache;
+
+    @BeforeEach
+    void setUp() {
+        tableVersion = new BooksTableVersion();
+        cache = new NegativeIdCache(new NegativeCacheProperties(), tableVersion);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testMarkAndInvalidate() {
+        cache.markMissing(1L, cache.currentVersion());
+        assertTrue(cache.isKnownMissing(1L));
+        assertFalse(cache.isKnownMissing(2L));
+
+        cache.invalidate(1L);
+        assertFalse(cache.isKnownMissing(1L));
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void testNotMarkedWhenWriteHappenedDuringLookup() {
+        // 准备测试数据：查询开始后有并发写入
+        long version = cache.currentVersion();
+        tableVersion.bump();
+
+        // 执行测试
+        cache.markMissing(1L, version);
+
+        // 验证结果
+        assertFalse(cache.isKnownMissing(1L));
+    }
+
+    @Test
+    void testInvalidatedAgainAfterCommit() {
+        // 准备测试数据
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1L);
+        // 提交前有并发读取重新记录了该ID
+        cache.markMissing(1L, cache.currentVersion());
+
+        // 执行测试
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        // 验证结果
+        assertFalse(cache.isKnownMissing(1L));
+    }
+
+    @Test
+    void testDisabled() {
+        NegativeCacheProperties properties = new NegativeCacheProperties();
+        properties.setEnabled(false);
+        NegativeIdCache disabled = new NegativeIdCache(properties, tableVersion);
+        disabled.markMissing(1L, disabled.currentVersion());
+        assertFalse(disabled.isKnownMissing(1L));
+    }
+}
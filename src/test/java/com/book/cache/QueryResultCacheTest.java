@@ -0,0 +1,150 @@
+package com.book.cache;
+
+import com.book.config.CountProperties;
+import com.book.config.QueryCacheProperties;
+import com.book.dto.BookDTO;
+import com.book.dto.BookQueryDTO;
+import com.book.dto.PageResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+
+    private BooksTableVersion tableVersion;
+
+    private QueryResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        tableVersion = new BooksTableVersion();
+        cache = new QueryResultCache(new QueryCacheProperties(), tableVersion);
+    }
+
+    @Test
+    void testEquivalentQueriesShareEntry() {
+        // 准备测试数据
+        BookQueryDTO first = new BookQueryDTO();
+        first.setCategory("小说");
+        first.setTitle("");
+        BookQueryDTO second = new BookQueryDTO();
+        second.setCategory("小说");
+        second.setSortBy("publication_date");
+        AtomicInteger loads = new AtomicInteger();
+
+        // 执行测试
+        cache.get(first, () -> page(loads));
+        cache.get(second, () -> page(loads));
+
+        // 验证结果
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testDifferentPageOrSortIsSeparateEntry() {
+        AtomicInteger loads = new AtomicInteger();
+        BookQueryDTO query = new BookQueryDTO();
+        cache.get(query, () -> page(loads));
+        query.setPageNum(2);
+        cache.get(query, () -> page(loads));
+        query.setSortDirection("asc");
+        cache.get(query, () -> page(loads));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testIncludeArchivedUnsetAndFalseAreSeparateEntries() {
+        // 准备测试数据：只有出版日期上界，未设置时读归档表，false 时只读热表
+        Date end = new Date();
+        BookQueryDTO unset = new BookQueryDTO();
+        unset.setPublishDateEnd(end);
+        BookQueryDTO hotOnly = new BookQueryDTO();
+        hotOnly.setPublishDateEnd(end);
+        hotOnly.setIncludeArchived(false);
+        AtomicInteger loads = new AtomicInteger();
+
+        // 执行测试
+        PageResult<BookDTO> first = cache.get(unset, () -> page(loads));
+        PageResult<BookDTO> second = cache.get(hotOnly, () -> page(loads));
+
+        // 验证结果：总数缓存同样区分
+        assertEquals(2, loads.get());
+        assertNotSame(first, second);
+        CountCache countCache = new CountCache(new CountProperties(), tableVersion);
+        countCache.put(unset, tableVersion.current(), 10);
+        assertNull(countCache.getIfPresent(hotOnly));
+        assertEquals(10L, countCache.getIfPresent(unset));
+    }
+
+    @Test
+    void testWriteInvalidates() {
+        AtomicInteger loads = new AtomicInteger();
+        BookQueryDTO query = new BookQueryDTO();
+        cache.get(query, () -> page(loads));
+        tableVersion.bump();
+        cache.get(query, () -> page(loads));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testResultWithoutRequestedTotalIsNotKept() {
+        AtomicInteger loads = new AtomicInteger();
+        BookQueryDTO query = new BookQueryDTO();
+        cache.get(query, () -> PageResult.withoutTotal(Collections.emptyList(), 1, 10, false));
+        cache.get(query, () -> page(loads));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testConcurrentMissesCoalesced() throws Exception {
+        // 准备测试数据
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<PageResult<BookDTO>>> futures = new ArrayList<>();
+
+        // 执行测试
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.get(new BookQueryDTO(), () -> {
+                    sleep();
+                    return page(loads);
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<PageResult<BookDTO>> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // 验证结果
+        assertEquals(1, loads.get());
+    }
+
+    private static PageResult<BookDTO> page(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return PageResult.of(Collections.emptyList(), 0, 1, 10);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
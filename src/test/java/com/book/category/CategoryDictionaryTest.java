@@ -0,0 +1,230 @@
+package com.book.category;
+
+import com.book.config.MigrationProperties;
+import com.book.dto.BookQueryDTO;
+import com.book.mapper.BooksMapper;
+import com.book.migration.SchemaMigrator;
+import com.book.po.Book;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在内存数据库上校验分类字典的编码分配、事务中的发布、查询条件和迁移脚本的回填
+ */
+class CategoryDictionaryTest {
+
+    private JdbcConnectionPool pool;
+
+    private CategoryDictionary dictionary;
+
+    private Configuration configuration;
+
+    private BooksMapper booksMapper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        dictionary = new CategoryDictionary(pool);
+        configuration = new Configuration(new Environment("test", new SpringManagedTransactionFactory(), pool));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLogImpl(NoLoggingImpl.class);
+        configuration.getTypeHandlerRegistry().register(new CategoryCodeTypeHandler(dictionary));
+        configuration.getTypeHandlerRegistry().register(new CategoryFilterTypeHandler(dictionary));
+        try (InputStream in = Resources.getResourceAsStream("mapper/BookMapper.xml")) {
+            new XMLMapperBuilder(in, configuration, "mapper/BookMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        booksMapper = new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration)).getMapper(BooksMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    void testWriteAllocatesCodesAndReadMapsBack() throws Exception {
+        runScript("db/h2-schema.sql");
+
+        // 执行测试
+        dictionary.register(Arrays.asList("科幻", "文学", "科幻"));
+        booksMapper.insertBatch(Arrays.asList(book("isbn-1", "科幻"), book("isbn-2", "文学"), book("isbn-3", "科幻")));
+
+        // 验证结果：每个分类一个编码，行中只存编码，读取时还原为名称
+        assertEquals(2, dictionary.size());
+        assertEquals(dictionary.codeOf("科幻"), queryInt("SELECT category_code FROM books WHERE isbn = 'isbn-3'"));
+        assertEquals("科幻", booksMapper.findByIsbn("isbn-1").getCategory());
+        // 只差大小写的名称共用编码
+        dictionary.register(Arrays.asList("FICTION", "fiction"));
+        assertEquals(dictionary.codeOf("FICTION"), dictionary.codeOf("fiction"));
+        assertEquals(3, queryInt("SELECT COUNT(*) FROM category_dict"));
+    }
+
+    @Test
+    void testFilterDoesNotAllocate() throws Exception {
+        runScript("db/h2-schema.sql");
+        dictionary.register(Arrays.asList("科幻", "文学"));
+        booksMapper.insertBatch(Arrays.asList(book("isbn-1", "科幻"), book("isbn-2", "文学")));
+
+        // 执行测试
+        BookQueryDTO known = new BookQueryDTO();
+        known.setCategory("文学");
+        BookQueryDTO unknown = new BookQueryDTO();
+        unknown.setCategory("不存在的分类");
+
+        // 验证结果
+        assertEquals(1, booksMapper.countByCondition(known));
+        assertEquals(0, booksMapper.countByCondition(unknown));
+        assertNull(dictionary.find("不存在的分类"));
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM category_dict"));
+    }
+
+    @Test
+    void testConcurrentNodesAgreeOnCodes() throws Exception {
+        runScript("db/h2-schema.sql");
+        CategoryDictionary other = new CategoryDictionary(pool);
+        other.reload();
+
+        // 执行测试：另一个节点先分配了编码，本节点的内存表中还没有
+        dictionary.register(Collections.singletonList("历史"));
+        other.register(Arrays.asList("历史", "艺术"));
+        int code = dictionary.codeOf("历史");
+        int otherCode = other.codeOf("历史");
+        int next = other.codeOf("艺术");
+
+        // 验证结果
+        assertEquals(code, otherCode);
+        assertNotEquals(code, next);
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM category_dict"));
+    }
+
+    @Test
+    void testWriteWithoutRegisterRejected() throws Exception {
+        runScript("db/h2-schema.sql");
+
+        // 执行测试并验证结果：绑定参数时不分配编码
+        assertThrows(RuntimeException.class, () -> booksMapper.insertBatch(Collections.singletonList(book("isbn-1", "科幻"))));
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM category_dict"));
+    }
+
+    @Test
+    void testRegisterInTransactionPublishesAfterCommit() throws Exception {
+        runScript("db/h2-schema.sql");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(pool);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+
+        // 执行测试：回滚的事务中分配的编码不发布，也不留在字典表中
+        template.executeWithoutResult(status -> {
+            dictionary.register(Collections.singletonList("科幻"));
+            booksMapper.insertBatch(Collections.singletonList(book("isbn-1", "科幻")));
+            status.setRollbackOnly();
+        });
+        assertThrows(IllegalStateException.class, () -> dictionary.codeOf("科幻"));
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM category_dict"));
+
+        // 提交的事务中分配的编码与图书使用同一连接，提交后发布
+        template.executeWithoutResult(status -> {
+            dictionary.register(Collections.singletonList("科幻"));
+            booksMapper.insertBatch(Collections.singletonList(book("isbn-1", "科幻")));
+        });
+
+        // 验证结果
+        assertEquals(1, dictionary.codeOf("科幻"));
+        assertEquals("科幻", booksMapper.findByIsbn("isbn-1").getCategory());
+    }
+
+    @Test
+    void testOtherStringColumnsKeepDefaultHandler() {
+        // 验证结果：分类处理器只按类名被引用，不替换 String 的默认处理器
+        assertTrue(configuration.getTypeHandlerRegistry().getTypeHandler(String.class) instanceof StringTypeHandler);
+    }
+
+    @Test
+    void testMigrationEncodesExistingCategories() throws Exception {
+        // 准备测试数据：迁移前按字符串存储分类的库
+        runScript("db/migration/V1__baseline.sql");
+        execute("INSERT INTO books (title, author, publication_date, isbn, quantity, category)"
+                + " VALUES ('t1', 'a', DATE '2020-01-01', 'isbn-1', 1, '科幻'),"
+                + " ('t2', 'a', DATE '2020-01-01', 'isbn-2', 1, '文学')");
+        execute("INSERT INTO books_archive (id, title, author, publication_date, isbn, quantity, category)"
+                + " VALUES (100, 't3', 'a', DATE '1990-01-01', 'isbn-3', 1, '历史')");
+        MigrationProperties properties = new MigrationProperties();
+        properties.setBaselineVersion(1);
+
+        // 执行测试
+        new SchemaMigrator(properties, pool, new DefaultResourceLoader()).migrate();
+
+        // 验证结果
+        assertEquals(3, dictionary.size());
+        assertEquals("科幻", booksMapper.findByIsbn("isbn-1").getCategory());
+        assertEquals("历史", booksMapper.findArchivedByIds(Arrays.asList(100L)).get(0).getCategory());
+        BookQueryDTO query = new BookQueryDTO();
+        query.setCategory("文学");
+        assertEquals("isbn-2", booksMapper.findByCondition(query, 10).get(0).getIsbn());
+        // 新分类接在已有编码之后
+        dictionary.register(Collections.singletonList("艺术"));
+        assertEquals(4, dictionary.codeOf("艺术"));
+    }
+
+    private void runScript(String resource) throws Exception {
+        try (Connection connection = pool.getConnection();
+             Reader schema = Resources.getResourceAsReader(resource)) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static Book book(String isbn, String category) {
+        return Book.builder()
+                .title("title-" + isbn)
+                .author("author")
+                .publicationDate(new Date())
+                .isbn(isbn)
+                .quantity(1)
+                .category(category)
+                .build();
+    }
+}
@@ -0,0 +1,320 @@
+package com.book.datasource;
+
+import com.book.config.DataSourceRoutingProperties;
+import com.book.dto.DataSourceStatsDTO;
+import com.book.enm.LoadBalance;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用三个内存数据库模拟主库和两个从库，复制由测试手动复制心跳来模拟
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private JdbcConnectionPool primary;
+
+    private final Map<String, JdbcConnectionPool> replicas = new LinkedHashMap<>();
+
+    private DataSourceRoutingProperties properties;
+
+    private ReplicaRouter router;
+
+    private ReadWriteRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        long suffix = System.nanoTime();
+        primary = database("primary-" + suffix);
+        replicas.put("replica-0", database("replica0-" + suffix));
+        replicas.put("replica-1", database("replica1-" + suffix));
+        properties = new DataSourceRoutingProperties();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        if (router != null) {
+            router.shutdown();
+        }
+        replicas.clear();
+    }
+
+    @Test
+    void testReadOnlyTransactionsRoundRobinAcrossReplicas() throws Exception {
+        // 准备测试数据
+        createRouter();
+        replicateAll();
+
+        // 执行测试 & 验证结果
+        String first = node(true);
+        String second = node(true);
+        assertTrue(first.startsWith("replica"));
+        assertTrue(second.startsWith("replica"));
+        assertNotEquals(first, second);
+        assertEquals(first, node(true));
+        assertEquals("primary", node(false));
+    }
+
+    @Test
+    void testReadOnlyFlagSeenThroughLazyProxy() throws Exception {
+        // 准备测试数据：事务管理器在设置只读标记之前获取连接，需要延迟到第一条语句
+        createRouter();
+        replicateAll();
+        DataSource lazy = new LazyConnectionDataSourceProxy(dataSource);
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(lazy));
+        readOnly.setReadOnly(true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(lazy);
+
+        // 执行测试
+        String url = readOnly.execute(status -> jdbcTemplate.execute((Connection connection) -> connection.getMetaData().getURL()));
+
+        // 验证结果
+        assertTrue(url.contains("replica"), url);
+    }
+
+    @Test
+    void testReadsStickToPrimaryAfterWrite() throws Exception {
+        // 准备测试数据：缩短各时长，粘滞窗口不小于 maxLag + healthCheckInterval
+        properties.setStickyWindow(Duration.ofMillis(100));
+        properties.setMaxLag(Duration.ofMillis(50));
+        properties.setHealthCheckInterval(Duration.ofMillis(50));
+        createRouter();
+        replicateAll();
+
+        // 执行测试
+        ReadYourWrites.begin(null, millis -> {
+        });
+        try {
+            router.markWrite();
+
+            // 验证结果
+            assertEquals("primary", node(true));
+            Thread.sleep(150);
+            assertTrue(node(true).startsWith("replica"));
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+
+    @Test
+    void testWriteOutsideRequestDoesNotStick() throws Exception {
+        // 准备测试数据：后台任务的写入不在请求范围内
+        createRouter();
+        replicateAll();
+
+        // 执行测试
+        router.markWrite();
+
+        // 验证结果
+        assertTrue(node(true).startsWith("replica"));
+    }
+
+    @Test
+    void testStickinessIsScopedToWritingClient() throws Exception {
+        // 准备测试数据
+        createRouter();
+        replicateAll();
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        new ReadYourWritesFilter().doFilter(new MockHttpServletRequest(), writeResponse,
+                (request, response) -> router.markWrite());
+        String lastWrite = writeResponse.getHeader(ReadYourWrites.HEADER);
+
+        // 执行测试
+        MockHttpServletRequest sameClient = new MockHttpServletRequest();
+        sameClient.addHeader(ReadYourWrites.HEADER, lastWrite);
+        String[] nodes = new String[2];
+        new ReadYourWritesFilter().doFilter(sameClient, new MockHttpServletResponse(),
+                (request, response) -> nodes[0] = readNode());
+        new ReadYourWritesFilter().doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                (request, response) -> nodes[1] = readNode());
+
+        // 验证结果：写入的客户端读主库，其他客户端仍读从库
+        assertNotNull(lastWrite);
+        assertEquals("primary", nodes[0]);
+        assertTrue(nodes[1].startsWith("replica"));
+    }
+
+    @Test
+    void testLaggingReplicaRemovedFromRotation() throws Exception {
+        // 准备测试数据：replica-1 的心跳停在 10 秒之前
+        createRouter();
+        replicateAll();
+        heartbeat(replicas.get("replica-1"), System.currentTimeMillis() - 10_000);
+
+        // 执行测试
+        router.checkReplicas();
+
+        // 验证结果
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica-0", node(true));
+        }
+        DataSourceStatsDTO stats = router.stats();
+        assertTrue(stats.getReplicas().get(0).isInRotation());
+        assertFalse(stats.getReplicas().get(1).isInRotation());
+        assertTrue(stats.getReplicas().get(1).getLagMillis() >= 10_000);
+
+        // 追上之后重新加入轮换
+        replicateAll();
+        assertNotEquals(node(true), node(true));
+    }
+
+    @Test
+    void testLeastConnectionsPrefersIdleReplica() throws Exception {
+        // 准备测试数据
+        properties.setLoadBalance(LoadBalance.LEAST_CONNECTIONS);
+        createRouter();
+        replicateAll();
+
+        // 执行测试 & 验证结果
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (Connection held = dataSource.getConnection()) {
+            String busy = nameOf(held);
+            for (int i = 0; i < 4; i++) {
+                String idle = node(true);
+                assertTrue(idle.startsWith("replica"));
+                assertNotEquals(busy, idle);
+            }
+            assertEquals(1, router.stats().getReplicas().stream().mapToInt(DataSourceStatsDTO.Replica::getActiveConnections).sum());
+        }
+        assertEquals(0, router.stats().getReplicas().stream().mapToInt(DataSourceStatsDTO.Replica::getActiveConnections).sum());
+    }
+
+    @Test
+    void testNoHealthyReplicaFallsBackToPrimary() throws Exception {
+        // 准备测试数据：从库上还没有心跳
+        createRouter();
+        router.checkReplicas();
+
+        // 执行测试 & 验证结果
+        assertEquals("primary", node(true));
+        assertEquals(1, router.stats().getPrimaryReads());
+        assertEquals(0, router.stats().getReplicaReads());
+    }
+
+    @Test
+    void testUnreachableReplicaDroppedOnConnect() throws Exception {
+        // 准备测试数据
+        Unreachable unreachable = new Unreachable(replicas.get("replica-0"));
+        Map<String, DataSource> targets = new LinkedHashMap<>(replicas);
+        targets.put("replica-0", unreachable);
+        router = new ReplicaRouter(primary, targets, properties);
+        dataSource = new ReadWriteRoutingDataSource(router);
+        replicateAll();
+        unreachable.down = true;
+
+        // 执行测试 & 验证结果：连接失败的从库立即移出轮换，本次读主库或另一个从库
+        for (int i = 0; i < 4; i++) {
+            assertNotEquals("replica-0", node(true));
+        }
+        assertFalse(router.stats().getReplicas().get(0).isInRotation());
+    }
+
+    @Test
+    void testStickyWindowShorterThanReplicaStalenessRejected() {
+        // 准备测试数据：轮换中的从库最多落后 maxLag + healthCheckInterval = 3s
+        properties.setStickyWindow(Duration.ofMillis(2999));
+
+        // 执行测试 & 验证结果
+        assertThrows(IllegalArgumentException.class, this::createRouter);
+    }
+
+    private void createRouter() {
+        router = new ReplicaRouter(primary, new LinkedHashMap<>(replicas), properties);
+        dataSource = new ReadWriteRoutingDataSource(router);
+    }
+
+    /**
+     * 在主库写入心跳，复制到所有从库，再检查一次延迟
+     */
+    private void replicateAll() {
+        router.checkReplicas();
+        Long beat = new JdbcTemplate(primary).queryForObject("SELECT beat_millis FROM datasource_heartbeat WHERE id = 1", Long.class);
+        replicas.values().forEach(replica -> heartbeat(replica, beat));
+        router.checkReplicas();
+    }
+
+    private static void heartbeat(DataSource dataSource, long beat) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        if (template.update("UPDATE datasource_heartbeat SET beat_millis = ? WHERE id = 1", beat) == 0) {
+            template.update("INSERT INTO datasource_heartbeat (id, beat_millis) VALUES (1, ?)", beat);
+        }
+    }
+
+    private String node(boolean readOnly) throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+        try (Connection connection = dataSource.getConnection()) {
+            return nameOf(connection);
+        }
+    }
+
+    private String readNode() {
+        try {
+            return node(true);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String nameOf(Connection connection) throws SQLException {
+        String url = connection.getMetaData().getURL();
+        if (url.contains("replica0")) {
+            return "replica-0";
+        }
+        if (url.contains("replica1")) {
+            return "replica-1";
+        }
+        return "primary";
+    }
+
+    /**
+     * 可以切换为拒绝连接的数据源
+     */
+    private static final class Unreachable extends DelegatingDataSource {
+        private volatile boolean down;
+
+        private Unreachable(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+
+    private static JdbcConnectionPool database(String name) throws Exception {
+        JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = pool.getConnection();
+             Reader schema = Resources.getResourceAsReader("db/h2-schema.sql")) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,59 @@
+package com.book.dto;
+
+import com.book.enm.BookSortField;
+import com.book.exception.BusinessException;
+import com.book.po.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void testEncodeAndDecodeTitleCursor() {
+        // 准备测试数据
+        Book last = Book.builder().id(42L).title("三体").build();
+
+        // 执行测试
+        String token = PageCursor.of(BookSortField.TITLE, false, last).encode();
+        PageCursor cursor = PageCursor.decode(token);
+
+        // 验证结果
+        assertEquals(BookSortField.TITLE, cursor.getSortField());
+        assertFalse(cursor.isDescending());
+        assertEquals(42L, cursor.getId());
+        assertEquals("三体", cursor.getSortValue());
+        assertEquals(">", cursor.getOperator());
+    }
+
+    @Test
+    void testEncodeAndDecodeDateCursor() {
+        // 准备测试数据
+        Date publicationDate = new Date(1199145600000L);
+        Book last = Book.builder().id(7L).publicationDate(publicationDate).build();
+
+        // 执行测试
+        PageCursor cursor = PageCursor.decode(PageCursor.of(BookSortField.PUBLICATION_DATE, true, last).encode());
+
+        // 验证结果
+        assertEquals(publicationDate, cursor.getSortValue());
+        assertTrue(cursor.isDescending());
+        assertEquals("<", cursor.getOperator());
+    }
+
+    @Test
+    void testDecodeInvalidCursor() {
+        // 执行测试并验证异常
+        assertThrows(BusinessException.class, () -> PageCursor.decode("not-a-cursor"));
+        assertThrows(BusinessException.class, () -> PageCursor.decode("%%%"));
+    }
+
+    @Test
+    void testUnknownSortFieldRejected() {
+        // 执行测试并验证异常
+        assertThrows(BusinessException.class, () -> BookSortField.fromProperty("id; DROP TABLE books"));
+        assertEquals(BookSortField.PUBLICATION_DATE, BookSortField.fromProperty("publishDate"));
+    }
+}
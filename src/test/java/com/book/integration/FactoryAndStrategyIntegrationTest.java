@@ -2,6 +2,7 @@ package com.book.integration;
 
 import com.book.dto.BookDTO;
 import com.book.enm.BookType;
+import com.book.factory.BookFactory;
 import com.book.factory.BookFactoryContext;
 import com.book.factory.EducationalBookFactory;
 import com.book.factory.FictionBookFactory;
@@ -26,7 +27,7 @@ class FactoryAndStrategyIntegrationTest {
     @BeforeEach
     void setUp() {
         // 初始化工厂上下文
-        List<com.book.factory.BookFactory> factoryList = Arrays.asList(
+        List<BookFactory> factoryList = Arrays.asList(
                 new EducationalBookFactory(),
                 new FictionBookFactory()
         );
@@ -183,6 +184,19 @@ class FactoryAndStrategyIntegrationTest {
         assertEquals("Unknown sorting strategy: Unknown", strategyException.getMessage());
     }
 
+    @Test
+    void testPartitionOfCategory() {
+        // 分类与有工厂的图书类型一致时落在该工厂的分区，其余分类落在默认分区
+        assertEquals(1, bookFactoryContext.partitionOf("FICTION"));
+        assertEquals(2, bookFactoryContext.partitionOf(" educational "));
+        assertEquals(BookFactory.DEFAULT_PARTITION, bookFactoryContext.partitionOf("CHILDREN"));
+        assertEquals(BookFactory.DEFAULT_PARTITION, bookFactoryContext.partitionOf("历史"));
+
+        // 分类为空时不限定分区
+        assertNull(bookFactoryContext.partitionOf(""));
+        assertNull(bookFactoryContext.partitionOf(null));
+    }
+
     @Test
     void testPerformanceWithLargeDataset() {
         // 创建大量测试数据
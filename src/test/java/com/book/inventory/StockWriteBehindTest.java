@@ -0,0 +1,382 @@
+package com.book.inventory;
+
+import com.book.cache.BookCache;
+import com.book.cache.BooksTableVersion;
+import com.book.config.BookCacheProperties;
+import com.book.config.InventoryProperties;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.service.impl.BookBatchWriter;
+import com.book.sharding.ShardTransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.HeuristicCompletionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockWriteBehindTest {
+
+    @TempDir
+    Path journalDir;
+
+    private InventoryProperties properties;
+
+    private BooksMapper booksMapper;
+
+    private BookBatchWriter bookBatchWriter;
+
+    private final List<StockWriteBehind> started = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new InventoryProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setJournalDir(journalDir.toString());
+        // 测试中手动写回
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        booksMapper = mock(BooksMapper.class);
+        bookBatchWriter = mock(BookBatchWriter.class);
+        when(booksMapper.findStockById(1L)).thenReturn(stock(1L, 100));
+        when(bookBatchWriter.findStockCheckpoints()).thenReturn(checkpoints(-1));
+        when(bookBatchWriter.addStock(anyMap(), anyLong()))
+                .thenAnswer(invocation -> matched(invocation.<Map<Long, Long>>getArgument(0).size()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (StockWriteBehind writeBehind : started) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        // 准备测试数据：16 个线程各尝试预留 20 件，库存 100
+        StockWriteBehind writeBehind = start();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            tasks.add(() -> {
+                int reserved = 0;
+                for (int i = 0; i < 20; i++) {
+                    if (writeBehind.reserve(1L, 1) == StockWriteBehind.Outcome.APPLIED) {
+                        reserved++;
+                    }
+                }
+                return reserved;
+            });
+        }
+
+        // 执行测试
+        int reserved = 0;
+        for (Future<Integer> result : executor.invokeAll(tasks)) {
+            reserved += result.get();
+        }
+        executor.shutdown();
+        writeBehind.flush();
+
+        // 验证结果：只写回一条合并后的增量
+        assertEquals(100, reserved);
+        assertEquals(0L, writeBehind.available(1L));
+        assertEquals(Collections.singletonMap(1L, -100L), flushedDeltas(1).get(0));
+        verify(booksMapper, times(1)).findStockById(1L);
+    }
+
+    @Test
+    void testNotFound() throws Exception {
+        StockWriteBehind writeBehind = start();
+        assertEquals(StockWriteBehind.Outcome.NOT_FOUND, writeBehind.reserve(2L, 1));
+        assertNull(writeBehind.available(2L));
+    }
+
+    @Test
+    void testFlushDeletesJournalSegments() throws Exception {
+        // 准备测试数据
+        StockWriteBehind writeBehind = start();
+        writeBehind.reserve(1L, 3);
+        writeBehind.release(1L, 1);
+
+        // 执行测试
+        int flushed = writeBehind.flush();
+
+        // 验证结果：只剩当前正在写入的空日志段
+        assertEquals(1, flushed);
+        assertEquals(Collections.singletonMap(1L, -2L), flushedDeltas(1).get(0));
+        assertEquals(1, countSegments());
+    }
+
+    @Test
+    void testFailedFlushIsRetried() throws Exception {
+        // 准备测试数据
+        StockWriteBehind writeBehind = start();
+        writeBehind.reserve(1L, 3);
+        when(bookBatchWriter.addStock(anyMap(), anyLong()))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenReturn(new int[]{1});
+
+        // 执行测试
+        assertThrows(IllegalStateException.class, writeBehind::flush);
+        writeBehind.reserve(1L, 2);
+        writeBehind.flush();
+
+        // 验证结果：第二次写回包含两次预留，检查点覆盖两个日志段
+        List<Map<Long, Long>> deltas = flushedDeltas(2);
+        assertEquals(Collections.singletonMap(1L, -5L), deltas.get(1));
+        assertEquals(1, countSegments());
+    }
+
+    @Test
+    void testPartialShardCommitRequeuesOnlyUncommittedShards() throws Exception {
+        // 准备测试数据：分片 1 先提交成功，分片 0 提交失败
+        PlatformTransactionManager shard0 = mock(PlatformTransactionManager.class);
+        PlatformTransactionManager shard1 = mock(PlatformTransactionManager.class);
+        when(shard0.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        when(shard1.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        doThrow(new IllegalStateException("shard 0 down")).doNothing().when(shard0).commit(any());
+        when(booksMapper.findStockById(2L)).thenReturn(stock(2L, 100));
+        when(bookBatchWriter.findStockCheckpoints()).thenReturn(checkpoints(-1, -1));
+        StockWriteBehind writeBehind = start(new ShardTransactionManager(Arrays.asList(shard0, shard1)));
+        writeBehind.reserve(1L, 4);
+        writeBehind.reserve(2L, 3);
+
+        // 执行测试
+        when(bookBatchWriter.findStockCheckpoints()).thenReturn(checkpoints(-1, 0));
+        assertThrows(HeuristicCompletionException.class, writeBehind::flush);
+        writeBehind.flush();
+
+        // 验证结果：只重新写回分片 0 上的图书，内存中的可用库存不变
+        List<Map<Long, Long>> deltas = flushedDeltas(2);
+        assertEquals(Collections.singletonMap(2L, -3L), deltas.get(1));
+        assertEquals(97L, writeBehind.available(2L));
+    }
+
+    @Test
+    void testRejectedFlushRebasesOnDatabaseStock() throws Exception {
+        // 准备测试数据：另一个节点已扣减同一本书，写回被拒绝
+        StockWriteBehind writeBehind = start();
+        writeBehind.reserve(1L, 10);
+        when(bookBatchWriter.addStock(anyMap(), anyLong())).thenReturn(new int[]{0});
+        when(booksMapper.findStockById(1L)).thenReturn(stock(1L, 5));
+
+        // 执行测试
+        writeBehind.flush();
+
+        // 验证结果：以数据库中的库存为准，不再继续超卖
+        assertEquals(5L, writeBehind.available(1L));
+        assertEquals(StockWriteBehind.Outcome.INSUFFICIENT, writeBehind.reserve(1L, 6));
+        assertEquals(StockWriteBehind.Outcome.APPLIED, writeBehind.reserve(1L, 5));
+    }
+
+    @Test
+    void testRecoverReplaysUnflushedJournal() throws Exception {
+        // 准备测试数据：预留后没有写回就“崩溃”
+        StockWriteBehind crashed = start();
+        crashed.reserve(1L, 4);
+        crashed.release(1L, 1);
+
+        // 执行测试
+        start();
+
+        // 验证结果
+        ArgumentCaptor<Long> checkpoint = ArgumentCaptor.forClass(Long.class);
+        assertEquals(Collections.singletonMap(1L, -3L), flushedDeltas(1, checkpoint).get(0));
+        assertEquals(0L, checkpoint.getValue());
+    }
+
+    @Test
+    void testRecoverSkipsCheckpointedSegments() throws Exception {
+        // 准备测试数据：日志段 0 已随增量提交，但删除文件前崩溃
+        StockWriteBehind crashed = start();
+        crashed.reserve(1L, 4);
+        when(bookBatchWriter.findStockCheckpoints()).thenReturn(checkpoints(0));
+
+        // 执行测试
+        start();
+
+        // 验证结果
+        verify(bookBatchWriter, never()).addStock(anyMap(), anyLong());
+    }
+
+    @Test
+    void testRecoverReplaysEachShardFromItsOwnCheckpoint() throws Exception {
+        // 准备测试数据：分片 1 已提交日志段 0，分片 0 提交失败
+        when(booksMapper.findStockById(2L)).thenReturn(stock(2L, 100));
+        StockWriteBehind crashed = start();
+        crashed.reserve(1L, 4);
+        crashed.reserve(2L, 3);
+        when(bookBatchWriter.findStockCheckpoints()).thenReturn(checkpoints(-1, 0));
+
+        // 执行测试
+        start();
+
+        // 验证结果：只重放分片 0 上的图书
+        ArgumentCaptor<Long> checkpoint = ArgumentCaptor.forClass(Long.class);
+        assertEquals(Collections.singletonMap(2L, -3L), flushedDeltas(1, checkpoint).get(0));
+        assertEquals(0L, checkpoint.getValue());
+    }
+
+    @Test
+    void testDiscardCompensatesJournal() throws Exception {
+        // 准备测试数据
+        StockWriteBehind crashed = start();
+        crashed.reserve(1L, 4);
+
+        // 执行测试：写入了绝对库存，之后崩溃
+        crashed.discard(1L);
+        start();
+
+        // 验证结果：重放的净增量为 0
+        assertEquals(Collections.emptyMap(), flushedDeltas(1).get(0));
+    }
+
+    @Test
+    void testDiscardInTransactionAppliesAfterCommit() throws Exception {
+        // 准备测试数据
+        StockWriteBehind writeBehind = start();
+        writeBehind.reserve(1L, 4);
+        when(booksMapper.findStockById(1L)).thenReturn(stock(1L, 50));
+
+        // 执行测试
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writeBehind.discard(1L);
+            assertEquals(96L, writeBehind.available(1L));
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // 验证结果：提交后按新的库存重建计数器
+        assertNull(writeBehind.available(1L));
+        assertEquals(StockWriteBehind.Outcome.APPLIED, writeBehind.reserve(1L, 1));
+        assertEquals(49L, writeBehind.available(1L));
+    }
+
+    @Test
+    void testDiscardRolledBackKeepsReservations() throws Exception {
+        // 准备测试数据
+        StockWriteBehind writeBehind = start();
+        writeBehind.reserve(1L, 4);
+
+        // 执行测试
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writeBehind.discard(1L);
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        writeBehind.flush();
+
+        // 验证结果
+        assertEquals(96L, writeBehind.available(1L));
+        assertEquals(Collections.singletonMap(1L, -4L), flushedDeltas(1).get(0));
+    }
+
+    @Test
+    void testPendingDiscardBypassesNewCounter() throws Exception {
+        // 准备测试数据
+        StockWriteBehind writeBehind = start();
+
+        // 执行测试：事务提交前没有计数器的图书不从数据库读取旧值
+        StockWriteBehind.Outcome outcome;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writeBehind.discard(1L);
+            outcome = writeBehind.reserve(1L, 1);
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // 验证结果
+        assertEquals(StockWriteBehind.Outcome.BYPASSED, outcome);
+        verify(booksMapper, never()).findStockById(1L);
+        assertEquals(StockWriteBehind.Outcome.APPLIED, writeBehind.reserve(1L, 1));
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private StockWriteBehind start() throws Exception {
+        return start(mock(PlatformTransactionManager.class));
+    }
+
+    private StockWriteBehind start(PlatformTransactionManager transactionManager) throws Exception {
+        StockWriteBehind writeBehind = new StockWriteBehind(properties, booksMapper, bookBatchWriter,
+                transactionManager,
+                new BookCache(new BookCacheProperties()), new BooksTableVersion());
+        writeBehind.start();
+        started.add(writeBehind);
+        return writeBehind;
+    }
+
+    private List<Map<Long, Long>> flushedDeltas(int times) {
+        return flushedDeltas(times, ArgumentCaptor.forClass(Long.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<Long, Long>> flushedDeltas(int times, ArgumentCaptor<Long> checkpoint) {
+        ArgumentCaptor<Map<Long, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(bookBatchWriter, times(times)).addStock(captor.capture(), checkpoint.capture());
+        List<Map<Long, Long>> copies = new ArrayList<>();
+        captor.getAllValues().forEach(deltas -> copies.add(new HashMap<>(deltas)));
+        return copies;
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * 图书ID按奇偶分到两个分片
+     */
+    private static BookBatchWriter.StockCheckpoints checkpoints(long... segments) {
+        return new BookBatchWriter.StockCheckpoints(segments, id -> (int) (id % segments.length));
+    }
+
+    private static int[] matched(int size) {
+        int[] counts = new int[size];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+    private static Book stock(Long id, int quantity) {
+        Book book = new Book();
+        book.setId(id);
+        book.setQuantity(quantity);
+        book.setVersion(0L);
+        return book;
+    }
+}
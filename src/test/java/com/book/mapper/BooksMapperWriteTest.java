@@ -0,0 +1,403 @@
+package com.book.mapper;
+
+import com.book.category.CategoryCodeTypeHandler;
+import com.book.category.CategoryDictionary;
+import com.book.category.CategoryFilterTypeHandler;
+import com.book.po.Book;
+import com.book.service.impl.BookBatchWriter;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在内存数据库上执行 BookMapper.xml 中的写语句，校验影响行数和唯一约束的语义，
+ * 并对比“先查后写”与单条语句在并发写入下的吞吐量
+ */
+class BooksMapperWriteTest {
+
+    private static final int ROWS = 200;
+
+    private JdbcConnectionPool dataSource;
+
+    private SqlSessionFactory sessionFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = JdbcConnectionPool.create(
+                "jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setMaxConnections(32);
+        try (Connection connection = dataSource.getConnection();
+             Reader schema = Resources.getResourceAsReader("db/h2-schema.sql")) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+
+        Configuration configuration = new Configuration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLogImpl(NoLoggingImpl.class);
+        CategoryDictionary categories = new CategoryDictionary(dataSource);
+        configuration.getTypeHandlerRegistry().register(new CategoryCodeTypeHandler(categories));
+        configuration.getTypeHandlerRegistry().register(new CategoryFilterTypeHandler(categories));
+        categories.register(Arrays.asList("科幻", "历史"));
+        try (InputStream in = Resources.getResourceAsStream("mapper/BookMapper.xml")) {
+            new XMLMapperBuilder(in, configuration, "mapper/BookMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            books.add(book("isbn-" + i));
+        }
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            session.getMapper(BooksMapper.class).insertBatch(books);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.dispose();
+    }
+
+    @Test
+    void testUpdateReturnsMatchedRows() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            // 准备测试数据
+            Book changes = new Book();
+            changes.setId(1L);
+            changes.setCategory("历史");
+
+            // 执行测试
+            int updated = mapper.update(changes);
+            changes.setId(ROWS + 1L);
+            int missing = mapper.update(changes);
+
+            // 验证结果：category 写入的是 category 列而不是 quantity
+            assertEquals(1, updated);
+            assertEquals(0, missing);
+            Book saved = mapper.findById(1L);
+            assertEquals("历史", saved.getCategory());
+            assertEquals(10, saved.getQuantity());
+        }
+    }
+
+    @Test
+    void testUpdateDuplicateIsbnViolatesUniqueKey() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            Book changes = new Book();
+            changes.setId(1L);
+            changes.setIsbn("isbn-2");
+
+            PersistenceException exception = assertThrows(PersistenceException.class, () -> mapper.update(changes));
+            assertTrue(exception.getCause() instanceof SQLIntegrityConstraintViolationException);
+        }
+    }
+
+    @Test
+    void testDeleteReturnsAffectedRows() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            assertEquals(1, mapper.delete(1L));
+            assertEquals(0, mapper.delete(1L));
+        }
+    }
+
+    @Test
+    void testBatchUpdateSharesStatementPerShape() {
+        try (SqlSession session = sessionFactory.openSession(ExecutorType.BATCH, true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            // 准备测试数据：两条只改库存（其中一条ID不存在），一条只改分类
+            Book first = new Book();
+            first.setId(1L);
+            first.setQuantity(1);
+            Book missing = new Book();
+            missing.setId(ROWS + 1L);
+            missing.setQuantity(2);
+            Book category = new Book();
+            category.setId(2L);
+            category.setCategory("历史");
+
+            // 执行测试
+            mapper.update(first);
+            mapper.update(missing);
+            mapper.update(category);
+            List<BatchResult> results = session.flushStatements();
+
+            // 验证结果：形状相同的语句合并为一个批次，逐条返回匹配行数
+            assertEquals(2, results.size());
+            assertArrayEquals(new int[]{1, 0}, results.get(0).getUpdateCounts());
+            assertArrayEquals(new int[]{1}, results.get(1).getUpdateCounts());
+            assertEquals(BookBatchWriter.shapeOf(first), BookBatchWriter.shapeOf(missing));
+            assertNotEquals(BookBatchWriter.shapeOf(first), BookBatchWriter.shapeOf(category));
+        }
+    }
+
+    @Test
+    void testConcurrentUpdatesLoseNothing() throws Exception {
+        // 执行测试：每次更新都是单条语句，版本号在语句内加一
+        int threads = 8;
+        int opsPerThread = 100;
+        runWriters(threads, opsPerThread, BooksMapper::update);
+
+        // 验证结果：没有更新被覆盖，版本号之和等于更新次数
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            List<Long> ids = new ArrayList<>();
+            for (long id = 1; id <= ROWS; id++) {
+                ids.add(id);
+            }
+            long versions = session.getMapper(BooksMapper.class).findByIds(ids).stream()
+                    .mapToLong(Book::getVersion).sum();
+            assertEquals((long) threads * opsPerThread, versions);
+        }
+    }
+
+    /**
+     * 对比先查询再更新和单条语句更新的吞吐，不在常规测试中运行：
+     * mvn test -Dtest=BooksMapperWriteTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkConcurrentUpdates() throws Exception {
+        // 准备测试数据
+        int threads = 8;
+        int opsPerThread = 2_000;
+        BiFunction<BooksMapper, Book, Integer> preRead = (mapper, changes) -> {
+            Book existing = mapper.findById(changes.getId());
+            return existing == null ? 0 : mapper.update(changes);
+        };
+        BiFunction<BooksMapper, Book, Integer> singleStatement = BooksMapper::update;
+
+        // 执行测试：先预热一轮，再交替计时
+        runWriters(threads, opsPerThread / 4, preRead);
+        runWriters(threads, opsPerThread / 4, singleStatement);
+        long preReadNanos = runWriters(threads, opsPerThread, preRead);
+        long singleNanos = runWriters(threads, opsPerThread, singleStatement);
+
+        long ops = (long) threads * opsPerThread;
+        System.out.printf("concurrent updates (%d writers x %d): pre-read=%d ops/s, single statement=%d ops/s%n",
+                threads, opsPerThread, ops * 1_000_000_000L / preReadNanos, ops * 1_000_000_000L / singleNanos);
+    }
+
+    @Test
+    void testUpdateWithStaleVersionMatchesNothing() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            // 准备测试数据
+            Book changes = new Book();
+            changes.setId(1L);
+            changes.setCategory("历史");
+            changes.setVersion(0L);
+
+            // 执行测试
+            int first = mapper.update(changes);
+            int stale = mapper.update(changes);
+
+            // 验证结果
+            assertEquals(1, first);
+            assertEquals(0, stale);
+            assertEquals(1L, mapper.findStockById(1L).getVersion());
+        }
+    }
+
+    @Test
+    void testReserveStockNeverGoesNegative() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            assertEquals(1, mapper.reserveStock(1L, 10));
+            assertEquals(0, mapper.reserveStock(1L, 1));
+            assertEquals(1, mapper.releaseStock(1L, 3));
+            assertEquals(0, mapper.releaseStock(ROWS + 1L, 3));
+            Book stock = mapper.findStockById(1L);
+            assertEquals(3, stock.getQuantity());
+            assertEquals(2L, stock.getVersion());
+        }
+    }
+
+    @Test
+    void testStockCheckpointOnlyMovesForward() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            assertNull(mapper.findStockCheckpoint());
+            mapper.saveStockCheckpoint(3);
+            mapper.saveStockCheckpoint(2);
+            assertEquals(3L, mapper.findStockCheckpoint());
+            assertEquals(1, mapper.addStock(1L, -4));
+            assertEquals(6, mapper.findStockById(1L).getQuantity());
+            // 扣减后为负时拒绝
+            assertEquals(0, mapper.addStock(1L, -7));
+            assertEquals(6, mapper.findStockById(1L).getQuantity());
+        }
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        // 准备测试数据：16 个线程争抢同一本书的 500 件库存，共尝试 1600 次
+        int stock = 500;
+        resetStock(stock);
+
+        // 执行测试
+        int reserved = reserveConcurrently(16, 100, (mapper, changes) -> mapper.reserveStock(changes.getId(), 1));
+
+        // 验证结果：成功次数恰好等于库存，库存不为负
+        assertEquals(stock, reserved);
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            assertEquals(0, session.getMapper(BooksMapper.class).findStockById(1L).getQuantity());
+        }
+    }
+
+    /**
+     * 对比先读后写和条件更新预留库存的耗时与结果，不在常规测试中运行：
+     * mvn test -Dtest=BooksMapperWriteTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkConcurrentReservations() throws Exception {
+        // 准备测试数据
+        int threads = 16;
+        int attemptsPerThread = 100;
+        int stock = 500;
+        BiFunction<BooksMapper, Book, Integer> readModifyWrite = (mapper, changes) -> {
+            Book current = mapper.findStockById(changes.getId());
+            if (current.getQuantity() < 1) {
+                return 0;
+            }
+            changes.setQuantity(current.getQuantity() - 1);
+            return mapper.update(changes);
+        };
+        BiFunction<BooksMapper, Book, Integer> conditional = (mapper, changes) -> mapper.reserveStock(changes.getId(), 1);
+
+        // 执行测试
+        resetStock(stock);
+        long naiveNanos = System.nanoTime();
+        int naiveReserved = reserveConcurrently(threads, attemptsPerThread, readModifyWrite);
+        naiveNanos = System.nanoTime() - naiveNanos;
+
+        resetStock(stock);
+        long conditionalNanos = System.nanoTime();
+        int reserved = reserveConcurrently(threads, attemptsPerThread, conditional);
+        conditionalNanos = System.nanoTime() - conditionalNanos;
+
+        System.out.printf("concurrent reservations of %d units (%d writers x %d): read-modify-write reserved %d in %dms, "
+                        + "conditional update reserved %d in %dms%n",
+                stock, threads, attemptsPerThread, naiveReserved, naiveNanos / 1_000_000, reserved, conditionalNanos / 1_000_000);
+        assertEquals(stock, reserved);
+    }
+
+    private void resetStock(int quantity) {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            Book changes = new Book();
+            changes.setId(1L);
+            changes.setQuantity(quantity);
+            session.getMapper(BooksMapper.class).update(changes);
+        }
+    }
+
+    private int reserveConcurrently(int threads, int attemptsPerThread, BiFunction<BooksMapper, Book, Integer> reserve) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(() -> {
+                    int reserved = 0;
+                    try (SqlSession session = sessionFactory.openSession(true)) {
+                        BooksMapper mapper = session.getMapper(BooksMapper.class);
+                        for (int i = 0; i < attemptsPerThread; i++) {
+                            Book changes = new Book();
+                            changes.setId(1L);
+                            reserved += reserve.apply(mapper, changes);
+                            session.clearCache();
+                        }
+                    }
+                    return reserved;
+                });
+            }
+            int reserved = 0;
+            for (Future<Integer> result : executor.invokeAll(writers)) {
+                reserved += result.get();
+            }
+            return reserved;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 每个写线程使用自己的会话逐条自动提交，返回总耗时；同时校验每次写入都命中了一行
+     */
+    private long runWriters(int threads, int opsPerThread, BiFunction<BooksMapper, Book, Integer> write) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(() -> {
+                    int affected = 0;
+                    try (SqlSession session = sessionFactory.openSession(true)) {
+                        BooksMapper mapper = session.getMapper(BooksMapper.class);
+                        for (int i = 0; i < opsPerThread; i++) {
+                            Book changes = new Book();
+                            changes.setId(1L + ThreadLocalRandom.current().nextInt(ROWS));
+                            changes.setQuantity(i);
+                            affected += write.apply(mapper, changes);
+                        }
+                    }
+                    return affected;
+                });
+            }
+            long start = System.nanoTime();
+            List<Future<Integer>> results = executor.invokeAll(writers);
+            long elapsed = System.nanoTime() - start;
+            for (Future<Integer> result : results) {
+                assertEquals(opsPerThread, result.get());
+            }
+            return elapsed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Book book(String isbn) {
+        return Book.builder()
+                .title("三体")
+                .author("刘慈欣")
+                .publicationDate(new Date())
+                .isbn(isbn)
+                .quantity(10)
+                .category("科幻")
+                .build();
+    }
+}
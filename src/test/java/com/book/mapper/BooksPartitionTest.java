@@ -0,0 +1,362 @@
+package com.book.mapper;
+
+import com.book.category.CategoryCodeTypeHandler;
+import com.book.category.CategoryDictionary;
+import com.book.category.CategoryFilterTypeHandler;
+import com.book.dto.BookQueryDTO;
+import com.book.po.Book;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在内存数据库上校验 book_type 分区列的写入和查询条件；
+ * 指定 MySQL 时校验分区后 ISBN 仍全局唯一，并对比按分类查询在普通表和按类型分区表上的延迟
+ */
+class BooksPartitionTest {
+
+    private static final List<String> CATEGORIES = Arrays.asList(
+            "FICTION", "EDUCATIONAL", "历史", "艺术", "科技", "经济", "哲学", "传记", "旅行", "烹饪");
+
+    private JdbcConnectionPool dataSource;
+
+    private SqlSessionFactory sessionFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = JdbcConnectionPool.create(
+                "jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection();
+             Reader schema = Resources.getResourceAsReader("db/h2-schema.sql")) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+
+        Configuration configuration = new Configuration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLogImpl(NoLoggingImpl.class);
+        CategoryDictionary categories = new CategoryDictionary(dataSource);
+        configuration.getTypeHandlerRegistry().register(new CategoryCodeTypeHandler(categories));
+        configuration.getTypeHandlerRegistry().register(new CategoryFilterTypeHandler(categories));
+        categories.register(Arrays.asList("FICTION", "EDUCATIONAL", "历史"));
+        try (InputStream in = Resources.getResourceAsStream("mapper/BookMapper.xml")) {
+            new XMLMapperBuilder(in, configuration, "mapper/BookMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.dispose();
+    }
+
+    @Test
+    void testBookTypeWrittenAndFiltered() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+
+            // 准备测试数据：未指定分区的行落在默认分区
+            Book single = book("isbn-1", "FICTION", 1);
+            mapper.insert(single);
+            mapper.insertBatch(Arrays.asList(book("isbn-2", "EDUCATIONAL", 2), book("isbn-3", "历史", null)));
+
+            // 执行测试
+            BookQueryDTO fiction = query(1);
+            BookQueryDTO other = query(0);
+            BookQueryDTO all = query(null);
+
+            // 验证结果
+            assertEquals(1, mapper.countByCondition(fiction));
+            assertEquals("isbn-1", mapper.findByCondition(fiction, 10).get(0).getIsbn());
+            assertEquals("isbn-3", mapper.findByCondition(other, 10).get(0).getIsbn());
+            assertEquals(0, mapper.findByIsbn("isbn-3").getBookType());
+            assertEquals(3, mapper.countByCondition(all));
+        }
+    }
+
+    @Test
+    void testUpdateMovesRowToAnotherPartition() {
+        try (SqlSession session = sessionFactory.openSession(true)) {
+            BooksMapper mapper = session.getMapper(BooksMapper.class);
+            Book book = book("isbn-1", "FICTION", 1);
+            mapper.insert(book);
+
+            // 执行测试：修改分类时一并修改分区，未修改分类时分区不变
+            Book changes = new Book();
+            changes.setId(book.getId());
+            changes.setCategory("EDUCATIONAL");
+            changes.setBookType(2);
+            mapper.update(changes);
+            Book quantityOnly = new Book();
+            quantityOnly.setId(book.getId());
+            quantityOnly.setQuantity(3);
+            mapper.update(quantityOnly);
+
+            // 验证结果
+            assertEquals(0, mapper.countByCondition(query(1)));
+            assertEquals(1, mapper.countByCondition(query(2)));
+            assertEquals(2, mapper.findById(book.getId()).getBookType());
+        }
+    }
+
+    /**
+     * 在临时库上执行迁移脚本和 books-partition.sql，校验不同分区中的相同 ISBN 被拒绝，需要 MySQL 8：
+     * mvn test -Dtest=BooksPartitionTest -Dbenchmark.mysql.url=jdbc:mysql://localhost:3306/bench
+     * -Dbenchmark.mysql.user=root -Dbenchmark.mysql.password=...
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.mysql.url", matches = ".+")
+    void testIsbnUniqueAcrossPartitionsOnMySql() throws Exception {
+        String schema = "book_partition_check_" + System.nanoTime();
+        try (Connection connection = mysql()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE DATABASE " + schema);
+            }
+            try {
+                // 准备测试数据
+                connection.setCatalog(schema);
+                for (String script : Arrays.asList("V1__baseline.sql", "V2__query_indexes.sql", "V3__category_dict.sql",
+                        "mysql/V4__isbn_registry.sql")) {
+                    ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/" + script));
+                }
+                ScriptUtils.executeSqlScript(connection, new FileSystemResource("src/main/java/com/book/sql/books-partition.sql"));
+                String insert = "INSERT INTO books (title, author, publication_date, isbn, quantity, category_code, book_type)"
+                        + " VALUES ('t', 'a', CURRENT_DATE, ?, 1, 0, ?)";
+
+                // 执行测试 & 验证结果：插入和修改都不能在另一个分区中制造重复的 ISBN
+                assertEquals(1, execute(connection, insert, "isbn-1", 1));
+                assertEquals(1, execute(connection, insert, "isbn-2", 0));
+                assertThrows(SQLIntegrityConstraintViolationException.class,
+                        () -> execute(connection, insert, "isbn-1", 2));
+                assertThrows(SQLIntegrityConstraintViolationException.class,
+                        () -> execute(connection, "UPDATE books SET isbn = ? WHERE isbn = 'isbn-2' AND book_type = ?", "isbn-1", 0));
+                assertEquals(1, execute(connection, "UPDATE books SET isbn = ?, book_type = ? WHERE isbn = 'isbn-2'", "isbn-3", 2));
+                assertEquals(1, execute(connection, "DELETE FROM books WHERE isbn = ? AND book_type = ?", "isbn-1", 1));
+                assertEquals(1, execute(connection, insert, "isbn-1", 2));
+                assertEquals(2, count(connection, "SELECT COUNT(*) FROM book_isbn"));
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP DATABASE " + schema);
+                }
+            }
+        }
+    }
+
+    /**
+     * 对比按分类查询在普通表和按类型分区表上的延迟，需要 MySQL 8；校验两张表的结果相同且分区表只访问一个分区：
+     * mvn test -Dtest=BooksPartitionTest -Dbenchmark=true -Dbenchmark.mysql.url=jdbc:mysql://localhost:3306/bench
+     * -Dbenchmark.mysql.user=root -Dbenchmark.mysql.password=... [-Dbenchmark.rows=10000000]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @EnabledIfSystemProperty(named = "benchmark.mysql.url", matches = ".+")
+    void benchmarkCategoryQueriesAgainstPartitions() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows", 10_000_000);
+        int iterations = Integer.getInteger("benchmark.iterations", 200);
+        try (Connection connection = mysql()) {
+            // 准备测试数据：两张表数据相同，只有分区方式不同
+            load(connection, rows);
+
+            // 执行测试
+            for (String category : Arrays.asList("FICTION", "历史")) {
+                int bookType = "FICTION".equals(category) ? 1 : 0;
+                String page = "SELECT * FROM %s WHERE category = ?%s ORDER BY publication_date DESC, id DESC LIMIT 20 OFFSET 1000";
+                String count = "SELECT COUNT(*) FROM %s WHERE category = ?%s";
+                report(connection, iterations, "page  " + category, String.format(page, "bench_books_plain", ""),
+                        String.format(page, "bench_books_partitioned", " AND book_type = ?"), category, bookType);
+                report(connection, iterations, "count " + category, String.format(count, "bench_books_plain", ""),
+                        String.format(count, "bench_books_partitioned", " AND book_type = ?"), category, bookType);
+            }
+        }
+    }
+
+    private static Connection mysql() throws SQLException {
+        return DriverManager.getConnection(System.getProperty("benchmark.mysql.url"),
+                System.getProperty("benchmark.mysql.user", "root"), System.getProperty("benchmark.mysql.password", ""));
+    }
+
+    private static int execute(Connection connection, String sql, String isbn, int bookType) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, isbn);
+            statement.setInt(2, bookType);
+            return statement.executeUpdate();
+        }
+    }
+
+    private static long count(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void load(Connection connection, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_books_plain, bench_books_partitioned");
+            String columns = "(id BIGINT NOT NULL AUTO_INCREMENT, title VARCHAR(255) NOT NULL, author VARCHAR(255) NOT NULL,"
+                    + " publication_date DATE NOT NULL, isbn VARCHAR(20) NOT NULL, quantity INT NOT NULL,"
+                    + " category VARCHAR(50) NOT NULL, version BIGINT NOT NULL DEFAULT 0,"
+                    + " book_type TINYINT NOT NULL DEFAULT 0, INDEX idx_books_title (title),";
+            statement.execute("CREATE TABLE bench_books_plain " + columns + " PRIMARY KEY (id), UNIQUE KEY (isbn))");
+            statement.execute("CREATE TABLE bench_books_partitioned " + columns
+                    + " PRIMARY KEY (id, book_type), UNIQUE KEY (isbn, book_type))"
+                    + " PARTITION BY LIST (book_type) (PARTITION p_default VALUES IN (0),"
+                    + " PARTITION p_fiction VALUES IN (1), PARTITION p_educational VALUES IN (2))");
+        }
+
+        // 种子数据按分类轮流分配，ISBN 为 b1..bN，之后每轮翻倍复制并平移编号
+        int seed = Math.min(rows, 1000);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO bench_books_plain"
+                + " (title, author, publication_date, isbn, quantity, category, book_type) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= seed; i++) {
+                String category = CATEGORIES.get(i % CATEGORIES.size());
+                insert.setString(1, "title-" + i);
+                insert.setString(2, "author-" + i % 97);
+                insert.setDate(3, new java.sql.Date(System.currentTimeMillis() - i * 86_400_000L));
+                insert.setString(4, "b" + i);
+                insert.setInt(5, i % 50);
+                insert.setString(6, category);
+                insert.setInt(7, "FICTION".equals(category) ? 1 : "EDUCATIONAL".equals(category) ? 2 : 0);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (long loaded = seed; loaded < rows; loaded = Math.min(rows, loaded * 2)) {
+                long copy = Math.min(loaded, rows - loaded);
+                statement.executeUpdate("INSERT INTO bench_books_plain"
+                        + " (title, author, publication_date, isbn, quantity, category, book_type)"
+                        + " SELECT title, author, DATE_SUB(publication_date, INTERVAL " + loaded % 3650 + " DAY),"
+                        + " CONCAT('b', CAST(SUBSTRING(isbn, 2) AS UNSIGNED) + " + loaded + "), quantity, category, book_type"
+                        + " FROM bench_books_plain WHERE CAST(SUBSTRING(isbn, 2) AS UNSIGNED) <= " + copy);
+            }
+            statement.executeUpdate("INSERT INTO bench_books_partitioned SELECT * FROM bench_books_plain");
+            statement.execute("ANALYZE TABLE bench_books_plain, bench_books_partitioned");
+        }
+    }
+
+    private static void report(Connection connection, int iterations, String name, String plainSql,
+                               String partitionedSql, String category, int bookType) throws SQLException {
+        assertEquals(results(connection, plainSql, category, null), results(connection, partitionedSql, category, bookType), name);
+        assertEquals(1, partitionsScanned(connection, partitionedSql, category, bookType), name);
+        // 先预热一轮，再交替计时
+        time(connection, iterations / 10 + 1, plainSql, category, null);
+        time(connection, iterations / 10 + 1, partitionedSql, category, bookType);
+        long[] plain = time(connection, iterations, plainSql, category, null);
+        long[] partitioned = time(connection, iterations, partitionedSql, category, bookType);
+        System.out.printf("%s: plain p50=%.2fms p99=%.2fms, partitioned p50=%.2fms p99=%.2fms%n", name,
+                percentile(plain, 50), percentile(plain, 99), percentile(partitioned, 50), percentile(partitioned, 99));
+    }
+
+    private static List<String> results(Connection connection, String sql, String category, Integer bookType)
+            throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (PreparedStatement statement = prepare(connection, sql, category, bookType);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows.add(resultSet.getString(1));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * EXPLAIN 中 partitions 列列出的分区数
+     */
+    private static int partitionsScanned(Connection connection, String sql, String category, int bookType)
+            throws SQLException {
+        try (PreparedStatement statement = prepare(connection, "EXPLAIN " + sql, category, bookType);
+             ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            return resultSet.getString("partitions").split(",").length;
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, String category, Integer bookType)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setString(1, category);
+        if (bookType != null) {
+            statement.setInt(2, bookType);
+        }
+        return statement;
+    }
+
+    private static long[] time(Connection connection, int iterations, String sql, String category, Integer bookType)
+            throws SQLException {
+        long[] nanos = new long[iterations];
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, category);
+            if (bookType != null) {
+                statement.setInt(2, bookType);
+            }
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        // 读完结果集，计入传输时间
+                    }
+                }
+                nanos[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile / 100.0) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static BookQueryDTO query(Integer bookType) {
+        BookQueryDTO query = new BookQueryDTO();
+        query.restrictToBookType(bookType);
+        return query;
+    }
+
+    private static Book book(String isbn, String category, Integer bookType) {
+        Book book = new Book();
+        book.setTitle("title-" + isbn);
+        book.setAuthor("author");
+        book.setPublicationDate(new Date());
+        book.setIsbn(isbn);
+        book.setQuantity(10);
+        book.setCategory(category);
+        book.setBookType(bookType);
+        return book;
+    }
+}
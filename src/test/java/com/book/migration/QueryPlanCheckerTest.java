@@ -0,0 +1,118 @@
+package com.book.migration;
+
+import com.book.category.CategoryCodeTypeHandler;
+import com.book.category.CategoryDictionary;
+import com.book.category.CategoryFilterTypeHandler;
+import com.book.config.MigrationProperties;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 校验执行计划自检的样例参数能展开并绑定每条语句，以及全表扫描的判定
+ */
+class QueryPlanCheckerTest {
+
+    private JdbcConnectionPool pool;
+
+    private QueryPlanChecker checker;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        MigrationProperties properties = new MigrationProperties();
+        new SchemaMigrator(properties, pool, new DefaultResourceLoader()).migrate();
+        // information_schema 的统计列只在 MySQL 上存在
+        properties.getSelfCheck().getIgnoredStatements().add("estimateTableRows");
+
+        Configuration configuration = new Configuration(
+                new Environment("test", new SpringManagedTransactionFactory(), pool));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLogImpl(NoLoggingImpl.class);
+        CategoryDictionary categories = new CategoryDictionary(pool);
+        configuration.getTypeHandlerRegistry().register(new CategoryCodeTypeHandler(categories));
+        configuration.getTypeHandlerRegistry().register(new CategoryFilterTypeHandler(categories));
+        try (InputStream in = Resources.getResourceAsStream("mapper/BookMapper.xml")) {
+            new XMLMapperBuilder(in, configuration, "mapper/BookMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        checker = new QueryPlanChecker(properties, new SqlSessionFactoryBuilder().build(configuration));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    void testEveryStatementExplained() throws Exception {
+        // 执行测试
+        List<QueryPlanChecker.Plan> plans;
+        try (Connection connection = pool.getConnection()) {
+            plans = checker.explainAll(connection);
+        }
+
+        // 验证结果：除固定值 INSERT、EXPLAIN 本身和忽略的语句外都执行了 EXPLAIN
+        Set<String> explained = plans.stream().map(plan -> plan.statementId).collect(Collectors.toCollection(TreeSet::new));
+        assertEquals(new TreeSet<>(Arrays.asList("addStock", "copyToArchive", "countByCondition", "countByPage",
+                "delete", "deleteArchivable", "deleteArchived", "existsByIsbn", "findAllOrdered", "findArchivableIds",
+                "findArchivedByIds", "findByCondition", "findByConditionWithTotal", "findById", "findByIds",
+                "findByIsbn", "findByKeyset", "findByPage", "findExistingIsbns", "findStockById",
+                "findStockCheckpoint", "releaseStock", "reserveStock", "restoreFromArchive", "update")), explained);
+        // 每种排序字段、键集游标和归档表查询各展开为不同的语句
+        assertTrue(plans.stream().filter(plan -> "findByKeyset".equals(plan.statementId)).count() > 12);
+        assertTrue(plans.stream().anyMatch(plan -> plan.sql.contains("books_archive") && plan.sql.contains("LIMIT")));
+    }
+
+    @Test
+    void testFullScansAboveThreshold() {
+        // 准备测试数据：MySQL EXPLAIN 的输出行
+        List<Map<String, Object>> plan = Arrays.asList(
+                row("books", "ALL", 500_000L),
+                row("books_archive", "ALL", 200L),
+                row("books", "range", 800_000L),
+                row("<union1,2>", "ALL", null));
+
+        // 执行测试
+        List<Map<String, Object>> scans = QueryPlanChecker.fullScans(plan, 1000);
+
+        // 验证结果
+        assertEquals(1, scans.size());
+        assertEquals(500_000L, scans.get(0).get("rows"));
+    }
+
+    @Test
+    void testCheckSkippedOnNonMySql() {
+        // 执行测试并验证结果
+        assertTrue(checker.check().isEmpty());
+        assertTrue(checker.getWarnings().isEmpty());
+    }
+
+    private static Map<String, Object> row(String table, String type, Long rows) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("table", table);
+        row.put("type", type);
+        row.put("rows", rows);
+        return row;
+    }
+}
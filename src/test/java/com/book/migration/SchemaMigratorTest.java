@@ -0,0 +1,164 @@
+package com.book.migration;
+
+import com.book.config.MigrationProperties;
+import com.book.dto.SchemaStatusDTO;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在内存数据库上执行迁移脚本，校验执行顺序、重复执行、基线和校验和
+ */
+class SchemaMigratorTest {
+
+    private JdbcConnectionPool pool;
+
+    private MigrationProperties properties;
+
+    private SchemaMigrator migrator;
+
+    @BeforeEach
+    void setUp() {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        properties = new MigrationProperties();
+        migrator = new SchemaMigrator(properties, pool, new DefaultResourceLoader());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    void testMigrateAppliesScriptsInOrder() throws SQLException {
+        // 执行测试
+        assertEquals(Arrays.asList(1, 2, 3), migrator.migrate());
+
+        // 验证结果：基线结构和查询索引都已建立，再次执行没有待执行的脚本
+        assertTrue(indexExists("idx_books_category_publication_date"));
+        assertTrue(indexExists("idx_books_archive_category_publication_date"));
+        assertEquals(Collections.emptyList(), migrator.migrate());
+        SchemaStatusDTO status = migrator.status();
+        assertEquals(3, status.getCurrentVersion());
+        assertEquals(Arrays.asList("V1__baseline", "V2__query_indexes", "V3__category_dict"), status.getApplied());
+        assertTrue(status.getPending().isEmpty());
+    }
+
+    @Test
+    void testBaselineSkipsExistingSchema() throws Exception {
+        // 准备测试数据：结构已手工建好的库
+        try (Connection connection = pool.getConnection();
+             Reader schema = Resources.getResourceAsReader("db/migration/V1__baseline.sql")) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+        properties.setBaselineVersion(1);
+
+        // 执行测试
+        assertEquals(Arrays.asList(2, 3), migrator.migrate());
+
+        // 验证结果
+        assertEquals(Arrays.asList("V1__baseline", "V2__query_indexes", "V3__category_dict"),
+                migrator.status().getApplied());
+    }
+
+    @Test
+    void testStartupRejectsPendingMigrationsWhenDisabled() {
+        // 执行测试并验证结果：关闭迁移且有待执行的脚本时拒绝启动
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> migrator.migrateOnStartup());
+        assertTrue(e.getMessage().contains("V3__category_dict"));
+
+        // 迁移完成后正常启动
+        migrator.migrate();
+        assertDoesNotThrow(() -> migrator.migrateOnStartup());
+    }
+
+    @Test
+    void testModifiedScriptRejected() throws SQLException {
+        migrator.migrate();
+        execute("UPDATE " + SchemaMigrator.HISTORY_TABLE + " SET checksum = checksum + 1 WHERE version = 2");
+
+        // 执行测试并验证结果
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> migrator.migrate());
+        assertTrue(e.getMessage().contains("V2__query_indexes"));
+    }
+
+    @Test
+    void testFailedScriptNotRecorded(@TempDir Path dir) throws Exception {
+        // 准备测试数据
+        Files.write(dir.resolve("V1__create_table.sql"),
+                "CREATE TABLE t (id INT PRIMARY KEY);".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("V2__broken.sql"),
+                "ALTER TABLE missing ADD COLUMN c INT;".getBytes(StandardCharsets.UTF_8));
+        properties.setLocations(dir.toUri() + "V*__*.sql");
+
+        // 执行测试
+        assertThrows(IllegalStateException.class, () -> migrator.migrate());
+
+        // 验证结果：失败的脚本仍为待执行，修复后重新迁移
+        SchemaStatusDTO status = migrator.status();
+        assertEquals(1, status.getCurrentVersion());
+        assertEquals(Collections.singletonList("V2__broken"), status.getPending());
+        Files.write(dir.resolve("V2__broken.sql"),
+                "ALTER TABLE t ADD COLUMN c INT;".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList(2), migrator.migrate());
+    }
+
+    @Test
+    void testVendorScriptsOnlyRunOnMatchingDatabase(@TempDir Path dir) throws Exception {
+        // 准备测试数据：h2 目录下的脚本会执行，mysql 目录下的不会
+        Files.createDirectories(dir.resolve("h2"));
+        Files.createDirectories(dir.resolve("mysql"));
+        Files.write(dir.resolve("V1__create_table.sql"),
+                "CREATE TABLE t (id INT PRIMARY KEY);".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("h2").resolve("V2__vendor_column.sql"),
+                "ALTER TABLE t ADD COLUMN c INT;".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("mysql").resolve("V3__vendor_only.sql"),
+                "ALTER TABLE missing ADD COLUMN c INT;".getBytes(StandardCharsets.UTF_8));
+        properties.setLocations(dir.toUri() + "V*__*.sql");
+        properties.setVendorLocations(dir.toUri() + "{vendor}/V*__*.sql");
+
+        // 执行测试
+        assertEquals(Arrays.asList(1, 2), migrator.migrate());
+
+        // 验证结果
+        assertEquals(Arrays.asList("V1__create_table", "V2__vendor_column"), migrator.status().getApplied());
+        execute("INSERT INTO t (id, c) VALUES (1, 1)");
+    }
+
+    private boolean indexExists(String name) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES"
+                     + " WHERE UPPER(INDEX_NAME) = '" + name.toUpperCase() + "'")) {
+            resultSet.next();
+            return resultSet.getInt(1) > 0;
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
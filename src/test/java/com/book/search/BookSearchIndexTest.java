@@ -0,0 +1,109 @@
+package com.book.search;
+
+import com.book.config.SearchProperties;
+import com.book.po.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    private SearchProperties properties;
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SearchProperties();
+        properties.setEnabled(true);
+        index = new BookSearchIndex(properties);
+        List<Book> books = Arrays.asList(
+                book(1L, "三体", "刘慈欣"),
+                book(2L, "三体II：黑暗森林", "刘慈欣"),
+                book(3L, "Java编程思想", "Bruce Eckel"),
+                book(4L, "体育三项", "佚名"));
+        index.rebuild(sink -> books.forEach(sink));
+    }
+
+    @Test
+    void testNotReadyBeforeRebuild() {
+        BookSearchIndex empty = new BookSearchIndex(properties);
+        assertFalse(empty.isReady());
+        assertNull(empty.search("三体", null));
+    }
+
+    @Test
+    void testCjkSubstring() {
+        // 执行测试
+        Set<Long> result = index.search("三体", null);
+
+        // 验证结果：“体育三项”含有“三”和“体”但不含“三体”，经原文校验排除
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), result);
+    }
+
+    @Test
+    void testSingleCharacterAndCaseInsensitive() {
+        assertEquals(new HashSet<>(Arrays.asList(2L)), index.search("黑", null));
+        assertEquals(Collections.singleton(3L), index.search("JAVA", null));
+        assertEquals(Collections.singleton(3L), index.search(null, "eckel"));
+    }
+
+    @Test
+    void testTitleAndAuthorIntersect() {
+        assertEquals(Collections.singleton(2L), index.search("森林", "刘慈欣"));
+        assertTrue(index.search("Java", "刘慈欣").isEmpty());
+    }
+
+    @Test
+    void testWildcardFallsBackToDatabase() {
+        assertNull(index.search("三%", null));
+        assertNull(index.search("Jav_", null));
+    }
+
+    @Test
+    void testTooManyCandidatesFallsBackToDatabase() {
+        properties.setMaxCandidates(1);
+        assertNull(index.search("三体", null));
+        assertEquals(Collections.singleton(3L), index.search("Java", null));
+    }
+
+    @Test
+    void testIncrementalUpdates() {
+        // 执行测试
+        index.onSaved(book(5L, "三体III：死神永生", "刘慈欣"));
+        index.onUpdated(book(1L, "球状闪电", null));
+        index.onDeleted(2L);
+
+        // 验证结果
+        assertEquals(Collections.singleton(5L), index.search("三体", null));
+        assertEquals(Collections.singleton(1L), index.search("闪电", "刘慈欣"));
+    }
+
+    @Test
+    void testUpdatesDuringRebuildAreKept() {
+        // 执行测试：扫描过程中有新增和删除
+        index.rebuild(sink -> {
+            sink.accept(book(1L, "三体", "刘慈欣"));
+            index.onSaved(book(6L, "三体前传", "刘慈欣"));
+            index.onDeleted(1L);
+        });
+
+        // 验证结果
+        assertEquals(Collections.singleton(6L), index.search("三体", null));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        return book;
+    }
+}
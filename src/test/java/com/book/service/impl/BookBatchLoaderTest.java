@@ -0,0 +1,176 @@
+package com.book.service.impl;
+
+import com.book.config.BatchProperties;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookBatchLoaderTest {
+
+    private BooksMapper booksMapper;
+
+    private BatchProperties properties;
+
+    private PlatformTransactionManager transactionManager;
+
+    private BookBatchLoader loader;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        booksMapper = mock(BooksMapper.class);
+        // 偶数ID存在，奇数ID不存在
+        when(booksMapper.findByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id % 2 == 0).map(BookBatchLoaderTest::book).collect(Collectors.toList());
+        });
+        transactionManager = mock(PlatformTransactionManager.class);
+        properties = new BatchProperties();
+        properties.getLoader().setWindow(Duration.ofMillis(50));
+        properties.getLoader().setTimeout(Duration.ofSeconds(5));
+        callers = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (loader != null) {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentLoadsShareOneQuery() throws Exception {
+        // 准备测试数据
+        loader = new BookBatchLoader(booksMapper, properties, transactionManager);
+
+        // 执行测试
+        List<Future<Book>> results = loadConcurrently(10);
+
+        // 验证结果
+        for (int i = 0; i < results.size(); i++) {
+            Book book = results.get(i).get(5, TimeUnit.SECONDS);
+            if (i % 2 == 0) {
+                assertEquals((long) i, book.getId());
+            } else {
+                assertNull(book);
+            }
+        }
+        verify(booksMapper, atMost(2)).findByIds(anyCollection());
+    }
+
+    @Test
+    void testFullBatchDispatchedBeforeWindowEnds() throws Exception {
+        // 准备测试数据
+        properties.getLoader().setWindow(Duration.ofSeconds(10));
+        properties.getLoader().setMaxBatchSize(4);
+        loader = new BookBatchLoader(booksMapper, properties, transactionManager);
+
+        // 执行测试
+        List<Future<Book>> results = loadConcurrently(4);
+
+        // 验证结果
+        for (Future<Book> result : results) {
+            result.get(2, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testQueryFailurePropagatesToCallers() {
+        when(booksMapper.findByIds(anyCollection())).thenThrow(new IllegalStateException("db down"));
+        loader = new BookBatchLoader(booksMapper, properties, transactionManager);
+        assertThrows(IllegalStateException.class, () -> loader.load(1L));
+    }
+
+    @Test
+    void testSlowBatchFallsBackToDirectQuery() {
+        // 准备测试数据
+        properties.getLoader().setWindow(Duration.ofSeconds(10));
+        properties.getLoader().setTimeout(Duration.ofMillis(20));
+        when(booksMapper.findById(2L)).thenReturn(book(2L));
+        loader = new BookBatchLoader(booksMapper, properties, transactionManager);
+
+        // 执行测试
+        Book book = loader.load(2L);
+
+        // 验证结果
+        assertEquals(2L, book.getId());
+        verify(booksMapper).findById(2L);
+        verify(booksMapper, never()).findByIds(anyCollection());
+    }
+
+    @Test
+    void testReadOnlyCallerBatchRunsInReadOnlyTransaction() {
+        // 准备测试数据
+        loader = new BookBatchLoader(booksMapper, properties, transactionManager);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // 执行测试
+        Book book;
+        try {
+            book = loader.load(2L);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        // 验证结果
+        assertEquals(2L, book.getId());
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertTrue(definition.getValue().isReadOnly());
+    }
+
+    @Test
+    void testReadWriteCallerBatchRunsWithoutTransaction() {
+        loader = new BookBatchLoader(booksMapper, properties, transactionManager);
+        assertEquals(2L, loader.load(2L).getId());
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    private List<Future<Book>> loadConcurrently(int count) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Book>> results = new ArrayList<>();
+        for (long id = 0; id < count; id++) {
+            long bookId = id;
+            results.add(callers.submit(() -> {
+                start.await();
+                return loader.load(bookId);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private static Book book(Long id) {
+        Book book = new Book();
+        book.setId(id);
+        return book;
+    }
+}
@@ -0,0 +1,193 @@
+package com.book.service.impl;
+
+import com.book.category.CategoryDictionary;
+import com.book.config.BulkProperties;
+import com.book.constant.ErrorCode;
+import com.book.exception.BusinessException;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookInsertBatcherTest {
+
+    private BooksMapper booksMapper;
+
+    private PlatformTransactionManager transactionManager;
+
+    private BulkProperties properties;
+
+    private BookInsertBatcher batcher;
+
+    private ExecutorService callers;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        booksMapper = mock(BooksMapper.class);
+        // ISBN 以 dup 开头的行违反唯一约束，其余行回填自增ID
+        when(booksMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            if (books.stream().anyMatch(book -> book.getIsbn().startsWith("dup"))) {
+                throw new DuplicateKeyException("Duplicate entry");
+            }
+            books.forEach(book -> book.setId(ids.incrementAndGet()));
+            return books.size();
+        });
+        transactionManager = mock(PlatformTransactionManager.class);
+        TransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        properties = new BulkProperties();
+        properties.getGroupCommit().setEnabled(true);
+        properties.getGroupCommit().setWindow(Duration.ofMillis(50));
+        callers = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentInsertsShareOneCommit() throws Exception {
+        // 准备测试数据
+        batcher = new BookInsertBatcher(booksMapper, mock(CategoryDictionary.class), properties, transactionManager);
+        List<Book> books = books("isbn-1", "isbn-2", "isbn-3", "isbn-4", "isbn-5", "isbn-6", "isbn-7", "isbn-8");
+
+        // 执行测试
+        List<Future<?>> results = insertConcurrently(books);
+
+        // 验证结果
+        for (Future<?> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        books.forEach(book -> assertNotNull(book.getId()));
+        verify(booksMapper, atMost(2)).insertBatch(anyList());
+        verify(transactionManager, atMost(2)).commit(any());
+    }
+
+    @Test
+    void testDuplicateFailsOnlyItsCaller() throws Exception {
+        // 准备测试数据
+        properties.getGroupCommit().setWindow(Duration.ofSeconds(10));
+        properties.getGroupCommit().setMaxBatchSize(3);
+        batcher = new BookInsertBatcher(booksMapper, mock(CategoryDictionary.class), properties, transactionManager);
+        List<Book> books = books("isbn-1", "dup-2", "isbn-3");
+
+        // 执行测试
+        List<Future<?>> results = insertConcurrently(books);
+
+        // 验证结果
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).getIsbn().startsWith("dup")) {
+                Future<?> result = results.get(i);
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(DuplicateKeyException.class, e.getCause());
+                assertNull(books.get(i).getId());
+            } else {
+                results.get(i).get(5, TimeUnit.SECONDS);
+                assertNotNull(books.get(i).getId());
+            }
+        }
+        // 一次多行插入失败后逐行重试，仍在同一事务中提交
+        verify(booksMapper, times(4)).insertBatch(anyList());
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    void testCommitFailurePropagatesToCallers() {
+        when(booksMapper.insertBatch(anyList())).thenThrow(new IllegalStateException("db down"));
+        batcher = new BookInsertBatcher(booksMapper, mock(CategoryDictionary.class), properties, transactionManager);
+        assertThrows(IllegalStateException.class, () -> batcher.insert(books("isbn-1").get(0)));
+    }
+
+    @Test
+    void testTimeoutBeforeDispatchWithdrawsRow() {
+        // 准备测试数据
+        properties.getGroupCommit().setWindow(Duration.ofSeconds(10));
+        properties.getGroupCommit().setTimeout(Duration.ofMillis(20));
+        batcher = new BookInsertBatcher(booksMapper, mock(CategoryDictionary.class), properties, transactionManager);
+
+        // 执行测试
+        boolean inserted = batcher.insert(books("isbn-1").get(0));
+
+        // 验证结果：调用方自己插入，批次不再执行
+        assertFalse(inserted);
+        verify(booksMapper, never()).insertBatch(anyList());
+    }
+
+    @Test
+    void testTimeoutAfterDispatchFails() {
+        // 准备测试数据：批次已开始执行但迟迟未提交
+        CountDownLatch release = new CountDownLatch(1);
+        when(booksMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+        properties.getGroupCommit().setWindow(Duration.ofMillis(1));
+        properties.getGroupCommit().setTimeout(Duration.ofMillis(100));
+        batcher = new BookInsertBatcher(booksMapper, mock(CategoryDictionary.class), properties, transactionManager);
+
+        // 执行测试
+        BusinessException e = assertThrows(BusinessException.class, () -> batcher.insert(books("isbn-1").get(0)));
+        release.countDown();
+
+        // 验证结果
+        assertEquals(ErrorCode.BOOK_CREATE_FAILED, e.getCode());
+    }
+
+    private List<Future<?>> insertConcurrently(List<Book> books) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (Book book : books) {
+            results.add(callers.submit(() -> {
+                start.await();
+                batcher.insert(book);
+                return null;
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private static List<Book> books(String... isbns) {
+        List<Book> books = new ArrayList<>();
+        for (String isbn : isbns) {
+            Book book = new Book();
+            book.setIsbn(isbn);
+            books.add(book);
+        }
+        return books;
+    }
+}
@@ -0,0 +1,38 @@
+package com.book.service.impl;
+
+import com.book.config.CountProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CountQueryExecutorTest {
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final CountQueryExecutor executor = new CountQueryExecutor(new CountProperties(), transactionManager);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testTaskRunsInReadOnlyTransaction() throws Exception {
+        // 执行测试
+        long total = executor.submit(() -> 42L).get(5, TimeUnit.SECONDS);
+
+        // 验证结果：在独立线程上开启只读事务，路由到从库
+        assertEquals(42L, total);
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertTrue(definition.getValue().isReadOnly());
+    }
+}
@@ -0,0 +1,460 @@
+package com.book.sharding;
+
+import com.book.category.CategoryCodeTypeHandler;
+import com.book.category.CategoryDictionary;
+import com.book.category.CategoryFilterTypeHandler;
+import com.book.config.ShardingProperties;
+import com.book.dto.BookQueryDTO;
+import com.book.dto.PageCursor;
+import com.book.exception.BusinessException;
+import com.book.mapper.BooksMapper;
+import com.book.po.Book;
+import com.book.po.BookWithTotal;
+import com.book.service.impl.BookBatchWriter;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.logging.nologging.NoLoggingImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 三个内存数据库作为分片，与装有相同数据的单库逐一比对查询结果
+ */
+class ShardedBooksMapperTest {
+
+    private static final int SHARDS = 3;
+
+    private static final int ROWS = 200;
+
+    private final List<DataSource> shardDataSources = new ArrayList<>();
+
+    private BookShards shards;
+
+    private ShardedBooksMapper sharded;
+
+    private BooksMapper reference;
+
+    private ShardTransactionManager transactionManager;
+
+    private CategoryDictionary categories;
+
+    private SqlSessionFactory globalSessionFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        long suffix = System.nanoTime();
+        List<SqlSessionFactory> factories = new ArrayList<>();
+        List<PlatformTransactionManager> managers = new ArrayList<>();
+        DataSource global = database("global-" + suffix);
+        // 分片库和单库共用默认库中的分类字典
+        categories = new CategoryDictionary(global);
+        categories.register(Arrays.asList("科幻", "文学"));
+        managers.add(new DataSourceTransactionManager(global));
+        for (int i = 0; i < SHARDS; i++) {
+            DataSource dataSource = database("shard" + i + "-" + suffix);
+            shardDataSources.add(dataSource);
+            factories.add(sessionFactory(dataSource, categories));
+            managers.add(new DataSourceTransactionManager(dataSource));
+        }
+        shards = new BookShards(factories, new ShardKeys(SHARDS, 1));
+        ShardingProperties properties = new ShardingProperties();
+        globalSessionFactory = sessionFactory(global, categories);
+        sharded = new ShardedBooksMapper(shards, mapper(globalSessionFactory), properties);
+        reference = mapper(sessionFactory(database("reference-" + suffix), categories));
+        transactionManager = new ShardTransactionManager(managers);
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            books.add(book(i));
+        }
+        assertEquals(ROWS, sharded.insertBatch(books));
+        // 单库使用同样的ID，便于逐行比较
+        assertEquals(ROWS, reference.insertWithIds(books));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sharded.shutdown();
+        shards.shutdown();
+    }
+
+    @Test
+    void testRowsPlacedByIsbnHashAndIdEncodesShard() {
+        ShardKeys keys = shards.getKeys();
+        int total = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            List<Book> rows = shards.getMappers().get(shard).findAll(false);
+            assertFalse(rows.isEmpty(), "每个分片都应分到数据");
+            for (Book row : rows) {
+                assertEquals(shard, keys.shardOf(row.getIsbn()));
+                assertEquals(shard, keys.shardOf(row.getId()));
+            }
+            total += rows.size();
+        }
+        assertEquals(ROWS, total);
+    }
+
+    @Test
+    void testPointLookupsRouteToOneShard() {
+        Book expected = reference.findByIsbn("isbn-42");
+
+        assertEquals(expected.getTitle(), sharded.findById(expected.getId()).getTitle());
+        assertEquals(expected.getId(), sharded.findByIsbn("isbn-42").getId());
+        assertTrue(sharded.existsByIsbn("isbn-42"));
+        assertFalse(sharded.existsByIsbn("isbn-missing"));
+        assertNull(sharded.findById(expected.getId() + (1L << 30)));
+        assertEquals(new HashSet<>(Arrays.asList("isbn-1", "isbn-7")),
+                new HashSet<>(sharded.findExistingIsbns(Arrays.asList("isbn-1", "isbn-7", "isbn-missing"))));
+
+        Set<Long> ids = reference.findAll(false).stream().limit(20).map(Book::getId).collect(Collectors.toSet());
+        assertEquals(ids, sharded.findByIds(ids).stream().map(Book::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testWritesByIdRouteToOwningShard() {
+        Book book = sharded.findByIsbn("isbn-5");
+
+        assertEquals(1, sharded.reserveStock(book.getId(), 3));
+        assertEquals(1, sharded.update(Book.builder().id(book.getId()).title("改名").build()));
+        assertEquals("改名", sharded.findById(book.getId()).getTitle());
+        assertEquals(book.getQuantity() - 3, sharded.findStockById(book.getId()).getQuantity());
+        assertEquals(1, sharded.delete(book.getId()));
+        assertEquals(0, sharded.delete(book.getId()));
+        assertEquals(ROWS - 1, sharded.countByCondition(new BookQueryDTO()));
+    }
+
+    @Test
+    void testStockCheckpointCommittedWithEachShard() {
+        // 准备测试数据
+        BookBatchWriter writer = new BookBatchWriter(globalSessionFactory, shards);
+        Book book = sharded.findByIsbn("isbn-5");
+
+        // 执行测试
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                writer.addStock(Collections.singletonMap(book.getId(), -2L), 7));
+
+        // 验证结果：每个分片都有自己的检查点，默认库不保存
+        assertEquals(book.getQuantity() - 2, sharded.findStockById(book.getId()).getQuantity());
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertEquals(7L, shards.getMappers().get(shard).findStockCheckpoint());
+        }
+        assertNull(mapper(globalSessionFactory).findStockCheckpoint());
+        BookBatchWriter.StockCheckpoints checkpoints = writer.findStockCheckpoints();
+        assertEquals(7L, checkpoints.min());
+        assertEquals(7L, checkpoints.of(book.getId()));
+        assertEquals(7L, sharded.findStockCheckpoint());
+    }
+
+    @Test
+    void testIsbnChangeAcrossShardsRejected() {
+        Book book = sharded.findByIsbn("isbn-5");
+        ShardKeys keys = shards.getKeys();
+        String foreign = null;
+        for (int i = 1000; foreign == null; i++) {
+            if (keys.shardOf("isbn-" + i) != keys.shardOf(book.getId())) {
+                foreign = "isbn-" + i;
+            }
+        }
+        Book change = Book.builder().id(book.getId()).isbn(foreign).build();
+
+        assertThrows(BusinessException.class, () -> sharded.update(change));
+    }
+
+    @Test
+    void testScatterGatherMatchesSingleDatabase() {
+        for (String sortBy : Arrays.asList("title", "quantity", "publicationDate", "id", "isbn")) {
+            for (String direction : Arrays.asList("asc", "desc")) {
+                for (int page = 1; page <= 4; page++) {
+                    BookQueryDTO query = query(sortBy, direction, page, 15);
+                    String message = sortBy + " " + direction + " page " + page;
+                    assertEquals(ids(reference.findByCondition(query, 15)), ids(sharded.findByCondition(query, 15)), message);
+                }
+            }
+        }
+
+        BookQueryDTO filtered = query("quantity", "asc", 2, 10);
+        filtered.setCategory("科幻");
+        assertEquals(reference.countByCondition(filtered), sharded.countByCondition(filtered));
+        assertEquals(ids(reference.findByCondition(filtered, 10)), ids(sharded.findByCondition(filtered, 10)));
+    }
+
+    @Test
+    void testWindowTotalIsSumOfShards() {
+        BookQueryDTO query = query("title", "desc", 3, 20);
+
+        List<BookWithTotal> page = sharded.findByConditionWithTotal(query, 20);
+
+        assertEquals(ids(reference.findByCondition(query, 20)), ids(page));
+        page.forEach(row -> assertEquals(ROWS, row.getTotalCount()));
+    }
+
+    @Test
+    void testKeysetPagesMatchSingleDatabase() {
+        BookQueryDTO query = query("quantity", "desc", 1, 25);
+        PageCursor cursor = null;
+        List<Long> expected = ids(reference.findByCondition(query("quantity", "desc", 1, ROWS), ROWS));
+        List<Long> actual = new ArrayList<>();
+        while (true) {
+            List<Book> page = sharded.findByKeyset(query, cursor, 25);
+            if (page.isEmpty()) {
+                break;
+            }
+            actual.addAll(ids(page));
+            cursor = PageCursor.of(query.getSortField(), true, page.get(page.size() - 1));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testIsbnConditionQueriesOneShard() {
+        BookQueryDTO query = query("title", "asc", 1, 10);
+        query.setIsbn("isbn-77");
+
+        List<Book> result = sharded.findByCondition(query, 10);
+
+        assertEquals(1, result.size());
+        assertEquals("isbn-77", result.get(0).getIsbn());
+        assertEquals(1, sharded.countByCondition(query));
+    }
+
+    @Test
+    void testMergedCursorSkipsAndLimits() throws IOException {
+        // 准备测试数据：MySQL 流式读取使用的 fetchSize 在内存数据库上不可用，这里用列表模拟各分片的游标
+        List<ListCursor> cursors = Arrays.asList(new ListCursor(1, 4, 7, 10), new ListCursor(2, 5, 8), new ListCursor(3, 6, 9));
+        List<Cursor<Integer>> sources = new ArrayList<>(cursors);
+
+        // 执行测试
+        List<Integer> merged = new ArrayList<>();
+        try (Cursor<Integer> cursor = new MergedCursor<>(sources, Comparator.naturalOrder(), 2, 5)) {
+            cursor.forEach(merged::add);
+            assertEquals(4, cursor.getCurrentIndex());
+        }
+
+        // 验证结果
+        assertEquals(Arrays.asList(3, 4, 5, 6, 7), merged);
+        cursors.forEach(cursor -> assertFalse(cursor.isOpen()));
+    }
+
+    @Test
+    void testTransactionSpansShards() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+
+        template.executeWithoutResult(status -> {
+            sharded.insertBatch(Arrays.asList(book(1001), book(1002), book(1003), book(1004)));
+            status.setRollbackOnly();
+        });
+        assertEquals(ROWS, sharded.countByCondition(new BookQueryDTO()));
+
+        template.executeWithoutResult(status -> sharded.insertBatch(Arrays.asList(book(1001), book(1002), book(1003), book(1004))));
+        assertEquals(ROWS + 4, sharded.countByCondition(new BookQueryDTO()));
+        int touched = 0;
+        for (DataSource dataSource : shardDataSources) {
+            Integer count = new JdbcTemplate(dataSource).queryForObject(
+                    "SELECT COUNT(*) FROM books WHERE isbn IN ('isbn-1001', 'isbn-1002', 'isbn-1003', 'isbn-1004')", Integer.class);
+            touched += count > 0 ? 1 : 0;
+        }
+        assertTrue(touched > 1, "应写入多个分片");
+    }
+
+    @Test
+    void testArchiveTierMatchesSingleDatabase() {
+        // 准备测试数据：两边都把 2010 年以前出版的图书迁入归档表
+        Calendar cutoff = Calendar.getInstance();
+        cutoff.clear();
+        cutoff.set(2010, Calendar.JANUARY, 1);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        int archived = template.execute(status -> {
+            List<Long> archivable = sharded.findArchivableIds(cutoff.getTime(), ROWS);
+            assertEquals(archivable.size(), sharded.copyToArchive(archivable, cutoff.getTime()));
+            return sharded.deleteArchivable(archivable, cutoff.getTime());
+        });
+        List<Long> expected = reference.findArchivableIds(cutoff.getTime(), ROWS);
+        reference.copyToArchive(expected, cutoff.getTime());
+        reference.deleteArchivable(expected, cutoff.getTime());
+
+        // 执行测试
+        BookQueryDTO hot = query("publicationDate", "asc", 1, ROWS);
+        BookQueryDTO all = query("publicationDate", "asc", 2, 30);
+        all.includeArchiveTier(true);
+
+        // 验证结果
+        assertEquals(expected.size(), archived);
+        assertEquals(new HashSet<>(expected), new HashSet<>(ids(sharded.findArchivedByIds(expected))));
+        assertEquals(ROWS - archived, sharded.countByCondition(hot));
+        assertEquals(ROWS, sharded.countByCondition(all));
+        assertEquals(ids(reference.findByCondition(all, 30)), ids(sharded.findByCondition(all, 30)));
+    }
+
+    @Test
+    void testIdsUniqueAndMonotonic() {
+        ShardKeys keys = new ShardKeys(4, 3);
+        long previous = 0;
+        // 超过每毫秒的序号容量，跨毫秒后仍然递增
+        for (int i = 0; i < 5000; i++) {
+            int shard = i % 4;
+            long id = keys.nextId(shard);
+            assertTrue(id > previous);
+            assertEquals(shard, keys.shardOf(id));
+            previous = id;
+        }
+        assertEquals(keys.shardOf("978-7-5366-9293-0"), keys.shardOf("9787536692930"));
+        assertEquals(-1, keys.shardOf((Long) null));
+        // 分片之前的自增ID没有标记位，不属于任何分片
+        assertEquals(-1, keys.shardOf(2L));
+        assertEquals(-1, keys.shardOf(previous & ~ShardKeys.MARKER));
+    }
+
+    @Test
+    void testMergeOrderMatchesBinaryOrderOnShards() {
+        // 准备测试数据：大小写和补充平面字符在排序规则和 UTF-16 下的顺序都与二进制顺序不同
+        List<Book> books = new ArrayList<>();
+        String[] titles = {"apple", "Banana", "\uD83D\uDCD6 book", "\uFF21 wide", "Apple", "banana"};
+        for (int i = 0; i < titles.length; i++) {
+            Book book = book(ROWS + 1 + i);
+            book.setTitle(titles[i]);
+            books.add(book);
+        }
+        sharded.insertBatch(books);
+
+        // 执行测试
+        BookQueryDTO byTitle = query("title", "asc", 1, ROWS + titles.length);
+        List<String> merged = sharded.findByCondition(byTitle, ROWS + titles.length).stream()
+                .map(Book::getTitle)
+                .filter(title -> !title.startsWith("Title "))
+                .collect(Collectors.toList());
+
+        // 验证结果：按码点升序，键集分页与偏移分页的顺序一致
+        assertEquals(Arrays.asList("Apple", "Banana", "apple", "banana", "\uFF21 wide", "\uD83D\uDCD6 book"), merged);
+        List<Long> expected = ids(sharded.findByCondition(byTitle, ROWS + titles.length));
+        List<Long> actual = new ArrayList<>();
+        PageCursor cursor = null;
+        List<Book> page;
+        while (!(page = sharded.findByKeyset(byTitle, cursor, 7)).isEmpty()) {
+            actual.addAll(ids(page));
+            cursor = PageCursor.of(byTitle.getSortField(), false, page.get(page.size() - 1));
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static BookQueryDTO query(String sortBy, String direction, int page, int pageSize) {
+        BookQueryDTO query = new BookQueryDTO();
+        query.setSortBy(sortBy);
+        query.setSortDirection(direction);
+        query.setPageNum(page);
+        query.setPageSize(pageSize);
+        return query;
+    }
+
+    private static List<Long> ids(List<? extends Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+
+    private static Book book(int i) {
+        Calendar date = Calendar.getInstance();
+        date.clear();
+        date.set(2000 + i % 20, i % 12, 1);
+        return Book.builder()
+                .title("Title " + (char) ('A' + i % 26) + (i * 37 % 101))
+                .author("Author " + i % 7)
+                .publicationDate(date.getTime())
+                .isbn("isbn-" + i)
+                .quantity(i % 9)
+                .category(i % 3 == 0 ? "科幻" : "文学")
+                .build();
+    }
+
+    private static BooksMapper mapper(SqlSessionFactory factory) {
+        return new SqlSessionTemplate(factory).getMapper(BooksMapper.class);
+    }
+
+    private static SqlSessionFactory sessionFactory(DataSource dataSource, CategoryDictionary categories) throws Exception {
+        Configuration configuration = new Configuration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLogImpl(NoLoggingImpl.class);
+        configuration.getTypeHandlerRegistry().register(new CategoryCodeTypeHandler(categories));
+        configuration.getTypeHandlerRegistry().register(new CategoryFilterTypeHandler(categories));
+        try (InputStream in = Resources.getResourceAsStream("mapper/BookMapper.xml")) {
+            new XMLMapperBuilder(in, configuration, "mapper/BookMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    private static DataSource database(String name) throws Exception {
+        JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = pool.getConnection();
+             Reader schema = Resources.getResourceAsReader("db/h2-schema.sql")) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(schema);
+        }
+        return new LazyConnectionDataSourceProxy(pool);
+    }
+
+    private static final class ListCursor implements Cursor<Integer> {
+        private final List<Integer> values;
+        private boolean open = true;
+
+        private ListCursor(Integer... values) {
+            this.values = Arrays.asList(values);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return !open;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return -1;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return values.iterator();
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.book.strategy;
+
+import com.book.config.SortProperties;
+import com.book.dto.BookDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollationTitleSortingStrategyTest {
+
+    private SortProperties properties;
+
+    private CollationTitleSortingStrategy strategy;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SortProperties();
+        strategy = new CollationTitleSortingStrategy(properties);
+    }
+
+    @Test
+    void testSortChineseTitlesByPinyin() {
+        // 准备测试数据
+        List<BookDTO> books = Arrays.asList(book(1L, "中国历史"), book(2L, "北京"), book(3L, "阿Q正传"));
+
+        // 执行测试
+        List<BookDTO> result = strategy.sort(books);
+
+        // 验证结果
+        assertEquals(Arrays.asList("阿Q正传", "北京", "中国历史"), titles(result));
+    }
+
+    @Test
+    void testNullTitlesFirst() {
+        List<BookDTO> result = strategy.sort(Arrays.asList(book(1L, "北京"), book(2L, null)));
+        assertNull(result.get(0).getTitle());
+    }
+
+    @Test
+    void testCachedKeyRefreshedWhenTitleChanges() {
+        // 准备测试数据
+        BookDTO first = book(1L, "阿Q正传");
+        BookDTO second = book(2L, "北京");
+        strategy.sort(Arrays.asList(first, second));
+
+        // 执行测试
+        first.setTitle("中国历史");
+        List<BookDTO> result = strategy.sort(Arrays.asList(first, second));
+
+        // 验证结果
+        assertEquals(Arrays.asList("北京", "中国历史"), titles(result));
+    }
+
+    @Test
+    void testParallelSortMatchesSequential() {
+        // 准备测试数据
+        List<BookDTO> books = randomBooks(5000, 7);
+        properties.getCollation().setParallelThreshold(1);
+        CollationTitleSortingStrategy parallel = new CollationTitleSortingStrategy(properties);
+
+        // 执行测试
+        List<BookDTO> expected = strategy.sort(books);
+        List<BookDTO> result = parallel.sort(books);
+
+        // 验证结果
+        assertEquals(expected, result);
+    }
+
+    @Test
+    void testKeyedSortMatchesNaiveCollator() {
+        // 准备测试数据
+        List<BookDTO> books = randomBooks(2000, 42);
+        List<BookDTO> naive = new ArrayList<>(books);
+        naive.sort(strategy.naiveComparator());
+
+        // 执行测试：首次排序计算排序键，第二次使用缓存的排序键
+        List<BookDTO> cold = strategy.sort(books);
+        List<BookDTO> warm = strategy.sort(books);
+
+        // 验证结果
+        assertEquals(titles(naive), titles(cold));
+        assertEquals(titles(naive), titles(warm));
+    }
+
+    /**
+     * 对比逐次比较的 Collator 和缓存排序键的耗时，不在常规测试中运行：
+     * mvn test -Dtest=CollationTitleSortingStrategyTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstNaiveCollator() {
+        // 准备测试数据
+        List<BookDTO> books = randomBooks(100_000, 42);
+        List<BookDTO> naive = new ArrayList<>(books);
+
+        // 执行测试
+        long start = System.nanoTime();
+        naive.sort(strategy.naiveComparator());
+        long naiveNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<BookDTO> cold = strategy.sort(books);
+        long coldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<BookDTO> warm = strategy.sort(books);
+        long warmNanos = System.nanoTime() - start;
+
+        System.out.printf("collation sort of %d titles: naive=%dms, keyed(cold)=%dms, keyed(cached)=%dms%n",
+                books.size(), naiveNanos / 1_000_000, coldNanos / 1_000_000, warmNanos / 1_000_000);
+
+        // 验证结果
+        assertEquals(titles(naive), titles(cold));
+        assertEquals(titles(naive), titles(warm));
+    }
+
+    private static List<BookDTO> randomBooks(int count, long seed) {
+        String chars = "中国历史北京阿正传三体编程思想红楼梦西游记水浒围城活着平凡的世界白鹿原";
+        Random random = new Random(seed);
+        List<BookDTO> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 2 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                title.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            books.add(book((long) i, title.toString()));
+        }
+        return books;
+    }
+
+    private static BookDTO book(Long id, String title) {
+        return BookDTO.builder().id(id).title(title).build();
+    }
+
+    private static List<String> titles(List<BookDTO> books) {
+        return books.stream().map(BookDTO::getTitle).collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,7 @@
 package com.book.strategy;
 
 import com.book.dto.BookDTO;
+import com.book.enm.BookSortField;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -184,6 +185,26 @@ class TitleSortingStrategyTest {
         assertEquals("算法导论", result.get(2).getTitle());
     }
 
+    @Test
+    void testSortIsCaseSensitiveAndPushedDownAsBinary() {
+        // 准备测试数据
+        List<BookDTO> books = Arrays.asList(
+                BookDTO.builder().title("apple").build(),
+                BookDTO.builder().title("Zebra").build(),
+                BookDTO.builder().title("Apple").build()
+        );
+
+        // 执行测试
+        List<BookDTO> result = titleSortingStrategy.sort(books);
+
+        // 验证结果：大写字母排在所有小写字母之前，下推到数据库时按二进制排序保持同样的顺序
+        assertEquals(Arrays.asList("Apple", "Zebra", "apple"),
+                Arrays.asList(result.get(0).getTitle(), result.get(1).getTitle(), result.get(2).getTitle()));
+        assertEquals(BookSortField.TITLE, titleSortingStrategy.databaseOrder());
+        assertTrue(titleSortingStrategy.isBinaryOrder());
+        assertEquals("CAST(title AS BINARY(1020))", titleSortingStrategy.databaseOrder().orderExpression(true));
+    }
+
     @Test
     void testSortWithNullList() {
         // 执行测试并验证异常
@@ -0,0 +1,61 @@
+package com.book.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSelectorTest {
+
+    @Test
+    void testResultMatchesFullSort() {
+        // 准备测试数据
+        Random random = new Random(42);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(random.nextInt(1000));
+        }
+        TopKSelector<Integer> selector = new TopKSelector<>(Comparator.naturalOrder(), 150);
+
+        // 执行测试
+        values.forEach(selector::offer);
+        List<Integer> result = selector.result(100);
+
+        // 验证结果
+        List<Integer> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        assertEquals(sorted.subList(100, 150), result);
+    }
+
+    @Test
+    void testStableForEqualKeys() {
+        // 准备测试数据
+        List<String> values = Arrays.asList("b1", "a1", "b2", "a2", "b3", "a3");
+        TopKSelector<String> selector = new TopKSelector<>(Comparator.comparing(s -> s.charAt(0)), 4);
+
+        // 执行测试
+        values.forEach(selector::offer);
+
+        // 验证结果
+        assertEquals(Arrays.asList("a1", "a2", "a3", "b1"), selector.result(0));
+    }
+
+    @Test
+    void testOffsetBeyondSize() {
+        TopKSelector<Integer> selector = new TopKSelector<>(Comparator.naturalOrder(), 10);
+        Arrays.asList(3, 1, 2).forEach(selector::offer);
+        assertEquals(Arrays.asList(1, 2, 3), selector.result(0));
+        assertTrue(selector.result(5).isEmpty());
+    }
+
+    @Test
+    void testNegativeK() {
+        assertThrows(IllegalArgumentException.class, () -> new TopKSelector<Integer>(Comparator.naturalOrder(), -1));
+    }
+}
@@ -0,0 +1,44 @@
+CREATE TABLE IF NOT EXISTS books
+(
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+    title            VARCHAR(255) NOT NULL,
+    author           VARCHAR(255) NOT NULL,
+    publication_date DATE         NOT NULL,
+    isbn             VARCHAR(20)  NOT NULL UNIQUE,
+    quantity         INT          NOT NULL,
+    category_code    SMALLINT     NOT NULL,
+    version          BIGINT       NOT NULL DEFAULT 0,
+    book_type        TINYINT      NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS books_archive
+(
+    id               BIGINT PRIMARY KEY,
+    title            VARCHAR(255) NOT NULL,
+    author           VARCHAR(255) NOT NULL,
+    publication_date DATE         NOT NULL,
+    isbn             VARCHAR(20)  NOT NULL UNIQUE,
+    quantity         INT          NOT NULL,
+    category_code    SMALLINT     NOT NULL,
+    version          BIGINT       NOT NULL DEFAULT 0,
+    book_type        TINYINT      NOT NULL DEFAULT 0,
+    archived_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS category_dict
+(
+    code SMALLINT    NOT NULL PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stock_journal_checkpoint
+(
+    id      TINYINT PRIMARY KEY,
+    segment BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS datasource_heartbeat
+(
+    id          TINYINT PRIMARY KEY,
+    beat_millis BIGINT NOT NULL
+);